@@ -1,28 +1,36 @@
 package CalendarSystem;
 
 import java.io.Serializable;
-import java.util.ArrayList;
 import java.time.LocalDateTime;
 
 /**
- * Represents an alert. An alert stores the name and time of the associated event, along with all the times the
- * alert should appear, the content of the message, and data for display.
+ * Represents an alert. An alert stores the name and time of the associated event, along with the content of the
+ * message and data for display. The times the alert should appear are worked out from its schedule as they are
+ * needed, rather than stored.
  */
 public abstract class Alert implements Serializable {
+
+    private static final long serialVersionUID = -1798427396159237395L;
+
+    /**
+     * The id number of the alert, unique within the alert system storing it; 0 if it is not stored.
+     */
+    private long id;
+
     /**
      * The name of the associated event.
      */
     private String name;
 
     /**
-     * The datetime of the associated event.
+     * The associated event.
      */
-    private LocalDateTime eventTime;
+    private Event event;
 
     /**
-     * A list of all the times the alert should appear.
+     * The datetime of the associated event.
      */
-    private ArrayList<LocalDateTime> times;
+    private LocalDateTime eventTime;
 
     /**
      * The message content of the alert.
@@ -45,59 +53,67 @@ public abstract class Alert implements Serializable {
         this.name = name;
         this.eventTime = date;
         this.message = message;
-        this.times = new ArrayList<>();
     }
 
 
+    @Override
+    public String toString() {
+        return "Alert for Event" + name + "occurring at" + eventTime.toString() + ": " + message;
+    }
+
+    //abstract methods
+
     /**
-     * Adds the date to the list of all alert times.
+     * Gets the type of the alert.
      *
-     * @param date date to be added.
+     * @return the type of the alert, 'f' for frequent, 'i' for individual.
      */
-    protected void addtoTimes(LocalDateTime date) {
-        this.times.add(date);
-    }
+    public abstract String getAlertType();
 
     /**
-     * Removes the date from the list of all alert times.
+     * Gets the first time, no earlier than the specified time, at which the alert should appear.
      *
-     * @param date date to be removed.
+     * @param from a time.
+     * @return the next time the alert should appear, or <code>null</code> if it should not appear again.
      */
-    protected void removefromTimes(LocalDateTime date) {
-        this.times.remove(date);
-    }
+    public abstract LocalDateTime getNextTime(LocalDateTime from);
+
+    //getters and setters
 
     /**
-     * Removes all of the alert times.
+     * Gets the id number of the alert. The id number is given by the alert system storing the alert.
+     *
+     * @return the id number of the alert, or 0 if it is not stored in an alert system.
      */
-    protected void resetTimes() {
-        this.times = new ArrayList<>();
+    public long getId() {
+        return id;
     }
 
-
-    @Override
-    public String toString() {
-        return "Alert for Event" + name + "occurring at" + eventTime.toString() + ": " + message;
+    /**
+     * Sets the id number of the alert.
+     *
+     * @param id the id number given to the alert by the alert system storing it.
+     */
+    void setId(long id) {
+        this.id = id;
     }
 
-    //abstract methods
-
     /**
-     * Gets the type of the alert.
+     * Gets the associated event.
      *
-     * @return the type of the alert, 'f' for frequent, 'i' for individual.
+     * @return the associated event, or <code>null</code> if the alert has not been added to an alert system.
      */
-    public abstract String getAlertType();
-
-    //getters and setters
+    public Event getEvent() {
+        return event;
+    }
 
     /**
-     * Gets the times at which the alert should appear.
+     * Sets the associated event.
      *
-     * @return a list of the times at which the alert should appear.
+     * @param event the associated event.
      */
-    public ArrayList<LocalDateTime> getTimes() {
-        return times;
+    void setEvent(Event event) {
+        this.event = event;
     }
 
     /**
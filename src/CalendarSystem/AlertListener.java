@@ -0,0 +1,19 @@
+package CalendarSystem;
+
+import java.time.LocalDateTime;
+
+/**
+ * A listener told by an alert scheduler when an alert is due.
+ *
+ * @see AlertScheduler
+ */
+public interface AlertListener {
+
+    /**
+     * Called on the scheduler's thread when the specified alert is due.
+     *
+     * @param alert the alert that is due.
+     * @param time  the time at which the alert was due.
+     */
+    void alertDue(Alert alert, LocalDateTime time);
+}
@@ -0,0 +1,362 @@
+package CalendarSystem;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.util.AbstractMap;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Delivers alerts to its listeners when they are due, on a daemon thread of its own.
+ * <p>
+ * Scheduled alerts are kept in a timing wheel: a ring of slots, one for every minute, that the thread moves
+ * through as time goes on. An alert goes in the slot of the minute it is due, wrapping around the ring if it is
+ * due more than one turn away, so scheduling and cancelling an alert take constant time and the thread only
+ * looks at the slot of the current minute, waking at the time the next alert of that minute is due. Once an
+ * alert has been delivered it is scheduled again at its next time, if it has one, by the alert system of its
+ * calendar.
+ *
+ * @see AlertListener
+ * @see AlertSystem
+ */
+public class AlertScheduler {
+
+    /**
+     * The number of slots in the wheel, one for every minute; a power of two.
+     */
+    private static final int WHEEL_SIZE = 4096;
+
+    private static final Logger logger = Logger.getLogger(AlertScheduler.class.getName());
+
+    /**
+     * A scheduled alert, linked with the other alerts in the same slot of the wheel.
+     */
+    private static class Entry {
+
+        private final Alert alert;
+
+        private LocalDateTime time;
+
+        /**
+         * The minute, counted from the epoch, in which the alert is delivered.
+         */
+        private long minute;
+
+        private Entry previous;
+
+        private Entry next;
+
+        private Entry(Alert alert) {
+            this.alert = alert;
+        }
+    }
+
+    /**
+     * The first entry of every slot of the wheel.
+     */
+    private final Entry[] slots = new Entry[WHEEL_SIZE];
+
+    /**
+     * A map mapping each scheduled alert to its entry.
+     */
+    private final IdentityHashMap<Alert, Entry> entries = new IdentityHashMap<>();
+
+    /**
+     * The listeners told when an alert is due.
+     */
+    private final CopyOnWriteArrayList<AlertListener> listeners = new CopyOnWriteArrayList<>();
+
+    /**
+     * The last minute, counted from the epoch, whose alerts have all been delivered.
+     */
+    private long ticked = floorMinute(LocalDateTime.now()) - 1;
+
+    /**
+     * The calendar of the scheduled alerts, or <code>null</code> if they are not in a calendar.
+     */
+    private volatile Calendar calendar;
+
+    /**
+     * The thread delivering alerts, or <code>null</code> if it is not running.
+     */
+    private Thread thread;
+
+    // Methods for scheduling alerts
+
+    /**
+     * Schedules the specified alert to be delivered at the specified time, replacing the time it was scheduled at.
+     * An alert due at a time that has already passed is delivered at once.
+     *
+     * @param alert an alert.
+     * @param time  the time the alert is due, or <code>null</code> to cancel it.
+     */
+    public synchronized void schedule(Alert alert, LocalDateTime time) {
+        cancel(alert);
+        if (time != null) {
+            Entry entry = new Entry(alert);
+            entries.put(alert, entry);
+            link(entry, time);
+            notifyAll(); // the thread wakes earlier if the alert is due before the time it waits for
+        }
+    }
+
+    /**
+     * Cancels the specified alert.
+     *
+     * @param alert an alert.
+     */
+    public synchronized void cancel(Alert alert) {
+        Entry entry = entries.remove(alert);
+        if (entry != null) {
+            unlink(entry);
+        }
+    }
+
+    /**
+     * Cancels the specified alerts.
+     *
+     * @param alerts alerts.
+     */
+    public synchronized void cancelAll(Collection<Alert> alerts) {
+        for (Alert alert : alerts) {
+            cancel(alert);
+        }
+    }
+
+    /**
+     * Cancels every scheduled alert.
+     */
+    public synchronized void clear() {
+        for (Entry entry : entries.values()) {
+            unlink(entry);
+        }
+        entries.clear();
+    }
+
+    /**
+     * Sets the calendar of the scheduled alerts, under whose lock the next time of an alert delivered is read.
+     *
+     * @param calendar a calendar, or <code>null</code> if the alerts are not in a calendar.
+     */
+    void setCalendar(Calendar calendar) {
+        this.calendar = calendar;
+    }
+
+    /**
+     * Gets the number of scheduled alerts.
+     *
+     * @return the number of scheduled alerts.
+     */
+    public synchronized int size() {
+        return entries.size();
+    }
+
+    // Methods for delivering alerts
+
+    /**
+     * Adds a listener to be told when an alert is due, and starts delivering alerts if they were not delivered
+     * yet.
+     *
+     * @param listener a listener.
+     */
+    public void addListener(AlertListener listener) {
+        listeners.add(listener);
+        start();
+    }
+
+    /**
+     * Removes the specified listener.
+     *
+     * @param listener a listener.
+     */
+    public void removeListener(AlertListener listener) {
+        listeners.remove(listener);
+    }
+
+    /**
+     * Starts the thread delivering alerts, if it is not running.
+     */
+    public synchronized void start() {
+        if (thread == null) {
+            thread = new Thread(this::run, "Alert scheduler");
+            thread.setDaemon(true);
+            thread.start();
+        }
+    }
+
+    /**
+     * Stops the thread delivering alerts. Scheduled alerts stay scheduled.
+     */
+    public synchronized void stop() {
+        if (thread != null) {
+            thread.interrupt();
+            thread = null;
+        }
+    }
+
+    /**
+     * Delivers the alerts due up to the specified time to the listeners, and schedules them again at their next
+     * time. An alert whose times were missed while the clock jumped is delivered once, not once for every time.
+     *
+     * @param now the current time.
+     */
+    public void deliverDue(LocalDateTime now) {
+        List<Map.Entry<Alert, LocalDateTime>> due = takeDue(now);
+        for (Map.Entry<Alert, LocalDateTime> alert : due) {
+            for (AlertListener listener : listeners) {
+                try {
+                    listener.alertDue(alert.getKey(), alert.getValue());
+                } catch (RuntimeException e) {
+                    logger.log(Level.WARNING, "Alert listener failed.", e);
+                }
+            }
+        }
+        if (!due.isEmpty()) {
+            scheduleNext(due, now);
+        }
+    }
+
+    // helper methods
+
+    private void run() {
+        try {
+            while (!Thread.currentThread().isInterrupted()) {
+                deliverDue(LocalDateTime.now());
+                synchronized (this) {
+                    if (thread != Thread.currentThread()) {
+                        return;
+                    }
+                    LocalDateTime now = LocalDateTime.now();
+                    long millis = Duration.between(now, nextDue(now)).toMillis();
+                    wait(Math.max(1, millis + 1));
+                }
+            }
+        } catch (InterruptedException e) {
+            // stopped
+        }
+    }
+
+    /**
+     * Removes the entries due up to the specified time from the wheel.
+     *
+     * @return the alerts that are due, with the time they are due.
+     */
+    private synchronized List<Map.Entry<Alert, LocalDateTime>> takeDue(LocalDateTime now) {
+        long minute = floorMinute(now);
+        List<Entry> due = new ArrayList<>();
+        if (minute - ticked >= WHEEL_SIZE) { // the clock has jumped forward by a turn of the wheel or more
+            for (int slot = 0; slot < WHEEL_SIZE; slot++) {
+                takeDue(slot, now, due);
+            }
+        } else {
+            for (long m = ticked + 1; m <= minute; m++) {
+                takeDue(slotOf(m), now, due);
+            }
+        }
+        ticked = Math.max(ticked, minute - 1); // the alerts due later in the current minute are still to come
+
+        List<Map.Entry<Alert, LocalDateTime>> alerts = new ArrayList<>(due.size());
+        for (Entry entry : due) {
+            entries.remove(entry.alert);
+            alerts.add(new AbstractMap.SimpleImmutableEntry<>(entry.alert, entry.time));
+        }
+        return alerts;
+    }
+
+    /**
+     * Moves the entries of the specified slot that are due up to the specified time to the specified list. The
+     * entries of later turns of the wheel are due later.
+     */
+    private void takeDue(int slot, LocalDateTime now, List<Entry> due) {
+        Entry entry = slots[slot];
+        while (entry != null) {
+            Entry next = entry.next;
+            if (!entry.time.isAfter(now)) {
+                unlink(entry);
+                due.add(entry);
+            }
+            entry = next;
+        }
+    }
+
+    /**
+     * Schedules the specified alerts, delivered at the specified time, again at their next time after it. The
+     * alert system of the calendar of the alerts works out the next times, through the calendar, as the alerts
+     * may be changed or deleted through it meanwhile.
+     */
+    private void scheduleNext(List<Map.Entry<Alert, LocalDateTime>> delivered, LocalDateTime now) {
+        List<Alert> alerts = new ArrayList<>(delivered.size());
+        for (Map.Entry<Alert, LocalDateTime> alert : delivered) {
+            alerts.add(alert.getKey());
+        }
+        Calendar source = calendar;
+        if (source == null) {
+            for (Alert alert : alerts) {
+                schedule(alert, alert.getNextTime(now.plusNanos(1)));
+            }
+        } else {
+            source.write(() -> source.getAlertSystem().delivered(this, alerts, now));
+        }
+    }
+
+    /**
+     * Gets the time the thread is to wake at next: the time the next alert of the current minute is due, or the
+     * start of the next minute if no alert is due before it.
+     */
+    private LocalDateTime nextDue(LocalDateTime now) {
+        long minute = floorMinute(now);
+        if (minute > ticked + 1) { // a minute has passed since the alerts were last taken
+            return now;
+        }
+        LocalDateTime next = LocalDateTime.ofEpochSecond((minute + 1) * 60, 0, ZoneOffset.UTC);
+        for (Entry entry = slots[slotOf(minute)]; entry != null; entry = entry.next) {
+            if (entry.time.isBefore(next)) {
+                next = entry.time;
+            }
+        }
+        return next;
+    }
+
+    /**
+     * Puts the specified entry in the slot of the minute it is due at the specified time.
+     */
+    private void link(Entry entry, LocalDateTime time) {
+        entry.time = time;
+        entry.minute = Math.max(floorMinute(time), ticked + 1);
+        int slot = slotOf(entry.minute);
+        entry.previous = null;
+        entry.next = slots[slot];
+        if (entry.next != null) {
+            entry.next.previous = entry;
+        }
+        slots[slot] = entry;
+    }
+
+    private void unlink(Entry entry) {
+        if (entry.previous != null) {
+            entry.previous.next = entry.next;
+        } else {
+            slots[slotOf(entry.minute)] = entry.next;
+        }
+        if (entry.next != null) {
+            entry.next.previous = entry.previous;
+        }
+        entry.previous = null;
+        entry.next = null;
+    }
+
+    private static int slotOf(long minute) {
+        return (int) (minute & (WHEEL_SIZE - 1));
+    }
+
+    private static long floorMinute(LocalDateTime time) {
+        return Math.floorDiv(time.toEpochSecond(ZoneOffset.UTC), 60);
+    }
+}
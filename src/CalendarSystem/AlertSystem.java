@@ -1,6 +1,8 @@
 package CalendarSystem;
 
 
+import java.io.IOException;
+import java.io.ObjectInputStream;
 import java.time.Duration;
 import java.time.LocalDateTime;
 import java.util.*;
@@ -11,24 +13,50 @@ import java.util.NavigableSet;
 /**
  * Represents a system for managing alerts.
  * The AlertSystem class handles creating, editing, deleting alerts, along with other alert functions.
+ * Only the next time each alert is due is indexed; once that time has passed, the alert is indexed again under
+ * its following time when the scheduler delivering the alerts has delivered it, or when the alert system is
+ * next changed. Lookups do not change the alert system, so they look up the following time of the few alerts
+ * not indexed again yet themselves.
  *
  * @see Alert
  */
 public class AlertSystem implements Serializable {
+
+    private static final long serialVersionUID = -310097231460504626L;
+
     /**
-     * A set containing all the times when alerts should appear.
+     * A map mapping each appear time, in order, to a list of the alerts that are next due at that time.
+     * It is rebuilt from the stored alerts when this alert system is read from file.
      */
-    private TreeSet<LocalDateTime> allAlertTimes = new TreeSet<>();
+    private transient TreeMap<LocalDateTime, Set<Alert>> dateAlertsMap = new TreeMap<>();
 
     /**
-     * A map mapping each appear time to a list of alerts that should show up at the appear time.
+     * A map mapping each alert to the time it is indexed under in dateAlertsMap.
+     * It is rebuilt from the stored alerts when this alert system is read from file.
      */
-    private Map<LocalDateTime, List<Alert>> dateAlertsMap = new HashMap<>();
+    private transient IdentityHashMap<Alert, LocalDateTime> nextTimes = new IdentityHashMap<>();
+
+    /**
+     * The scheduler delivering the alerts in this alert system when they are due, or <code>null</code> if they
+     * are not delivered.
+     */
+    private transient AlertScheduler scheduler;
 
     /**
      * A map mapping events to their associated alerts.
      */
-    private Map<Event, List<Alert>> eventAlertsMap = new HashMap<>();
+    private Map<Event, Set<Alert>> eventAlertsMap = new HashMap<>();
+
+    /**
+     * The id number to be given to the next alert added to this alert system.
+     */
+    private long nextAlertId = 1;
+
+    /**
+     * The alerts in this alert system by id number.
+     * It is rebuilt from the stored alerts when this alert system is read from file.
+     */
+    private transient HashMap<Long, Alert> alertsById = new HashMap<>();
 
     //Add alerts to the system
 
@@ -38,12 +66,12 @@ public class AlertSystem implements Serializable {
      * @param event   the event which the alert is associated with.
      * @param time    time of the alert.
      * @param message message content of the alert.
+     * @return the new alert.
      */
-    public void addIndividualAlert(Event event, String message, LocalDateTime time) {
+    public Alert addIndividualAlert(Event event, String message, LocalDateTime time) {
         Alert newAlert = new IndividualAlert(event.getStartTime(), event.getEventName(), message, time);
-        eventAlertsMap.putIfAbsent(event, new ArrayList<>());
-        eventAlertsMap.get(event).add(newAlert);
-        addtoTimesSet(newAlert);
+        addAlert(event, newAlert);
+        return newAlert;
     }
 
     /**
@@ -53,18 +81,35 @@ public class AlertSystem implements Serializable {
      * @param event    the event which the alert is associated with.
      * @param duration frequency of the alert.
      * @param message  message content of the alert.
+     * @return the new alert, or <code>null</code> if the frequent alert date is not valid.
      */
-    public void addFrequentAlert(Event event, String message, Duration duration) {
+    public Alert addFrequentAlert(Event event, String message, Duration duration) {
         if (FrequentAlert.isValidFrequentAlert(event.getStartTime(), LocalDateTime.now(), duration)) {
             Alert newAlert = new FrequentAlert(event.getStartTime(), event.getEventName(), message, duration);
-            eventAlertsMap.putIfAbsent(event, new ArrayList<>());
-            eventAlertsMap.get(event).add(newAlert);
-            addtoTimesSet(newAlert);
+            addAlert(event, newAlert);
+            return newAlert;
         } else {
             System.out.println("Illegal Frequent Alert Time");
+            return null;
         }
     }
 
+    /**
+     * Adds the specified alert to this alert system as an alert for the specified event, giving it a new id
+     * number.
+     *
+     * @param event the event which the alert is associated with.
+     * @param alert a new alert.
+     */
+    void addAlert(Event event, Alert alert) {
+        advance(LocalDateTime.now());
+        alert.setEvent(event);
+        alert.setId(nextAlertId++);
+        alertsById.put(alert.getId(), alert);
+        eventAlertsMap.computeIfAbsent(event, e -> newAlertSet()).add(alert);
+        schedule(alert, LocalDateTime.now());
+    }
+
 
     //Return sets of alerts -> that should appear currently, all alerts, or according to event
 
@@ -74,7 +119,8 @@ public class AlertSystem implements Serializable {
      * @param e events
      */
     public Set<Alert> getAlerts(Event e) {
-        return new HashSet<>(eventAlertsMap.get(e));
+        Set<Alert> alerts = eventAlertsMap.get(e);
+        return alerts == null ? new HashSet<>() : new HashSet<>(alerts);
     }
 
     /**
@@ -85,14 +131,14 @@ public class AlertSystem implements Serializable {
     public Set<Alert> getCurrAlerts() {
         Set<Alert> CurrAlerts = new HashSet<>(); //the set of Alerts to Show
 
-        // subset of valid times, reverse order
-        NavigableSet<LocalDateTime> subset = this.allAlertTimes.tailSet(LocalDateTime.now(), true);
-        NavigableSet<LocalDateTime> validAlertTimes = subset.descendingSet();
+        // the alerts due again, by time
+        LocalDateTime now = LocalDateTime.now();
+        TreeMap<LocalDateTime, Set<Alert>> upcoming = upcoming(now);
 
         //check if alert is valid (i.e. event hasn't occurred), then add to set CurrAlerts
-        for (LocalDateTime date : validAlertTimes) {
-            for (Alert alert : dateAlertsMap.get(date)) {
-                if (alert.getEventTime().isAfter(LocalDateTime.now()))
+        for (Set<Alert> alerts : upcoming.values()) {
+            for (Alert alert : alerts) {
+                if (alert.getEventTime().isAfter(now))
                     CurrAlerts.add(alert);
             }
         }
@@ -101,14 +147,12 @@ public class AlertSystem implements Serializable {
     }
 
     /**
-     * Gets a list of alert times for upcoming alerts.
+     * Gets the times at which upcoming alerts are next due, latest first.
      *
-     * @return list of the alert times.
+     * @return a copy of the alert times.
      */
-    public Set<LocalDateTime> getCurrAlertTime() {
-        // subset of valid times, reverse order
-        NavigableSet<LocalDateTime> subset = this.allAlertTimes.tailSet(LocalDateTime.now(), true);
-        return subset.descendingSet();
+    public NavigableSet<LocalDateTime> getCurrAlertTime() {
+        return upcoming(LocalDateTime.now()).navigableKeySet().descendingSet();
     }
 
     /**
@@ -139,11 +183,13 @@ public class AlertSystem implements Serializable {
      * Deletes the specified alert from this alert system.
      */
     public void deleteAlert(Alert alert) {
-        removeFromDateAlertsMap(alert);
+        unschedule(alert);
+        alertsById.remove(alert.getId());
 
-        // removes alert from eventAlertsMap
-        for (Event e : eventAlertsMap.keySet()) {
-            eventAlertsMap.get(e).remove(alert);
+        // removes alert from the alerts of its event
+        Set<Alert> alerts = eventAlertsMap.get(alert.getEvent());
+        if (alerts != null && alerts.remove(alert) && alerts.isEmpty()) {
+            removeEvent(alert.getEvent());
         }
     }
 
@@ -153,12 +199,12 @@ public class AlertSystem implements Serializable {
      * @param e an event which is associated with alerts in this alert system.
      */
     public void deleteAllAlertsforEvent(Event e) {
-        if (!this.eventAlertsMap.isEmpty()) {
-            List<Alert> copy = new ArrayList<>(eventAlertsMap.get(e));
-            for (Alert a : copy) {
-                deleteAlert(a);
+        Set<Alert> alerts = this.eventAlertsMap.remove(e);
+        if (alerts != null) {
+            unscheduleAll(alerts);
+            for (Alert alert : alerts) {
+                alertsById.remove(alert.getId());
             }
-            removeEvent(e);
         }
     }
 
@@ -170,10 +216,11 @@ public class AlertSystem implements Serializable {
      * @param frequency frequency of the alert.
      */
     public void editFrequentAlert(FrequentAlert alert, String message, Duration frequency) {
-        removeFromDateAlertsMap(alert);
+        advance(LocalDateTime.now());
+        unschedule(alert);
         alert.changeFrequency(frequency);
         alert.setMessage(message);
-        addtoTimesSet(alert);
+        schedule(alert, LocalDateTime.now());
         alert.setData(alert.toString());
     }
 
@@ -185,40 +232,193 @@ public class AlertSystem implements Serializable {
      * @param dateTime the time of the alert.
      */
     public void editIndividualAlert(IndividualAlert alert, String message, LocalDateTime dateTime) {
-        removeFromDateAlertsMap(alert);
+        advance(LocalDateTime.now());
+        unschedule(alert);
         alert.setMessage(message);
         alert.changeTime(dateTime);
-        addtoTimesSet(alert);
+        schedule(alert, LocalDateTime.now());
         alert.setData(alert.toString());
     }
 
     // helper methods
 
     /**
-     * A helper method for adding the times of the alert to dateAlertsMap and allAlertTimes.
+     * A helper method for indexing the alert in dateAlertsMap under the next time it is due, no earlier than
+     * the specified time, and scheduling it to be delivered then.
      *
      * @param alert: the alert to add.
+     * @param from:  the earliest time to index the alert under.
      */
-    private void addtoTimesSet(Alert alert) {
-        for (LocalDateTime alertTime : alert.getTimes()) {
-            dateAlertsMap.putIfAbsent(alertTime, new ArrayList<>());
-            dateAlertsMap.get(alertTime).add(alert);
-            allAlertTimes.add(alertTime);
+    private void schedule(Alert alert, LocalDateTime from) {
+        LocalDateTime alertTime = index(alert, from);
+        if (scheduler != null) {
+            scheduler.schedule(alert, alertTime);
         }
     }
 
+    /**
+     * Indexes the alert in dateAlertsMap under the next time it is due, no earlier than the specified time.
+     *
+     * @return the time the alert is indexed under, or <code>null</code> if it is not due again.
+     */
+    private LocalDateTime index(Alert alert, LocalDateTime from) {
+        LocalDateTime alertTime = alert.getNextTime(from);
+        if (alertTime != null) {
+            dateAlertsMap.computeIfAbsent(alertTime, t -> newAlertSet()).add(alert);
+            nextTimes.put(alert, alertTime);
+        }
+        return alertTime;
+    }
+
     /**
      * Removes the specified alert from this alert system's dateAlertsMap.
      *
      * @param alert an alert in this alert system.
      */
-    private void removeFromDateAlertsMap(Alert alert) {
-        // removes alert from dateAlertsMap
-        for (LocalDateTime alertTime : alert.getTimes()) {
-            dateAlertsMap.get(alertTime).remove(alert);
-            if (dateAlertsMap.get(alertTime).isEmpty()) { // no other alerts at alertTime, so removes alertTime
+    private void unschedule(Alert alert) {
+        LocalDateTime alertTime = nextTimes.remove(alert);
+        if (alertTime != null) {
+            Set<Alert> alerts = dateAlertsMap.get(alertTime);
+            alerts.remove(alert);
+            if (alerts.isEmpty()) { // no other alerts at alertTime, so removes alertTime
                 dateAlertsMap.remove(alertTime);
-                allAlertTimes.remove(alertTime);
+            }
+        }
+        if (scheduler != null) {
+            scheduler.cancel(alert);
+        }
+    }
+
+    /**
+     * Removes the specified alerts from this alert system's dateAlertsMap and cancels them together.
+     *
+     * @param alerts alerts in this alert system.
+     */
+    private void unscheduleAll(Collection<Alert> alerts) {
+        for (Alert alert : alerts) {
+            LocalDateTime alertTime = nextTimes.remove(alert);
+            if (alertTime != null) {
+                Set<Alert> atTime = dateAlertsMap.get(alertTime);
+                atTime.remove(alert);
+                if (atTime.isEmpty()) {
+                    dateAlertsMap.remove(alertTime);
+                }
+            }
+        }
+        if (scheduler != null) {
+            scheduler.cancelAll(alerts);
+        }
+    }
+
+    private static Set<Alert> newAlertSet() {
+        return Collections.newSetFromMap(new IdentityHashMap<>());
+    }
+
+    /**
+     * Gets the alerts by the next time they are due no earlier than the specified time, without changing the
+     * index: the alerts whose indexed time has passed are looked up under their following time.
+     */
+    private TreeMap<LocalDateTime, Set<Alert>> upcoming(LocalDateTime now) {
+        TreeMap<LocalDateTime, Set<Alert>> upcoming = new TreeMap<>();
+        for (Map.Entry<LocalDateTime, Set<Alert>> entry : dateAlertsMap.tailMap(now, true).entrySet()) {
+            upcoming.computeIfAbsent(entry.getKey(), t -> newAlertSet()).addAll(entry.getValue());
+        }
+        for (Set<Alert> passed : dateAlertsMap.headMap(now, false).values()) {
+            for (Alert alert : passed) {
+                LocalDateTime alertTime = alert.getNextTime(now);
+                if (alertTime != null) {
+                    upcoming.computeIfAbsent(alertTime, t -> newAlertSet()).add(alert);
+                }
+            }
+        }
+        return upcoming;
+    }
+
+    /**
+     * Indexes the alerts whose indexed time is before the specified time under their next time instead. Called
+     * when the alert system is changed, so that it is only changed through its calendar.
+     * The scheduler is not told: it still holds the alerts at their passed time, and has them scheduled again
+     * once it has delivered them.
+     *
+     * @param now the current time.
+     */
+    private void advance(LocalDateTime now) {
+        Map.Entry<LocalDateTime, Set<Alert>> passed = dateAlertsMap.firstEntry();
+        while (passed != null && passed.getKey().isBefore(now)) {
+            dateAlertsMap.pollFirstEntry();
+            for (Alert alert : passed.getValue()) {
+                nextTimes.remove(alert);
+                index(alert, now);
+            }
+            passed = dateAlertsMap.firstEntry();
+        }
+    }
+
+    /**
+     * Indexes the alerts due up to the specified time under their next time after it, as the specified
+     * scheduler has just delivered the specified alerts, and schedules those alerts again at that time. Called
+     * by the scheduler through the calendar of this alert system, so that it is only changed through its
+     * calendar. Alerts deleted meanwhile, and alerts delivered after the scheduler was replaced, are not
+     * scheduled again.
+     *
+     * @param by        the scheduler that delivered the alerts.
+     * @param delivered the alerts delivered.
+     * @param now       the time they were delivered at.
+     */
+    void delivered(AlertScheduler by, Collection<Alert> delivered, LocalDateTime now) {
+        advance(now.plusNanos(1));
+        if (scheduler != by) {
+            return;
+        }
+        for (Alert alert : delivered) {
+            LocalDateTime alertTime = nextTimes.get(alert);
+            if (alertTime != null && alertsById.get(alert.getId()) == alert) {
+                scheduler.schedule(alert, alertTime);
+            }
+        }
+    }
+
+    /**
+     * Rebuilds the index of alert times, which is not saved to file, after reading this alert system from file.
+     * The alerts of an alert system saved before alerts knew their event, and were numbered, are given the event
+     * they were stored under and numbered.
+     */
+    @SuppressWarnings("unchecked")
+    private void readObject(ObjectInputStream in) throws IOException, ClassNotFoundException {
+        ObjectInputStream.GetField fields = in.readFields();
+        Map<Event, Collection<Alert>> saved = (Map<Event, Collection<Alert>>) fields.get("eventAlertsMap", null);
+        nextAlertId = fields.get("nextAlertId", 0L);
+        boolean numbered = nextAlertId > 0;
+        if (!numbered) {
+            nextAlertId = 1;
+        }
+        eventAlertsMap = new HashMap<>();
+        for (Map.Entry<Event, Collection<Alert>> entry : saved.entrySet()) { // lists in old files
+            Set<Alert> alerts = newAlertSet();
+            for (Alert alert : entry.getValue()) {
+                if (!numbered) {
+                    alert.setEvent(entry.getKey());
+                    alert.setId(nextAlertId++);
+                }
+                alerts.add(alert);
+            }
+            eventAlertsMap.put(entry.getKey(), alerts);
+        }
+        rebuildIndexes();
+    }
+
+    /**
+     * Rebuilds the indexes of alerts by id number and by time from the stored alerts.
+     */
+    private void rebuildIndexes() {
+        dateAlertsMap = new TreeMap<>();
+        nextTimes = new IdentityHashMap<>();
+        alertsById = new HashMap<>();
+        LocalDateTime now = LocalDateTime.now();
+        for (Set<Alert> alerts : eventAlertsMap.values()) {
+            for (Alert alert : alerts) {
+                alertsById.put(alert.getId(), alert);
+                index(alert, now);
             }
         }
     }
@@ -227,24 +427,104 @@ public class AlertSystem implements Serializable {
     //getters and setters
 
     /**
-     * Gets the dateAlertsMap for this alert system.
+     * Sets the scheduler delivering the alerts in this alert system when they are due, and schedules every
+     * upcoming alert with it.
+     *
+     * @param scheduler an alert scheduler, or <code>null</code> to stop scheduling alerts.
+     */
+    public void setScheduler(AlertScheduler scheduler) {
+        if (this.scheduler != null) {
+            for (Set<Alert> alerts : eventAlertsMap.values()) {
+                for (Alert alert : alerts) {
+                    this.scheduler.cancel(alert);
+                }
+            }
+        }
+        this.scheduler = scheduler;
+        if (scheduler != null) {
+            advance(LocalDateTime.now()); // scheduled at the times they are indexed under
+            for (Map.Entry<Alert, LocalDateTime> next : nextTimes.entrySet()) {
+                scheduler.schedule(next.getKey(), next.getValue());
+            }
+        }
+    }
+
+    /**
+     * Gets the upcoming alerts of this alert system, mapping the next time each alert is due to the alerts due
+     * at that time.
      *
-     * @return the dateAlertsMap in this alert system.
+     * @return a copy of the upcoming alerts by time, in order.
      */
-    public Map<LocalDateTime, List<Alert>> getDateAlertsMap() {
-        return dateAlertsMap;
+    public Map<LocalDateTime, Set<Alert>> getDateAlertsMap() {
+        return upcoming(LocalDateTime.now());
     }
 
     /**
-     * Gets a TreeSet of all the alert times in this alert system.
+     * Gets the times at which the alerts in this alert system are next due, in order.
      *
-     * @return the alert times in this alert system.
+     * @return a copy of the alert times in this alert system.
      */
-    public TreeSet<LocalDateTime> getAllAlertTimes() {
-        return allAlertTimes;
+    public NavigableSet<LocalDateTime> getAllAlertTimes() {
+        return new TreeSet<>(dateAlertsMap.navigableKeySet());
     }
 
-    public Map<Event, List<Alert>> getEventAlertsMap() {
-        return eventAlertsMap;
+    /**
+     * Gets an alert in this alert system by its id number.
+     *
+     * @param id the id number of an alert.
+     * @return the alert with the id number, or <code>null</code> if there is none.
+     */
+    public Alert getAlert(long id) {
+        return alertsById.get(id);
+    }
+
+    /**
+     * Gets the id number to be given to the next alert added to this alert system.
+     *
+     * @return the next alert id number.
+     */
+    long getNextAlertId() {
+        return nextAlertId;
+    }
+
+    /**
+     * Restores the alerts of this alert system read from file, keeping their id numbers. Each alert must already
+     * know its event.
+     *
+     * @param nextAlertId the id number to be given to the next alert added.
+     * @param alerts      the stored alerts.
+     */
+    void restore(long nextAlertId, Collection<Alert> alerts) {
+        this.nextAlertId = nextAlertId;
+        eventAlertsMap.clear();
+        for (Alert alert : alerts) {
+            eventAlertsMap.computeIfAbsent(alert.getEvent(), e -> newAlertSet()).add(alert);
+        }
+        rebuildIndexes();
+    }
+
+    /**
+     * Gets the alerts of this alert system by event.
+     *
+     * @return an unmodifiable view of the alerts by event.
+     */
+    public Map<Event, Set<Alert>> getEventAlertsMap() {
+        return Collections.unmodifiableMap(eventAlertsMap);
+    }
+
+    /**
+     * Copies this alert system, as a snapshot of its alerts that is not changed along with it. The copy does not
+     * deliver its alerts.
+     *
+     * @return a copy of this alert system.
+     */
+    AlertSystem copy() {
+        AlertSystem copy = new AlertSystem();
+        List<Alert> alerts = new ArrayList<>();
+        for (Set<Alert> eventAlerts : eventAlertsMap.values()) {
+            alerts.addAll(eventAlerts);
+        }
+        copy.restore(nextAlertId, alerts);
+        return copy;
     }
 }
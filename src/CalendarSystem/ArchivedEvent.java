@@ -0,0 +1,69 @@
+package CalendarSystem;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Represents a past event read from the archive of a calendar.
+ * An archived event keeps the memos and the expired alerts it had when it was archived. It cannot be changed,
+ * only deleted.
+ *
+ * @see CalendarArchive
+ */
+public class ArchivedEvent extends Event {
+
+    private static final long serialVersionUID = 1L;
+
+    /**
+     * The archive this event was read from.
+     */
+    private final CalendarArchive archive;
+
+    /**
+     * The alerts this event had when it was archived.
+     */
+    private final List<Alert> alerts = new ArrayList<>();
+
+    /**
+     * Initializes a new ArchivedEvent object read from the specified archive.
+     *
+     * @param archive the archive the event is read from, or <code>null</code> if it is still to be written.
+     * @param name    the name of the event.
+     * @param start   the start time and date of the event.
+     * @param end     the end time and date of the event.
+     */
+    ArchivedEvent(CalendarArchive archive, String name, LocalDateTime start, LocalDateTime end) {
+        super(name, start, end);
+        this.archive = archive;
+    }
+
+    /**
+     * Gets the archive this event was read from.
+     *
+     * @return the archive of this event, or <code>null</code> if it is still to be written.
+     */
+    CalendarArchive getArchive() {
+        return archive;
+    }
+
+    /**
+     * Gets the alerts this event had when it was archived. They no longer appear.
+     *
+     * @return an unmodifiable list of the alerts of this event.
+     */
+    public List<Alert> getArchivedAlerts() {
+        return Collections.unmodifiableList(alerts);
+    }
+
+    /**
+     * Adds an alert this event had when it was archived.
+     *
+     * @param alert an expired alert of this event.
+     */
+    void addArchivedAlert(Alert alert) {
+        alert.setEvent(this);
+        alerts.add(alert);
+    }
+}
@@ -1,29 +1,105 @@
 package CalendarSystem;
 
+import java.io.IOException;
+import java.io.ObjectInputStream;
 import java.io.Serializable;
 import java.time.Duration;
 import java.time.LocalDate;
 import java.time.LocalDateTime;
+import java.time.LocalTime;
 import java.time.Period;
 import java.util.ArrayList;
 import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.LinkedHashSet;
 import java.util.List;
+import java.util.Set;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.concurrent.locks.StampedLock;
+import java.util.function.Supplier;
+import java.util.logging.Level;
+import java.util.logging.Logger;
 
 /**
  * Represents a calendar.
  * A calendar manages events, memos, notifications and alerts. A calendar is user-specific.
+ * <p>
+ * A calendar can be shared between threads. Every change, including the changes to its memo, series and alert
+ * systems, goes through the calendar, one at a time. Lookups share the calendar's read lock, so they do not wait
+ * for one another, only for a change in progress; the list of all its events is kept as a snapshot, read without
+ * taking the lock for as long as the calendar is not changed. The collections of events returned are copies of
+ * the calendar as it was when they were returned, so they can be used while other threads change it.
+ * <p>
+ * The changes made to a calendar are published through its {@link ChangeFeed}, each change to the calendar as
+ * one batch, once the change is done.
  *
  * @see AlertSystem
+ * @see ChangeFeed
  * @see Event
  * @see MemoSystem
  * @see SeriesSystem
  */
 public class Calendar implements Serializable {
 
+    private static final long serialVersionUID = 4979930537352009437L;
+
+    private static final Logger logger = Logger.getLogger(Calendar.class.getName());
+
+    /**
+     * The events stored in this calendar, in the order they were added.
+     */
+    private LinkedHashSet<Event> myEvents = new LinkedHashSet<>();
+
+    /**
+     * The id number to be given to the next event added to this calendar.
+     */
+    private long nextEventId = 1;
+
+    /**
+     * The events stored in this calendar by id number and by name.
+     * It is rebuilt from the stored events when this calendar is read from file.
+     */
+    private transient EventRegistry registry = new EventRegistry();
+
+    /**
+     * An index of the events stored in this calendar by their start and end time.
+     * It is rebuilt from the stored events when this calendar is read from file.
+     */
+    private transient EventIntervalTree eventTimes = new EventIntervalTree();
+
+    /**
+     * The events stored in this calendar ordered by start time and by end time.
+     * It is rebuilt from the stored events when this calendar is read from file.
+     */
+    private transient EventTimeline timeline = new EventTimeline();
+
+    /**
+     * The events stored in this calendar grouped by tag.
+     * It is rebuilt from the stored events when this calendar is read from file.
+     */
+    private transient TagIndex tags = new TagIndex();
+
+    /**
+     * An index of the words in the names, tags, series and memos of the events stored in this calendar.
+     * It is rebuilt from the stored events when this calendar is read from file.
+     */
+    private transient SearchIndex words = new SearchIndex();
+
+    /**
+     * The events of this calendar that are read from its memory-mapped event store as they are looked up.
+     * An event in the store is stored in this calendar once it is changed.
+     * It is given by the manager of this calendar after the calendar is read from file.
+     */
+    private transient SegmentedEventStore pages = SegmentedEventStore.empty();
+
     /**
-     * A list of events stored in this calendar.
+     * The past events of this calendar that were archived, which are read only when they are looked up and
+     * cannot be changed, only deleted.
+     * It is given by the manager of this calendar after the calendar is read from file.
      */
-    private ArrayList<Event> myEvents = new ArrayList<>();
+    private transient CalendarArchive archive = CalendarArchive.empty();
 
     /**
      * The system for handling memos associated with the events stored in this calendar.
@@ -46,19 +122,80 @@ public class Calendar implements Serializable {
     private ArrayList<Event> notifications = new ArrayList<>();
 
     /**
-     * The current time in this calendar.
+     * The current time in this calendar, as of the last time it was looked up.
+     */
+    public volatile LocalDateTime time = LocalDateTime.now();
+
+    /**
+     * The journal recording the changes made to this calendar, or <code>null</code> if they are not recorded.
+     */
+    private transient CalendarJournal journal;
+
+    /**
+     * The lock that changes to this calendar hold, and that lookups share.
      */
-    public LocalDateTime time = LocalDateTime.now();
+    private transient StampedLock lock = new StampedLock();
+
+    /**
+     * The lock a change holds while it waits for the lookups in progress, so that new lookups wait behind it
+     * instead of taking the read lock ahead of it; the read lock is taken whenever no change holds the write lock.
+     */
+    private transient ReentrantLock turnstile = new ReentrantLock();
+
+    /**
+     * For every thread, the number of lookups it is making in this calendar, so that a lookup made by another
+     * takes the read lock only once; the read lock is not reentrant, and a thread taking it again would wait
+     * behind a change waiting for it.
+     */
+    private transient ThreadLocal<int[]> readDepth = ThreadLocal.withInitial(() -> new int[1]);
+
+    /**
+     * The number of changes made to this calendar, by which its snapshots tell that it was changed.
+     */
+    private transient volatile long changeCount;
+
+    /**
+     * The snapshot of all the events in this calendar, or <code>null</code> if none was made yet.
+     */
+    private transient volatile Snapshot<Collection<Event>> allEvents;
+
+    /**
+     * The snapshot of the names of all the events in this calendar, or <code>null</code> if none was made yet.
+     */
+    private transient volatile Snapshot<List<String>> eventNames;
+
+    /**
+     * The thread changing this calendar, or <code>null</code> if no change is in progress.
+     */
+    private transient volatile Thread writingThread;
+
+    /**
+     * The feed publishing the changes made to this calendar.
+     */
+    private transient ChangeFeed feed = new ChangeFeed();
+
+    /**
+     * The changes made by the change in progress, published once it is done.
+     */
+    private transient ArrayList<CalendarChange> changes = new ArrayList<>();
 
     // Methods for creating events, alerts, memos
 
     /**
-     * Adds the specified event to this calendar's stored events.
+     * Adds the specified event to this calendar's stored events and gives it a new id number.
      *
      * @param e the event to be added to this calendar.
      */
     public void addEvent(Event e) {
-        myEvents.add(e);
+        write(() -> {
+            if (!storeEvent(e)) {
+                return;
+            }
+            changed(CalendarChange.Kind.EVENT_ADDED, e);
+            if (journal != null) {
+                journal.eventAdded(e);
+            }
+        });
     }
 
     /**
@@ -69,7 +206,17 @@ public class Calendar implements Serializable {
      * @param date the time and date of the alert.
      */
     public void addIndividualAlert(Event e, String msg, LocalDateTime date) {
-        myAlerts.addIndividualAlert(e, msg, date);
+        write(() -> {
+            if (isArchived(e)) {
+                return;
+            }
+            materialize(e);
+            Alert alert = myAlerts.addIndividualAlert(e, msg, date);
+            changes.add(CalendarChange.of(CalendarChange.Kind.ALERT_ADDED, alert, e));
+            if (journal != null) {
+                journal.alertAdded(alert);
+            }
+        });
     }
 
     /**
@@ -80,7 +227,38 @@ public class Calendar implements Serializable {
      * @param d   the frequency of the alert.
      */
     public void addFrequentAlert(Event e, String msg, Duration d) {
-        myAlerts.addFrequentAlert(e, msg, d);
+        write(() -> {
+            if (isArchived(e)) {
+                return;
+            }
+            materialize(e);
+            Alert alert = myAlerts.addFrequentAlert(e, msg, d);
+            if (alert == null) {
+                return;
+            }
+            changes.add(CalendarChange.of(CalendarChange.Kind.ALERT_ADDED, alert, e));
+            if (journal != null) {
+                journal.alertAdded(alert);
+            }
+        });
+    }
+
+    /**
+     * Adds the specified alert for the specified event to this calendar's alert system, without checking that
+     * the alert is still to come. Used to restore alerts that were checked when they were first added.
+     *
+     * @param e     the event associated with the alert.
+     * @param alert an alert for the event.
+     */
+    void addAlert(Event e, Alert alert) {
+        write(() -> {
+            materialize(e);
+            myAlerts.addAlert(e, alert);
+            changes.add(CalendarChange.of(CalendarChange.Kind.ALERT_ADDED, alert, e));
+            if (journal != null) {
+                journal.alertAdded(alert);
+            }
+        });
     }
 
     /**
@@ -88,9 +266,100 @@ public class Calendar implements Serializable {
      *
      * @param events a list of events associated with the memo.
      * @param note   the note of the memo.
+     * @return the new memo, or <code>null</code> if one of the events is archived.
+     */
+    public Memo createMemo(List<Event> events, String note) {
+        return write(() -> {
+            if (anyArchived(events)) {
+                return null;
+            }
+            for (Event e : events) {
+                materialize(e);
+            }
+            Memo memo = myMemos.createMemo(events, note);
+            for (Event e : events) {
+                reindex(e);
+            }
+            memoChanged(CalendarChange.Kind.MEMO_LINKED, memo, events);
+            if (journal != null) {
+                journal.memoCreated(note, events);
+            }
+            return memo;
+        });
+    }
+
+    /**
+     * Associates the specified memo with the specified events.
+     *
+     * @param memo   a memo in this calendar's memo system.
+     * @param events a list of events in this calendar.
+     */
+    public void addMemo(Memo memo, List<Event> events) {
+        write(() -> {
+            if (anyArchived(events)) {
+                return;
+            }
+            for (Event e : events) {
+                materialize(e);
+                myMemos.linkMemo(memo, e);
+                reindex(e);
+            }
+            memoChanged(CalendarChange.Kind.MEMO_LINKED, memo, events);
+            if (journal != null) {
+                journal.memoLinked(memo, events);
+            }
+        });
+    }
+
+    /**
+     * Adds a new Memo object with the specified note and associates it with every event of the specified series.
+     *
+     * @param series a series in this calendar.
+     * @param note   the note of the memo.
+     * @return the new memo.
+     */
+    public Memo createMemo(Series series, String note) {
+        return write(() -> {
+            Memo memo = new Memo(note);
+            linkSeriesMemo(memo, series);
+            if (journal != null) {
+                journal.seriesMemoLinked(memo, series);
+            }
+            return memo;
+        });
+    }
+
+    /**
+     * Associates the specified memo with every event of the specified series. A recurring series keeps the memo
+     * for all of its occurrences, without creating them.
+     *
+     * @param memo   a memo.
+     * @param series a series in this calendar.
+     */
+    public void addMemo(Memo memo, Series series) {
+        write(() -> {
+            linkSeriesMemo(memo, series);
+            if (journal != null) {
+                journal.seriesMemoLinked(memo, series);
+            }
+        });
+    }
+
+    /**
+     * Associates the specified memo with every event of the specified series, without recording the change.
      */
-    public void createMemo(List<Event> events, String note) {
-        myMemos.createMemo(events, note);
+    private void linkSeriesMemo(Memo memo, Series series) {
+        if (series instanceof RecurringSeries) {
+            myMemos.linkMemo(memo, (RecurringSeries) series);
+            changes.add(CalendarChange.reset()); // its occurrences are not published one by one
+        }
+        // the events of a recurring series that are stored in this calendar hold their own memos
+        Collection<Event> stored = storedEvents(series);
+        for (Event e : stored) {
+            myMemos.linkMemo(memo, e);
+            reindex(e);
+        }
+        memoChanged(CalendarChange.Kind.MEMO_LINKED, memo, stored);
     }
 
     // Methods for deleting events, alerts, memos
@@ -101,11 +370,45 @@ public class Calendar implements Serializable {
      * @param e an event in this calendar.
      */
     public void deleteEvent(Event e) {
-        this.myEvents.remove(e); // removes from this calendar's list of events
-        if (!(e.getMemos() == null) && !(e.getMemos().isEmpty())) {
-            deleteAllMemosforEvent(e); // removes memos for this event from memo system if not associated with any other events}
-        }
-        deleteAllAlertsforEvent(e); // removes all alerts for this event
+        write(() -> {
+            if (isOccurrence(e)) {
+                SeriesOccurrence occurrence = (SeriesOccurrence) e;
+                occurrence.getRule().exclude(occurrence.getIndex()); // an occurrence has no memos or alerts of its own
+                changed(CalendarChange.Kind.EVENT_REMOVED, e);
+                if (journal != null) {
+                    journal.occurrenceExcluded(occurrence);
+                }
+                return;
+            }
+            if (isPaged(e)) {
+                pages.remove((PagedEvent) e); // a paged event has no memos or alerts
+                changed(CalendarChange.Kind.EVENT_REMOVED, e);
+                if (journal != null) {
+                    journal.eventDeleted(e);
+                }
+                return;
+            }
+            if (archive.contains(e)) {
+                archive.delete((ArchivedEvent) e); // its memos and alerts are archived with it
+                changed(CalendarChange.Kind.EVENT_REMOVED, e);
+                if (journal != null) {
+                    journal.eventDeleted(e);
+                }
+                return;
+            }
+            if (this.myEvents.remove(e)) { // removes from this calendar's list of events
+                unindexEvent(e);
+            }
+            if (!(e.getMemos() == null) && !(e.getMemos().isEmpty())) {
+                clearMemos(e); // removes memos for this event from memo system if not associated with any other events}
+            }
+            alertsRemoved(e);
+            myAlerts.deleteAllAlertsforEvent(e); // removes all alerts for this event
+            changed(CalendarChange.Kind.EVENT_REMOVED, e);
+            if (journal != null) {
+                journal.eventDeleted(e);
+            }
+        });
     }
 
     /**
@@ -114,7 +417,13 @@ public class Calendar implements Serializable {
      * @param a an alert in this calendar's alert system.
      */
     public void deleteAlert(Alert a) {
-        this.myAlerts.deleteAlert(a);
+        write(() -> {
+            this.myAlerts.deleteAlert(a);
+            changes.add(CalendarChange.of(CalendarChange.Kind.ALERT_REMOVED, a, a.getEvent()));
+            if (journal != null) {
+                journal.alertDeleted(a);
+            }
+        });
     }
 
     /**
@@ -123,7 +432,47 @@ public class Calendar implements Serializable {
      * @param e an event in this calendar.
      */
     public void deleteAllAlertsforEvent(Event e) {
-        this.myAlerts.deleteAllAlertsforEvent(e);
+        write(() -> {
+            alertsRemoved(e);
+            this.myAlerts.deleteAllAlertsforEvent(e);
+            if (journal != null) {
+                journal.alertsCleared(e);
+            }
+        });
+    }
+
+    /**
+     * Edits the message and time of the specified individual alert.
+     *
+     * @param alert   an individual alert in this calendar's alert system.
+     * @param message the new message of the alert.
+     * @param time    the new time of the alert.
+     */
+    public void editIndividualAlert(IndividualAlert alert, String message, LocalDateTime time) {
+        write(() -> {
+            myAlerts.editIndividualAlert(alert, message, time);
+            changes.add(CalendarChange.of(CalendarChange.Kind.ALERT_CHANGED, alert, alert.getEvent()));
+            if (journal != null) {
+                journal.alertEdited(alert);
+            }
+        });
+    }
+
+    /**
+     * Edits the message and frequency of the specified frequent alert.
+     *
+     * @param alert     a frequent alert in this calendar's alert system.
+     * @param message   the new message of the alert.
+     * @param frequency the new frequency of the alert.
+     */
+    public void editFrequentAlert(FrequentAlert alert, String message, Duration frequency) {
+        write(() -> {
+            myAlerts.editFrequentAlert(alert, message, frequency);
+            changes.add(CalendarChange.of(CalendarChange.Kind.ALERT_CHANGED, alert, alert.getEvent()));
+            if (journal != null) {
+                journal.alertEdited(alert);
+            }
+        });
     }
 
     /**
@@ -132,10 +481,17 @@ public class Calendar implements Serializable {
      * @param m a memo in this calendar's memo system.
      */
     public void deleteMemo(Memo m) {
-        this.myMemos.deleteMemo(m); // deletes memo from memo system
-        for (Event e : this.myEvents) {
-            e.deleteMemo(m); // deletes memo from events, if present
-        }
+        write(() -> {
+            ArrayList<Event> events = new ArrayList<>(myMemos.getEvents(m));
+            this.myMemos.deleteMemo(m); // deletes memo from memo system and from its events
+            for (Event e : events) {
+                reindex(e);
+            }
+            memoChanged(CalendarChange.Kind.MEMO_REMOVED, m, events);
+            if (journal != null) {
+                journal.memoDeleted(m);
+            }
+        });
     }
 
     /**
@@ -144,20 +500,67 @@ public class Calendar implements Serializable {
      * @param e an event in this calendar.
      */
     public void deleteAllMemosforEvent(Event e) {
-        for (Memo m : e.getMemos()) {
-            if (findEvent(m).size() == 1 && !this.myMemos.isEmpty() && !(this.myMemos == null)) {
-                this.myMemos.deleteMemo(m); // removes memo from memo system if not associated with any other event
+        write(() -> {
+            // removes all memos from this event's stored memos, and from the memo system if not associated with
+            // any other event
+            if (isArchived(e)) {
+                return;
             }
-        }
-        e.deleteAllMemos(); // removes all memos from this event's stored memos
+            materialize(e);
+            clearMemos(e);
+            changed(CalendarChange.Kind.EVENT_CHANGED, e);
+            if (journal != null) {
+                journal.memosCleared(e);
+            }
+        });
+    }
+
+    /**
+     * Removes all the memos for the specified event, without recording the change.
+     */
+    private void clearMemos(Event e) {
+        this.myMemos.unlinkEvent(e);
+        reindex(e);
     }
 
     /**
-     * Gets the memo system for this calendar.
+     * Changes the note of the specified memo.
      *
-     * @return this calendar's memo system.
+     * @param m    a memo in this calendar's memo system.
+     * @param note the new note for the memo.
+     */
+    public void changeMemoNote(Memo m, String note) {
+        write(() -> {
+            if (!myMemos.getMemos().contains(m)) {
+                logger.log(Level.FINE, "The memo is archived and cannot be changed.");
+                return;
+            }
+            m.setNote(note);
+            for (Event e : myMemos.getEvents(m)) {
+                reindex(e);
+            }
+            memoChanged(CalendarChange.Kind.MEMO_CHANGED, m, myMemos.getEvents(m));
+            if (journal != null) {
+                journal.memoNoteChanged(m, note);
+            }
+        });
+    }
+
+    /**
+     * Gets the memo system for this calendar, as it is now. Memos are changed through the calendar.
+     *
+     * @return a copy of this calendar's memo system.
      */
     public MemoSystem getMyMemos() {
+        return read(myMemos::copy);
+    }
+
+    /**
+     * Gets the memo system of this calendar itself, to be read or restored while holding its lock.
+     *
+     * @return this calendar's memo system.
+     */
+    MemoSystem getMemoSystem() {
         return myMemos;
     }
 
@@ -172,10 +575,30 @@ public class Calendar implements Serializable {
      * @param end   the new end time for the event.
      */
     public void changeEventTime(Event event, LocalDateTime start, LocalDateTime end) {
-        event.setStartTime(start);
-        event.setEndTime(end);
-        updateEventStatus(event);
-        deleteAllAlertsforEvent(event); // deletes the alerts for the event
+        write(() -> {
+            if (isArchived(event)) {
+                return;
+            }
+            materialize(event);
+            LocalDateTime previousStart = event.getStartTime();
+            LocalDateTime previousEnd = event.getEndTime();
+            boolean indexed = eventTimes.remove(event); // re-indexed under its new time below
+            if (indexed) {
+                timeline.remove(event);
+            }
+            event.setStartTime(start);
+            event.setEndTime(end);
+            if (indexed) {
+                indexEvent(event);
+            }
+            updateEventStatus(event);
+            alertsRemoved(event);
+            myAlerts.deleteAllAlertsforEvent(event); // deletes the alerts for the event
+            changes.add(CalendarChange.retimed(event, previousStart, previousEnd));
+            if (journal != null) {
+                journal.eventTimeChanged(event, start, end);
+            }
+        });
     }
 
     /**
@@ -185,7 +608,23 @@ public class Calendar implements Serializable {
      * @param new_name the new name for the event.
      */
     public void changeEventName(Event event, String new_name) {
-        event.setEventName(new_name);
+        write(() -> {
+            if (isArchived(event)) {
+                return;
+            }
+            materialize(event);
+            if (registry.remove(event)) {
+                event.setEventName(new_name);
+                registry.add(event);
+                words.update(event);
+            } else {
+                event.setEventName(new_name);
+            }
+            changed(CalendarChange.Kind.EVENT_CHANGED, event);
+            if (journal != null) {
+                journal.eventNameChanged(event, new_name);
+            }
+        });
     }
 
     /**
@@ -195,7 +634,23 @@ public class Calendar implements Serializable {
      * @param event an event in this calendar.
      */
     public void changeEventTag(String tag, Event event) {
-        event.setTag(tag);
+        write(() -> {
+            if (isArchived(event)) {
+                return;
+            }
+            materialize(event);
+            if (tags.remove(event)) {
+                event.setTag(tag);
+                event.setTag(tags.add(event)); // shares the index's copy of the tag
+                words.update(event);
+            } else {
+                event.setTag(tag);
+            }
+            changed(CalendarChange.Kind.EVENT_CHANGED, event);
+            if (journal != null) {
+                journal.eventTagChanged(event, tag);
+            }
+        });
     }
 
 
@@ -204,21 +659,79 @@ public class Calendar implements Serializable {
      * If the event is in a series of event, add the new event to the series.
      */
     public Event duplicateEvent(Event event, LocalDateTime start, LocalDateTime end) {
-        String name = event.getEventName();
-        Event duplicate = new Event(name, start, end);
-        addEvent(duplicate);
-        duplicate.getMemos().addAll(event.getMemos());
+        return write(() -> {
+            String name = event.getEventName();
+            Event duplicate = new Event(name, start, end);
+            duplicate.setTag(event.getTag());
+            storeEvent(duplicate);
+            for (Memo m : event.getMemos()) {
+                if (archive.contains(event)) { // the memos of an archived event are not in the memo system
+                    m = myMemos.createMemo(Collections.singletonList(duplicate), m.getNote());
+                }
+                myMemos.linkMemo(m, duplicate);
+            }
 
-        ArrayList<Series> associateSeries = event.getSeries();
-        if (!associateSeries.isEmpty()) {
-            for (Series s : associateSeries) {
-                mySeries.addEvent(s, duplicate);
+            ArrayList<Series> associateSeries = event.getSeries();
+            if (!associateSeries.isEmpty()) {
+                for (Series s : associateSeries) {
+                    mySeries.addEvent(s, duplicate);
+                }
             }
-        }
-        return duplicate;
+            reindex(duplicate);
+            changed(CalendarChange.Kind.EVENT_ADDED, duplicate);
+            if (journal != null) {
+                journal.eventDuplicated(event, start, end);
+            }
+            return duplicate;
+        });
+    }
+
+    //methods for finding list of events: by tag, memo, date or words
+
+    /**
+     * find events by the words in their name, tag, series names and memo notes
+     * Every word of the query must match a word of the event, either exactly or as its beginning.
+     *
+     * @param query: the words to search for
+     * @param limit: the greatest number of events to return
+     * @return A list of the matching events, best matches first
+     */
+    public List<Event> searchEvents(String query, int limit) {
+        return read(() -> {
+            List<Event> found = words.search(query, limit);
+            if (found.size() < limit) { // paged events are not indexed, and rank after stored events
+                found.addAll(pages.search(query, limit - found.size()));
+            }
+            if (found.size() < limit) { // archived events rank after the events still in this calendar
+                found.addAll(archive.search(query, limit - found.size()));
+            }
+            for (RecurringSeries s : mySeries.getRecurringSeries()) {
+                if (found.size() >= limit) {
+                    break;
+                }
+                if (SearchIndex.matches(query, s)) { // occurrences are not indexed, and rank after stored events
+                    for (Event e : s.getOccurrences(LocalDateTime.MIN, LocalDateTime.MAX)) {
+                        if (found.size() >= limit) {
+                            break;
+                        }
+                        found.add(e);
+                    }
+                }
+            }
+            return found;
+        });
     }
 
-    //methods for finding list of events: by tag, memo or date
+    /**
+     * find all events by the words in their name, tag, series names and memo notes
+     *
+     * @param query: the words to search for
+     * @return A list of the matching events, best matches first
+     * @see #searchEvents(String, int)
+     */
+    public List<Event> searchEvents(String query) {
+        return searchEvents(query, Integer.MAX_VALUE);
+    }
 
     /**
      * find events by their tag
@@ -227,13 +740,22 @@ public class Calendar implements Serializable {
      * @return A list of events with the input tag
      */
     public ArrayList<Event> findEvent(String tag) {
-        ArrayList<Event> events = new ArrayList<>();
-        for (Event event : myEvents) {
-            if (event.getTag().equals(tag)) {
-                events.add(event);
-            }
-        }
-        return events;
+        return read(() -> {
+            ArrayList<Event> events = new ArrayList<>(tags.getEvents(tag));
+            events.addAll(pages.getByTag(tag));
+            events.addAll(archive.getByTag(tag));
+            return events;
+        });
+    }
+
+    /**
+     * Counts the events with the specified tag.
+     *
+     * @param tag a tag
+     * @return the number of events in this calendar with the input tag
+     */
+    public int countEvents(String tag) {
+        return read(() -> tags.count(tag) + pages.getByTag(tag).size() + archive.getByTag(tag).size());
     }
 
     /**
@@ -243,15 +765,30 @@ public class Calendar implements Serializable {
      * @return A list of events that are happening during the input date
      */
     public ArrayList<Event> findEvent(LocalDate date) {
-        ArrayList<Event> events = new ArrayList<>();
-        for (Event event : myEvents) {
-            LocalDate start = event.getStartTime().toLocalDate();
-            LocalDate end = event.getEndTime().toLocalDate();
-            if (date.compareTo(start) >= 0 && date.compareTo(end) <= 0) {
-                events.add(event);
+        return findEvents(date.atStartOfDay(), date.atTime(LocalTime.MAX));
+    }
+
+    /**
+     * Finds the events, including the occurrences of recurring series, that overlap the specified range, ordered
+     * by start time.
+     * An event overlaps the range if it starts no later than <code>to</code> and ends no earlier than
+     * <code>from</code>.
+     *
+     * @param from the start of the range (inclusive).
+     * @param to   the end of the range (inclusive).
+     * @return A list of events that are happening at some point during the range
+     */
+    public ArrayList<Event> findEvents(LocalDateTime from, LocalDateTime to) {
+        return read(() -> {
+            List<Collection<Event>> parts = new ArrayList<>();
+            parts.add(eventTimes.findOverlapping(from, to));
+            parts.add(pages.findOverlapping(from, to));
+            parts.add(archive.findOverlapping(from, to)); // read only if the range reaches before its cutoff
+            for (RecurringSeries s : mySeries.getRecurringSeries()) {
+                parts.add(s.getOccurrences(from, to));
             }
-        }
-        return events;
+            return new ArrayList<>(new MergedEvents(parts, Comparator.comparing(Event::getStartTime)));
+        });
     }
 
     /**
@@ -261,15 +798,13 @@ public class Calendar implements Serializable {
      * @return A list of events which have the input memo
      */
     public ArrayList<Event> findEvent(Memo memo) {
-        ArrayList<Event> events = new ArrayList<>();
-        for (Event event : myEvents) {
-            for (Memo memo1 : event.getMemos()) {
-                if (memo1 == memo) {
-                    events.add(event);
-                }
+        return read(() -> {
+            ArrayList<Event> events = new ArrayList<>(myMemos.getEvents(memo));
+            for (RecurringSeries s : myMemos.getSeries(memo)) {
+                events.addAll(s.getOccurrences(LocalDateTime.MIN, LocalDateTime.MAX));
             }
-        }
-        return events;
+            return events;
+        });
     }
 
     /**
@@ -279,26 +814,51 @@ public class Calendar implements Serializable {
      * @return A list of events with the input note
      */
     public ArrayList<Event> findEventByMemoNote(String note) {
-        ArrayList<Event> events = new ArrayList<>();
-        for (Event event : myEvents) {
-            for (Memo m : event.getMemos()) {
-                if (m.getNote().equals(note) && !events.contains(event)) {
-                    events.add(event);
+        return read(() -> {
+            LinkedHashSet<Event> events = new LinkedHashSet<>();
+            for (Memo m : myMemos.getMemos()) {
+                if (m.getNote().equals(note)) {
+                    events.addAll(findEvent(m));
                 }
             }
-        }
-        return events;
+            events.addAll(archive.findByMemoNote(note));
+            return new ArrayList<>(events);
+        });
     }
 
     //methods for getting list of events: past, current or future
 
     /**
-     * Gets the list of events stored in this calendar.
+     * Gets the events in this calendar: the events stored in it, in the order they were added, followed by the
+     * events of its event store, the occurrences of every recurring series and the archived events. The
+     * occurrences are created as the collection is iterated.
+     *
+     * @return an unmodifiable collection of the events in this calendar.
+     */
+    public Collection<Event> getMyEvents() {
+        Snapshot<Collection<Event>> events = snapshot(allEvents, () -> {
+            List<Collection<Event>> parts = new ArrayList<>();
+            parts.add(copy(myEvents));
+            parts.add(copy(pages.getEvents()));
+            for (RecurringSeries s : mySeries.getRecurringSeries()) {
+                parts.add(s.getOccurrenceSnapshot());
+            }
+            parts.add(copy(archive.getEvents()));
+            return new MergedEvents(parts, null);
+        });
+        allEvents = events;
+        return events.value;
+    }
+
+    /**
+     * Returns true if the specified event is stored in this calendar. The occurrences of recurring series and the
+     * events of the event store are not stored until they are changed.
      *
-     * @return the list of events stored in this calendar.
+     * @param e an event.
+     * @return true if the event is stored in this calendar, otherwise false.
      */
-    public ArrayList<Event> getMyEvents() {
-        return myEvents;
+    public boolean containsEvent(Event e) {
+        return read(() -> myEvents.contains(e));
     }
 
     /**
@@ -307,78 +867,147 @@ public class Calendar implements Serializable {
      * @return an array list of the names of events in this calendar.
      */
     public ArrayList<String> getEventNames() {
-        ArrayList<String> names = new ArrayList<>();
-        for (Event e : myEvents) {
-            names.add(e.getEventName());
-        }
-        return names;
+        Snapshot<List<String>> names = snapshot(eventNames, () -> {
+            ArrayList<String> all = new ArrayList<>();
+            for (Event e : getMyEvents()) {
+                all.add(e.getEventName());
+            }
+            return all;
+        });
+        eventNames = names;
+        return new ArrayList<>(names.value);
     }
 
     /**
-     * Gets a list of events that occurred in the past by the time of calendar.
+     * Gets the events that occurred in the past by the current time, ordered by end time.
      *
-     * @return a list of past events.
+     * @return an unmodifiable list of the past events.
      */
-    public ArrayList<Event> getPastEvents() {
-        ArrayList<Event> events = new ArrayList<>();
-        if (myEvents == null || myEvents.isEmpty()) {
-            return null;
-        } else {
-            for (Event event : myEvents) {
-                if (event.getEndTime().isBefore(time)) {
+    public Collection<Event> getPastEvents() {
+        return read(() -> {
+            LocalDateTime now = now();
+            List<Collection<Event>> parts = new ArrayList<>();
+            parts.add(timeline.endingBefore(now));
+            parts.add(pages.endingBefore(now));
+            parts.add(archive.endingBefore(now));
+            for (RecurringSeries s : mySeries.getRecurringSeries()) {
+                parts.add(s.getOccurrencesEndingBefore(now));
+            }
+            return copy(new MergedEvents(parts, Comparator.comparing(Event::getEndTime)));
+        });
+    }
+
+    /**
+     * Gets the events currently occurring by the current time, ordered by start time.
+     *
+     * @return an unmodifiable list of the current events.
+     */
+    public Collection<Event> getCurrentEvents() {
+        return read(() -> {
+            LocalDateTime now = now();
+            ArrayList<Event> events = new ArrayList<>();
+            for (Event event : findEvents(now, now)) {
+                if (event.getEndTime().isAfter(now) && event.getStartTime().isBefore(now)) {
                     events.add(event);
                 }
             }
-            return events;
-        }
+            return Collections.unmodifiableList(events);
+        });
     }
 
     /**
-     * Gets a list of events currently occurring by the time of calendar.
+     * Gets the events occurring in the future by the current time, ordered by start time.
      *
-     * @return a list of current events.
+     * @return an unmodifiable list of the future events.
      */
-    public ArrayList<Event> getCurrentEvents() {
-        ArrayList<Event> events = new ArrayList<>();
-        for (Event event : myEvents) {
-            if (event.getEndTime().isAfter(time) && event.getStartTime().isBefore(time)) {
-                events.add(event);
+    public Collection<Event> getFutureEvents() {
+        return read(() -> {
+            LocalDateTime now = now();
+            List<Collection<Event>> parts = new ArrayList<>();
+            parts.add(timeline.startingAfter(now));
+            parts.add(pages.startingAfter(now));
+            for (RecurringSeries s : mySeries.getRecurringSeries()) {
+                parts.add(s.getOccurrencesStartingAfter(now));
             }
-        }
-        return events;
+            return copy(new MergedEvents(parts, Comparator.comparing(Event::getStartTime)));
+        });
     }
 
     /**
-     * Gets a list of events occurring in the future by the time of calendar.
+     * Gets an event in this calendar by specifying its name.
+     * If several stored events share the name, the one added first is returned; otherwise the event store, the
+     * occurrences of recurring series, then the archived events, are looked up.
      *
-     * @return a list of future events.
+     * @param name: the name of an event.
+     * @return the event with the specified name, or <code>null</code> if there is none.
      */
-    public ArrayList<Event> getFutureEvents() {
-        ArrayList<Event> events = new ArrayList<>();
-        if (myEvents == null || myEvents.isEmpty()) {
-            return null;
-        } else {
-            for (Event event : myEvents) {
-                if (event.getStartTime().isAfter(time)) {
-                    events.add(event);
-                }
+    public Event getEvent(String name) {
+        return read(() -> {
+            Iterator<Event> named = registry.getByName(name).iterator();
+            if (!named.hasNext()) {
+                named = pages.getByName(name).iterator();
             }
-            return events;
-        }
+            if (named.hasNext()) {
+                return named.next();
+            }
+            Event occurrence = mySeries.findOccurrence(name);
+            if (occurrence != null) {
+                return occurrence;
+            }
+            named = archive.getByName(name).iterator();
+            return named.hasNext() ? named.next() : null;
+        });
     }
 
     /**
-     * Gets an event that is stored in this calendar by specifying its name.
+     * Gets an event that is stored in this calendar, in its event store or in its archive, by specifying its id
+     * number.
      *
-     * @param name: the name of an event; must be the name of an event in this calendar.
-     * @return the event with the specified name.
+     * @param id the id number of an event.
+     * @return the event with the specified id number, or <code>null</code> if there is none.
      */
-    public Event getEvent(String name) {
-        for (Event event : myEvents) {
-            if (event.getEventName().equals(name))
-                return event;
-        }
-        return null;
+    public Event getEvent(long id) {
+        return read(() -> {
+            Event e = registry.get(id);
+            if (e == null) {
+                e = pages.get(id);
+            }
+            return e != null ? e : archive.get(id);
+        });
+    }
+
+    /**
+     * Gets all the events stored in this calendar, in its event store or in its archive, with the specified name.
+     *
+     * @param name the name of an event.
+     * @return an unmodifiable list of the events with the name: the stored events in the order they were added,
+     * followed by those of the event store, then the archived events.
+     */
+    public Collection<Event> getEvents(String name) {
+        return read(() -> {
+            Collection<Event> paged = pages.getByName(name);
+            if (paged.isEmpty() && archive.size() == 0) {
+                return copy(registry.getByName(name));
+            }
+            List<Collection<Event>> parts = new ArrayList<>();
+            parts.add(registry.getByName(name));
+            parts.add(paged);
+            parts.add(archive.getByName(name));
+            return copy(new MergedEvents(parts, null));
+        });
+    }
+
+    /**
+     * Returns true if an event with the specified name is in this calendar.
+     *
+     * @param name the name of an event.
+     * @return true if there is at least one event with the name, otherwise false.
+     */
+    public boolean hasEvent(String name) {
+        return read(() -> {
+            return !registry.getByName(name).isEmpty() || !pages.getByName(name).isEmpty()
+                    || mySeries.findOccurrence(name) != null || !archive.getByName(name).isEmpty();
+        });
     }
 
     /**
@@ -388,7 +1017,7 @@ public class Calendar implements Serializable {
      */
     private void updateEventStatus(Event event) {
 
-        LocalDate date1 = time.toLocalDate();
+        LocalDate date1 = now().toLocalDate();
 
         LocalDate start = event.getStartTime().toLocalDate();
         LocalDate end = event.getEndTime().toLocalDate();
@@ -405,7 +1034,7 @@ public class Calendar implements Serializable {
      * @return a string representation of the current time of this calendar.
      */
     public String getTime() {
-        return time.toString();
+        return now().toString();
     }
 
     /**
@@ -415,47 +1044,86 @@ public class Calendar implements Serializable {
      * @return An ArrayList of all the Series <event> is in.
      */
     public ArrayList<Series> getAssociatedSeries(Event event) {
-        ArrayList<Series> assocSeries = new ArrayList<>();
-        for (Series s : mySeries.getSeries()) {
-            if (s.getEvents().contains(event)) {
-                assocSeries.add(s);
-            }
-        }
-        return assocSeries;
+        return read(() -> new ArrayList<>(event.getSeries()));
     }
 
     /**
-     * Adds a new series using the given parameters to this calendar's series system.
+     * Adds a new recurring series using the given parameters to this calendar's series system.
+     * The events of the series are not stored in this calendar until they are changed.
      *
      * @param name  the name of the series.
      * @param d     the duration of each event in the series.
      * @param freq  the duration between events in the series.
      * @param num   the number of events in this series.
      * @param first the time and date of the first event in this series.
+     * @return the new series.
      */
-    public void addSeries(String name, Duration d, Period freq, int num, LocalDateTime first) {
-        Collection<Event> newEvents = mySeries.buildSeries(name, d, freq, num, first);
-        this.myEvents.addAll(newEvents);
+    public Series addSeries(String name, Duration d, Period freq, int num, LocalDateTime first) {
+        return write(() -> {
+            RecurringSeries series = mySeries.buildSeries(name, d, freq, num, first);
+            changes.add(CalendarChange.reset()); // its occurrences are not published one by one
+            if (journal != null) {
+                journal.ruleCreated(series, d, freq, first);
+            }
+            return series;
+        });
     }
 
     /**
-     * Adds a new series including the specified events.
+     * Adds a new recurring series ending at the specified date to this calendar's series system.
+     * The events of the series are not stored in this calendar until they are changed.
      *
-     * @param name   the name of the series.
-     * @param events a list of events in this calendar to be included in the series.
+     * @param name  the name of the series.
+     * @param d     the duration of each event in the series.
+     * @param freq  the duration between events in the series; must not be zero.
+     * @param until the latest time and date at which an event of this series starts.
+     * @param first the time and date of the first event in this series.
+     * @return the new series.
      */
-    public void addSeries(String name, ArrayList<Event> events) {
-        mySeries.createSeries(name, events);
+    public Series addSeries(String name, Duration d, Period freq, LocalDateTime until, LocalDateTime first) {
+        return write(() -> {
+            RecurringSeries series = mySeries.buildSeries(name, d, freq, until, first);
+            changes.add(CalendarChange.reset());
+            if (journal != null) { // recorded by its number of events, which no longer depends on the end date
+                journal.ruleCreated(series, d, freq, first);
+            }
+            return series;
+        });
     }
 
     /**
-     * Gets a collection of the events in the series with the given name.
+     * Adds a new series including the specified events.
      *
-     * @param name the name of the series.
-     * @return a collection of the events in the series with the given name.
+     * @param name   the name of the series.
+     * @param events a list of events in this calendar to be included in the series.
+     */
+    public void addSeries(String name, ArrayList<Event> events) {
+        write(() -> {
+            if (anyArchived(events)) {
+                return;
+            }
+            for (Event e : events) {
+                materialize(e);
+            }
+            mySeries.createSeries(name, events);
+            for (Event e : events) {
+                reindex(e);
+                changed(CalendarChange.Kind.EVENT_CHANGED, e);
+            }
+            if (journal != null) {
+                journal.seriesCreated(name, events);
+            }
+        });
+    }
+
+    /**
+     * Gets a collection of the events in the series with the given name.
+     *
+     * @param name the name of the series.
+     * @return an unmodifiable list of the events in the series with the given name.
      */
     public Collection<Event> findEventsBySeries(String name) {
-        return mySeries.findEventsBySeries(name);
+        return read(() -> copy(mySeries.findEventsBySeries(name)));
     }
 
     // Methods for getting alerts: all, based on events or current ones
@@ -466,27 +1134,39 @@ public class Calendar implements Serializable {
      * @return a list of all the alerts in this calendar's alert system.
      */
     public ArrayList<Alert> getAllAlerts() {
-        return new ArrayList<>(myAlerts.getAllAlerts());
+        return read(() -> new ArrayList<>(myAlerts.getAllAlerts()));
     }
 
     @Override
     public String toString() {
-        String s = "";
-        for (Event e : myEvents) {
-            s += e.toString() + "\n"; // displays events in this calendar
-        }
-        if (s.length() != 0) {
-            s = s.substring(0, s.length() - 1);
-        }
-        return s;
+        return read(() -> {
+            String s = "";
+            for (Event e : getMyEvents()) {
+                s += e.toString() + "\n"; // displays events in this calendar
+            }
+            if (s.length() != 0) {
+                s = s.substring(0, s.length() - 1);
+            }
+            return s;
+        });
     }
 
     /**
-     * Gets the alert system for this calendar.
+     * Gets the alert system for this calendar, as it is now. Alerts are changed through the calendar.
      *
-     * @return the alert system for this calendar.
+     * @return a copy of the alert system for this calendar, which does not deliver its alerts.
      */
     public AlertSystem getMyAlerts() {
+        return read(myAlerts::copy);
+    }
+
+    /**
+     * Gets the alert system of this calendar itself, to be read or restored while holding its lock, or to have
+     * its alerts delivered.
+     *
+     * @return the alert system for this calendar.
+     */
+    AlertSystem getAlertSystem() {
         return myAlerts;
     }
 
@@ -496,21 +1176,704 @@ public class Calendar implements Serializable {
      * @param event an event that was shared with this calendar.
      */
     public void addEventNotification(Event event) {
-        this.notifications.add(event);
+        write(() -> {
+            this.notifications.add(event);
+            changed(CalendarChange.Kind.INVITES_CHANGED, event);
+            if (journal != null) {
+                journal.inviteAdded(event);
+            }
+        });
     }
 
     /**
      * Gets a list of the event invites that this calendar has received.
      *
-     * @return a list of the event invites that this calendar has received.
+     * @return an unmodifiable copy of the list of the event invites that this calendar has received.
+     */
+    public List<Event> getEventInvites() {
+        return read(() -> Collections.unmodifiableList(new ArrayList<>(this.notifications)));
+    }
+
+    /**
+     * Removes the specified events from the event invites that this calendar has received.
+     *
+     * @param events event invites of this calendar.
+     */
+    public void removeEventInvites(Collection<Event> events) {
+        write(() -> {
+            List<Integer> positions = new ArrayList<>();
+            for (int i = 0; i < notifications.size(); i++) {
+                if (events.contains(notifications.get(i))) {
+                    positions.add(i);
+                }
+            }
+            removeEventInvitesAt(positions);
+        });
+    }
+
+    /**
+     * Removes the event invites at the specified positions, in increasing order, from this calendar.
+     *
+     * @param positions positions in the list of event invites.
      */
-    public ArrayList<Event> getEventInvites() { return this.notifications; }
+    void removeEventInvitesAt(List<Integer> positions) {
+        write(() -> {
+            for (int i = positions.size() - 1; i >= 0; i--) {
+                changed(CalendarChange.Kind.INVITES_CHANGED, notifications.remove((int) positions.get(i)));
+            }
+            if (journal != null && !positions.isEmpty()) {
+                journal.invitesRemoved(positions);
+            }
+        });
+    }
 
     /**
      * Returns the time of the calendar.
      */
     public LocalDateTime getLocalDateTime() {
+        return now();
+    }
+
+    /**
+     * Updates the time of this calendar to the current system time.
+     *
+     * @return the current time.
+     */
+    private LocalDateTime now() {
+        time = LocalDateTime.now();
         return time;
     }
+
+    // Methods for recording the changes made to this calendar
+
+    /**
+     * Sets the journal recording the changes made to this calendar from now on.
+     *
+     * @param journal a journal, or <code>null</code> to stop recording changes.
+     */
+    void setJournal(CalendarJournal journal) {
+        this.journal = journal;
+    }
+
+    /**
+     * Gets the position of the specified series in this calendar's series system.
+     *
+     * @param series a series in this calendar.
+     * @return the position of the series, or -1 if it is not in this calendar.
+     */
+    int seriesIndex(Series series) {
+        return mySeries.getSeries().indexOf(series);
+    }
+
+    /**
+     * Gets the series at the specified position in this calendar's series system.
+     *
+     * @param index the position of a series.
+     * @return the series at the position, or <code>null</code> if there is none.
+     */
+    Series getSeriesAt(int index) {
+        List<Series> series = mySeries.getSeries();
+        return index >= 0 && index < series.size() ? series.get(index) : null;
+    }
+
+    // Methods for saving this calendar in the binary file format
+
+    /**
+     * Gets the events stored in this calendar, in the order they were added, without the occurrences of
+     * recurring series.
+     *
+     * @return an unmodifiable view of the stored events.
+     */
+    Collection<Event> getStoredEvents() {
+        return Collections.unmodifiableCollection(myEvents);
+    }
+
+    /**
+     * Gets the id number to be given to the next event added to this calendar.
+     *
+     * @return the next event id number.
+     */
+    long getNextEventId() {
+        return nextEventId;
+    }
+
+    /**
+     * Gets the series system for this calendar.
+     *
+     * @return this calendar's series system.
+     */
+    SeriesSystem getMySeries() {
+        return mySeries;
+    }
+
+    /**
+     * Restores the events of this calendar read from file, and rebuilds its indexes. The memo, series and alert
+     * systems must have been restored first.
+     *
+     * @param nextEventId the id number to be given to the next event added.
+     * @param stored      the stored events, in the order they were added.
+     * @param invites     the event invites received.
+     * @param time        the time of this calendar.
+     */
+    void restore(long nextEventId, Collection<Event> stored, Collection<Event> invites, LocalDateTime time) {
+        write(() -> {
+            this.nextEventId = nextEventId;
+            this.myEvents = new LinkedHashSet<>(stored);
+            this.notifications = new ArrayList<>(invites);
+            this.time = time;
+            rebuildIndexes();
+            changes.add(CalendarChange.reset());
+        });
+    }
+
+    /**
+     * Gets the event store of this calendar.
+     *
+     * @return the event store, which is empty if the calendar was not read with one.
+     */
+    SegmentedEventStore getEventStore() {
+        return pages;
+    }
+
+    /**
+     * Sets the event store holding the events of this calendar that were not read with the rest of it. The
+     * changes recorded since must be replayed afterwards.
+     *
+     * @param store the event store written with the snapshot this calendar was read from.
+     */
+    void setEventStore(SegmentedEventStore store) {
+        write(() -> {
+            this.pages = store;
+            changes.add(CalendarChange.reset());
+        });
+    }
+
+    /**
+     * Returns true if the specified event can be saved in the event store rather than with the rest of this
+     * calendar: it is an event of its own, not an occurrence, with no memos, series or alerts, and is not an
+     * event invite.
+     *
+     * @param e an event.
+     * @return true if the event can be kept in the event store, otherwise false.
+     */
+    boolean isPageable(Event e) {
+        if (pages.contains(e)) {
+            return true;
+        }
+        return (e.getClass() == Event.class || e instanceof PagedEvent) && myEvents.contains(e)
+                && e.getMemos().isEmpty() && e.getSeries().isEmpty() && myAlerts.getAlerts(e).isEmpty()
+                && !notifications.contains(e);
+    }
+
+    /**
+     * Gets the stored events to be saved in the event store of the next snapshot, along with the events still in
+     * the current store.
+     *
+     * @return a list of the stored events that can be kept in the event store, in the order they were added.
+     */
+    List<Event> getPageableEvents() {
+        return read(() -> {
+            List<Event> events = new ArrayList<>();
+            for (Event e : myEvents) {
+                if (isPageable(e)) {
+                    events.add(e);
+                }
+            }
+            return events;
+        });
+    }
+
+    // Methods for archiving past events
+
+    /**
+     * Gets the archive of this calendar.
+     *
+     * @return the archive, which is empty if no events were archived.
+     */
+    CalendarArchive getArchive() {
+        return archive;
+    }
+
+    /**
+     * Sets the archive holding the past events of this calendar that were moved out of it.
+     *
+     * @param archive an archive of this calendar.
+     */
+    void setArchive(CalendarArchive archive) {
+        write(() -> {
+            this.archive = archive;
+            changes.add(CalendarChange.reset());
+        });
+    }
+
+    /**
+     * Takes the events that ended before the specified time out of this calendar, without recording the change,
+     * and returns archived copies of them carrying their memos and alerts. Events in a series, event invites and
+     * events with alerts still to come are kept.
+     *
+     * @param cutoff a time no later than now.
+     * @return the copies of the events taken out, to be written to a new archive.
+     */
+    List<ArchivedEvent> archiveEvents(LocalDateTime cutoff) {
+        return write(() -> {
+            LocalDateTime now = now();
+            List<ArchivedEvent> archived = new ArrayList<>();
+            for (Event e : new ArrayList<>(timeline.endingBefore(cutoff))) {
+                Set<Alert> alerts = myAlerts.getAlerts(e);
+                if (!e.getSeries().isEmpty() || notifications.contains(e) || hasComingAlert(alerts, now)) {
+                    continue;
+                }
+                ArchivedEvent copy = archivedCopy(e);
+                for (Alert a : new ArrayList<>(alerts)) {
+                    copy.addArchivedAlert(a);
+                }
+                myEvents.remove(e);
+                unindexEvent(e);
+                myMemos.unlinkEvent(e);
+                myAlerts.deleteAllAlertsforEvent(e);
+                archived.add(copy);
+            }
+            for (Event e : new ArrayList<>(pages.endingBefore(cutoff))) {
+                archived.add(archivedCopy(e)); // a paged event has no memos or alerts
+                pages.remove((PagedEvent) e);
+            }
+            if (!archived.isEmpty()) {
+                changes.add(CalendarChange.reset()); // the events archived are still looked up
+            }
+            return archived;
+        });
+    }
+
+    /**
+     * Returns true, and logs it, if the specified event is archived, as archived events cannot be changed.
+     */
+    private boolean isArchived(Event e) {
+        if (archive.contains(e)) {
+            logger.log(Level.FINE, "The event " + e.getEventName() + " is archived and cannot be changed.");
+            return true;
+        }
+        return false;
+    }
+
+    /**
+     * Returns true, and reports it, if any of the specified events is archived.
+     */
+    private boolean anyArchived(Collection<Event> events) {
+        for (Event e : events) {
+            if (isArchived(e)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Returns true if any of the specified alerts will still appear after the specified time.
+     */
+    private static boolean hasComingAlert(Collection<Alert> alerts, LocalDateTime now) {
+        for (Alert a : alerts) {
+            if (a.getNextTime(now) != null) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Copies the specified event, with its id number and copies of its memos, into an event to be archived.
+     */
+    private static ArchivedEvent archivedCopy(Event e) {
+        ArchivedEvent copy = new ArchivedEvent(null, e.getEventName(), e.getStartTime(), e.getEndTime());
+        copy.setId(e.getId());
+        copy.setTag(e.getTag());
+        copy.changeStatus(e.getStatus());
+        for (Memo m : e.getMemos()) {
+            Memo memo = new Memo(m.getNote());
+            memo.setIdNumber(m.getIdNumber());
+            copy.getMemos().add(memo);
+        }
+        return copy;
+    }
+
+    // Methods for following the changes made to this calendar
+
+    /**
+     * Gets the feed publishing the changes made to this calendar, to which views of this calendar subscribe to
+     * be updated by the changes alone.
+     *
+     * @return the change feed of this calendar.
+     */
+    public ChangeFeed getChangeFeed() {
+        return feed;
+    }
+
+    /**
+     * Records a change of the specified kind to the specified event, to be published once the change in
+     * progress is done.
+     */
+    private void changed(CalendarChange.Kind kind, Event e) {
+        changes.add(CalendarChange.of(kind, e));
+    }
+
+    /**
+     * Records a change of the specified kind to the specified memo for each of the specified events.
+     */
+    private void memoChanged(CalendarChange.Kind kind, Memo memo, Collection<Event> events) {
+        if (events.isEmpty()) {
+            changes.add(CalendarChange.of(kind, memo, null));
+        }
+        for (Event e : events) {
+            changes.add(CalendarChange.of(kind, memo, e));
+        }
+    }
+
+    /**
+     * Records the removal of every alert of the specified event, which are about to be deleted.
+     */
+    private void alertsRemoved(Event e) {
+        for (Alert a : myAlerts.getAlerts(e)) {
+            changes.add(CalendarChange.of(CalendarChange.Kind.ALERT_REMOVED, a, e));
+        }
+    }
+
+    // Methods for sharing this calendar between threads
+
+    /**
+     * Makes the specified change to this calendar while holding its lock. Every change to this calendar goes
+     * through here; a change made while making another runs as part of it.
+     *
+     * @param change a change to this calendar.
+     */
+    void write(Runnable change) {
+        write(() -> {
+            change.run();
+            return null;
+        });
+    }
+
+    /**
+     * Makes the specified change to this calendar while holding its lock, and returns its result.
+     *
+     * @param change a change to this calendar.
+     * @param <T>    the type of the result of the change.
+     * @return the result of the change.
+     */
+    <T> T write(Supplier<T> change) {
+        if (writingThread == Thread.currentThread()) {
+            return change.get();
+        }
+        long stamp;
+        turnstile.lock();
+        try {
+            stamp = lock.writeLock();
+        } finally {
+            turnstile.unlock();
+        }
+        writingThread = Thread.currentThread();
+        boolean changed = false;
+        try {
+            return change.get();
+        } finally {
+            if (!changes.isEmpty()) { // kept for the subscribers in the order the changes were made
+                feed.offer(changes);
+                changes = new ArrayList<>();
+                changed = true;
+            }
+            changeCount++;
+            writingThread = null;
+            lock.unlockWrite(stamp);
+            if (changed) {
+                feed.flush(); // the subscribers may look the calendar up
+            }
+        }
+    }
+
+    /**
+     * Looks up the specified query while holding the read lock of this calendar, which other lookups share. The
+     * query must not change the calendar, and must not keep what it sees of the calendar's indexes outside of its
+     * result; a lookup made while making another runs as part of it.
+     *
+     * @param query a lookup in this calendar.
+     * @param <T>   the type of the result of the query.
+     * @return the result of the query.
+     */
+    <T> T read(Supplier<T> query) {
+        int[] depth = readDepth.get();
+        if (depth[0] > 0 || writingThread == Thread.currentThread()) {
+            return query.get();
+        }
+        long stamp = readLock();
+        depth[0]++;
+        try {
+            return query.get();
+        } finally {
+            depth[0]--;
+            lock.unlockRead(stamp);
+        }
+    }
+
+    /**
+     * Runs the specified query while holding the read lock of this calendar, so that no change is made while it
+     * runs. Used for queries that read or write a file, such as saving the calendar.
+     *
+     * @param query a lookup in this calendar.
+     * @param <T>   the type of the result of the query.
+     * @return the result of the query.
+     * @throws IOException if the query does.
+     */
+    <T> T readLocked(IOSupplier<T> query) throws IOException {
+        int[] depth = readDepth.get();
+        if (depth[0] > 0 || writingThread == Thread.currentThread()) {
+            return query.get();
+        }
+        long stamp = readLock();
+        depth[0]++;
+        try {
+            return query.get();
+        } finally {
+            depth[0]--;
+            lock.unlockRead(stamp);
+        }
+    }
+
+    /**
+     * Takes the read lock of this calendar, once the changes waiting for it are made.
+     *
+     * @return the stamp to release the read lock with.
+     */
+    private long readLock() {
+        if (turnstile.isLocked()) {
+            turnstile.lock();
+            turnstile.unlock();
+        }
+        return lock.readLock();
+    }
+
+    /**
+     * A query that may fail to read or write a file.
+     *
+     * @param <T> the type of the result of the query.
+     */
+    interface IOSupplier<T> {
+        T get() throws IOException;
+    }
+
+    /**
+     * Gets the specified snapshot if this calendar was not changed since it was made, without taking the read
+     * lock; otherwise makes it again from the specified query, under the read lock. The caller keeps the snapshot
+     * returned for the next lookup.
+     *
+     * @param last  the last snapshot made, or <code>null</code> if none was made.
+     * @param query the lookup the snapshot is made from, whose result must not change.
+     * @param <T>   the type of the result of the query.
+     * @return a snapshot of the calendar as it is now.
+     */
+    private <T> Snapshot<T> snapshot(Snapshot<T> last, Supplier<T> query) {
+        long stamp = lock.tryOptimisticRead(); // fails while a change is in progress
+        if (last != null && last.changeCount == changeCount && lock.validate(stamp)) {
+            return last;
+        }
+        return read(() -> new Snapshot<>(changeCount, query.get()));
+    }
+
+    /**
+     * Copies the specified events into an unmodifiable list, to be used after the read lock is released.
+     */
+    private static List<Event> copy(Collection<Event> events) {
+        ArrayList<Event> copy = new ArrayList<>(); // iterated once, as the size of a view may take a walk of its own
+        for (Event e : events) {
+            copy.add(e);
+        }
+        return Collections.unmodifiableList(copy);
+    }
+
+    /**
+     * The result of a lookup in this calendar, as of a number of changes made to it.
+     *
+     * @param <T> the type of the result.
+     */
+    private static class Snapshot<T> {
+
+        /**
+         * The number of changes made to the calendar when the lookup was made.
+         */
+        private final long changeCount;
+
+        private final T value;
+
+        private Snapshot(long changeCount, T value) {
+            this.changeCount = changeCount;
+            this.value = value;
+        }
+    }
+
+    // helper methods for maintaining the indexes of this calendar
+
+    /**
+     * Adds the specified event to this calendar's stored events and gives it a new id number, without recording
+     * the change.
+     *
+     * @return true if the event was not stored yet.
+     */
+    private boolean storeEvent(Event e) {
+        if (myEvents.add(e)) {
+            e.setId(nextEventId++);
+            indexEvent(e);
+            myMemos.linkEvent(e); // records the memos the event already holds
+            return true;
+        }
+        return false;
+    }
+
+    /**
+     * Returns true if the specified event is an occurrence of a recurring series that is not stored in this
+     * calendar.
+     */
+    private boolean isOccurrence(Event e) {
+        return e instanceof SeriesOccurrence && !myEvents.contains(e);
+    }
+
+    /**
+     * Returns true if the specified event is an event of the event store that is not stored in this calendar.
+     */
+    private boolean isPaged(Event e) {
+        return pages.contains(e);
+    }
+
+    /**
+     * Stores the specified event in this calendar if it is an occurrence of a recurring series, or an event of
+     * the event store, so that it can be changed on its own. The occurrence is excluded from the rule of the
+     * series and stays in the series as a stored event; the event of the store is taken out of the store and
+     * keeps its id number, so the changes recorded for it find it again.
+     *
+     * @param e an event in this calendar.
+     */
+    void materialize(Event e) {
+        write(() -> {
+            if (isPaged(e)) {
+                pages.remove((PagedEvent) e);
+                myEvents.add(e);
+                indexEvent(e);
+                return;
+            }
+            if (isOccurrence(e)) {
+                SeriesOccurrence occurrence = (SeriesOccurrence) e;
+                RecurringSeries rule = occurrence.getRule();
+                rule.exclude(occurrence.getIndex());
+                rule.addEvent(occurrence); // already associated with the series
+                for (Memo m : rule.getMemos()) {
+                    if (!occurrence.getMemos().contains(m)) { // added to the series after the occurrence was looked up
+                        occurrence.getMemos().add(m);
+                    }
+                }
+                storeEvent(occurrence);
+                if (journal != null) {
+                    journal.occurrenceMaterialized(occurrence);
+                }
+            }
+        });
+    }
+
+    /**
+     * Gets the events of the specified series that are stored in this calendar.
+     */
+    private Collection<Event> storedEvents(Series series) {
+        Collection<Event> events = series instanceof RecurringSeries
+                ? ((RecurringSeries) series).getStoredEvents() : series.getEvents();
+        ArrayList<Event> stored = new ArrayList<>();
+        for (Event e : events) {
+            if (myEvents.contains(e)) {
+                stored.add(e);
+            }
+        }
+        return stored;
+    }
+
+    /**
+     * Adds the specified event to the indexes of this calendar.
+     *
+     * @param e an event stored in this calendar.
+     */
+    private void indexEvent(Event e) {
+        registry.add(e);
+        eventTimes.add(e);
+        timeline.add(e);
+        e.setTag(tags.add(e)); // shares the index's copy of the tag
+        words.update(e);
+    }
+
+    /**
+     * Removes the specified event from the indexes of this calendar.
+     *
+     * @param e an event stored in this calendar.
+     */
+    private void unindexEvent(Event e) {
+        registry.remove(e);
+        eventTimes.remove(e);
+        timeline.remove(e);
+        tags.remove(e);
+        words.remove(e);
+    }
+
+    /**
+     * Updates the words indexed for the specified event, if it is stored in this calendar.
+     *
+     * @param e an event.
+     */
+    private void reindex(Event e) {
+        if (myEvents.contains(e)) {
+            words.update(e);
+        }
+    }
+
+    /**
+     * Rebuilds the indexes of this calendar, which are not saved to file, after reading it from file. A calendar
+     * saved before its events were numbered, and kept in a set, has its events numbered in the order they were
+     * added.
+     */
+    @SuppressWarnings("unchecked")
+    private void readObject(ObjectInputStream in) throws IOException, ClassNotFoundException {
+        ObjectInputStream.GetField fields = in.readFields();
+        myEvents = new LinkedHashSet<>((Collection<Event>) fields.get("myEvents", null)); // a list in old files
+        myMemos = (MemoSystem) fields.get("myMemos", null);
+        mySeries = (SeriesSystem) fields.get("mySeries", null);
+        myAlerts = (AlertSystem) fields.get("myAlerts", null);
+        notifications = (ArrayList<Event>) fields.get("notifications", null);
+        time = (LocalDateTime) fields.get("time", null);
+        nextEventId = fields.get("nextEventId", 0L);
+        if (nextEventId == 0) {
+            nextEventId = 1;
+            for (Event e : myEvents) {
+                e.setId(nextEventId++);
+            }
+        }
+        lock = new StampedLock();
+        turnstile = new ReentrantLock();
+        readDepth = ThreadLocal.withInitial(() -> new int[1]);
+        feed = new ChangeFeed();
+        changes = new ArrayList<>();
+        rebuildIndexes();
+    }
+
+    /**
+     * Rebuilds the indexes of this calendar, and the associations of its memo system, from its stored events and
+     * series.
+     */
+    private void rebuildIndexes() {
+        registry = new EventRegistry();
+        eventTimes = new EventIntervalTree();
+        timeline = new EventTimeline();
+        tags = new TagIndex();
+        words = new SearchIndex();
+        pages = SegmentedEventStore.empty();
+        archive = CalendarArchive.empty();
+        for (Event e : myEvents) {
+            indexEvent(e);
+            myMemos.linkEvent(e);
+        }
+        for (RecurringSeries s : mySeries.getRecurringSeries()) {
+            myMemos.linkSeries(s);
+        }
+    }
 }
 
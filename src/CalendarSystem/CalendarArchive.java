@@ -0,0 +1,595 @@
+package CalendarSystem;
+
+import java.io.BufferedInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.lang.ref.SoftReference;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.util.AbstractCollection;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.function.Predicate;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Holds the past events of a calendar that were moved out of it, along with their memos and expired alerts, in
+ * a compressed file that is never changed.
+ * <p>
+ * The file starts with a header giving the generation of the snapshot that first used it, the time every event
+ * of the archive ended before and the number of events; the events follow, compressed with GZIP. The events are
+ * only read when a query reaches before that time, and are kept in memory only as long as the heap can spare
+ * them, so a calendar whose history is archived stays as small as its recent events.
+ * <p>
+ * Archived events cannot be changed. An archived event that is deleted is left in the file, and its id number
+ * is saved with the calendar's snapshot instead, until the archive is written again.
+ *
+ * @see ArchivedEvent
+ * @see CalendarManager#archiveEventsBefore(LocalDateTime)
+ */
+public class CalendarArchive {
+
+    /**
+     * The first four bytes of an archive file.
+     */
+    private static final int MAGIC = 0x43414C41;
+
+    /**
+     * The version of the format written.
+     */
+    private static final int VERSION = 1;
+
+    private static final int HEADER_LENGTH = 32;
+
+    // kinds of alerts
+
+    private static final int INDIVIDUAL_ALERT = 0;
+    private static final int FREQUENT_ALERT = 1;
+
+    /**
+     * The events of an archive read from its file.
+     */
+    private static class Contents {
+
+        /**
+         * The events ordered by start time, and by end time.
+         */
+        private final List<ArchivedEvent> byStart = new ArrayList<>();
+        private final List<ArchivedEvent> byEnd = new ArrayList<>();
+
+        private final Map<Long, ArchivedEvent> byId = new HashMap<>();
+
+        /**
+         * The longest time between the start and the end of an event.
+         */
+        private Duration maxDuration = Duration.ZERO;
+    }
+
+    /**
+     * The archive file, or <code>null</code> if this archive is empty.
+     */
+    private final File file;
+
+    /**
+     * The generation of the snapshot that first used this archive.
+     */
+    private final long generation;
+
+    /**
+     * The time every event of this archive ended before, or <code>null</code> if this archive is empty.
+     */
+    private final LocalDateTime cutoff;
+
+    /**
+     * The number of events in the file.
+     */
+    private final int count;
+
+    /**
+     * The id numbers of the events of the file that were deleted since it was written.
+     */
+    private final Set<Long> deleted;
+
+    /**
+     * The events read from the file, which the heap may take back when it runs short.
+     */
+    private SoftReference<Contents> contents = new SoftReference<>(null);
+
+    private CalendarArchive(File file, long generation, LocalDateTime cutoff, int count, Collection<Long> deleted) {
+        this.file = file;
+        this.generation = generation;
+        this.cutoff = cutoff;
+        this.count = count;
+        this.deleted = new HashSet<>(deleted);
+    }
+
+    /**
+     * Creates an archive with no events.
+     *
+     * @return an empty archive.
+     */
+    static CalendarArchive empty() {
+        return new CalendarArchive(null, 0, null, 0, Collections.<Long>emptySet());
+    }
+
+    /**
+     * Opens the specified archive file, reading only its header. Its events are read when they are looked up.
+     *
+     * @param file       an archive file.
+     * @param generation the generation of the snapshot that first used the archive.
+     * @param deleted    the id numbers of the events of the archive deleted since it was written.
+     * @return the archive.
+     * @throws IOException if the file cannot be read or is not an archive of the generation.
+     */
+    static CalendarArchive open(File file, long generation, Collection<Long> deleted) throws IOException {
+        DataInputStream in = new DataInputStream(new FileInputStream(file));
+        try {
+            if (in.readInt() != MAGIC) {
+                throw new IOException(file + " is not an archive file.");
+            }
+            int version = in.readInt();
+            if (version < 1 || version > VERSION) {
+                throw new IOException("Archive version " + version + " is newer than this program.");
+            }
+            if (in.readLong() != generation) {
+                throw new IOException(file + " does not belong to its calendar.");
+            }
+            LocalDateTime cutoff = LocalDateTime.ofEpochSecond(in.readLong(), in.readInt(), ZoneOffset.UTC);
+            return new CalendarArchive(file, generation, cutoff, in.readInt(), deleted);
+        } finally {
+            in.close();
+        }
+    }
+
+    /**
+     * Encodes an archive file holding the specified events.
+     *
+     * @param generation the generation of the snapshot that first uses the archive.
+     * @param cutoff     a time every event ended before.
+     * @param events     the events to archive, with their memos, and their alerts if they are archived events.
+     * @return the contents of the archive file.
+     * @throws IOException if the events cannot be encoded.
+     */
+    static byte[] write(long generation, LocalDateTime cutoff, Collection<? extends Event> events)
+            throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        DataOutputStream header = new DataOutputStream(bytes);
+        header.writeInt(MAGIC);
+        header.writeInt(VERSION);
+        header.writeLong(generation);
+        header.writeLong(cutoff.toEpochSecond(ZoneOffset.UTC));
+        header.writeInt(cutoff.getNano());
+        header.writeInt(events.size());
+        header.flush();
+
+        DataOutputStream out = new DataOutputStream(new GZIPOutputStream(bytes));
+        for (Event e : events) {
+            out.writeLong(e.getId());
+            writeString(out, e.getEventName());
+            writeTime(out, e.getStartTime());
+            writeTime(out, e.getEndTime());
+            writeString(out, e.getTag());
+            writeString(out, e.getStatus());
+            out.writeInt(e.getMemos().size());
+            for (Memo m : e.getMemos()) {
+                out.writeInt(m.getIdNumber());
+                writeString(out, m.getNote());
+            }
+            List<Alert> alerts = e instanceof ArchivedEvent ? ((ArchivedEvent) e).getArchivedAlerts()
+                    : Collections.<Alert>emptyList();
+            out.writeInt(alerts.size());
+            for (Alert a : alerts) {
+                out.writeByte(a instanceof FrequentAlert ? FREQUENT_ALERT : INDIVIDUAL_ALERT);
+                out.writeLong(a.getId());
+                writeString(out, a.getName());
+                writeString(out, a.getMessage());
+                writeString(out, a.getData());
+                writeTime(out, a.getEventTime());
+                if (a instanceof FrequentAlert) {
+                    Duration frequency = ((FrequentAlert) a).getFrequency();
+                    out.writeLong(frequency.getSeconds());
+                    out.writeInt(frequency.getNano());
+                } else {
+                    writeTime(out, ((IndividualAlert) a).getTime());
+                }
+            }
+        }
+        out.close();
+        return bytes.toByteArray();
+    }
+
+    /**
+     * Gets the archive file.
+     *
+     * @return the file, or <code>null</code> if this archive is empty.
+     */
+    public File getFile() {
+        return file;
+    }
+
+    /**
+     * Gets the generation of the snapshot that first used this archive.
+     *
+     * @return the generation of the archive, or 0 if this archive is empty.
+     */
+    public long getGeneration() {
+        return generation;
+    }
+
+    /**
+     * Gets the time every event of this archive ended before.
+     *
+     * @return the cutoff time of this archive, or <code>null</code> if it is empty.
+     */
+    public LocalDateTime getCutoff() {
+        return cutoff;
+    }
+
+    /**
+     * Gets the number of events in this archive, without those deleted.
+     *
+     * @return the number of events.
+     */
+    public int size() {
+        return count - deleted.size();
+    }
+
+    /**
+     * Gets the id numbers of the events of the file that were deleted since it was written.
+     *
+     * @return an unmodifiable view of the id numbers of the deleted events.
+     */
+    Set<Long> getDeleted() {
+        return Collections.unmodifiableSet(deleted);
+    }
+
+    // Methods for looking up events
+
+    /**
+     * Returns true if events that end before the specified time may be in this archive. If not, looking up
+     * events that end later need not read the archive.
+     *
+     * @param time a time.
+     * @return true if the archive has events, and they end before a time later than <code>time</code>.
+     */
+    public boolean reaches(LocalDateTime time) {
+        return size() > 0 && time.isBefore(cutoff);
+    }
+
+    /**
+     * Gets a view of the events in this archive, ordered by start time.
+     *
+     * @return an unmodifiable view of the events.
+     */
+    public Collection<Event> getEvents() {
+        return new ArchiveView(false, e -> true);
+    }
+
+    /**
+     * Gets a view of the events that overlap the specified range, ordered by start time.
+     *
+     * @param from the start of the range (inclusive).
+     * @param to   the end of the range (inclusive).
+     * @return an unmodifiable view of the events overlapping the range.
+     */
+    public Collection<Event> findOverlapping(LocalDateTime from, LocalDateTime to) {
+        if (!reaches(from)) {
+            return Collections.emptyList();
+        }
+        return new ArchiveView(false, e -> !e.getStartTime().isAfter(to) && !e.getEndTime().isBefore(from)) {
+            @Override
+            List<ArchivedEvent> candidates(Contents loaded) {
+                // no event starting earlier than the longest event before the range reaches into it
+                LocalDateTime earliest = from.minus(loaded.maxDuration);
+                int first = firstStartingFrom(loaded.byStart, earliest, false);
+                int last = firstStartingFrom(loaded.byStart, to, true);
+                return loaded.byStart.subList(first, Math.max(first, last));
+            }
+        };
+    }
+
+    /**
+     * Gets a view of the events that end strictly before the specified time, ordered by end time.
+     *
+     * @param time a time.
+     * @return an unmodifiable view of the events ending before <code>time</code>.
+     */
+    public Collection<Event> endingBefore(LocalDateTime time) {
+        return new ArchiveView(true, e -> e.getEndTime().isBefore(time));
+    }
+
+    /**
+     * Gets the event in this archive with the specified id number.
+     *
+     * @param id an id number.
+     * @return the event with the id number, or <code>null</code> if there is none.
+     */
+    public Event get(long id) {
+        if (size() == 0 || deleted.contains(id)) {
+            return null;
+        }
+        return load().byId.get(id);
+    }
+
+    /**
+     * Gets a view of the events in this archive with the specified name.
+     *
+     * @param name the name of an event.
+     * @return an unmodifiable view of the events with the name, ordered by start time.
+     */
+    public Collection<Event> getByName(String name) {
+        return new ArchiveView(false, e -> name == null ? e.getEventName() == null : name.equals(e.getEventName()));
+    }
+
+    /**
+     * Gets a view of the events in this archive with the specified tag.
+     *
+     * @param tag a tag.
+     * @return an unmodifiable view of the events with the tag, ordered by start time.
+     */
+    public Collection<Event> getByTag(String tag) {
+        return new ArchiveView(false, e -> tag == null ? e.getTag() == null : tag.equals(e.getTag()));
+    }
+
+    /**
+     * Gets a view of the events in this archive with a memo with the specified note.
+     *
+     * @param note the note of a memo.
+     * @return an unmodifiable view of the events with the note, ordered by start time.
+     */
+    public Collection<Event> findByMemoNote(String note) {
+        return new ArchiveView(false, e -> {
+            for (Memo m : e.getMemos()) {
+                if (m.getNote().equals(note)) {
+                    return true;
+                }
+            }
+            return false;
+        });
+    }
+
+    /**
+     * Finds the events in this archive whose name, tag and memo notes match every word of the specified query.
+     *
+     * @param query the words to search for.
+     * @param limit the greatest number of events to return.
+     * @return the matching events, ordered by start time.
+     */
+    public List<Event> search(String query, int limit) {
+        List<Event> found = new ArrayList<>();
+        for (Event e : new ArchiveView(false, e -> true)) {
+            if (found.size() >= limit) {
+                break;
+            }
+            List<String> texts = new ArrayList<>();
+            texts.add(e.getEventName());
+            texts.add(e.getTag());
+            for (Memo m : e.getMemos()) {
+                texts.add(m.getNote());
+            }
+            if (SearchIndex.matches(query, texts.toArray(new String[0]))) {
+                found.add(e);
+            }
+        }
+        return found;
+    }
+
+    /**
+     * Returns true if the specified event was read from this archive and has not been deleted.
+     *
+     * @param e an event.
+     * @return true if the event is in this archive, otherwise false.
+     */
+    public boolean contains(Event e) {
+        return e instanceof ArchivedEvent && ((ArchivedEvent) e).getArchive() == this
+                && !deleted.contains(e.getId());
+    }
+
+    /**
+     * Deletes the specified event from this archive. The file is not changed.
+     *
+     * @param e an event read from this archive.
+     */
+    void delete(ArchivedEvent e) {
+        if (contains(e)) {
+            deleted.add(e.getId());
+        }
+    }
+
+    // helper methods
+
+    /**
+     * Gets the events of this archive, reading them from file if they are not in memory.
+     */
+    private synchronized Contents load() {
+        Contents loaded = contents.get();
+        if (loaded == null) {
+            try {
+                loaded = read();
+            } catch (IOException ex) {
+                throw new UncheckedIOException(ex);
+            }
+            contents = new SoftReference<>(loaded);
+        }
+        return loaded;
+    }
+
+    private Contents read() throws IOException {
+        Contents loaded = new Contents();
+        if (file == null) {
+            return loaded;
+        }
+        InputStream raw = new FileInputStream(file);
+        try {
+            long skipped = 0;
+            while (skipped < HEADER_LENGTH) {
+                long n = raw.skip(HEADER_LENGTH - skipped);
+                if (n <= 0) {
+                    throw new IOException(file + " is damaged.");
+                }
+                skipped += n;
+            }
+            DataInputStream in = new DataInputStream(new BufferedInputStream(new GZIPInputStream(raw)));
+            for (int i = 0; i < count; i++) {
+                long id = in.readLong();
+                String name = readString(in);
+                LocalDateTime start = readTime(in);
+                LocalDateTime end = readTime(in);
+                ArchivedEvent e = new ArchivedEvent(this, name, start, end);
+                e.setId(id);
+                e.setTag(readString(in));
+                e.changeStatus(readString(in));
+                int memoCount = in.readInt();
+                for (int j = 0; j < memoCount; j++) {
+                    int memoId = in.readInt();
+                    Memo m = new Memo(readString(in));
+                    m.setIdNumber(memoId);
+                    e.getMemos().add(m);
+                }
+                int alertCount = in.readInt();
+                for (int j = 0; j < alertCount; j++) {
+                    int kind = in.readByte();
+                    long alertId = in.readLong();
+                    String alertName = readString(in);
+                    String message = readString(in);
+                    String data = readString(in);
+                    LocalDateTime eventTime = readTime(in);
+                    Alert a = kind == FREQUENT_ALERT
+                            ? new FrequentAlert(eventTime, alertName, message, Duration.ofSeconds(in.readLong(),
+                            in.readInt()))
+                            : new IndividualAlert(eventTime, alertName, message, readTime(in));
+                    a.setId(alertId);
+                    a.setData(data);
+                    e.addArchivedAlert(a);
+                }
+                loaded.byStart.add(e);
+                loaded.byId.put(id, e);
+                Duration duration = Duration.between(start, end);
+                if (duration.compareTo(loaded.maxDuration) > 0) {
+                    loaded.maxDuration = duration;
+                }
+            }
+        } finally {
+            raw.close();
+        }
+        loaded.byStart.sort(Comparator.comparing(Event::getStartTime));
+        loaded.byEnd.addAll(loaded.byStart);
+        loaded.byEnd.sort(Comparator.comparing(Event::getEndTime));
+        return loaded;
+    }
+
+    /**
+     * Finds the first of the specified events, sorted by start time, that starts after the specified time, or no
+     * earlier than it if <code>after</code> is false.
+     */
+    private static int firstStartingFrom(List<ArchivedEvent> byStart, LocalDateTime time, boolean after) {
+        int low = 0;
+        int high = byStart.size();
+        while (low < high) {
+            int middle = (low + high) >>> 1;
+            int c = byStart.get(middle).getStartTime().compareTo(time);
+            if (c < 0 || (after && c == 0)) {
+                low = middle + 1;
+            } else {
+                high = middle;
+            }
+        }
+        return low;
+    }
+
+    private static void writeString(DataOutputStream out, String s) throws IOException {
+        if (s == null) {
+            out.writeInt(-1);
+            return;
+        }
+        byte[] bytes = s.getBytes(StandardCharsets.UTF_8);
+        out.writeInt(bytes.length);
+        out.write(bytes);
+    }
+
+    private static String readString(DataInputStream in) throws IOException {
+        int length = in.readInt();
+        if (length < 0) {
+            return null;
+        }
+        byte[] bytes = new byte[length];
+        in.readFully(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    private static void writeTime(DataOutputStream out, LocalDateTime time) throws IOException {
+        out.writeLong(time.toEpochSecond(ZoneOffset.UTC));
+        out.writeInt(time.getNano());
+    }
+
+    private static LocalDateTime readTime(DataInputStream in) throws IOException {
+        return LocalDateTime.ofEpochSecond(in.readLong(), in.readInt(), ZoneOffset.UTC);
+    }
+
+    /**
+     * A read-only view of the events of this archive that pass a test, which reads the archive only when it is
+     * looked at.
+     */
+    private class ArchiveView extends AbstractCollection<Event> {
+
+        private final boolean byEnd;
+
+        private final Predicate<ArchivedEvent> test;
+
+        private ArchiveView(boolean byEnd, Predicate<ArchivedEvent> test) {
+            this.byEnd = byEnd;
+            this.test = test;
+        }
+
+        /**
+         * Gets the events that may pass the test, in the order of this view.
+         */
+        List<ArchivedEvent> candidates(Contents loaded) {
+            return byEnd ? loaded.byEnd : loaded.byStart;
+        }
+
+        @Override
+        public Iterator<Event> iterator() {
+            List<Event> events = new ArrayList<>();
+            if (CalendarArchive.this.size() > 0) {
+                for (ArchivedEvent e : candidates(load())) {
+                    if (!deleted.contains(e.getId()) && test.test(e)) {
+                        events.add(e);
+                    }
+                }
+            }
+            return Collections.unmodifiableList(events).iterator();
+        }
+
+        @Override
+        public int size() {
+            if (CalendarArchive.this.size() == 0) {
+                return 0;
+            }
+            int size = 0;
+            for (ArchivedEvent e : candidates(load())) {
+                if (!deleted.contains(e.getId()) && test.test(e)) {
+                    size++;
+                }
+            }
+            return size;
+        }
+    }
+}
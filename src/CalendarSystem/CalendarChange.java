@@ -0,0 +1,238 @@
+package CalendarSystem;
+
+import java.time.LocalDateTime;
+
+/**
+ * Represents one change made to a calendar, as published by its change feed: what kind of change it was, and
+ * the event, memo or alert it was made to. The times of the event are kept as they were when the change was
+ * made, as the event may be changed again before the change is read.
+ *
+ * @see ChangeFeed
+ */
+public class CalendarChange {
+
+    /**
+     * The kinds of change made to a calendar.
+     */
+    public enum Kind {
+        /** An event was stored in the calendar. */
+        EVENT_ADDED,
+        /** An event was deleted from the calendar. */
+        EVENT_REMOVED,
+        /** The start or end time of an event was changed. */
+        EVENT_RETIMED,
+        /** The name, tag, series or memos of an event were changed. */
+        EVENT_CHANGED,
+        /** A memo was associated with an event. */
+        MEMO_LINKED,
+        /** The note of a memo was changed. */
+        MEMO_CHANGED,
+        /** A memo was deleted, along with its associations with every event. */
+        MEMO_REMOVED,
+        /** An alert was added for an event. */
+        ALERT_ADDED,
+        /** The message or time of an alert was changed. */
+        ALERT_CHANGED,
+        /** An alert was deleted. */
+        ALERT_REMOVED,
+        /** An event invite was received or removed. */
+        INVITES_CHANGED,
+        /**
+         * The calendar changed in ways not published one by one, such as being read from file or having a
+         * recurring series added, or more changes were made than the subscriber kept up with. Whatever was
+         * looked up in the calendar must be looked up again.
+         */
+        RESET
+    }
+
+    private static final CalendarChange RESET = new CalendarChange(Kind.RESET, null, null, null, null, null);
+
+    /**
+     * The kind of this change.
+     */
+    private final Kind kind;
+
+    /**
+     * The event changed, or <code>null</code> if the change is not to a single event.
+     */
+    private final Event event;
+
+    /**
+     * The memo changed, or <code>null</code> if the change is not to a memo.
+     */
+    private final Memo memo;
+
+    /**
+     * The alert changed, or <code>null</code> if the change is not to an alert.
+     */
+    private final Alert alert;
+
+    /**
+     * The start and end times of the event when the change was made, or <code>null</code> if the change is not
+     * to a single event.
+     */
+    private final LocalDateTime startTime;
+    private final LocalDateTime endTime;
+
+    /**
+     * The start and end times of the event before it was retimed, or <code>null</code> if the change is not
+     * EVENT_RETIMED.
+     */
+    private final LocalDateTime previousStartTime;
+    private final LocalDateTime previousEndTime;
+
+    private CalendarChange(Kind kind, Event event, Memo memo, Alert alert, LocalDateTime previousStartTime,
+                           LocalDateTime previousEndTime) {
+        this.kind = kind;
+        this.event = event;
+        this.memo = memo;
+        this.alert = alert;
+        this.startTime = event == null ? null : event.getStartTime();
+        this.endTime = event == null ? null : event.getEndTime();
+        this.previousStartTime = previousStartTime;
+        this.previousEndTime = previousEndTime;
+    }
+
+    /**
+     * Creates a change of the specified kind to the specified event.
+     *
+     * @param kind  one of the EVENT kinds, or INVITES_CHANGED.
+     * @param event the event changed.
+     * @return the change.
+     */
+    static CalendarChange of(Kind kind, Event event) {
+        return new CalendarChange(kind, event, null, null, null, null);
+    }
+
+    /**
+     * Creates an EVENT_RETIMED change to the specified event, which has its new times already.
+     *
+     * @param event         the event retimed.
+     * @param previousStart the start time of the event before it was retimed.
+     * @param previousEnd   the end time of the event before it was retimed.
+     * @return the change.
+     */
+    static CalendarChange retimed(Event event, LocalDateTime previousStart, LocalDateTime previousEnd) {
+        return new CalendarChange(Kind.EVENT_RETIMED, event, null, null, previousStart, previousEnd);
+    }
+
+    /**
+     * Creates a change of the specified kind to the specified memo, and to the specified event it is linked with.
+     *
+     * @param kind  one of the MEMO kinds.
+     * @param memo  the memo changed.
+     * @param event the event the memo was linked with, or <code>null</code>.
+     * @return the change.
+     */
+    static CalendarChange of(Kind kind, Memo memo, Event event) {
+        return new CalendarChange(kind, event, memo, null, null, null);
+    }
+
+    /**
+     * Creates a change of the specified kind to the specified alert.
+     *
+     * @param kind  one of the ALERT kinds.
+     * @param alert the alert changed.
+     * @param event the event of the alert.
+     * @return the change.
+     */
+    static CalendarChange of(Kind kind, Alert alert, Event event) {
+        return new CalendarChange(kind, event, null, alert, null, null);
+    }
+
+    /**
+     * Gets the change telling subscribers to look the calendar up again.
+     *
+     * @return the RESET change.
+     */
+    static CalendarChange reset() {
+        return RESET;
+    }
+
+    /**
+     * Gets the kind of this change.
+     *
+     * @return the kind of this change.
+     */
+    public Kind getKind() {
+        return kind;
+    }
+
+    /**
+     * Gets the event changed, or the event whose memo or alert was changed.
+     *
+     * @return the event, or <code>null</code> if the change is not to a single event.
+     */
+    public Event getEvent() {
+        return event;
+    }
+
+    /**
+     * Gets the memo changed.
+     *
+     * @return the memo, or <code>null</code> if the change is not to a memo.
+     */
+    public Memo getMemo() {
+        return memo;
+    }
+
+    /**
+     * Gets the alert changed.
+     *
+     * @return the alert, or <code>null</code> if the change is not to an alert.
+     */
+    public Alert getAlert() {
+        return alert;
+    }
+
+    /**
+     * Gets the start time of the event when the change was made.
+     *
+     * @return the start time, or <code>null</code> if the change is not to a single event.
+     */
+    public LocalDateTime getStartTime() {
+        return startTime;
+    }
+
+    /**
+     * Gets the end time of the event when the change was made.
+     *
+     * @return the end time, or <code>null</code> if the change is not to a single event.
+     */
+    public LocalDateTime getEndTime() {
+        return endTime;
+    }
+
+    /**
+     * Gets the start time the event had before it was retimed.
+     *
+     * @return the previous start time, or <code>null</code> if the change is not EVENT_RETIMED.
+     */
+    public LocalDateTime getPreviousStartTime() {
+        return previousStartTime;
+    }
+
+    /**
+     * Gets the end time the event had before it was retimed.
+     *
+     * @return the previous end time, or <code>null</code> if the change is not EVENT_RETIMED.
+     */
+    public LocalDateTime getPreviousEndTime() {
+        return previousEndTime;
+    }
+
+    @Override
+    public String toString() {
+        StringBuilder s = new StringBuilder(kind.toString());
+        if (event != null) {
+            s.append(" event ").append(event.getId()).append(" ").append(event.getEventName());
+        }
+        if (memo != null) {
+            s.append(" memo ").append(memo.getIdNumber());
+        }
+        if (alert != null) {
+            s.append(" alert ").append(alert.getMessage());
+        }
+        return s.toString();
+    }
+}
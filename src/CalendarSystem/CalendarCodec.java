@@ -0,0 +1,678 @@
+package CalendarSystem;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.time.Period;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Reads and writes calendars in a compact binary file format.
+ * <p>
+ * A calendar file starts with the magic number "CALB", the version of the format it was written in and the
+ * generation of the snapshot. Then follow a table of every string in the calendar, a table of every memo, series
+ * and event, and the contents of the calendar's memo, series and alert systems, all referring to strings, memos,
+ * series and events by their position in the tables, so that shared objects are written once. Numbers are written
+ * as variable-length integers, and times as the difference in seconds from the time written before them.
+ * <p>
+ * The stored events that have no memos, series or alerts are not written here but in the calendar's
+ * {@link MappedEventStore}, written alongside; the file records how many events its store holds. Likewise the
+ * archived events are in the calendar's {@link CalendarArchive}; the file records its generation and the events
+ * deleted from it since it was written.
+ * <p>
+ * Unlike Java serialization, the format does not depend on the classes of the calendar, so changing them does
+ * not make saved calendars unreadable. A change to the format itself is given a new version, and files of
+ * earlier versions stay readable.
+ *
+ * @see CalendarManager
+ */
+public class CalendarCodec {
+
+    /**
+     * The first four bytes of a calendar file.
+     */
+    static final int MAGIC = 0x43414C42;
+
+    /**
+     * The version of the format written.
+     */
+    private static final int VERSION = 3;
+
+    // kinds of events and series
+
+    private static final int EVENT = 0;
+    private static final int OCCURRENCE = 1;
+    private static final int SERIES = 0;
+    private static final int RULE = 1;
+    private static final int INDIVIDUAL_ALERT = 0;
+    private static final int FREQUENT_ALERT = 1;
+
+    /**
+     * A calendar read from file, along with the generation of the snapshot it was read from.
+     */
+    public static class Snapshot {
+
+        private final Calendar calendar;
+
+        private final long generation;
+
+        private final int pagedCount;
+
+        private final long archiveGeneration;
+
+        private final List<Long> archiveDeleted;
+
+        private Snapshot(Calendar calendar, long generation, int pagedCount, long archiveGeneration,
+                         List<Long> archiveDeleted) {
+            this.calendar = calendar;
+            this.generation = generation;
+            this.pagedCount = pagedCount;
+            this.archiveGeneration = archiveGeneration;
+            this.archiveDeleted = archiveDeleted;
+        }
+
+        /**
+         * Gets the calendar read.
+         *
+         * @return the calendar.
+         */
+        public Calendar getCalendar() {
+            return calendar;
+        }
+
+        /**
+         * Gets the generation of the snapshot the calendar was read from.
+         *
+         * @return the generation of the snapshot.
+         */
+        public long getGeneration() {
+            return generation;
+        }
+
+        /**
+         * Gets the number of events of the calendar held by the event store of the snapshot.
+         *
+         * @return the number of events in the event store, or 0 if the snapshot has none.
+         */
+        public int getPagedCount() {
+            return pagedCount;
+        }
+
+        /**
+         * Gets the generation of the archive of the calendar.
+         *
+         * @return the generation of the archive, or 0 if the calendar has none.
+         */
+        public long getArchiveGeneration() {
+            return archiveGeneration;
+        }
+
+        /**
+         * Gets the id numbers of the archived events deleted since the archive was written.
+         *
+         * @return a list of the id numbers of the deleted events.
+         */
+        public List<Long> getArchiveDeleted() {
+            return archiveDeleted;
+        }
+    }
+
+    /**
+     * The strings, memos, series and events written or read so far, by position.
+     */
+    private final List<String> strings = new ArrayList<>();
+    private final List<Memo> memos = new ArrayList<>();
+    private final List<Series> series = new ArrayList<>();
+    private final List<Event> events = new ArrayList<>();
+
+    /**
+     * The positions of the strings, memos, series and events written so far.
+     */
+    private final Map<String, Integer> stringRefs = new HashMap<>();
+    private final IdentityHashMap<Memo, Integer> memoRefs = new IdentityHashMap<>();
+    private final IdentityHashMap<Series, Integer> seriesRefs = new IdentityHashMap<>();
+    private final IdentityHashMap<Event, Integer> eventRefs = new IdentityHashMap<>();
+
+    /**
+     * The last time written or read, in seconds from the epoch.
+     */
+    private long lastSecond;
+
+    private CalendarCodec() {
+    }
+
+    // Methods for reading and writing calendars
+
+    /**
+     * Writes the specified calendar to the specified stream, but for the events to be kept in its event store.
+     *
+     * @param calendar   a calendar.
+     * @param generation the generation of the snapshot written.
+     * @param pagedCount the number of events written to the event store of the snapshot.
+     * @param out        the stream to write to.
+     * @throws IOException if the stream cannot be written.
+     * @see Calendar#getPageableEvents()
+     */
+    public static void write(Calendar calendar, long generation, int pagedCount, OutputStream out)
+            throws IOException {
+        new CalendarCodec().encode(calendar, generation, pagedCount, out);
+    }
+
+    /**
+     * Reads a calendar from the specified stream.
+     *
+     * @param in the stream to read from.
+     * @return the calendar read, along with the generation of its snapshot.
+     * @throws IOException if the stream cannot be read or does not hold a calendar in a known version of the
+     *                     format.
+     */
+    public static Snapshot read(InputStream in) throws IOException {
+        return new CalendarCodec().decode(new DataInputStream(in));
+    }
+
+    /**
+     * Returns true if the specified first bytes of a file are the start of a calendar in this format.
+     *
+     * @param header the first four bytes of a file.
+     * @return true if the file is a calendar file, otherwise false.
+     */
+    public static boolean isCalendarFile(byte[] header) {
+        return header.length >= 4 && ((header[0] & 0xFF) << 24 | (header[1] & 0xFF) << 16
+                | (header[2] & 0xFF) << 8 | (header[3] & 0xFF)) == MAGIC;
+    }
+
+    // helper methods for writing
+
+    private void encode(Calendar calendar, long generation, int pagedCount, OutputStream out) throws IOException {
+        MemoSystem memoSystem = calendar.getMemoSystem();
+        SeriesSystem seriesSystem = calendar.getMySeries();
+        AlertSystem alertSystem = calendar.getAlertSystem();
+        List<Alert> alerts = new ArrayList<>();
+        for (Set<Alert> eventAlerts : alertSystem.getEventAlertsMap().values()) {
+            alerts.addAll(eventAlerts);
+        }
+
+        // finds every memo, series and event that the calendar refers to
+        for (Memo m : memoSystem.getMemos()) {
+            addMemo(m);
+        }
+        for (Series s : seriesSystem.getSeries()) {
+            addSeries(s);
+        }
+        List<Event> stored = new ArrayList<>();
+        for (Event e : calendar.getStoredEvents()) {
+            if (!calendar.isPageable(e)) { // written in the event store
+                stored.add(e);
+                addEvent(e);
+            }
+        }
+        for (Event e : calendar.getEventInvites()) {
+            addEvent(e);
+        }
+        for (Alert a : alerts) {
+            addEvent(a.getEvent());
+        }
+
+        ByteArrayOutputStream bodyBytes = new ByteArrayOutputStream();
+        DataOutputStream body = new DataOutputStream(bodyBytes);
+
+        writeVar(body, memos.size());
+        for (Memo m : memos) {
+            writeVar(body, m.getIdNumber());
+            writeString(body, m.getNote());
+        }
+
+        writeVar(body, series.size());
+        for (Series s : series) {
+            if (s instanceof RecurringSeries) {
+                RecurringSeries rule = (RecurringSeries) s;
+                writeVar(body, RULE);
+                writeString(body, s.getName());
+                writeTime(body, rule.getStart(0));
+                writeDuration(body, rule.getDuration());
+                writeSigned(body, rule.getFrequency().getYears());
+                writeSigned(body, rule.getFrequency().getMonths());
+                writeSigned(body, rule.getFrequency().getDays());
+                writeVar(body, rule.getSize());
+                writeVar(body, rule.getExceptions().size());
+                int last = 0;
+                for (int index : rule.getExceptions()) { // in increasing order, so written as gaps
+                    writeVar(body, index - last);
+                    last = index;
+                }
+                writeMemos(body, rule.getMemos());
+            } else {
+                writeVar(body, SERIES);
+                writeString(body, s.getName());
+            }
+        }
+
+        writeVar(body, events.size());
+        for (Event e : events) {
+            if (e instanceof SeriesOccurrence) {
+                writeVar(body, OCCURRENCE);
+                writeVar(body, seriesRefs.get(((SeriesOccurrence) e).getRule()));
+                writeVar(body, ((SeriesOccurrence) e).getIndex());
+            } else {
+                writeVar(body, EVENT);
+            }
+            writeVar(body, e.getId());
+            writeString(body, e.getEventName());
+            writeTime(body, e.getStartTime());
+            writeTime(body, e.getEndTime());
+            writeString(body, e.getTag());
+            writeString(body, e.getStatus());
+            writeMemos(body, e.getMemos());
+            writeVar(body, e.getSeries().size());
+            for (Series s : e.getSeries()) {
+                writeVar(body, seriesRefs.get(s));
+            }
+        }
+
+        for (Series s : series) {
+            writeEvents(body, s instanceof RecurringSeries ? ((RecurringSeries) s).getStoredEvents() : s.getEvents());
+        }
+
+        writeVar(body, calendar.getNextEventId());
+        writeEvents(body, stored);
+        writeEvents(body, calendar.getEventInvites());
+        writeTime(body, calendar.time);
+        writeVar(body, pagedCount);
+        CalendarArchive archive = calendar.getArchive();
+        writeVar(body, archive.getGeneration());
+        writeVar(body, archive.getDeleted().size());
+        for (long id : archive.getDeleted()) {
+            writeVar(body, id);
+        }
+
+        writeVar(body, memoSystem.getNextMemoId());
+        writeMemos(body, memoSystem.getMemos());
+
+        writeVar(body, seriesSystem.getSeries().size());
+        for (Series s : seriesSystem.getSeries()) {
+            writeVar(body, seriesRefs.get(s));
+        }
+
+        writeVar(body, alertSystem.getNextAlertId());
+        writeVar(body, alerts.size());
+        for (Alert a : alerts) {
+            writeVar(body, a instanceof FrequentAlert ? FREQUENT_ALERT : INDIVIDUAL_ALERT);
+            writeVar(body, a.getId());
+            writeVar(body, eventRefs.get(a.getEvent()));
+            writeString(body, a.getName());
+            writeTime(body, a.getEventTime());
+            writeString(body, a.getMessage());
+            writeString(body, a.getData());
+            if (a instanceof FrequentAlert) {
+                writeDuration(body, ((FrequentAlert) a).getFrequency());
+            } else {
+                writeTime(body, ((IndividualAlert) a).getTime());
+            }
+        }
+        body.flush();
+
+        // the header and the string table go before the body that filled the table
+        DataOutputStream file = new DataOutputStream(out);
+        file.writeInt(MAGIC);
+        writeVar(file, VERSION);
+        writeVar(file, generation);
+        writeVar(file, strings.size());
+        for (String s : strings) {
+            byte[] bytes = s.getBytes(StandardCharsets.UTF_8);
+            writeVar(file, bytes.length);
+            file.write(bytes);
+        }
+        bodyBytes.writeTo(file);
+        file.flush();
+    }
+
+    private void addMemo(Memo m) {
+        if (!memoRefs.containsKey(m)) {
+            memoRefs.put(m, memos.size());
+            memos.add(m);
+        }
+    }
+
+    /**
+     * Adds the specified series to the table of series, along with its memos and events.
+     */
+    private void addSeries(Series s) {
+        if (seriesRefs.containsKey(s)) {
+            return;
+        }
+        seriesRefs.put(s, series.size());
+        series.add(s);
+        if (s instanceof RecurringSeries) {
+            for (Memo m : ((RecurringSeries) s).getMemos()) {
+                addMemo(m);
+            }
+            for (Event e : ((RecurringSeries) s).getStoredEvents()) {
+                addEvent(e);
+            }
+        } else {
+            for (Event e : s.getEvents()) {
+                addEvent(e);
+            }
+        }
+    }
+
+    /**
+     * Adds the specified event to the table of events, along with its memos and series.
+     */
+    private void addEvent(Event e) {
+        if (eventRefs.containsKey(e)) {
+            return;
+        }
+        eventRefs.put(e, events.size());
+        events.add(e);
+        for (Memo m : e.getMemos()) {
+            addMemo(m);
+        }
+        if (e instanceof SeriesOccurrence) {
+            addSeries(((SeriesOccurrence) e).getRule());
+        }
+        for (Series s : e.getSeries()) {
+            addSeries(s);
+        }
+    }
+
+    private void writeMemos(DataOutputStream out, Collection<Memo> list) throws IOException {
+        writeVar(out, list.size());
+        for (Memo m : list) {
+            writeVar(out, memoRefs.get(m));
+        }
+    }
+
+    private void writeEvents(DataOutputStream out, Collection<Event> list) throws IOException {
+        writeVar(out, list.size());
+        for (Event e : list) {
+            writeVar(out, eventRefs.get(e));
+        }
+    }
+
+    /**
+     * Writes a string as its position in the string table plus one, or 0 for <code>null</code>.
+     */
+    private void writeString(DataOutputStream out, String s) throws IOException {
+        if (s == null) {
+            writeVar(out, 0);
+            return;
+        }
+        Integer ref = stringRefs.get(s);
+        if (ref == null) {
+            ref = strings.size();
+            stringRefs.put(s, ref);
+            strings.add(s);
+        }
+        writeVar(out, ref + 1);
+    }
+
+    private void writeTime(DataOutputStream out, LocalDateTime time) throws IOException {
+        long second = time.toEpochSecond(ZoneOffset.UTC);
+        writeSigned(out, second - lastSecond);
+        writeVar(out, time.getNano());
+        lastSecond = second;
+    }
+
+    private static void writeDuration(DataOutputStream out, Duration d) throws IOException {
+        writeSigned(out, d.getSeconds());
+        writeVar(out, d.getNano());
+    }
+
+    /**
+     * Writes a signed number as a variable-length integer, keeping numbers close to zero short.
+     */
+    private static void writeSigned(DataOutputStream out, long value) throws IOException {
+        writeVar(out, (value << 1) ^ (value >> 63));
+    }
+
+    /**
+     * Writes a number as a variable-length integer: seven bits to a byte, with the high bit set on every byte
+     * but the last.
+     */
+    private static void writeVar(DataOutputStream out, long value) throws IOException {
+        while ((value & ~0x7FL) != 0) {
+            out.writeByte((int) (value & 0x7F) | 0x80);
+            value >>>= 7;
+        }
+        out.writeByte((int) value);
+    }
+
+    // helper methods for reading
+
+    private Snapshot decode(DataInputStream in) throws IOException {
+        if (in.readInt() != MAGIC) {
+            throw new IOException("Not a calendar file.");
+        }
+        int version = (int) readVar(in);
+        if (version < 1 || version > VERSION) {
+            throw new IOException("Calendar file version " + version + " is newer than this program.");
+        }
+        long generation = readVar(in);
+        int stringCount = readCount(in);
+        for (int i = 0; i < stringCount; i++) {
+            byte[] bytes = new byte[readCount(in)];
+            in.readFully(bytes);
+            strings.add(new String(bytes, StandardCharsets.UTF_8));
+        }
+
+        int memoCount = readCount(in);
+        for (int i = 0; i < memoCount; i++) {
+            int id = (int) readVar(in);
+            Memo m = new Memo(readString(in));
+            m.setIdNumber(id);
+            memos.add(m);
+        }
+
+        int seriesCount = readCount(in);
+        for (int i = 0; i < seriesCount; i++) {
+            int kind = (int) readVar(in);
+            String name = readString(in);
+            if (kind == RULE) {
+                LocalDateTime first = readTime(in);
+                Duration duration = readDuration(in);
+                Period frequency = Period.of((int) readSigned(in), (int) readSigned(in), (int) readSigned(in));
+                RecurringSeries rule;
+                try {
+                    rule = new RecurringSeries(name, first, duration, frequency, readCount(in));
+                } catch (IllegalArgumentException e) {
+                    throw new IOException("Invalid recurring series " + name + ".", e);
+                }
+                int exceptionCount = readCount(in);
+                int index = 0;
+                for (int j = 0; j < exceptionCount; j++) {
+                    index += readCount(in);
+                    rule.exclude(index);
+                }
+                rule.getMemos().addAll(readMemos(in));
+                series.add(rule);
+            } else {
+                series.add(new Series(name, new ArrayList<>()));
+            }
+        }
+
+        int eventCount = readCount(in);
+        for (int i = 0; i < eventCount; i++) {
+            int kind = (int) readVar(in);
+            RecurringSeries rule = null;
+            int index = 0;
+            if (kind == OCCURRENCE) {
+                Series s = readSeries(in);
+                if (!(s instanceof RecurringSeries)) {
+                    throw new IOException("Occurrence of a series without a rule.");
+                }
+                rule = (RecurringSeries) s;
+                index = readCount(in);
+            }
+            long id = readVar(in);
+            String name = readString(in);
+            LocalDateTime start = readTime(in);
+            LocalDateTime end = readTime(in);
+            Event e = rule != null ? new SeriesOccurrence(rule, index, start, end) : new Event(name, start, end);
+            e.setId(id);
+            e.setEventName(name);
+            e.setTag(readString(in));
+            e.changeStatus(readString(in));
+            e.getMemos().clear();
+            e.getMemos().addAll(readMemos(in));
+            e.getSeries().clear();
+            int count = readCount(in);
+            for (int j = 0; j < count; j++) {
+                e.associateSeries(readSeries(in));
+            }
+            events.add(e);
+        }
+
+        for (Series s : series) {
+            for (Event e : readEvents(in)) {
+                s.addEvent(e);
+            }
+        }
+
+        long nextEventId = readVar(in);
+        List<Event> stored = readEvents(in);
+        List<Event> invites = readEvents(in);
+        LocalDateTime time = readTime(in);
+        int pagedCount = version >= 2 ? readCount(in) : 0;
+        long archiveGeneration = 0;
+        List<Long> archiveDeleted = new ArrayList<>();
+        if (version >= 3) {
+            archiveGeneration = readVar(in);
+            int deletedCount = readCount(in);
+            for (int i = 0; i < deletedCount; i++) {
+                archiveDeleted.add(readVar(in));
+            }
+        }
+
+        Calendar calendar = new Calendar();
+        int nextMemoId = (int) readVar(in);
+        calendar.getMemoSystem().restore(nextMemoId, readMemos(in));
+
+        int systemSeriesCount = readCount(in);
+        List<Series> systemSeries = new ArrayList<>(systemSeriesCount);
+        for (int i = 0; i < systemSeriesCount; i++) {
+            systemSeries.add(readSeries(in));
+        }
+        calendar.getMySeries().restore(systemSeries);
+
+        long nextAlertId = readVar(in);
+        int alertCount = readCount(in);
+        List<Alert> alerts = new ArrayList<>(alertCount);
+        for (int i = 0; i < alertCount; i++) {
+            int kind = (int) readVar(in);
+            long id = readVar(in);
+            Event event = readEvent(in);
+            String name = readString(in);
+            LocalDateTime eventTime = readTime(in);
+            String message = readString(in);
+            String data = readString(in);
+            Alert a = kind == FREQUENT_ALERT
+                    ? new FrequentAlert(eventTime, name, message, readDuration(in))
+                    : new IndividualAlert(eventTime, name, message, readTime(in));
+            a.setId(id);
+            a.setEvent(event);
+            a.setData(data);
+            alerts.add(a);
+        }
+        calendar.getAlertSystem().restore(nextAlertId, alerts);
+
+        calendar.restore(nextEventId, stored, invites, time);
+        return new Snapshot(calendar, generation, pagedCount, archiveGeneration, archiveDeleted);
+    }
+
+    private List<Memo> readMemos(DataInputStream in) throws IOException {
+        int count = readCount(in);
+        List<Memo> list = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            list.add(memos.get(readRef(in, memos.size())));
+        }
+        return list;
+    }
+
+    private List<Event> readEvents(DataInputStream in) throws IOException {
+        int count = readCount(in);
+        List<Event> list = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            list.add(readEvent(in));
+        }
+        return list;
+    }
+
+    private Event readEvent(DataInputStream in) throws IOException {
+        return events.get(readRef(in, events.size()));
+    }
+
+    private Series readSeries(DataInputStream in) throws IOException {
+        return series.get(readRef(in, series.size()));
+    }
+
+    private String readString(DataInputStream in) throws IOException {
+        int ref = readRef(in, strings.size() + 1);
+        return ref == 0 ? null : strings.get(ref - 1);
+    }
+
+    private LocalDateTime readTime(DataInputStream in) throws IOException {
+        lastSecond += readSigned(in);
+        return LocalDateTime.ofEpochSecond(lastSecond, (int) readVar(in), ZoneOffset.UTC);
+    }
+
+    private static Duration readDuration(DataInputStream in) throws IOException {
+        return Duration.ofSeconds(readSigned(in), readVar(in));
+    }
+
+    /**
+     * Reads the position of an object in a table of the specified size.
+     */
+    private static int readRef(DataInputStream in, int size) throws IOException {
+        long ref = readVar(in);
+        if (ref >= size) {
+            throw new IOException("Reference " + ref + " past the end of a table of " + size + ".");
+        }
+        return (int) ref;
+    }
+
+    /**
+     * Reads a number of items, which cannot be negative or larger than an int.
+     */
+    private static int readCount(DataInputStream in) throws IOException {
+        long count = readVar(in);
+        if (count > Integer.MAX_VALUE) {
+            throw new IOException("Count " + count + " out of range.");
+        }
+        return (int) count;
+    }
+
+    private static long readSigned(DataInputStream in) throws IOException {
+        long value = readVar(in);
+        return (value >>> 1) ^ -(value & 1);
+    }
+
+    private static long readVar(DataInputStream in) throws IOException {
+        long value = 0;
+        for (int shift = 0; shift < 64; shift += 7) {
+            int b = in.read();
+            if (b < 0) {
+                throw new EOFException();
+            }
+            value |= (long) (b & 0x7F) << shift;
+            if ((b & 0x80) == 0) {
+                return value;
+            }
+        }
+        throw new IOException("Variable-length integer too long.");
+    }
+}
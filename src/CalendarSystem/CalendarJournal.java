@@ -0,0 +1,909 @@
+package CalendarSystem;
+
+import java.io.BufferedInputStream;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.time.Period;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import java.util.zip.CRC32;
+
+/**
+ * A write-ahead journal of the changes made to a calendar since it was last saved in full.
+ * <p>
+ * Every change made through the calendar is recorded as a small entry naming the change and its arguments, with
+ * events, memos and alerts referred to by their id numbers and series by their position in the series system.
+ * Entries are kept in memory until {@link #sync()} appends them to the journal file together and forces them to
+ * disk, so the cost of a save grows with the changes made rather than with the calendar.
+ * <p>
+ * The journal file starts with the generation of the snapshot it follows; when the calendar is read back, the
+ * entries are replayed on top of the snapshot of that generation only. Every entry carries its length and a
+ * checksum, so an entry cut short by a crash ends the replay instead of corrupting the calendar. An entry that is
+ * whole but does not apply to the calendar is skipped, and the journal file kept aside, without losing the
+ * entries after it.
+ * <p>
+ * Changes are recorded by the thread changing the calendar, while the journal file may be written by another:
+ * the pending entries are handed over under the journal's lock.
+ *
+ * @see Calendar
+ * @see CalendarManager
+ */
+public class CalendarJournal {
+
+    /**
+     * The first four bytes of a journal file.
+     */
+    private static final int MAGIC = 0x43414C4A;
+
+    /**
+     * The version of the journal file format. Version 1 wrote <code>null</code> strings as empty strings, and
+     * journal files of that version are still replayed.
+     */
+    private static final int VERSION = 2;
+
+    /**
+     * The earliest version of the journal file format that is still replayed.
+     */
+    private static final int FIRST_VERSION = 1;
+
+    /**
+     * The length of the header of a journal file: magic number, version and generation.
+     */
+    private static final int HEADER_LENGTH = 16;
+
+    // entry types
+
+    private static final byte EVENT_ADDED = 1;
+    private static final byte EVENT_DELETED = 2;
+    private static final byte EVENT_TIME_CHANGED = 3;
+    private static final byte EVENT_NAME_CHANGED = 4;
+    private static final byte EVENT_TAG_CHANGED = 5;
+    private static final byte EVENT_DUPLICATED = 6;
+    private static final byte OCCURRENCE_MATERIALIZED = 7;
+    private static final byte OCCURRENCE_EXCLUDED = 8;
+    private static final byte SERIES_CREATED = 9;
+    private static final byte RULE_CREATED = 10;
+    private static final byte MEMO_CREATED = 11;
+    private static final byte MEMO_LINKED = 12;
+    private static final byte SERIES_MEMO_LINKED = 13;
+    private static final byte MEMO_DELETED = 14;
+    private static final byte MEMOS_CLEARED = 15;
+    private static final byte MEMO_NOTE_CHANGED = 16;
+    private static final byte ALERT_ADDED = 17;
+    private static final byte ALERT_DELETED = 18;
+    private static final byte ALERTS_CLEARED = 19;
+    private static final byte ALERT_EDITED = 20;
+    private static final byte INVITE_ADDED = 21;
+    private static final byte INVITES_REMOVED = 22;
+
+    private static final Logger logger = Logger.getLogger(CalendarJournal.class.getName());
+
+    /**
+     * The journal file.
+     */
+    private final File file;
+
+    /**
+     * The open journal file, or <code>null</code> if it has not been opened yet.
+     */
+    private volatile FileChannel channel;
+
+    /**
+     * The generation of the snapshot this journal follows.
+     */
+    private volatile long generation;
+
+    /**
+     * The version of the format of the journal file.
+     */
+    private int fileVersion = VERSION;
+
+    /**
+     * The calendar whose changes are recorded.
+     */
+    private Calendar calendar;
+
+    /**
+     * The entries recorded since the last sync, each framed with its length and checksum.
+     */
+    private ByteArrayOutputStream pending = new ByteArrayOutputStream();
+
+    /**
+     * The number of entries recorded since the last sync.
+     */
+    private int pendingCount;
+
+    /**
+     * The buffer the entry being recorded is written to.
+     */
+    private final ByteArrayOutputStream entry = new ByteArrayOutputStream();
+
+    private final DataOutputStream out = new DataOutputStream(entry);
+
+    /**
+     * Initializes a CalendarJournal object for the specified journal file.
+     *
+     * @param file the journal file.
+     */
+    public CalendarJournal(File file) {
+        this.file = file;
+    }
+
+    // Methods for reading and writing the journal file
+
+    /**
+     * Replays the entries of the journal file on the specified calendar, if the file follows the snapshot of the
+     * specified generation, and records the calendar's changes from then on. A journal file of another
+     * generation, or no journal file, is started over. An entry that is cut short or fails its checksum ends
+     * the replay, and the journal file is cut back to the entries before it. An entry that is whole but does
+     * not apply is skipped, and a copy of the journal file is kept next to it.
+     *
+     * @param calendar   the calendar read from the snapshot.
+     * @param generation the generation of the snapshot.
+     * @return the number of entries replayed.
+     * @throws IOException if the journal file cannot be read or written.
+     */
+    public int replay(Calendar calendar, long generation) throws IOException {
+        close();
+        this.calendar = calendar;
+        this.generation = generation;
+        clearPending();
+        open();
+        if (!hasHeader(generation)) {
+            reset(generation);
+            return 0;
+        }
+
+        long validEnd = HEADER_LENGTH;
+        int replayed = 0;
+        int skipped = 0;
+        channel.position(HEADER_LENGTH);
+        DataInputStream in = new DataInputStream(new BufferedInputStream(Channels.newInputStream(channel)));
+        CRC32 crc = new CRC32();
+        while (true) {
+            byte[] payload;
+            try {
+                int length = in.readInt();
+                long checksum = in.readInt() & 0xFFFFFFFFL;
+                if (length <= 0 || length > channel.size() - validEnd) {
+                    break;
+                }
+                payload = new byte[length];
+                in.readFully(payload);
+                crc.reset();
+                crc.update(payload, 0, length);
+                if (crc.getValue() != checksum) {
+                    break;
+                }
+            } catch (EOFException e) {
+                break;
+            }
+            try {
+                apply(new DataInputStream(new ByteArrayInputStream(payload)));
+                replayed++;
+            } catch (IOException | RuntimeException e) {
+                skipped++;
+                logger.log(Level.WARNING, "Journal entry " + (replayed + skipped) + " of " + file
+                        + " does not apply and is skipped.", e);
+            }
+            validEnd += 8 + payload.length;
+        }
+        if (skipped > 0) { // the next snapshot drops the skipped entries from the journal file
+            File copy = new File(file.getPath() + ".skipped");
+            Files.copy(file.toPath(), copy.toPath(), StandardCopyOption.REPLACE_EXISTING);
+            logger.log(Level.WARNING, skipped + " entries of " + file + " were skipped; the journal is kept in "
+                    + copy + ".");
+        }
+        channel.truncate(validEnd); // only an entry cut short is cut off
+        channel.position(validEnd);
+        return replayed;
+    }
+
+    /**
+     * Records the changes made to the specified calendar from now on, to be written once the journal file is
+     * started over by {@link #reset(long)}.
+     *
+     * @param calendar a calendar about to be saved in a snapshot.
+     */
+    public void attach(Calendar calendar) {
+        this.calendar = calendar;
+    }
+
+    /**
+     * Drops the entries recorded but not yet synced, as a snapshot about to be saved includes them.
+     */
+    public void discard() {
+        clearPending();
+    }
+
+    /**
+     * Appends the entries recorded since the last sync to the journal file and forces them to disk. Entries
+     * that cannot be written are kept for the next sync, as are entries recorded while the journal file is in an
+     * earlier format.
+     *
+     * @throws IOException if the journal file cannot be written.
+     */
+    public void sync() throws IOException {
+        byte[] entries;
+        int count;
+        synchronized (this) {
+            if (pendingCount == 0 || channel == null || isOutdated()) {
+                return;
+            }
+            entries = pending.toByteArray();
+            count = pendingCount;
+            clearPending();
+        }
+        long start = channel.size();
+        try {
+            ByteBuffer bytes = ByteBuffer.wrap(entries);
+            long position = start;
+            while (bytes.hasRemaining()) {
+                position += channel.write(bytes, position);
+            }
+            channel.force(false);
+        } catch (IOException e) {
+            synchronized (this) { // puts the entries back before the ones recorded since
+                ByteArrayOutputStream kept = new ByteArrayOutputStream();
+                kept.write(entries, 0, entries.length);
+                pending.writeTo(kept);
+                pending = kept;
+                pendingCount += count;
+            }
+            try {
+                channel.truncate(start); // so that the entries are not written after a part of themselves
+            } catch (IOException ignored) {
+                // the failed write is reported
+            }
+            throw e;
+        }
+    }
+
+    /**
+     * Empties the journal file and starts it over as following the snapshot of the specified generation.
+     * Entries recorded but not yet synced are kept, as they were recorded after the snapshot was taken.
+     *
+     * @param generation the generation of the snapshot just saved.
+     * @throws IOException if the journal file cannot be written.
+     */
+    public void reset(long generation) throws IOException {
+        this.generation = generation;
+        this.fileVersion = VERSION;
+        if (channel == null) {
+            open();
+        }
+        ByteBuffer header = ByteBuffer.allocate(HEADER_LENGTH);
+        header.putInt(MAGIC).putInt(VERSION).putLong(generation).flip();
+        channel.truncate(0);
+        channel.position(0);
+        while (header.hasRemaining()) {
+            channel.write(header);
+        }
+        channel.force(false);
+    }
+
+    /**
+     * Closes the journal file. Entries recorded but not yet synced are kept.
+     *
+     * @throws IOException if the journal file cannot be closed.
+     */
+    public void close() throws IOException {
+        if (channel != null) {
+            channel.close();
+            channel = null;
+        }
+    }
+
+    /**
+     * Gets the length of the journal file, along with the entries not yet synced.
+     *
+     * @return the length of the journal in bytes.
+     * @throws IOException if the journal file cannot be read.
+     */
+    public long length() throws IOException {
+        long synced = channel == null ? 0 : channel.size();
+        synchronized (this) {
+            return synced + pending.size();
+        }
+    }
+
+    /**
+     * Gets the number of entries recorded since the last sync.
+     *
+     * @return the number of entries not yet synced.
+     */
+    public synchronized int getPendingCount() {
+        return pendingCount;
+    }
+
+    /**
+     * Gets the generation of the snapshot this journal follows.
+     *
+     * @return the generation of this journal.
+     */
+    public long getGeneration() {
+        return generation;
+    }
+
+    /**
+     * Checks whether the journal file was replayed from an earlier version of the format, so that entries must
+     * not be appended to it until it is started over by {@link #reset(long)}.
+     *
+     * @return true if the journal file is in an earlier format.
+     */
+    public boolean isOutdated() {
+        return fileVersion != VERSION;
+    }
+
+    /**
+     * Gets the journal file.
+     *
+     * @return the journal file.
+     */
+    public File getFile() {
+        return file;
+    }
+
+    // Methods for recording changes, called by the calendar after making them
+
+    void eventAdded(Event e) {
+        begin(EVENT_ADDED);
+        writeLong(e.getId());
+        writeEventData(e);
+        writeInt(e.getMemos().size());
+        for (Memo m : e.getMemos()) {
+            writeMemo(m);
+        }
+        end();
+    }
+
+    void eventDeleted(Event e) {
+        begin(EVENT_DELETED);
+        writeEvent(e);
+        end();
+    }
+
+    void eventTimeChanged(Event e, LocalDateTime start, LocalDateTime end) {
+        begin(EVENT_TIME_CHANGED);
+        writeEvent(e);
+        writeTime(start);
+        writeTime(end);
+        end();
+    }
+
+    void eventNameChanged(Event e, String name) {
+        begin(EVENT_NAME_CHANGED);
+        writeEvent(e);
+        writeString(name);
+        end();
+    }
+
+    void eventTagChanged(Event e, String tag) {
+        begin(EVENT_TAG_CHANGED);
+        writeEvent(e);
+        writeString(tag);
+        end();
+    }
+
+    void eventDuplicated(Event e, LocalDateTime start, LocalDateTime end) {
+        begin(EVENT_DUPLICATED);
+        writeEvent(e);
+        writeTime(start);
+        writeTime(end);
+        end();
+    }
+
+    void occurrenceMaterialized(SeriesOccurrence occurrence) {
+        begin(OCCURRENCE_MATERIALIZED);
+        writeOccurrence(occurrence);
+        end();
+    }
+
+    void occurrenceExcluded(SeriesOccurrence occurrence) {
+        begin(OCCURRENCE_EXCLUDED);
+        writeOccurrence(occurrence);
+        end();
+    }
+
+    void seriesCreated(String name, Collection<Event> events) {
+        begin(SERIES_CREATED);
+        writeString(name);
+        writeEvents(events);
+        end();
+    }
+
+    void ruleCreated(RecurringSeries rule, Duration duration, Period frequency, LocalDateTime first) {
+        begin(RULE_CREATED);
+        writeString(rule.getName());
+        writeDuration(duration);
+        writeInt(frequency.getYears());
+        writeInt(frequency.getMonths());
+        writeInt(frequency.getDays());
+        writeInt(rule.getOccurrenceCount());
+        writeTime(first);
+        end();
+    }
+
+    void memoCreated(String note, Collection<Event> events) {
+        begin(MEMO_CREATED);
+        writeString(note);
+        writeEvents(events);
+        end();
+    }
+
+    void memoLinked(Memo memo, Collection<Event> events) {
+        begin(MEMO_LINKED);
+        writeMemo(memo);
+        writeEvents(events);
+        end();
+    }
+
+    void seriesMemoLinked(Memo memo, Series series) {
+        begin(SERIES_MEMO_LINKED);
+        writeMemo(memo);
+        writeInt(calendar.seriesIndex(series));
+        end();
+    }
+
+    void memoDeleted(Memo memo) {
+        begin(MEMO_DELETED);
+        writeInt(memo.getIdNumber());
+        end();
+    }
+
+    void memosCleared(Event e) {
+        begin(MEMOS_CLEARED);
+        writeEvent(e);
+        end();
+    }
+
+    void memoNoteChanged(Memo memo, String note) {
+        begin(MEMO_NOTE_CHANGED);
+        writeInt(memo.getIdNumber());
+        writeString(note);
+        end();
+    }
+
+    void alertAdded(Alert alert) {
+        begin(ALERT_ADDED);
+        writeLong(alert.getId());
+        writeEvent(alert.getEvent());
+        writeAlertData(alert);
+        end();
+    }
+
+    void alertDeleted(Alert alert) {
+        begin(ALERT_DELETED);
+        writeLong(alert.getId());
+        end();
+    }
+
+    void alertsCleared(Event e) {
+        begin(ALERTS_CLEARED);
+        writeEvent(e);
+        end();
+    }
+
+    void alertEdited(Alert alert) {
+        begin(ALERT_EDITED);
+        writeLong(alert.getId());
+        writeAlertData(alert);
+        end();
+    }
+
+    void inviteAdded(Event e) {
+        begin(INVITE_ADDED);
+        writeEventData(e);
+        writeInt(e.getMemos().size());
+        for (Memo m : e.getMemos()) {
+            writeString(m.getNote());
+        }
+        end();
+    }
+
+    void invitesRemoved(List<Integer> positions) {
+        begin(INVITES_REMOVED);
+        writeInt(positions.size());
+        for (int position : positions) {
+            writeInt(position);
+        }
+        end();
+    }
+
+    // helper methods for replaying entries
+
+    /**
+     * Applies the entry read from the specified stream to the calendar.
+     */
+    private void apply(DataInputStream in) throws IOException {
+        byte type = in.readByte();
+        switch (type) {
+            case EVENT_ADDED: {
+                long id = in.readLong();
+                Event e = readEventData(in);
+                int memoCount = in.readInt();
+                for (int i = 0; i < memoCount; i++) {
+                    e.getMemos().add(readMemo(in));
+                }
+                calendar.addEvent(e);
+                check(e.getId() == id, "event " + id);
+                break;
+            }
+            case EVENT_DELETED:
+                calendar.deleteEvent(readEvent(in));
+                break;
+            case EVENT_TIME_CHANGED:
+                calendar.changeEventTime(readEvent(in), readTime(in), readTime(in));
+                break;
+            case EVENT_NAME_CHANGED:
+                calendar.changeEventName(readEvent(in), readString(in));
+                break;
+            case EVENT_TAG_CHANGED: {
+                Event e = readEvent(in);
+                calendar.changeEventTag(readString(in), e);
+                break;
+            }
+            case EVENT_DUPLICATED:
+                calendar.duplicateEvent(readEvent(in), readTime(in), readTime(in));
+                break;
+            case OCCURRENCE_MATERIALIZED:
+                calendar.materialize(readOccurrence(in));
+                break;
+            case OCCURRENCE_EXCLUDED:
+                calendar.deleteEvent(readOccurrence(in));
+                break;
+            case SERIES_CREATED:
+                calendar.addSeries(readString(in), readEvents(in));
+                break;
+            case RULE_CREATED: {
+                String name = readString(in);
+                Duration duration = readDuration(in);
+                Period frequency = Period.of(in.readInt(), in.readInt(), in.readInt());
+                int count = in.readInt();
+                calendar.addSeries(name, duration, frequency, count, readTime(in));
+                break;
+            }
+            case MEMO_CREATED: {
+                String note = readString(in);
+                calendar.createMemo(readEvents(in), note);
+                break;
+            }
+            case MEMO_LINKED: {
+                Memo memo = readMemo(in);
+                calendar.addMemo(memo, readEvents(in));
+                break;
+            }
+            case SERIES_MEMO_LINKED: {
+                Memo memo = readMemo(in);
+                calendar.addMemo(memo, readSeries(in));
+                break;
+            }
+            case MEMO_DELETED:
+                calendar.deleteMemo(readStoredMemo(in));
+                break;
+            case MEMOS_CLEARED:
+                calendar.deleteAllMemosforEvent(readEvent(in));
+                break;
+            case MEMO_NOTE_CHANGED:
+                calendar.changeMemoNote(readStoredMemo(in), readString(in));
+                break;
+            case ALERT_ADDED: {
+                long id = in.readLong();
+                Event e = readEvent(in);
+                Alert alert = readAlertData(in, e);
+                calendar.addAlert(e, alert);
+                check(alert.getId() == id, "alert " + id);
+                break;
+            }
+            case ALERT_DELETED:
+                calendar.deleteAlert(readAlert(in));
+                break;
+            case ALERTS_CLEARED:
+                calendar.deleteAllAlertsforEvent(readEvent(in));
+                break;
+            case ALERT_EDITED: {
+                Alert alert = readAlert(in);
+                if (in.readByte() == 'f') {
+                    calendar.editFrequentAlert((FrequentAlert) alert, readString(in), readDuration(in));
+                } else {
+                    calendar.editIndividualAlert((IndividualAlert) alert, readString(in), readTime(in));
+                }
+                break;
+            }
+            case INVITE_ADDED: {
+                Event e = readEventData(in);
+                int memoCount = in.readInt();
+                for (int i = 0; i < memoCount; i++) {
+                    e.getMemos().add(new Memo(readString(in)));
+                }
+                calendar.addEventNotification(e);
+                break;
+            }
+            case INVITES_REMOVED: {
+                int count = in.readInt();
+                List<Integer> positions = new ArrayList<>(count);
+                for (int i = 0; i < count; i++) {
+                    positions.add(in.readInt());
+                }
+                calendar.removeEventInvitesAt(positions);
+                break;
+            }
+            default:
+                throw new IOException("Unknown journal entry type " + type + ".");
+        }
+    }
+
+    private void open() throws IOException {
+        channel = FileChannel.open(file.toPath(), StandardOpenOption.CREATE, StandardOpenOption.READ,
+                StandardOpenOption.WRITE);
+    }
+
+    private boolean hasHeader(long generation) throws IOException {
+        if (channel.size() < HEADER_LENGTH) {
+            return false;
+        }
+        ByteBuffer header = ByteBuffer.allocate(HEADER_LENGTH);
+        channel.position(0);
+        while (header.hasRemaining() && channel.read(header) >= 0) {
+            // reads the whole header
+        }
+        header.flip();
+        if (header.getInt() != MAGIC) {
+            return false;
+        }
+        int version = header.getInt();
+        if (version < FIRST_VERSION || version > VERSION || header.getLong() != generation) {
+            return false;
+        }
+        fileVersion = version;
+        return true;
+    }
+
+    private static void check(boolean condition, String what) throws IOException {
+        if (!condition) {
+            throw new IOException("The journal does not match the calendar at " + what + ".");
+        }
+    }
+
+    private Event readEvent(DataInputStream in) throws IOException {
+        long id = in.readLong();
+        Event e;
+        if (id != 0) {
+            e = calendar.getEvent(id);
+        } else {
+            int series = in.readInt();
+            e = series < 0 ? null : readOccurrence(series, in.readInt());
+        }
+        check(e != null, "event " + id);
+        return e;
+    }
+
+    private SeriesOccurrence readOccurrence(DataInputStream in) throws IOException {
+        return readOccurrence(in.readInt(), in.readInt());
+    }
+
+    private SeriesOccurrence readOccurrence(int series, int index) throws IOException {
+        Series s = calendar.getSeriesAt(series);
+        SeriesOccurrence occurrence = s instanceof RecurringSeries ? ((RecurringSeries) s).getOccurrence(index) : null;
+        check(occurrence != null, "occurrence " + index + " of series " + series);
+        return occurrence;
+    }
+
+    private ArrayList<Event> readEvents(DataInputStream in) throws IOException {
+        int count = in.readInt();
+        ArrayList<Event> events = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            events.add(readEvent(in));
+        }
+        return events;
+    }
+
+    private Series readSeries(DataInputStream in) throws IOException {
+        int index = in.readInt();
+        Series s = calendar.getSeriesAt(index);
+        check(s != null, "series " + index);
+        return s;
+    }
+
+    /**
+     * Reads a memo, which is the stored memo with the id number read if there is one, otherwise a new memo that
+     * will be given that id number when it is stored.
+     */
+    private Memo readMemo(DataInputStream in) throws IOException {
+        int id = in.readInt();
+        String note = readString(in);
+        Memo memo = calendar.getMemoSystem().findMemo(id);
+        return memo != null ? memo : new Memo(note);
+    }
+
+    private Memo readStoredMemo(DataInputStream in) throws IOException {
+        int id = in.readInt();
+        Memo memo = calendar.getMemoSystem().findMemo(id);
+        check(memo != null, "memo " + id);
+        return memo;
+    }
+
+    private Alert readAlert(DataInputStream in) throws IOException {
+        long id = in.readLong();
+        Alert alert = calendar.getAlertSystem().getAlert(id);
+        check(alert != null, "alert " + id);
+        return alert;
+    }
+
+    private Alert readAlertData(DataInputStream in, Event e) throws IOException {
+        byte type = in.readByte();
+        String message = readString(in);
+        if (type == 'f') {
+            return new FrequentAlert(e.getStartTime(), e.getEventName(), message, readDuration(in));
+        }
+        return new IndividualAlert(e.getStartTime(), e.getEventName(), message, readTime(in));
+    }
+
+    private Event readEventData(DataInputStream in) throws IOException {
+        String name = readString(in);
+        Event e = new Event(name, readTime(in), readTime(in));
+        e.setTag(readString(in));
+        e.changeStatus(readString(in));
+        return e;
+    }
+
+    private String readString(DataInputStream in) throws IOException {
+        if (fileVersion > 1 && !in.readBoolean()) {
+            return null;
+        }
+        byte[] bytes = new byte[in.readInt()];
+        in.readFully(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    private static LocalDateTime readTime(DataInputStream in) throws IOException {
+        return LocalDateTime.ofEpochSecond(in.readLong(), in.readInt(), ZoneOffset.UTC);
+    }
+
+    private static Duration readDuration(DataInputStream in) throws IOException {
+        return Duration.ofSeconds(in.readLong(), in.readInt());
+    }
+
+    // helper methods for recording entries
+
+    private void begin(byte type) {
+        entry.reset();
+        writeByte(type);
+    }
+
+    /**
+     * Frames the entry just written with its length and checksum and adds it to the pending entries.
+     */
+    private synchronized void end() {
+        CRC32 crc = new CRC32();
+        byte[] payload = entry.toByteArray();
+        crc.update(payload, 0, payload.length);
+        ByteBuffer frame = ByteBuffer.allocate(8);
+        frame.putInt(payload.length).putInt((int) crc.getValue());
+        pending.write(frame.array(), 0, 8);
+        pending.write(payload, 0, payload.length);
+        pendingCount++;
+    }
+
+    private synchronized void clearPending() {
+        pending.reset();
+        pendingCount = 0;
+    }
+
+    /**
+     * Writes a reference to the specified event: its id number if it is stored in the calendar, otherwise its
+     * place in a recurring series.
+     */
+    private void writeEvent(Event e) {
+        writeLong(e.getId());
+        if (e.getId() == 0) {
+            if (e instanceof SeriesOccurrence) {
+                writeOccurrenceIndexes((SeriesOccurrence) e);
+            } else {
+                writeInt(-1);
+            }
+        }
+    }
+
+    private void writeEvents(Collection<Event> events) {
+        writeInt(events.size());
+        for (Event e : events) {
+            writeEvent(e);
+        }
+    }
+
+    private void writeOccurrence(SeriesOccurrence occurrence) {
+        writeOccurrenceIndexes(occurrence);
+    }
+
+    private void writeOccurrenceIndexes(SeriesOccurrence occurrence) {
+        writeInt(calendar.seriesIndex(occurrence.getRule()));
+        writeInt(occurrence.getIndex());
+    }
+
+    private void writeMemo(Memo memo) {
+        writeInt(memo.getIdNumber());
+        writeString(memo.getNote());
+    }
+
+    private void writeEventData(Event e) {
+        writeString(e.getEventName());
+        writeTime(e.getStartTime());
+        writeTime(e.getEndTime());
+        writeString(e.getTag());
+        writeString(e.getStatus());
+    }
+
+    private void writeAlertData(Alert alert) {
+        if (alert instanceof FrequentAlert) {
+            writeByte('f');
+            writeString(alert.getMessage());
+            writeDuration(((FrequentAlert) alert).getFrequency());
+        } else {
+            writeByte('i');
+            writeString(alert.getMessage());
+            writeTime(((IndividualAlert) alert).getTime());
+        }
+    }
+
+    /**
+     * Writes whether the string is not <code>null</code>, then the string.
+     */
+    private void writeString(String s) {
+        entry.write(s == null ? 0 : 1);
+        if (s == null) {
+            return;
+        }
+        byte[] bytes = s.getBytes(StandardCharsets.UTF_8);
+        writeInt(bytes.length);
+        entry.write(bytes, 0, bytes.length);
+    }
+
+    private void writeTime(LocalDateTime time) {
+        writeLong(time.toEpochSecond(ZoneOffset.UTC));
+        writeInt(time.getNano());
+    }
+
+    private void writeDuration(Duration d) {
+        writeLong(d.getSeconds());
+        writeInt(d.getNano());
+    }
+
+    private void writeByte(int b) {
+        entry.write(b);
+    }
+
+    private void writeInt(int i) {
+        try {
+            out.writeInt(i);
+        } catch (IOException e) {
+            throw new IllegalStateException(e); // cannot happen when writing to memory
+        }
+    }
+
+    private void writeLong(long l) {
+        try {
+            out.writeLong(l);
+        } catch (IOException e) {
+            throw new IllegalStateException(e); // cannot happen when writing to memory
+        }
+    }
+}
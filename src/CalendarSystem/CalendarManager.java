@@ -1,7 +1,25 @@
 package CalendarSystem;
 
 import java.io.*;
+import java.nio.channels.FileLock;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.time.LocalDateTime;
 import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
 import java.util.logging.ConsoleHandler;
 import java.util.logging.Handler;
 import java.util.logging.Level;
@@ -10,13 +28,41 @@ import java.util.logging.Logger;
 /**
  * CalendarManager is a class that is user-specific and handles the creation and storage of the user's calendar(s).
  * It is also responsible for saving the user's calendar information to a .ser file.
+ * <p>
+ * The .ser file holds a snapshot of the calendar in the binary format of {@link CalendarCodec}, and the changes
+ * made since are appended to a journal file next to it. Saving only writes the new journal entries, until the
+ * journal grows large enough for a new snapshot to be cheaper to read back; reading the calendar replays the
+ * journal on top of the snapshot. Files saved with Java serialization by earlier versions are still read, and
+ * rewritten in the binary format.
+ * <p>
+ * Events with no memos, series or alerts, which make up most calendars, are kept out of the snapshot in a
+ * {@link SegmentedEventStore}: a file per month of events, listed by a manifest named after the generation of
+ * the snapshot. The files are mapped into memory rather than read, the months around the current time when the
+ * calendar is read and the others in the background, and a snapshot only writes the months that changed.
+ * <p>
+ * Past events can be archived, moving them with their memos and expired alerts into a compressed
+ * {@link CalendarArchive} file that is read only when the events before its cutoff are looked up.
+ * <p>
+ * Events shared with the user are put into the user's {@link EventInbox} rather than into the user's calendar,
+ * and received when the user logs in.
+ * <p>
+ * Files are written on a writer thread of their own, so that saving does not hold up the thread changing the
+ * calendar; the snapshot or journal entries to write are taken on the changing thread, so they are consistent.
+ * <p>
+ * Calendars selected recently stay in memory after another calendar is selected, up to a number of calendars and
+ * an estimated heap size, so switching back to one does not read it again.
+ *
+ * @see CalendarCodec
+ * @see CalendarJournal
+ * @see SegmentedEventStore
+ * @see CalendarArchive
  */
 public class CalendarManager {
 
     /**
      * The user's selected calendar.
      */
-    private Calendar calendar;
+    private volatile Calendar calendar;
 
     /**
      * The name of the file containing the user's selected calendar.
@@ -28,9 +74,208 @@ public class CalendarManager {
      */
     private String userPath;
 
+    /**
+     * The names of the user's calendars, in the order they were created, as listed by the user's manifest of
+     * calendars; <code>null</code> until they are first looked up.
+     */
+    private LinkedHashSet<String> userCalendars;
+
+    /**
+     * The scheduler delivering the alerts of the selected calendar when they are due.
+     */
+    private final AlertScheduler alertScheduler = new AlertScheduler();
+
+    /**
+     * The journal of the changes made to the selected calendar since its snapshot was saved, or <code>null</code>
+     * if a snapshot is to be saved next.
+     */
+    private volatile CalendarJournal journal;
+
+    /**
+     * The generation of the snapshot of the selected calendar, counting the snapshots saved to its file.
+     */
+    private long generation;
+
+    /**
+     * The length in bytes of the snapshot of the selected calendar, as of the last snapshot written.
+     */
+    private volatile long snapshotLength;
+
+    /**
+     * The length a journal may grow to before a snapshot is saved, however small the snapshot is.
+     */
+    private static final long MIN_JOURNAL_LENGTH = 64 * 1024;
+
+    /**
+     * The time a save waits for more changes to be saved with it.
+     */
+    private static final long SAVE_DELAY_MILLIS = 200;
+
+    /**
+     * A calendar kept in memory while another calendar is selected, along with what is needed to save it.
+     */
+    private static class CachedCalendar {
+
+        private final Calendar calendar;
+
+        private final CalendarJournal journal;
+
+        private final long generation;
+
+        private final long snapshotLength;
+
+        private CachedCalendar(Calendar calendar, CalendarJournal journal, long generation, long snapshotLength) {
+            this.calendar = calendar;
+            this.journal = journal;
+            this.generation = generation;
+            this.snapshotLength = snapshotLength;
+        }
+
+        /**
+         * Estimates the heap size of this calendar from the size of its files.
+         */
+        private long estimateHeapBytes() {
+            long fileBytes = snapshotLength;
+            try {
+                fileBytes += journal.length();
+            } catch (IOException ex) {
+                // estimated from the snapshot alone
+            }
+            return fileBytes * HEAP_BYTES_PER_FILE_BYTE;
+        }
+    }
+
+    /**
+     * A snapshot of a calendar waiting to be written to file. The calendar is encoded on the writer thread, as
+     * it is when the snapshot is written.
+     */
+    private static class Snapshot {
+
+        private final File file;
+
+        private final Calendar calendar;
+
+        private final long generation;
+
+        /**
+         * The journal to start over once the snapshot is written.
+         */
+        private final CalendarJournal journal;
+
+        /**
+         * The encoded calendar, or <code>null</code> if it is not encoded yet.
+         */
+        private byte[] bytes;
+
+        /**
+         * The files of the event store of the snapshot.
+         */
+        private SegmentedEventStore.Update events;
+
+        /**
+         * The archive file of the snapshot, or <code>null</code> if it has none.
+         */
+        private File archive;
+
+        private Snapshot(File file, Calendar calendar, long generation, CalendarJournal journal) {
+            this.file = file;
+            this.calendar = calendar;
+            this.generation = generation;
+            this.journal = journal;
+        }
+
+        /**
+         * Encodes the calendar as it is now, with its event store, unless it is encoded already. The journal
+         * entries recorded so far are dropped, as the snapshot includes them.
+         *
+         * @throws IOException if the events do not fit in event store files.
+         */
+        private void encode() throws IOException {
+            if (bytes != null) {
+                return;
+            }
+            ByteArrayOutputStream encoded = new ByteArrayOutputStream();
+            events = calendar.readLocked(() -> { // no change is made while it is encoded
+                SegmentedEventStore.Update update = calendar.getEventStore().write(file, generation,
+                        calendar.getPageableEvents());
+                // the snapshot records the generation its journal must have
+                CalendarCodec.write(calendar, generation, update.getCount(), encoded);
+                archive = calendar.getArchive().getFile();
+                journal.discard();
+                return update;
+            });
+            bytes = encoded.toByteArray();
+        }
+    }
+
+    /**
+     * The thread writing the selected calendar to file.
+     */
+    private final ScheduledExecutorService writer = Executors.newSingleThreadScheduledExecutor(task -> {
+        Thread thread = new Thread(task, "Calendar writer");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    /**
+     * The write of the changes saved so far, or <code>null</code> if none is scheduled.
+     */
+    private ScheduledFuture<?> scheduledSave;
+
+    /**
+     * The snapshots waiting to be written, by file.
+     */
+    private final Map<File, Snapshot> pendingSnapshots = new LinkedHashMap<>();
+
+    /**
+     * The journals whose entries are waiting to be written.
+     */
+    private final Set<CalendarJournal> unsyncedJournals = new LinkedHashSet<>();
+
+    /**
+     * The calendars read or created before the selected calendar, by file name, least recently used first.
+     * They stay in memory, recording their changes in their journals, so that selecting one of them again does
+     * not read it from file.
+     */
+    private final LinkedHashMap<String, CachedCalendar> cachedCalendars = new LinkedHashMap<>(16, 0.75f, true);
+
+    /**
+     * The greatest number of calendars kept in memory besides the selected one.
+     */
+    private static final int MAX_CACHED_CALENDARS = 4;
+
+    /**
+     * The greatest estimated heap size of the calendars kept in memory besides the selected one.
+     */
+    private static final long MAX_CACHED_BYTES = Runtime.getRuntime().maxMemory() / 4;
+
+    /**
+     * The estimated heap size of a calendar per byte of its files, measured on calendars of events with memos and
+     * alerts, indexes included.
+     */
+    private static final int HEAP_BYTES_PER_FILE_BYTE = 40;
+
+    /**
+     * The last failure to write the calendar since the last flush, or <code>null</code> if there was none.
+     */
+    private IOException saveFailure;
+
+    /**
+     * The file of a calendar that could not be read, which is not written over until it is read, or
+     * <code>null</code> if every calendar read was read.
+     */
+    private String unreadableFile;
+
     private static final Logger logger = Logger.getLogger(CalendarManager.class.getName());
     private static final Handler consoleHandler = new ConsoleHandler();
 
+    static {
+        // Associate the handler with the logger, once for all the managers.
+        logger.setLevel(Level.ALL);
+        consoleHandler.setLevel(Level.ALL);
+        logger.addHandler(consoleHandler);
+    }
+
     /**
      * Creates a new empty initialBuild.CalendarManager with the specified filePath as the username.
      *
@@ -39,15 +284,10 @@ public class CalendarManager {
      * @throws ClassNotFoundException
      */
     public CalendarManager(String filePath) throws ClassNotFoundException, IOException {
-        this.calendar = new Calendar();
+        setCalendar(new Calendar());
         this.userPath = filePath;
         this.filePath = filePath + "default.ser"; // default name of calendar
 
-        // Associate the handler with the logger.
-        logger.setLevel(Level.ALL);
-        consoleHandler.setLevel(Level.ALL);
-        logger.addHandler(consoleHandler);
-
         // Reads serializable objects from file.
         // Populates the record list using stored data, if it exists.
         File file = new File(this.filePath);
@@ -67,65 +307,557 @@ public class CalendarManager {
      * @throws IOException
      */
     public void createCalendar(String name) throws IOException {
-        saveToFile();
+        saveSelected();
+        cacheSelected();
         this.filePath = this.userPath + name + ".ser";
-        this.calendar = new Calendar();
+        cachedCalendars.remove(filePath);
+        setCalendar(new Calendar());
         File file = new File(filePath);
         file.createNewFile();
         saveToFile();
+        evictCalendars();
+        if (getUserCalendarSet().add(name)) {
+            appendLine(calendarManifest(), name);
+        }
     }
 
     /**
-     * Changes the user's selected calendar to that with the specified name and reads from its file.
+     * Changes the user's selected calendar to that with the specified name and reads from its file, unless it
+     * is still in memory from being selected recently.
      *
      * @param name the name of one of the user's calendars
      * @throws ClassNotFoundException
      * @throws IOException
      */
     public void selectCalendar(String name) throws ClassNotFoundException, IOException {
-        saveToFile();
-        this.filePath = this.userPath + name + ".ser";
-        File file = new File(filePath);
-        if (file.exists()) {
-            readFromFile();
+        String selected = this.userPath + name + ".ser";
+        if (selected.equals(filePath)) {
+            return;
+        }
+        saveSelected();
+        cacheSelected();
+        String previous = this.filePath;
+        this.filePath = selected;
+        CachedCalendar cached = cachedCalendars.remove(filePath);
+        if (cached != null) {
+            journal = cached.journal;
+            generation = cached.generation;
+            snapshotLength = cached.snapshotLength;
+            setCalendar(cached.calendar);
         } else {
-            file.createNewFile();
+            flush(); // an evicted calendar is written back before it is read again
+            File file = new File(filePath);
+            if (file.exists()) {
+                try {
+                    readFromFile();
+                } catch (IOException | ClassNotFoundException | RuntimeException ex) {
+                    reselect(previous); // the calendar selected before stays selected
+                    throw ex;
+                }
+            } else {
+                setCalendar(new Calendar());
+                file.createNewFile();
+            }
+        }
+        evictCalendars();
+    }
+
+    /**
+     * Saves the selected calendar before another is selected, unless its file could not be read.
+     */
+    private void saveSelected() throws IOException {
+        if (!filePath.equals(unreadableFile)) {
+            saveToFile();
+        }
+    }
+
+    /**
+     * Selects the calendar with the specified file again, from memory, after another calendar could not be read.
+     */
+    private void reselect(String previous) {
+        this.filePath = previous;
+        CachedCalendar cached = cachedCalendars.remove(previous);
+        if (cached != null) {
+            journal = cached.journal;
+            generation = cached.generation;
+            snapshotLength = cached.snapshotLength;
+            setCalendar(cached.calendar);
+        }
+    }
+
+    /**
+     * Keeps the selected calendar in memory, with its journal, as a calendar that is no longer selected.
+     */
+    private void cacheSelected() {
+        if (journal != null) {
+            cachedCalendars.put(filePath, new CachedCalendar(calendar, journal, generation, snapshotLength));
+        }
+        journal = null;
+        generation = 0;
+        snapshotLength = 0;
+    }
+
+    /**
+     * Removes the least recently used calendars from memory while there are too many of them, or they take up
+     * too much of the heap. Their changes are written back to file, and their journals closed, on the writer
+     * thread.
+     */
+    private void evictCalendars() {
+        long cachedBytes = 0;
+        for (CachedCalendar cached : cachedCalendars.values()) {
+            cachedBytes += cached.estimateHeapBytes();
+        }
+        Iterator<CachedCalendar> eldest = cachedCalendars.values().iterator();
+        while (eldest.hasNext() && (cachedCalendars.size() > MAX_CACHED_CALENDARS
+                || cachedBytes > MAX_CACHED_BYTES)) {
+            CachedCalendar evicted = eldest.next();
+            eldest.remove();
+            cachedBytes -= evicted.estimateHeapBytes();
+            evicted.calendar.setJournal(null);
+            if (!writer.isShutdown()) {
+                writer.execute(() -> {
+                    writeChanges();
+                    closeQuietly(evicted.journal);
+                });
+            }
         }
     }
 
     /**
-     * Reads from the file storing the user's calendar information.
+     * Reads from the file storing the user's calendar information, and replays the changes recorded in its
+     * journal since.
+     * <p>
+     * If the file cannot be read, a copy of it is kept next to it, and the calendar is not saved over it until it
+     * is read: the manager keeps the calendar it had.
      *
-     * @throws ClassNotFoundException
+     * @throws ClassNotFoundException if the file holds a class this program does not have.
+     * @throws IOException            if the file cannot be read.
      */
-    public void readFromFile() throws ClassNotFoundException {
+    public void readFromFile() throws ClassNotFoundException, IOException {
+        closeJournal();
+        File snapshot = new File(filePath);
         try {
-            InputStream file = new FileInputStream(filePath);
-            InputStream buffer = new BufferedInputStream(file);
-            ObjectInput input = new ObjectInputStream(buffer);
+            readSnapshot(snapshot);
+            unreadableFile = null;
+        } catch (IOException | ClassNotFoundException | RuntimeException ex) {
+            unreadableFile = filePath;
+            logger.log(Level.SEVERE, "Cannot read " + snapshot + "; a copy is kept as " + keepAside(snapshot)
+                    + " and it will not be saved over.", ex);
+            throw ex;
+        }
+    }
+
+    /**
+     * Reads the calendar in the specified file and replays its journal, then selects it.
+     */
+    private void readSnapshot(File snapshot) throws IOException, ClassNotFoundException {
+        Calendar read;
+        boolean migrate;
+        try (InputStream buffer = new BufferedInputStream(new FileInputStream(snapshot))) {
+            byte[] header = new byte[4];
+            buffer.mark(header.length);
+            int headerLength = buffer.read(header);
+            buffer.reset();
+
+            migrate = headerLength > 0 && (headerLength < header.length || !CalendarCodec.isCalendarFile(header));
+            if (headerLength <= 0) { // created, but not written yet
+                read = new Calendar();
+                generation = 0;
+            } else if (migrate) {
+                read = readSerialized(buffer);
+            } else {
+                CalendarCodec.Snapshot decoded = CalendarCodec.read(buffer);
+                read = decoded.getCalendar();
+                generation = decoded.getGeneration();
+                if (decoded.getPagedCount() > 0) {
+                    read.setEventStore(openEventStore(snapshot, decoded.getPagedCount()));
+                }
+                if (decoded.getArchiveGeneration() > 0) {
+                    read.setArchive(CalendarArchive.open(archiveFile(snapshot, decoded.getArchiveGeneration()),
+                            decoded.getArchiveGeneration(), decoded.getArchiveDeleted()));
+                }
+            }
+        }
+        snapshotLength = snapshot.length();
 
-            // deserialize
-            calendar = (Calendar) input.readObject();
-            input.close();
+        CalendarJournal replayed = new CalendarJournal(journalFile());
+        int changes = replayed.replay(read, generation);
+        if (changes > 0) {
+            logger.log(Level.FINE, "Replayed " + changes + " changes from " + replayed.getFile() + ".");
+        }
+        read.setJournal(replayed);
+        journal = replayed;
+        setCalendar(read);
+        if (migrate) { // rewrites the file in the binary format, which the journal then follows
+            Files.copy(snapshot.toPath(), new File(filePath + ".old").toPath(), StandardCopyOption.REPLACE_EXISTING);
+        }
+        if (migrate || replayed.isOutdated()) { // the journal is started over in the current format
+            takeSnapshot();
+            scheduleSave();
+        }
+    }
+
+    /**
+     * Copies the specified file, which could not be read, next to it, unless a copy was already kept.
+     *
+     * @return the copy.
+     */
+    private static File keepAside(File file) {
+        File copy = new File(file.getPath() + ".unreadable");
+        try {
+            if (!copy.exists()) {
+                Files.copy(file.toPath(), copy.toPath());
+            }
         } catch (IOException ex) {
-            logger.log(Level.SEVERE, "Cannot read from input.", ex);
+            logger.log(Level.WARNING, "Cannot copy " + file + ".", ex);
+        }
+        return copy;
+    }
+
+    /**
+     * Refuses to write the selected calendar if its file could not be read, as writing it would lose what the file
+     * holds.
+     */
+    private void checkReadable() throws IOException {
+        if (filePath.equals(unreadableFile)) {
+            throw new IOException(filePath + " could not be read, and is not saved over.");
+        }
+    }
+
+    /**
+     * Opens the event store of the snapshot in the specified file, which must hold the specified number of
+     * events. The months of the store that are not mapped at once are mapped on the writer thread.
+     */
+    private SegmentedEventStore openEventStore(File snapshot, int pagedCount) throws IOException {
+        SegmentedEventStore store = SegmentedEventStore.open(snapshot, generation, LocalDateTime.now());
+        if (store.size() != pagedCount) {
+            throw new IOException("The event store of " + snapshot + " does not match it.");
+        }
+        if (!writer.isShutdown()) {
+            writer.execute(() -> {
+                try {
+                    store.openAll();
+                } catch (IOException ex) {
+                    logger.log(Level.WARNING, "Cannot read the event store of " + snapshot + ".", ex);
+                }
+            });
         }
+        return store;
     }
 
     /**
-     * Writes the calendar to file at filePath.
+     * Reads a calendar saved with Java serialization, before calendars were saved in the binary format, from the
+     * specified stream.
+     *
+     * @throws ClassNotFoundException
+     */
+    private Calendar readSerialized(InputStream buffer) throws IOException, ClassNotFoundException {
+        ObjectInput input = new ObjectInputStream(buffer);
+
+        // deserialize
+        Calendar read = (Calendar) input.readObject();
+        try {
+            generation = input.readLong();
+        } catch (EOFException ex) { // saved before calendars had journals
+            generation = 0;
+        }
+        return read;
+    }
+
+    /**
+     * Saves the changes made to the calendar since it was last saved. The changes are appended to the journal
+     * of the calendar, or, once the journal has grown past half the size of the calendar's snapshot, a new
+     * snapshot is written in place of both.
+     * <p>
+     * The calendar is only marked as changed here: the file is written on the writer thread a moment later, so
+     * that a burst of changes is saved with one write. Call {@link #flush()} to wait for the write.
      *
      * @throws IOException
      */
     public void saveToFile() throws IOException {
+        checkReadable();
+        if (journal == null || (!snapshotPending() && journal.length() > Math.max(MIN_JOURNAL_LENGTH,
+                snapshotLength / 2))) {
+            takeSnapshot();
+        }
+        scheduleSave();
+    }
+
+    /**
+     * Schedules the changes saved so far to be written, unless a write is already scheduled.
+     */
+    private synchronized void scheduleSave() {
+        if (journal != null) {
+            unsyncedJournals.add(journal);
+        }
+        if (scheduledSave == null && !writer.isShutdown()) {
+            scheduledSave = writer.schedule(this::writeChanges, SAVE_DELAY_MILLIS, TimeUnit.MILLISECONDS);
+        }
+    }
+
+    /**
+     * Writes the changes saved so far to file, and waits until they are on disk.
+     *
+     * @throws IOException if a change could not be written since the last flush.
+     */
+    public void flush() throws IOException {
+        synchronized (this) {
+            if (scheduledSave != null) {
+                scheduledSave.cancel(false);
+                scheduledSave = null;
+            }
+        }
+        if (!writer.isShutdown()) {
+            try {
+                writer.submit(this::writeChanges).get();
+            } catch (InterruptedException ex) {
+                Thread.currentThread().interrupt();
+                throw new InterruptedIOException("Interrupted while saving the calendar.");
+            } catch (ExecutionException ex) {
+                throw new IOException("Cannot save the calendar.", ex.getCause());
+            }
+        }
+        IOException failure;
+        synchronized (this) {
+            failure = saveFailure;
+            saveFailure = null;
+        }
+        if (failure != null) {
+            throw failure;
+        }
+    }
+
+    /**
+     * Moves the events of the selected calendar that ended before the specified time into its archive, along
+     * with their memos and expired alerts, and saves the calendar. Events in a series, event invites and events
+     * with alerts still to come stay in the calendar. The events archived earlier are written into the new
+     * archive with the others.
+     *
+     * @param cutoff the time the events to archive ended before; later times are taken as now.
+     * @return the number of events archived.
+     * @throws IOException if the archive or the calendar cannot be written.
+     */
+    public int archiveEventsBefore(LocalDateTime cutoff) throws IOException {
+        LocalDateTime now = LocalDateTime.now();
+        if (cutoff.isAfter(now)) {
+            cutoff = now;
+        }
+        flush(); // the snapshot written below must follow the new archive
+        CalendarArchive old = calendar.getArchive();
+        List<ArchivedEvent> moved = calendar.archiveEvents(cutoff);
+        if (moved.isEmpty()) {
+            return 0;
+        }
+        List<Event> archived = new ArrayList<>(old.getEvents());
+        archived.addAll(moved);
+        if (old.getCutoff() != null && old.getCutoff().isAfter(cutoff)) {
+            cutoff = old.getCutoff();
+        }
+        long next = generation + 1; // the generation of the snapshot taken below
+        File file = archiveFile(new File(filePath), next);
+        writeSynced(file, CalendarArchive.write(next, cutoff, archived));
+        calendar.setArchive(CalendarArchive.open(file, next, new ArrayList<Long>()));
+        takeSnapshot();
+        scheduleSave();
+        logger.log(Level.FINE, "Archived " + moved.size() + " events in " + file + ".");
+        return moved.size();
+    }
+
+    /**
+     * Writes the changes saved so far to file and closes the files of the selected calendar. Changes made from
+     * now on are not saved, and alerts are no longer delivered.
+     *
+     * @throws IOException if a change could not be written since the last flush.
+     */
+    public void close() throws IOException {
+        if (writer.isShutdown()) {
+            return;
+        }
+        try {
+            flush();
+        } finally {
+            writer.shutdown();
+            alertScheduler.stop();
+            closeJournal();
+            for (CachedCalendar cached : cachedCalendars.values()) {
+                cached.calendar.setJournal(null);
+                closeQuietly(cached.journal);
+            }
+            cachedCalendars.clear();
+        }
+    }
+
+    /**
+     * Marks the whole calendar to be saved as a new snapshot and event store, which the writer thread encodes
+     * and writes to file at filePath. The journal entries recorded until the calendar is encoded are dropped
+     * then, as the snapshot includes them.
+     *
+     * @throws IOException if the calendar file could not be read.
+     */
+    private void takeSnapshot() throws IOException {
+        checkReadable();
+        generation++;
+        if (journal == null) {
+            journal = new CalendarJournal(journalFile());
+            journal.attach(calendar);
+            calendar.setJournal(journal);
+        }
+        synchronized (this) {
+            pendingSnapshots.put(new File(filePath), new Snapshot(new File(filePath), calendar, generation,
+                    journal));
+        }
+    }
+
+    private synchronized boolean snapshotPending() {
+        return pendingSnapshots.containsKey(new File(filePath));
+    }
+
+    /**
+     * Writes the pending snapshot, if there is one, and the pending journal entries to file. Runs on the writer
+     * thread.
+     */
+    private void writeChanges() {
+        List<Snapshot> snapshots;
+        List<CalendarJournal> journals;
+        synchronized (this) {
+            scheduledSave = null;
+            snapshots = new ArrayList<>(pendingSnapshots.values());
+            pendingSnapshots.clear();
+            journals = new ArrayList<>(unsyncedJournals);
+            unsyncedJournals.clear();
+        }
+        for (Snapshot snapshot : snapshots) {
+            try {
+                writeSnapshot(snapshot);
+                if (snapshot.calendar == calendar) {
+                    snapshotLength = snapshot.bytes.length;
+                }
+            } catch (IOException ex) {
+                logger.log(Level.SEVERE, "Cannot save the calendar.", ex);
+                synchronized (this) {
+                    saveFailure = ex;
+                    pendingSnapshots.putIfAbsent(snapshot.file, snapshot); // tried again with the next save
+                    journals.remove(snapshot.journal); // its entries follow the snapshot
+                    unsyncedJournals.add(snapshot.journal);
+                }
+            }
+        }
+        for (CalendarJournal changes : journals) {
+            try {
+                changes.sync();
+            } catch (IOException ex) {
+                logger.log(Level.SEVERE, "Cannot save the calendar.", ex);
+                synchronized (this) {
+                    saveFailure = ex;
+                    unsyncedJournals.add(changes);
+                }
+            }
+        }
+    }
+
+    /**
+     * Encodes the specified snapshot, writes it to its file and starts its journal over.
+     * The changed files of the event store of the snapshot are written first, under names of their own
+     * generation. The snapshot is written to a temporary file and then moved over the old one, so a crash leaves
+     * either the old snapshot, its event store and its journal or the new snapshot and its event store. The
+     * files of the event store and the archives that the snapshot no longer uses are deleted last.
+     */
+    private static void writeSnapshot(Snapshot snapshot) throws IOException {
+        snapshot.encode();
+        for (Map.Entry<File, byte[]> f : snapshot.events.getFiles().entrySet()) {
+            writeSynced(f.getKey(), f.getValue());
+        }
+        File temp = new File(snapshot.file.getPath() + ".tmp");
+        writeSynced(temp, snapshot.bytes);
+        try {
+            Files.move(temp.toPath(), snapshot.file.toPath(), StandardCopyOption.REPLACE_EXISTING,
+                    StandardCopyOption.ATOMIC_MOVE);
+        } catch (AtomicMoveNotSupportedException ex) {
+            Files.move(temp.toPath(), snapshot.file.toPath(), StandardCopyOption.REPLACE_EXISTING);
+        }
+        snapshot.journal.reset(snapshot.generation);
+        Set<File> referenced = new HashSet<>(snapshot.events.getReferencedFiles());
+        if (snapshot.archive != null) {
+            referenced.add(snapshot.archive);
+        }
+        deleteUnusedFiles(snapshot.file, referenced);
+    }
+
+    /**
+     * Writes the specified bytes to the specified file, and waits until they are on disk.
+     */
+    private static void writeSynced(File target, byte[] bytes) throws IOException {
+        FileOutputStream file = new FileOutputStream(target);
+        try {
+            file.write(bytes);
+            file.getFD().sync();
+        } finally {
+            file.close();
+        }
+    }
+
+    /**
+     * Deletes the event store and archive files of the specified snapshot file but the specified ones. A file
+     * that cannot be deleted yet, as it may be while it is mapped, is deleted after a later snapshot.
+     */
+    private static void deleteUnusedFiles(File snapshot, Set<File> referenced) {
+        File directory = snapshot.getAbsoluteFile().getParentFile();
+        String prefix = snapshot.getName() + ".";
+        File[] files = directory == null ? null : directory.listFiles((dir, name) -> name.startsWith(prefix)
+                && (name.endsWith(".events") || name.endsWith(".manifest") || name.endsWith(".archive")));
+        if (files == null) {
+            return;
+        }
+        Set<String> kept = new HashSet<>();
+        for (File f : referenced) {
+            kept.add(f.getName());
+        }
+        for (File f : files) {
+            if (!kept.contains(f.getName()) && !f.delete()) {
+                logger.log(Level.FINE, "Cannot delete " + f + " yet.");
+            }
+        }
+    }
+
+    private static void closeQuietly(CalendarJournal journal) {
+        try {
+            journal.close();
+        } catch (IOException ex) {
+            logger.log(Level.WARNING, "Cannot close " + journal.getFile() + ".", ex);
+        }
+    }
 
-        OutputStream file = new FileOutputStream(filePath);
-        OutputStream buffer = new BufferedOutputStream(file);
-        ObjectOutput output = new ObjectOutputStream(buffer);
+    /**
+     * Detaches the journal from the selected calendar and closes it, so that the next save writes a snapshot.
+     */
+    private void closeJournal() throws IOException {
+        if (journal != null) {
+            calendar.setJournal(null);
+            journal.close();
+            journal = null;
+        }
+    }
 
-        // serialize the Map
-        output.writeObject(calendar);
-        output.close();
+    /**
+     * Gets the name of the user, without the directory and separator of userPath.
+     */
+    private String getUserName() {
+        String name = new File(userPath).getName();
+        return name.endsWith("_") ? name.substring(0, name.length() - 1) : name;
+    }
+
+    /**
+     * Gets the archive file of the specified generation for the specified snapshot file.
+     */
+    private static File archiveFile(File snapshot, long generation) {
+        return new File(snapshot.getPath() + "." + generation + ".archive");
+    }
+
+    /**
+     * Gets the journal file of the calendar at filePath.
+     */
+    private File journalFile() {
+        return new File(filePath + ".journal");
     }
 
     /**
@@ -138,47 +870,153 @@ public class CalendarManager {
     }
 
     /**
-     * Gets a list of names of this user's calendars.
+     * Gets the scheduler delivering the alerts of this user's selected calendar when they are due.
+     * Alerts are delivered once a listener is added to it.
+     *
+     * @return the alert scheduler of this user.
+     */
+    public AlertScheduler getAlertScheduler() {
+        return alertScheduler;
+    }
+
+    /**
+     * Selects the specified calendar, moving the scheduling of alerts over to it.
+     *
+     * @param calendar the calendar to select.
+     */
+    private void setCalendar(Calendar calendar) {
+        if (this.calendar != null) {
+            Calendar previous = this.calendar;
+            previous.write(() -> previous.getAlertSystem().setScheduler(null));
+        }
+        this.calendar = calendar;
+        calendar.write(() -> {
+            alertScheduler.setCalendar(calendar);
+            calendar.getAlertSystem().setScheduler(alertScheduler);
+        });
+    }
+
+    /**
+     * Gets a list of names of this user's calendars, from the user's manifest of calendars rather than the
+     * directory of every user's files.
      *
      * @return the list of names of this user's calendars.
      */
     public ArrayList<String> getUserCalendars() {
-        File userData = new File("user_data");
-        String username = userPath.substring(12);
-        ArrayList<String> userCalendars = new ArrayList<>();
-        if (userData.isDirectory()) {
-            File[] sample = userData.listFiles();
-            if (sample != null) {
-                for (File f : sample) {
-                    if (f.getName().contains(username)) {
-                        userCalendars.add(f.getName().replace(username, "").
-                                replace(".ser", ""));
-                    }
+        try {
+            return new ArrayList<>(getUserCalendarSet());
+        } catch (IOException ex) {
+            logger.log(Level.SEVERE, "Cannot read the calendars of " + getUserName() + ".", ex);
+            return new ArrayList<>();
+        }
+    }
+
+    /**
+     * Gets the names of this user's calendars, reading the user's manifest of calendars the first time. A user
+     * without a manifest, from before calendars were listed in one, is given one listing the user's calendar
+     * files.
+     */
+    private LinkedHashSet<String> getUserCalendarSet() throws IOException {
+        if (userCalendars != null) {
+            return userCalendars;
+        }
+        File manifest = calendarManifest();
+        LinkedHashSet<String> names = new LinkedHashSet<>();
+        if (manifest.exists()) {
+            names.addAll(Files.readAllLines(manifest.toPath(), StandardCharsets.UTF_8));
+            names.remove("");
+        } else {
+            File directory = new File(userPath).getAbsoluteFile().getParentFile();
+            String prefix = new File(userPath).getName();
+            File[] files = directory == null ? null : directory.listFiles((dir, name) -> name.startsWith(prefix)
+                    && name.endsWith(".ser"));
+            if (files != null) {
+                for (File f : files) {
+                    String name = f.getName();
+                    names.add(name.substring(prefix.length(), name.length() - ".ser".length()));
                 }
             }
+            for (String name : names) {
+                appendLine(manifest, name);
+            }
+        }
+        userCalendars = names;
+        return names;
+    }
+
+    /**
+     * Gets the manifest of the user's calendars, which lists the name of a calendar per line.
+     */
+    private File calendarManifest() {
+        return new File(userPath + "calendars");
+    }
+
+    /**
+     * Appends the specified line to the specified file, holding a lock on the file while it is written.
+     */
+    private static void appendLine(File target, String line) throws IOException {
+        try (FileOutputStream file = new FileOutputStream(target, true)) {
+            FileLock lock = file.getChannel().lock(); // released when the file is closed
+            file.write((line + "\n").getBytes(StandardCharsets.UTF_8));
+            file.getFD().sync();
         }
-        return userCalendars;
     }
 
     /**
-     * Shares the specified event with another user's calendar.
+     * Shares the specified event with another user, by putting a copy of it into the user's inbox. The copy holds
+     * the event's name, times, tag and memo text only, not its series or the rest of this calendar; the other
+     * user's calendars are not read, and the event is received when the user next logs in.
      *
      * @param name  the name of the other user.
      * @param event the event to be shared.
      * @return true if event was shared, otherwise false.
      * @throws IOException
-     * @throws ClassNotFoundException
      */
-    public boolean shareEvent(String name, Event event) throws IOException, ClassNotFoundException {
+    public boolean shareEvent(String name, Event event) throws IOException {
         String otherUserPath = "./user_data/" + name + "_";
         File friendFile = new File(otherUserPath + "default.ser");
         if (friendFile.exists()) {
-            CalendarManager friendCalManager = new CalendarManager(otherUserPath);
-            friendCalManager.getCalendar().addEventNotification(event);
-            friendCalManager.saveToFile();
+            new EventInbox(otherUserPath).deliver(SharedEvent.of(getUserName(), event));
             return true;
         } else {
             return false;
         }
     }
+
+    /**
+     * Moves the events shared with this user from the user's inbox into the event invites of the selected
+     * calendar, as events of their own. An event shared again by the same sender before it was received is
+     * received once, as last shared. The files of the events are deleted once the invites are saved, so an event
+     * is received again, rather than lost, if saving fails.
+     *
+     * @return the number of events received.
+     * @throws IOException if the invites cannot be saved.
+     */
+    public int receiveInvites() throws IOException {
+        EventInbox inbox = new EventInbox(userPath);
+        List<File> received = new ArrayList<>();
+        List<SharedEvent> shared = new ArrayList<>();
+        for (File f : inbox.list()) {
+            try {
+                SharedEvent event = inbox.read(f);
+                shared.removeIf(event::isSameOrigin); // superseded by the later copy
+                shared.add(event);
+                received.add(f);
+            } catch (IOException ex) {
+                logger.log(Level.WARNING, "Cannot read the shared event " + f + ".", ex);
+            }
+        }
+        if (received.isEmpty()) {
+            return 0;
+        }
+        for (SharedEvent event : shared) {
+            calendar.addEventNotification(event.toEvent());
+        }
+        saveToFile();
+        flush();
+        for (File f : received) {
+            inbox.remove(f);
+        }
+        return shared.size();
+    }
 }
@@ -0,0 +1,198 @@
+package CalendarSystem;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Publishes the changes made to a calendar to its subscribers, so that what they show or hold can be updated by
+ * the changes alone rather than looked up again.
+ * <p>
+ * The changes made by each change to the calendar are published together once it is done. Each subscriber asks
+ * for the number of batches it is ready for; changes made meanwhile are kept for it and given as one batch when
+ * it asks for the next, so a slow subscriber receives fewer, larger batches and never holds up the calendar.
+ * A subscriber that falls more than {@value #MAX_PENDING} changes behind is given a single RESET change instead.
+ * Each subscriber is given its batches one at a time, in order, on the executor it subscribed with.
+ *
+ * @see Calendar#getChangeFeed()
+ * @see ChangeSubscriber
+ */
+public class ChangeFeed {
+
+    /**
+     * The greatest number of changes kept for a subscriber before they are replaced with a RESET change.
+     */
+    public static final int MAX_PENDING = 1024;
+
+    private static final Logger logger = Logger.getLogger(ChangeFeed.class.getName());
+
+    /**
+     * The subscriptions to this feed.
+     */
+    private final CopyOnWriteArrayList<Subscription> subscriptions = new CopyOnWriteArrayList<>();
+
+    /**
+     * Subscribes the specified subscriber to this feed, giving it its batches on the thread that made the
+     * change, or that asked for them if the changes were already made.
+     *
+     * @param subscriber a subscriber.
+     * @return the subscription of the subscriber.
+     */
+    public ChangeSubscription subscribe(ChangeSubscriber subscriber) {
+        return subscribe(subscriber, Runnable::run);
+    }
+
+    /**
+     * Subscribes the specified subscriber to this feed, giving it its batches on the specified executor.
+     *
+     * @param subscriber a subscriber.
+     * @param executor   the executor the batches are given on, such as the thread of a user interface.
+     * @return the subscription of the subscriber.
+     */
+    public ChangeSubscription subscribe(ChangeSubscriber subscriber, Executor executor) {
+        Subscription subscription = new Subscription(subscriber, executor);
+        subscriptions.add(subscription);
+        subscriber.onSubscribe(subscription);
+        return subscription;
+    }
+
+    /**
+     * Gets the number of subscribers to this feed.
+     *
+     * @return the number of subscriptions not cancelled.
+     */
+    public int getSubscriberCount() {
+        return subscriptions.size();
+    }
+
+    /**
+     * Keeps the specified changes for every subscriber, to be given by {@link #flush()}. Called while the change
+     * to the calendar is still locked, so the changes are kept in the order they were made.
+     *
+     * @param changes the changes made by one change to the calendar.
+     */
+    void offer(List<CalendarChange> changes) {
+        for (Subscription s : subscriptions) {
+            s.offer(changes);
+        }
+    }
+
+    /**
+     * Gives the changes kept to the subscribers that asked for them.
+     */
+    void flush() {
+        for (Subscription s : subscriptions) {
+            s.signal();
+        }
+    }
+
+    /**
+     * The subscription of one subscriber, keeping the changes not yet given to it.
+     */
+    private class Subscription implements ChangeSubscription {
+
+        private final ChangeSubscriber subscriber;
+
+        private final Executor executor;
+
+        /**
+         * The changes kept for the next batch.
+         */
+        private List<CalendarChange> pending = new ArrayList<>();
+
+        /**
+         * The number of batches asked for and not given yet.
+         */
+        private long demand;
+
+        /**
+         * Whether batches are being given to the subscriber.
+         */
+        private boolean draining;
+
+        private volatile boolean cancelled;
+
+        private Subscription(ChangeSubscriber subscriber, Executor executor) {
+            this.subscriber = subscriber;
+            this.executor = executor;
+        }
+
+        @Override
+        public void request(long n) {
+            if (n <= 0) {
+                throw new IllegalArgumentException("The number of batches asked for must be positive: " + n);
+            }
+            synchronized (this) {
+                demand = demand + n < 0 ? Long.MAX_VALUE : demand + n;
+            }
+            signal();
+        }
+
+        @Override
+        public void cancel() {
+            cancelled = true;
+            subscriptions.remove(this);
+            synchronized (this) {
+                pending = new ArrayList<>();
+            }
+        }
+
+        private synchronized void offer(List<CalendarChange> changes) {
+            if (cancelled) {
+                return;
+            }
+            if (pending.size() + changes.size() > MAX_PENDING) {
+                pending = new ArrayList<>(Collections.singletonList(CalendarChange.reset()));
+            } else if (pending.isEmpty() || pending.get(0).getKind() != CalendarChange.Kind.RESET) {
+                pending.addAll(changes); // nothing is worth adding after a RESET
+            }
+        }
+
+        /**
+         * Starts giving batches to the subscriber, if it asked for them and none are being given.
+         */
+        private void signal() {
+            synchronized (this) {
+                if (draining || cancelled || demand == 0 || pending.isEmpty()) {
+                    return;
+                }
+                draining = true;
+            }
+            try {
+                executor.execute(this::drain);
+            } catch (RejectedExecutionException ex) {
+                logger.log(Level.WARNING, "Cannot give changes to " + subscriber + ".", ex);
+                cancel();
+            }
+        }
+
+        /**
+         * Gives batches to the subscriber for as long as it asked for them and changes are kept.
+         */
+        private void drain() {
+            while (true) {
+                List<CalendarChange> batch;
+                synchronized (this) {
+                    if (cancelled || demand == 0 || pending.isEmpty()) {
+                        draining = false;
+                        return;
+                    }
+                    demand--;
+                    batch = pending;
+                    pending = new ArrayList<>();
+                }
+                try {
+                    subscriber.onNext(Collections.unmodifiableList(batch));
+                } catch (RuntimeException ex) {
+                    logger.log(Level.WARNING, "The subscriber " + subscriber + " failed and was cancelled.", ex);
+                    cancel();
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,27 @@
+package CalendarSystem;
+
+import java.util.List;
+
+/**
+ * A subscriber to the changes made to a calendar, told of them in batches as it asks for them.
+ *
+ * @see ChangeFeed
+ */
+public interface ChangeSubscriber {
+
+    /**
+     * Called once, when the subscriber is subscribed, before any changes are given to it. No changes are given
+     * until the subscriber asks for them through the subscription.
+     *
+     * @param subscription the subscription of this subscriber.
+     */
+    void onSubscribe(ChangeSubscription subscription);
+
+    /**
+     * Called with the changes made to the calendar since the last batch, in the order they were made, once for
+     * each batch asked for. The changes made by one change to the calendar are never split between batches.
+     *
+     * @param changes the changes made, which are not empty.
+     */
+    void onNext(List<CalendarChange> changes);
+}
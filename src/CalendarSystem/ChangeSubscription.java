@@ -0,0 +1,22 @@
+package CalendarSystem;
+
+/**
+ * The subscription of a subscriber to the changes made to a calendar, through which it asks for them.
+ *
+ * @see ChangeFeed
+ */
+public interface ChangeSubscription {
+
+    /**
+     * Asks for the specified number of batches of changes more. Changes made while no batches are asked for
+     * are kept, and given as one batch when the next one is asked for.
+     *
+     * @param n the number of batches asked for; must be positive.
+     */
+    void request(long n);
+
+    /**
+     * Stops giving changes to the subscriber. Changes may still be given for a batch already being delivered.
+     */
+    void cancel();
+}
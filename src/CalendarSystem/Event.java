@@ -12,6 +12,13 @@ import java.util.ArrayList;
  */
 public class Event implements Serializable {
 
+    private static final long serialVersionUID = -6395784628840331520L;
+
+    /**
+     * The id number of this event, unique within the calendar storing it; 0 if it is not stored in a calendar.
+     */
+    private long id;
+
     /**
      * The name of this event.
      */
@@ -78,6 +85,15 @@ public class Event implements Serializable {
         series = new ArrayList<>();
     }
 
+    /**
+     * Gets the id number of this event. The id number is given by the calendar storing this event.
+     *
+     * @return this event's id number, or 0 if it is not stored in a calendar.
+     */
+    public long getId() {
+        return id;
+    }
+
     /**
      * Gets the name of this event.
      *
@@ -143,6 +159,15 @@ public class Event implements Serializable {
         this.status = newStatus;
     }
 
+    /**
+     * Sets the id number of this event.
+     *
+     * @param id the id number given to this event by the calendar storing it.
+     */
+    void setId(long id) {
+        this.id = id;
+    }
+
     /**
      * Changes this event's name to the specified new name.
      *
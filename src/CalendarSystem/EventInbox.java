@@ -0,0 +1,191 @@
+package CalendarSystem;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.UUID;
+
+/**
+ * Holds the events shared with a user until the user next logs in, as a directory of small files, one per
+ * shared event.
+ * <p>
+ * Sharing an event writes its file under a temporary name and then renames it into the inbox, so the user never
+ * reads half a file, and sharing never reads or writes the user's calendars. The files are named after the time
+ * they were shared, so the events are received in the order they were shared.
+ *
+ * @see CalendarManager#shareEvent(String, Event)
+ * @see CalendarManager#receiveInvites()
+ */
+public class EventInbox {
+
+    /**
+     * The first four bytes of a shared event file.
+     */
+    private static final int MAGIC = 0x43414C49;
+
+    /**
+     * The version of the format written.
+     */
+    private static final int VERSION = 2;
+
+    private static final String SUFFIX = ".invite";
+
+    /**
+     * The directory holding the shared events.
+     */
+    private final File directory;
+
+    /**
+     * Creates the inbox of the user with the specified path.
+     *
+     * @param userPath the path the files of the user start with.
+     */
+    public EventInbox(String userPath) {
+        this.directory = new File(userPath + "inbox");
+    }
+
+    /**
+     * Gets the directory holding the shared events.
+     *
+     * @return the inbox directory, which may not exist yet.
+     */
+    public File getDirectory() {
+        return directory;
+    }
+
+    /**
+     * Puts the specified event into this inbox.
+     *
+     * @param event the event being shared.
+     * @throws IOException if the event cannot be written.
+     */
+    public void deliver(SharedEvent event) throws IOException {
+        if (!directory.isDirectory() && !directory.mkdirs()) {
+            throw new IOException("Cannot create " + directory + ".");
+        }
+        String name = String.format("%016x-%s", System.currentTimeMillis(), UUID.randomUUID());
+        File temp = new File(directory, "." + name + ".tmp"); // not listed until it is renamed
+        FileOutputStream file = new FileOutputStream(temp);
+        try {
+            DataOutputStream out = new DataOutputStream(new BufferedOutputStream(file));
+            write(out, event);
+            out.flush();
+            file.getFD().sync();
+        } finally {
+            file.close();
+        }
+        File target = new File(directory, name + SUFFIX);
+        try {
+            Files.move(temp.toPath(), target.toPath(), StandardCopyOption.ATOMIC_MOVE);
+        } catch (AtomicMoveNotSupportedException ex) {
+            Files.move(temp.toPath(), target.toPath());
+        }
+    }
+
+    /**
+     * Gets the files of the events in this inbox, in the order they were shared.
+     *
+     * @return a list of the shared event files, which is empty if there are none.
+     */
+    public List<File> list() {
+        File[] files = directory.listFiles((dir, name) -> name.endsWith(SUFFIX) && !name.startsWith("."));
+        if (files == null) {
+            return new ArrayList<>();
+        }
+        Arrays.sort(files);
+        return new ArrayList<>(Arrays.asList(files));
+    }
+
+    /**
+     * Reads the event in the specified file of this inbox.
+     *
+     * @param file a shared event file.
+     * @return the shared event.
+     * @throws IOException if the file cannot be read or does not hold a shared event.
+     */
+    public SharedEvent read(File file) throws IOException {
+        DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(file)));
+        try {
+            if (in.readInt() != MAGIC) {
+                throw new IOException(file + " is not a shared event.");
+            }
+            int version = in.readInt();
+            if (version < 1 || version > VERSION) {
+                throw new IOException("Shared event version " + version + " is newer than this program.");
+            }
+            if (version == 1) { // the event itself, with the note of each of its memos
+                String name = in.readUTF();
+                LocalDateTime start = readTime(in);
+                LocalDateTime end = readTime(in);
+                String tag = readString(in);
+                StringBuilder notes = new StringBuilder();
+                int memoCount = in.readInt();
+                for (int i = 0; i < memoCount; i++) {
+                    notes.append(i > 0 ? "\n" : "").append(in.readUTF());
+                }
+                return new SharedEvent(null, 0, name, start, end, tag, memoCount > 0 ? notes.toString() : null);
+            }
+            return new SharedEvent(readString(in), in.readLong(), in.readUTF(), readTime(in), readTime(in),
+                    readString(in), readString(in));
+        } finally {
+            in.close();
+        }
+    }
+
+    /**
+     * Removes the specified file from this inbox, once its event has been received.
+     *
+     * @param file a shared event file.
+     * @throws IOException if the file cannot be deleted.
+     */
+    public void remove(File file) throws IOException {
+        Files.deleteIfExists(file.toPath());
+    }
+
+    // helper methods
+
+    private static void write(DataOutputStream out, SharedEvent event) throws IOException {
+        out.writeInt(MAGIC);
+        out.writeInt(VERSION);
+        writeString(out, event.getSender());
+        out.writeLong(event.getOriginId());
+        out.writeUTF(event.getName());
+        writeTime(out, event.getStartTime());
+        writeTime(out, event.getEndTime());
+        writeString(out, event.getTag());
+        writeString(out, event.getNote());
+    }
+
+    private static void writeString(DataOutputStream out, String s) throws IOException {
+        out.writeBoolean(s != null);
+        if (s != null) {
+            out.writeUTF(s);
+        }
+    }
+
+    private static String readString(DataInputStream in) throws IOException {
+        return in.readBoolean() ? in.readUTF() : null;
+    }
+
+    private static void writeTime(DataOutputStream out, LocalDateTime time) throws IOException {
+        out.writeLong(time.toEpochSecond(ZoneOffset.UTC));
+        out.writeInt(time.getNano());
+    }
+
+    private static LocalDateTime readTime(DataInputStream in) throws IOException {
+        return LocalDateTime.ofEpochSecond(in.readLong(), in.readInt(), ZoneOffset.UTC);
+    }
+}
@@ -0,0 +1,275 @@
+package CalendarSystem;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * An augmented interval tree that indexes events by their start and end times.
+ * The tree is a balanced (AVL) binary search tree keyed by start time. Events sharing a start time are kept
+ * in the same node, and every node records the latest end time found in its subtree, so that overlap queries
+ * can skip every subtree that ends before the queried range.
+ *
+ * @see Calendar
+ */
+public class EventIntervalTree {
+
+    /**
+     * A node of this tree holding all the events that start at the same time.
+     */
+    private static class Node {
+
+        /**
+         * The start time shared by all the events in this node.
+         */
+        private final LocalDateTime start;
+
+        /**
+         * The events starting at this node's start time.
+         */
+        private final ArrayList<Event> events = new ArrayList<>();
+
+        /**
+         * The latest end time of the events in this node.
+         */
+        private LocalDateTime end;
+
+        /**
+         * The latest end time of the events in this node's subtree.
+         */
+        private LocalDateTime maxEnd;
+
+        /**
+         * The height of this node's subtree.
+         */
+        private int height = 1;
+
+        private Node left;
+        private Node right;
+
+        private Node(LocalDateTime start) {
+            this.start = start;
+        }
+    }
+
+    /**
+     * The root of this tree.
+     */
+    private Node root;
+
+    /**
+     * The number of events stored in this tree.
+     */
+    private int size;
+
+    /**
+     * Adds the specified event to this tree, using its current start and end time.
+     *
+     * @param e the event to be added.
+     */
+    public void add(Event e) {
+        root = insert(root, e);
+        size++;
+    }
+
+    /**
+     * Removes the specified event from this tree. The event's start and end time must not have changed
+     * since it was added.
+     *
+     * @param e an event in this tree.
+     * @return true if the event was in this tree, otherwise false.
+     */
+    public boolean remove(Event e) {
+        int before = size;
+        root = delete(root, e);
+        return size < before;
+    }
+
+    /**
+     * Gets the number of events stored in this tree.
+     *
+     * @return the number of events in this tree.
+     */
+    public int size() {
+        return size;
+    }
+
+    /**
+     * Removes every event from this tree.
+     */
+    public void clear() {
+        root = null;
+        size = 0;
+    }
+
+    /**
+     * Finds the events that overlap the specified range, ordered by start time.
+     * An event overlaps the range if it starts no later than <code>to</code> and ends no earlier than
+     * <code>from</code>.
+     *
+     * @param from the start of the range (inclusive).
+     * @param to   the end of the range (inclusive).
+     * @return a list of the events overlapping the range.
+     */
+    public List<Event> findOverlapping(LocalDateTime from, LocalDateTime to) {
+        List<Event> result = new ArrayList<>();
+        collect(root, from, to, result);
+        return result;
+    }
+
+    // helper methods
+
+    private void collect(Node node, LocalDateTime from, LocalDateTime to, List<Event> result) {
+        while (node != null && !node.maxEnd.isBefore(from)) {
+            collect(node.left, from, to, result);
+            if (node.start.isAfter(to)) {
+                return; // every event to the right starts even later
+            }
+            if (!node.end.isBefore(from)) {
+                for (Event e : node.events) {
+                    if (!e.getEndTime().isBefore(from)) {
+                        result.add(e);
+                    }
+                }
+            }
+            node = node.right;
+        }
+    }
+
+    private Node insert(Node node, Event e) {
+        if (node == null) {
+            node = new Node(e.getStartTime());
+            node.events.add(e);
+            node.end = e.getEndTime();
+            update(node);
+            return node;
+        }
+        int cmp = e.getStartTime().compareTo(node.start);
+        if (cmp < 0) {
+            node.left = insert(node.left, e);
+        } else if (cmp > 0) {
+            node.right = insert(node.right, e);
+        } else {
+            node.events.add(e);
+            if (e.getEndTime().isAfter(node.end)) {
+                node.end = e.getEndTime();
+            }
+        }
+        return balance(node);
+    }
+
+    private Node delete(Node node, Event e) {
+        if (node == null) {
+            return null;
+        }
+        int cmp = e.getStartTime().compareTo(node.start);
+        if (cmp < 0) {
+            node.left = delete(node.left, e);
+        } else if (cmp > 0) {
+            node.right = delete(node.right, e);
+        } else {
+            if (!removeByIdentity(node.events, e)) {
+                return node;
+            }
+            size--;
+            if (!node.events.isEmpty()) {
+                node.end = latestEnd(node.events);
+            } else if (node.left == null || node.right == null) {
+                return node.left == null ? node.right : node.left;
+            } else {
+                // replace this node by its successor
+                Node successor = node.right;
+                while (successor.left != null) {
+                    successor = successor.left;
+                }
+                Node replacement = new Node(successor.start);
+                replacement.events.addAll(successor.events);
+                replacement.end = successor.end;
+                replacement.right = deleteMin(node.right);
+                replacement.left = node.left;
+                node = replacement;
+            }
+        }
+        return balance(node);
+    }
+
+    private Node deleteMin(Node node) {
+        if (node.left == null) {
+            return node.right;
+        }
+        node.left = deleteMin(node.left);
+        return balance(node);
+    }
+
+    private static boolean removeByIdentity(List<Event> events, Event e) {
+        for (int i = 0; i < events.size(); i++) {
+            if (events.get(i) == e) {
+                events.remove(i);
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private static LocalDateTime latestEnd(List<Event> events) {
+        LocalDateTime latest = events.get(0).getEndTime();
+        for (Event e : events) {
+            if (e.getEndTime().isAfter(latest)) {
+                latest = e.getEndTime();
+            }
+        }
+        return latest;
+    }
+
+    private static int height(Node node) {
+        return node == null ? 0 : node.height;
+    }
+
+    private static void update(Node node) {
+        node.height = 1 + Math.max(height(node.left), height(node.right));
+        LocalDateTime max = node.end;
+        if (node.left != null && node.left.maxEnd.isAfter(max)) {
+            max = node.left.maxEnd;
+        }
+        if (node.right != null && node.right.maxEnd.isAfter(max)) {
+            max = node.right.maxEnd;
+        }
+        node.maxEnd = max;
+    }
+
+    private static Node balance(Node node) {
+        update(node);
+        int factor = height(node.left) - height(node.right);
+        if (factor > 1) {
+            if (height(node.left.left) < height(node.left.right)) {
+                node.left = rotateLeft(node.left);
+            }
+            return rotateRight(node);
+        }
+        if (factor < -1) {
+            if (height(node.right.right) < height(node.right.left)) {
+                node.right = rotateRight(node.right);
+            }
+            return rotateLeft(node);
+        }
+        return node;
+    }
+
+    private static Node rotateRight(Node node) {
+        Node pivot = node.left;
+        node.left = pivot.right;
+        pivot.right = node;
+        update(node);
+        update(pivot);
+        return pivot;
+    }
+
+    private static Node rotateLeft(Node node) {
+        Node pivot = node.right;
+        node.right = pivot.left;
+        pivot.left = node;
+        update(node);
+        update(pivot);
+        return pivot;
+    }
+}
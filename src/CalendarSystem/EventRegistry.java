@@ -0,0 +1,183 @@
+package CalendarSystem;
+
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.Set;
+
+/**
+ * A registry of the events of a calendar by their id number and by their name.
+ * Id numbers are kept in an open-addressing table of primitive keys, so a lookup by id does not box the key
+ * nor walk any list of events.
+ *
+ * @see Calendar
+ * @see Event
+ */
+public class EventRegistry {
+
+    /**
+     * The id number marking an empty slot of the table; no event is given this id.
+     */
+    private static final long EMPTY = 0L;
+
+    /**
+     * The id numbers of the registered events, indexed by slot.
+     */
+    private long[] ids = new long[16];
+
+    /**
+     * The registered events, indexed by slot.
+     */
+    private Event[] events = new Event[16];
+
+    /**
+     * The number of registered events.
+     */
+    private int size;
+
+    /**
+     * A map mapping each event name to the registered events with that name, in order of registration.
+     */
+    private final HashMap<String, LinkedHashSet<Event>> eventsByName = new HashMap<>();
+
+    /**
+     * Registers the specified event under its current id number and name.
+     *
+     * @param e an event with an id number.
+     */
+    public void add(Event e) {
+        if (e.getId() == EMPTY) {
+            throw new IllegalArgumentException("Event " + e.getEventName() + " has no id number.");
+        }
+        if ((size + 1) * 4 > ids.length * 3) {
+            resize(ids.length * 2);
+        }
+        int slot = slotOf(e.getId());
+        if (ids[slot] == EMPTY) {
+            size++;
+        }
+        ids[slot] = e.getId();
+        events[slot] = e;
+        eventsByName.computeIfAbsent(e.getEventName(), n -> new LinkedHashSet<>()).add(e);
+    }
+
+    /**
+     * Removes the specified event from this registry. The event's id number and name must not have changed
+     * since it was added.
+     *
+     * @param e a registered event.
+     * @return true if the event was registered, otherwise false.
+     */
+    public boolean remove(Event e) {
+        int slot = slotOf(e.getId());
+        if (events[slot] != e) {
+            return false;
+        }
+        deleteSlot(slot);
+        LinkedHashSet<Event> named = eventsByName.get(e.getEventName());
+        if (named != null && named.remove(e) && named.isEmpty()) {
+            eventsByName.remove(e.getEventName());
+        }
+        return true;
+    }
+
+    /**
+     * Removes every event from this registry.
+     */
+    public void clear() {
+        ids = new long[16];
+        events = new Event[16];
+        size = 0;
+        eventsByName.clear();
+    }
+
+    /**
+     * Gets the event with the specified id number.
+     *
+     * @param id an id number.
+     * @return the event with the id number, or <code>null</code> if there is none.
+     */
+    public Event get(long id) {
+        if (id == EMPTY) {
+            return null;
+        }
+        return events[slotOf(id)];
+    }
+
+    /**
+     * Gets the events with the specified name, in order of registration.
+     *
+     * @param name an event name.
+     * @return an unmodifiable view of the events with the name.
+     */
+    public Set<Event> getByName(String name) {
+        LinkedHashSet<Event> named = eventsByName.get(name);
+        if (named == null) {
+            return Collections.emptySet();
+        }
+        return Collections.unmodifiableSet(named);
+    }
+
+    /**
+     * Gets the number of registered events.
+     *
+     * @return the number of registered events.
+     */
+    public int size() {
+        return size;
+    }
+
+    // helper methods
+
+    /**
+     * Finds the slot holding the specified id number, or the empty slot where it would be stored.
+     */
+    private int slotOf(long id) {
+        int mask = ids.length - 1;
+        int slot = hash(id) & mask;
+        while (ids[slot] != EMPTY && ids[slot] != id) {
+            slot = (slot + 1) & mask;
+        }
+        return slot;
+    }
+
+    /**
+     * Empties the specified slot, shifting back the entries that were displaced past it.
+     */
+    private void deleteSlot(int slot) {
+        int mask = ids.length - 1;
+        int next = (slot + 1) & mask;
+        while (ids[next] != EMPTY) {
+            int home = hash(ids[next]) & mask;
+            // moves the entry back if its home slot is not between the emptied slot and its current slot
+            if (((next - home) & mask) >= ((next - slot) & mask)) {
+                ids[slot] = ids[next];
+                events[slot] = events[next];
+                slot = next;
+            }
+            next = (next + 1) & mask;
+        }
+        ids[slot] = EMPTY;
+        events[slot] = null;
+        size--;
+    }
+
+    private void resize(int capacity) {
+        long[] oldIds = ids;
+        Event[] oldEvents = events;
+        ids = new long[capacity];
+        events = new Event[capacity];
+        for (int i = 0; i < oldIds.length; i++) {
+            if (oldIds[i] != EMPTY) {
+                int slot = slotOf(oldIds[i]);
+                ids[slot] = oldIds[i];
+                events[slot] = oldEvents[i];
+            }
+        }
+    }
+
+    private static int hash(long id) {
+        long h = id * 0x9E3779B97F4A7C15L;
+        return (int) (h ^ (h >>> 32));
+    }
+}
@@ -0,0 +1,137 @@
+package CalendarSystem;
+
+import java.time.LocalDateTime;
+import java.util.AbstractCollection;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.NavigableMap;
+import java.util.NoSuchElementException;
+import java.util.TreeMap;
+
+/**
+ * Keeps the events of a calendar ordered by their start time and by their end time.
+ * Events that occurred before, or will occur after, a given time are answered as lazy views of these
+ * orderings, so no event outside the answer is looked at.
+ *
+ * @see Calendar
+ */
+public class EventTimeline {
+
+    /**
+     * The stored events grouped by start time.
+     */
+    private final TreeMap<LocalDateTime, ArrayList<Event>> byStart = new TreeMap<>();
+
+    /**
+     * The stored events grouped by end time.
+     */
+    private final TreeMap<LocalDateTime, ArrayList<Event>> byEnd = new TreeMap<>();
+
+    /**
+     * Adds the specified event to this timeline, using its current start and end time.
+     *
+     * @param e the event to be added.
+     */
+    public void add(Event e) {
+        byStart.computeIfAbsent(e.getStartTime(), t -> new ArrayList<>()).add(e);
+        byEnd.computeIfAbsent(e.getEndTime(), t -> new ArrayList<>()).add(e);
+    }
+
+    /**
+     * Removes the specified event from this timeline. The event's start and end time must not have changed
+     * since it was added.
+     *
+     * @param e an event in this timeline.
+     */
+    public void remove(Event e) {
+        removeFrom(byStart, e.getStartTime(), e);
+        removeFrom(byEnd, e.getEndTime(), e);
+    }
+
+    /**
+     * Removes every event from this timeline.
+     */
+    public void clear() {
+        byStart.clear();
+        byEnd.clear();
+    }
+
+    /**
+     * Gets a view of the events that end strictly before the specified time, ordered by end time.
+     *
+     * @param time a time.
+     * @return an unmodifiable view of the events ending before <code>time</code>.
+     */
+    public Collection<Event> endingBefore(LocalDateTime time) {
+        return new EventsView(byEnd.headMap(time, false));
+    }
+
+    /**
+     * Gets a view of the events that start strictly after the specified time, ordered by start time.
+     *
+     * @param time a time.
+     * @return an unmodifiable view of the events starting after <code>time</code>.
+     */
+    public Collection<Event> startingAfter(LocalDateTime time) {
+        return new EventsView(byStart.tailMap(time, false));
+    }
+
+    private static void removeFrom(TreeMap<LocalDateTime, ArrayList<Event>> map, LocalDateTime key, Event e) {
+        ArrayList<Event> events = map.get(key);
+        if (events != null && events.remove(e) && events.isEmpty()) {
+            map.remove(key);
+        }
+    }
+
+    /**
+     * A read-only view of the events in a range of one of the orderings.
+     */
+    private static class EventsView extends AbstractCollection<Event> {
+
+        private final NavigableMap<LocalDateTime, ArrayList<Event>> range;
+
+        private EventsView(NavigableMap<LocalDateTime, ArrayList<Event>> range) {
+            this.range = range;
+        }
+
+        @Override
+        public Iterator<Event> iterator() {
+            final Iterator<ArrayList<Event>> groups = range.values().iterator();
+            return new Iterator<Event>() {
+                private Iterator<Event> current = Collections.emptyIterator();
+
+                @Override
+                public boolean hasNext() {
+                    while (!current.hasNext() && groups.hasNext()) {
+                        current = groups.next().iterator();
+                    }
+                    return current.hasNext();
+                }
+
+                @Override
+                public Event next() {
+                    if (!hasNext()) {
+                        throw new NoSuchElementException();
+                    }
+                    return current.next();
+                }
+            };
+        }
+
+        @Override
+        public boolean isEmpty() {
+            return range.isEmpty();
+        }
+
+        @Override
+        public int size() {
+            int size = 0;
+            for (ArrayList<Event> events : range.values()) {
+                size += events.size();
+            }
+            return size;
+        }
+    }
+}
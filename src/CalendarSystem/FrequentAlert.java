@@ -1,16 +1,21 @@
 package CalendarSystem;
 
+import java.math.BigInteger;
 import java.time.Duration;
 import java.time.LocalDateTime;
 
 /**
  * A Frequent Alert is a type of alert with appear times defined by frequency.
+ * It appears one frequency before the associated event, two frequencies before it, and so on; the next of these
+ * times is computed directly from the time of the event instead of stepping through them.
  * It is a subclass of Alert.
  *
  * @see Alert
  */
 public class FrequentAlert extends Alert {
 
+    private static final long serialVersionUID = 3112488434754302189L;
+
     /**
      * The frequency of the alert (ex. every 1 day).
      */
@@ -22,12 +27,12 @@ public class FrequentAlert extends Alert {
      * @param evT     datetime of the associated event.
      * @param name    name of the associated event.
      * @param message message content of the alert.
-     * @param d       frequency of the alert (ex. every 1 day).
+     * @param d       frequency of the alert (ex. every 1 day); must be positive.
      */
     public FrequentAlert(LocalDateTime evT, String name, String message, Duration d) {
         super(evT, message, name);
+        checkFrequency(d);
         frequency = d;
-        setTimesHelper();
         setData("Frequent Alert: " + message + " every " + durationToString(d));
     }
 
@@ -40,6 +45,9 @@ public class FrequentAlert extends Alert {
      * @return true if the frequent alert can be created, otherwise false.
      */
     public static boolean isValidFrequentAlert(LocalDateTime dateTime, LocalDateTime now, Duration frequency) {
+        if (frequency.isZero() || frequency.isNegative()) {
+            return false;
+        }
         boolean beforeEventStartTime = now.isBefore(dateTime);
         boolean hasValidAlertTime = dateTime.minus(frequency).isAfter(now);
         return beforeEventStartTime && hasValidAlertTime;
@@ -49,30 +57,16 @@ public class FrequentAlert extends Alert {
     /**
      * Changes the frequency of the frequent alert.
      *
-     * @param newDur the new frequency.
+     * @param newDur the new frequency; must be positive.
      */
     public void changeFrequency(Duration newDur) {
-        this.resetTimes();
+        checkFrequency(newDur);
         this.frequency = newDur;
-        setTimesHelper();
     }
 
-    /**
-     * Adds every appear datetime to attribute times based on frequency.
-     */
-    private void setTimesHelper() {
-        LocalDateTime t = getEventTime();
-        do {
-            t = t.minus(this.frequency);
-        }
-
-        //use system time now - needs to be changed!!
-        while (t.isAfter(LocalDateTime.now()));
-
-        //then t is the first alarm time
-        while (t.isBefore(this.getEventTime())) {
-            addtoTimes(t);
-            t = t.plus(this.frequency);
+    private static void checkFrequency(Duration frequency) {
+        if (frequency.isZero() || frequency.isNegative()) {
+            throw new IllegalArgumentException("The frequency of an alert must be positive.");
         }
     }
 
@@ -88,6 +82,23 @@ public class FrequentAlert extends Alert {
         return "f";
     }
 
+    /**
+     * Gets the first time, no earlier than the specified time, at which the alert should appear: the time of the
+     * associated event minus the greatest whole number of frequencies that fits between the two times.
+     *
+     * @param from a time.
+     * @return the next time the alert should appear, or <code>null</code> if it is less than one frequency
+     * before the event.
+     */
+    @Override
+    public LocalDateTime getNextTime(LocalDateTime from) {
+        Duration gap = Duration.between(from, getEventTime());
+        if (gap.compareTo(frequency) < 0) {
+            return null;
+        }
+        return getEventTime().minus(frequency.multipliedBy(wholeFrequencies(gap)));
+    }
+
 
     // methods for displaying alert
 
@@ -109,6 +120,21 @@ public class FrequentAlert extends Alert {
     }
 
 
+    /**
+     * Counts the whole frequencies that fit in the specified duration, which is no shorter than the frequency.
+     */
+    private long wholeFrequencies(Duration gap) {
+        if (gap.getSeconds() < Long.MAX_VALUE / 1_000_000_000L) {
+            return gap.toNanos() / frequency.toNanos();
+        }
+        return toNanos(gap).divide(toNanos(frequency)).longValue(); // too long to count in a long
+    }
+
+    private static BigInteger toNanos(Duration d) {
+        return BigInteger.valueOf(d.getSeconds()).multiply(BigInteger.valueOf(1_000_000_000L))
+                .add(BigInteger.valueOf(d.getNano()));
+    }
+
     //getters
 
     /**
@@ -9,6 +9,9 @@ import java.time.LocalDateTime;
  * @see Alert
  */
 public class IndividualAlert extends Alert {
+
+    private static final long serialVersionUID = 3000870405072674137L;
+
     /**
      * The scheduled time for the alert.
      */
@@ -25,7 +28,6 @@ public class IndividualAlert extends Alert {
     public IndividualAlert(LocalDateTime evT, String name, String message, LocalDateTime t) {
         super(evT, message, name);
         time = t;
-        addtoTimes(time);
         setData("Individual Alert: " + message + " at " + t);
     }
 
@@ -37,9 +39,7 @@ public class IndividualAlert extends Alert {
      * @param newTime the new datetime of the alert.
      */
     public void changeTime(LocalDateTime newTime) {
-        this.removefromTimes(this.time);
         this.time = newTime;
-        addtoTimes(this.time);
     }
 
     // Methods for displaying alert
@@ -54,6 +54,17 @@ public class IndividualAlert extends Alert {
         return "i";
     }
 
+    /**
+     * Gets the time of the alert if it is no earlier than the specified time.
+     *
+     * @param from a time.
+     * @return the time of the alert, or <code>null</code> if it is before <code>from</code>.
+     */
+    @Override
+    public LocalDateTime getNextTime(LocalDateTime from) {
+        return time.isBefore(from) ? null : time;
+    }
+
 
     @Override
     public String toString() {
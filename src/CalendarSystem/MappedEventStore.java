@@ -0,0 +1,625 @@
+package CalendarSystem;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.util.AbstractCollection;
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.NoSuchElementException;
+
+/**
+ * Holds events of a calendar in a memory-mapped file of fixed-width records, so that they are only read from
+ * file, a page at a time, as they are looked up.
+ * <p>
+ * The file starts with a header giving the generation of the snapshot it belongs to, the number of records and
+ * where every region of the file starts. The records follow, sorted by start time, each holding the times, id
+ * number and status of an event and the positions of its name and tag in the string region at the end of the
+ * file. In between are the record numbers sorted by end time, by id number, by name and by tag. The events
+ * overlapping a range of time are found by binary search among the records, so looking at a month only reads
+ * the pages of the file holding that month.
+ * <p>
+ * The file is never changed: an event taken out of the store, because it was changed or deleted, is only marked
+ * as removed until the next snapshot writes a new store.
+ *
+ * @see Calendar
+ * @see PagedEvent
+ */
+public class MappedEventStore {
+
+    /**
+     * The first four bytes of an event store file.
+     */
+    static final int MAGIC = 0x43414C45;
+
+    /**
+     * The version of the format written.
+     */
+    private static final int VERSION = 1;
+
+    // positions of the fields of the header
+
+    private static final int HEADER_VERSION = 4;
+    private static final int HEADER_GENERATION = 8;
+    private static final int HEADER_COUNT = 16;
+    private static final int HEADER_MAX_DURATION = 24;
+    private static final int HEADER_BY_END = 32;
+    private static final int HEADER_BY_ID = 36;
+    private static final int HEADER_BY_NAME = 40;
+    private static final int HEADER_BY_TAG = 44;
+    private static final int HEADER_STRINGS = 48;
+    private static final int HEADER_LENGTH = 64;
+
+    // positions of the fields of a record
+
+    private static final int START = 0;
+    private static final int END = 12;
+    private static final int ID = 24;
+    private static final int NAME = 32;
+    private static final int TAG = 36;
+    private static final int STATUS = 40;
+    private static final int RECORD_LENGTH = 48;
+
+    /**
+     * The contents of the file.
+     */
+    private final ByteBuffer buffer;
+
+    /**
+     * The generation of the snapshot this store belongs to.
+     */
+    private final long generation;
+
+    /**
+     * The number of records in this store.
+     */
+    private final int count;
+
+    /**
+     * The longest time between the start and the end of an event in this store, in seconds.
+     */
+    private final long maxDuration;
+
+    /**
+     * The positions of the regions of the file holding the record numbers sorted by end time, id number, name
+     * and tag, and of the string region.
+     */
+    private final int byEnd;
+    private final int byId;
+    private final int byName;
+    private final int byTag;
+    private final int strings;
+
+    /**
+     * The records of the events taken out of this store.
+     */
+    private final BitSet removed = new BitSet();
+
+    /**
+     * Initializes a new MappedEventStore object reading the file with the specified contents.
+     *
+     * @param buffer the contents of an event store file.
+     * @throws IOException if the contents are not an event store in a known version of the format.
+     */
+    private MappedEventStore(ByteBuffer buffer) throws IOException {
+        if (buffer.limit() < HEADER_LENGTH || buffer.getInt(0) != MAGIC) {
+            throw new IOException("Not an event store file.");
+        }
+        int version = buffer.getInt(HEADER_VERSION);
+        if (version < 1 || version > VERSION) {
+            throw new IOException("Event store version " + version + " is newer than this program.");
+        }
+        this.buffer = buffer;
+        generation = buffer.getLong(HEADER_GENERATION);
+        count = buffer.getInt(HEADER_COUNT);
+        maxDuration = buffer.getLong(HEADER_MAX_DURATION);
+        byEnd = buffer.getInt(HEADER_BY_END);
+        byId = buffer.getInt(HEADER_BY_ID);
+        byName = buffer.getInt(HEADER_BY_NAME);
+        byTag = buffer.getInt(HEADER_BY_TAG);
+        strings = buffer.getInt(HEADER_STRINGS);
+        long recordsEnd = HEADER_LENGTH + (long) count * RECORD_LENGTH;
+        if (count < 0 || byEnd != recordsEnd || byId != byEnd + 4L * count || byName != byId + 4L * count
+                || byTag != byName + 4L * count || strings != byTag + 4L * count || strings > buffer.limit()) {
+            throw new IOException("Event store file is damaged.");
+        }
+    }
+
+    /**
+     * Maps the specified event store file into memory. The file is read as its events are looked up.
+     *
+     * @param file an event store file.
+     * @return the event store.
+     * @throws IOException if the file cannot be mapped or is not an event store.
+     */
+    public static MappedEventStore open(File file) throws IOException {
+        RandomAccessFile input = new RandomAccessFile(file, "r");
+        try {
+            FileChannel channel = input.getChannel();
+            if (channel.size() > Integer.MAX_VALUE) {
+                throw new IOException(file + " is too large to be mapped.");
+            }
+            // the mapping stays valid once the file is closed
+            return new MappedEventStore(channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size()));
+        } finally {
+            input.close();
+        }
+    }
+
+    /**
+     * Writes an event store file holding the specified events to the specified stream.
+     *
+     * @param events     the events to write.
+     * @param generation the generation of the snapshot the store belongs to.
+     * @param out        the stream to write to.
+     * @return the number of events written.
+     * @throws IOException if the stream cannot be written, or the events do not fit in a file that can be mapped.
+     */
+    static int write(Collection<Event> events, long generation, OutputStream out) throws IOException {
+        List<Event> sorted = new ArrayList<>(events);
+        sorted.sort(Comparator.comparing(Event::getStartTime).thenComparingLong(Event::getId));
+        int count = sorted.size();
+        long length = HEADER_LENGTH + (long) count * (RECORD_LENGTH + 16);
+        if (length > Integer.MAX_VALUE) {
+            throw new IOException("Too many events for an event store: " + count + ".");
+        }
+
+        ByteArrayOutputStream stringBytes = new ByteArrayOutputStream();
+        DataOutputStream stringOut = new DataOutputStream(stringBytes);
+        Map<String, Integer> stringOffsets = new HashMap<>();
+        ByteBuffer records = ByteBuffer.allocate(count * RECORD_LENGTH);
+        long maxDuration = 0;
+        for (Event e : sorted) {
+            long start = e.getStartTime().toEpochSecond(ZoneOffset.UTC);
+            long end = e.getEndTime().toEpochSecond(ZoneOffset.UTC);
+            maxDuration = Math.max(maxDuration, end - start + 1); // rounded up to whole seconds
+            records.putLong(start).putInt(e.getStartTime().getNano());
+            records.putLong(end).putInt(e.getEndTime().getNano());
+            records.putLong(e.getId());
+            records.putInt(writeString(stringOut, stringOffsets, e.getEventName()));
+            records.putInt(writeString(stringOut, stringOffsets, e.getTag()));
+            records.putInt(writeString(stringOut, stringOffsets, e.getStatus()));
+            records.putInt(0);
+        }
+        stringOut.flush();
+        if (length + stringBytes.size() > Integer.MAX_VALUE) {
+            throw new IOException("Too much text for an event store.");
+        }
+
+        int recordsEnd = HEADER_LENGTH + count * RECORD_LENGTH;
+        DataOutputStream file = new DataOutputStream(out);
+        file.writeInt(MAGIC);
+        file.writeInt(VERSION);
+        file.writeLong(generation);
+        file.writeInt(count);
+        file.writeInt(0);
+        file.writeLong(maxDuration);
+        file.writeInt(recordsEnd);
+        file.writeInt(recordsEnd + 4 * count);
+        file.writeInt(recordsEnd + 8 * count);
+        file.writeInt(recordsEnd + 12 * count);
+        file.writeInt(recordsEnd + 16 * count);
+        file.write(new byte[HEADER_LENGTH - 52]);
+        file.write(records.array());
+        writeOrder(file, sorted, Comparator.comparing(Event::getEndTime));
+        writeOrder(file, sorted, Comparator.comparingLong(Event::getId));
+        writeOrder(file, sorted, Comparator.comparing(Event::getEventName,
+                Comparator.nullsFirst(Comparator.<String>naturalOrder())));
+        writeOrder(file, sorted, Comparator.comparing(Event::getTag,
+                Comparator.nullsFirst(Comparator.<String>naturalOrder())));
+        stringBytes.writeTo(file);
+        file.flush();
+        return count;
+    }
+
+    /**
+     * Gets the generation of the snapshot this store belongs to.
+     *
+     * @return the generation of the snapshot.
+     */
+    public long getGeneration() {
+        return generation;
+    }
+
+    /**
+     * Gets the number of events in this store, without those taken out of it.
+     *
+     * @return the number of events.
+     */
+    public int size() {
+        return count - removed.cardinality();
+    }
+
+    // Methods for looking up events
+
+    /**
+     * Gets a view of the events in this store, ordered by start time.
+     *
+     * @return an unmodifiable view of the events.
+     */
+    public Collection<Event> getEvents() {
+        return new RecordView(-1, 0, count, null);
+    }
+
+    /**
+     * Gets a view of the events that overlap the specified range, ordered by start time.
+     * An event overlaps the range if it starts no later than <code>to</code> and ends no earlier than
+     * <code>from</code>.
+     *
+     * @param from the start of the range (inclusive).
+     * @param to   the end of the range (inclusive).
+     * @return an unmodifiable view of the events overlapping the range.
+     */
+    public Collection<Event> findOverlapping(LocalDateTime from, LocalDateTime to) {
+        // no event starting earlier than the longest event before the range reaches into it
+        long fromSecond = from.toEpochSecond(ZoneOffset.UTC);
+        long earliest = fromSecond - maxDuration < fromSecond ? fromSecond - maxDuration : Long.MIN_VALUE;
+        int first = search(-1, START, earliest, 0, false);
+        int last = search(-1, START, to.toEpochSecond(ZoneOffset.UTC), to.getNano(), true);
+        return new RecordView(-1, first, Math.max(first, last), from);
+    }
+
+    /**
+     * Gets a view of the events that end strictly before the specified time, ordered by end time.
+     *
+     * @param time a time.
+     * @return an unmodifiable view of the events ending before <code>time</code>.
+     */
+    public Collection<Event> endingBefore(LocalDateTime time) {
+        return new RecordView(byEnd, 0, search(byEnd, END, time.toEpochSecond(ZoneOffset.UTC), time.getNano(),
+                false), null);
+    }
+
+    /**
+     * Gets a view of the events that start strictly after the specified time, ordered by start time.
+     *
+     * @param time a time.
+     * @return an unmodifiable view of the events starting after <code>time</code>.
+     */
+    public Collection<Event> startingAfter(LocalDateTime time) {
+        return new RecordView(-1, search(-1, START, time.toEpochSecond(ZoneOffset.UTC), time.getNano(), true),
+                count, null);
+    }
+
+    /**
+     * Gets a view of the events that start no earlier than <code>from</code> and strictly before
+     * <code>until</code>, ordered by start time.
+     *
+     * @param from  the start of the range (inclusive).
+     * @param until the end of the range (exclusive).
+     * @return an unmodifiable view of the events starting in the range.
+     */
+    public Collection<Event> startingBetween(LocalDateTime from, LocalDateTime until) {
+        int first = search(-1, START, from.toEpochSecond(ZoneOffset.UTC), from.getNano(), false);
+        int last = search(-1, START, until.toEpochSecond(ZoneOffset.UTC), until.getNano(), false);
+        return new RecordView(-1, first, Math.max(first, last), null);
+    }
+
+    /**
+     * Gets the event in this store with the specified id number.
+     *
+     * @param id an id number.
+     * @return the event with the id number, or <code>null</code> if there is none.
+     */
+    public Event get(long id) {
+        int low = 0;
+        int high = count;
+        while (low < high) {
+            int middle = (low + high) >>> 1;
+            if (buffer.getLong(recordAt(recordNumber(byId, middle)) + ID) < id) {
+                low = middle + 1;
+            } else {
+                high = middle;
+            }
+        }
+        if (low < count) {
+            int record = recordNumber(byId, low);
+            if (buffer.getLong(recordAt(record) + ID) == id && !removed.get(record)) {
+                return event(record);
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Gets a view of the events in this store with the specified name.
+     *
+     * @param name the name of an event.
+     * @return an unmodifiable view of the events with the name, ordered by start time.
+     */
+    public Collection<Event> getByName(String name) {
+        return new RecordView(byName, searchString(byName, NAME, name, false), searchString(byName, NAME, name,
+                true), null);
+    }
+
+    /**
+     * Gets a view of the events in this store with the specified tag.
+     *
+     * @param tag a tag.
+     * @return an unmodifiable view of the events with the tag, ordered by start time.
+     */
+    public Collection<Event> getByTag(String tag) {
+        return new RecordView(byTag, searchString(byTag, TAG, tag, false), searchString(byTag, TAG, tag, true),
+                null);
+    }
+
+    /**
+     * Finds the events in this store whose name and tag match every word of the specified query. Every event is
+     * looked at, so the whole file is read.
+     *
+     * @param query the words to search for.
+     * @param limit the greatest number of events to return.
+     * @return the matching events, ordered by start time.
+     */
+    public List<Event> search(String query, int limit) {
+        List<Event> found = new ArrayList<>();
+        for (int record = removed.nextClearBit(0); record < count && found.size() < limit;
+             record = removed.nextClearBit(record + 1)) {
+            int at = recordAt(record);
+            if (SearchIndex.matches(query, string(buffer.getInt(at + NAME)), string(buffer.getInt(at + TAG)))) {
+                found.add(event(record));
+            }
+        }
+        return found;
+    }
+
+    /**
+     * Returns true if the specified event was read from this store and has not been taken out of it.
+     *
+     * @param e an event.
+     * @return true if the event is in this store, otherwise false.
+     */
+    public boolean contains(Event e) {
+        return e instanceof PagedEvent && ((PagedEvent) e).getStore() == this
+                && !removed.get(((PagedEvent) e).getRecord());
+    }
+
+    /**
+     * Gets the number of events taken out of this store since it was opened.
+     *
+     * @return the number of events removed.
+     */
+    int getRemovedCount() {
+        return removed.cardinality();
+    }
+
+    /**
+     * Reads the whole file of this store into memory, if it is mapped, so that looking up its events does not
+     * wait for the disk.
+     */
+    void load() {
+        if (buffer instanceof MappedByteBuffer) {
+            ((MappedByteBuffer) buffer).load();
+        }
+    }
+
+    /**
+     * Takes the specified event out of this store. The file is not changed.
+     *
+     * @param e an event read from this store.
+     */
+    void remove(PagedEvent e) {
+        if (e.getStore() == this) {
+            removed.set(e.getRecord());
+        }
+    }
+
+    // helper methods
+
+    /**
+     * Gets the position in the file of the specified record.
+     */
+    private static int recordAt(int record) {
+        return HEADER_LENGTH + record * RECORD_LENGTH;
+    }
+
+    /**
+     * Gets the record number at the specified position of the specified ordering, or the position itself for
+     * the ordering of the records, which is given as -1.
+     */
+    private int recordNumber(int order, int position) {
+        return order < 0 ? position : buffer.getInt(order + 4 * position);
+    }
+
+    /**
+     * Finds the first position in the specified ordering, which must be sorted by the specified time field, at
+     * which the time is after the specified time, or no earlier than it if <code>after</code> is false.
+     */
+    private int search(int order, int field, long second, int nano, boolean after) {
+        int low = 0;
+        int high = count;
+        while (low < high) {
+            int middle = (low + high) >>> 1;
+            int c = compareTime(recordAt(recordNumber(order, middle)) + field, second, nano);
+            if (c < 0 || (after && c == 0)) {
+                low = middle + 1;
+            } else {
+                high = middle;
+            }
+        }
+        return low;
+    }
+
+    /**
+     * Finds the first position in the specified ordering, which must be sorted by the specified string field, at
+     * which the string is after the specified string, or no earlier than it if <code>after</code> is false.
+     */
+    private int searchString(int order, int field, String s, boolean after) {
+        int low = 0;
+        int high = count;
+        while (low < high) {
+            int middle = (low + high) >>> 1;
+            String other = string(buffer.getInt(recordAt(recordNumber(order, middle)) + field));
+            int c = other == null ? (s == null ? 0 : -1) : (s == null ? 1 : other.compareTo(s));
+            if (c < 0 || (after && c == 0)) {
+                low = middle + 1;
+            } else {
+                high = middle;
+            }
+        }
+        return low;
+    }
+
+    /**
+     * Compares the time at the specified position of the file with the specified time.
+     */
+    private int compareTime(int at, long second, int nano) {
+        int c = Long.compare(buffer.getLong(at), second);
+        return c != 0 ? c : Integer.compare(buffer.getInt(at + 8), nano);
+    }
+
+    private LocalDateTime time(int at) {
+        return LocalDateTime.ofEpochSecond(buffer.getLong(at), buffer.getInt(at + 8), ZoneOffset.UTC);
+    }
+
+    /**
+     * Reads the string at the specified position of the string region, or <code>null</code> for -1.
+     */
+    private String string(int offset) {
+        if (offset < 0) {
+            return null;
+        }
+        ByteBuffer view = buffer.duplicate(); // keeps the position of the shared buffer untouched
+        view.position(strings + offset);
+        byte[] bytes = new byte[view.getInt()];
+        view.get(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    /**
+     * Creates the event held by the specified record.
+     */
+    private Event event(int record) {
+        int at = recordAt(record);
+        PagedEvent e = new PagedEvent(this, record, string(buffer.getInt(at + NAME)), time(at + START),
+                time(at + END));
+        e.setId(buffer.getLong(at + ID));
+        e.setTag(string(buffer.getInt(at + TAG)));
+        e.changeStatus(string(buffer.getInt(at + STATUS)));
+        return e;
+    }
+
+    /**
+     * Writes a string to the string region, unless it was written already, and gets its position in the region.
+     */
+    private static int writeString(DataOutputStream out, Map<String, Integer> offsets, String s) throws IOException {
+        if (s == null) {
+            return -1;
+        }
+        Integer offset = offsets.get(s);
+        if (offset == null) {
+            offset = out.size();
+            offsets.put(s, offset);
+            byte[] bytes = s.getBytes(StandardCharsets.UTF_8);
+            out.writeInt(bytes.length);
+            out.write(bytes);
+        }
+        return offset;
+    }
+
+    /**
+     * Writes the record numbers of the specified events, which are sorted by start time, in the specified order.
+     * Events equal in that order stay sorted by start time.
+     */
+    private static void writeOrder(DataOutputStream out, List<Event> sorted, Comparator<Event> order)
+            throws IOException {
+        List<Integer> records = new ArrayList<>(sorted.size());
+        for (int i = 0; i < sorted.size(); i++) {
+            records.add(i);
+        }
+        records.sort((a, b) -> order.compare(sorted.get(a), sorted.get(b))); // stable
+        for (int record : records) {
+            out.writeInt(record);
+        }
+    }
+
+    /**
+     * A read-only view of the events at a range of positions of one of the orderings of the records.
+     */
+    private class RecordView extends AbstractCollection<Event> {
+
+        private final int order;
+
+        private final int first;
+
+        private final int last;
+
+        /**
+         * The time the events of this view end no earlier than, or <code>null</code> if they may end any time.
+         */
+        private final LocalDateTime endingFrom;
+
+        private RecordView(int order, int first, int last, LocalDateTime endingFrom) {
+            this.order = order;
+            this.first = first;
+            this.last = last;
+            this.endingFrom = endingFrom;
+        }
+
+        @Override
+        public Iterator<Event> iterator() {
+            return new Iterator<Event>() {
+                private int position = skip(first);
+
+                @Override
+                public boolean hasNext() {
+                    return position < last;
+                }
+
+                @Override
+                public Event next() {
+                    if (!hasNext()) {
+                        throw new NoSuchElementException();
+                    }
+                    Event e = event(recordNumber(order, position));
+                    position = skip(position + 1);
+                    return e;
+                }
+            };
+        }
+
+        @Override
+        public boolean isEmpty() {
+            return skip(first) >= last;
+        }
+
+        @Override
+        public int size() {
+            int size = 0;
+            for (int position = skip(first); position < last; position = skip(position + 1)) {
+                size++;
+            }
+            return size;
+        }
+
+        /**
+         * Finds the first position from the specified one holding an event of this view, without creating it.
+         */
+        private int skip(int position) {
+            while (position < last) {
+                int record = recordNumber(order, position);
+                if (!removed.get(record) && (endingFrom == null || compareTime(recordAt(record) + END,
+                        endingFrom.toEpochSecond(ZoneOffset.UTC), endingFrom.getNano()) >= 0)) {
+                    break;
+                }
+                position++;
+            }
+            return position;
+        }
+    }
+}
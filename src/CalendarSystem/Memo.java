@@ -10,15 +10,13 @@ import java.io.Serializable;
  */
 public class Memo implements Serializable {
 
-    /**
-     * The id number for this memo.
-     */
-    private int idNum;
+    private static final long serialVersionUID = 6738671309393208515L;
 
     /**
-     * The total number of memos created.
+     * The id number for this memo, unique within the memo system storing it; 0 if it is not stored in a memo
+     * system.
      */
-    private static int numOfMemos = 0;
+    private int idNum;
 
     /**
      * The message that this memo stores.
@@ -31,20 +29,27 @@ public class Memo implements Serializable {
      * @param note the message to be stored in this memo.
      */
     public Memo(String note) {
-        numOfMemos++; // updates the total number of memos created
-        this.idNum = numOfMemos;
         this.note = note;
     }
 
     /**
-     * Gets the id number of this memo.
+     * Gets the id number of this memo. The id number is given by the memo system storing this memo.
      *
-     * @return this memo's id number.
+     * @return this memo's id number, or 0 if it is not stored in a memo system.
      */
     public int getIdNumber() {
         return this.idNum;
     }
 
+    /**
+     * Sets the id number of this memo.
+     *
+     * @param idNum the id number given to this memo by the memo system storing it.
+     */
+    void setIdNumber(int idNum) {
+        this.idNum = idNum;
+    }
+
     /**
      * Gets the note stored in this memo.
      *
@@ -70,13 +75,4 @@ public class Memo implements Serializable {
         return "Memo " + this.idNum + ": " + this.note;
     }
 
-    /**
-     * Gets the total number of memos created.
-     *
-     * @return the total number of memos created.
-     */
-    static public int getNumOfMemos() {
-        return numOfMemos;
-    }
-
 }
\ No newline at end of file
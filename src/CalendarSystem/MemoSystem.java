@@ -1,11 +1,21 @@
 package CalendarSystem;
 
+import java.io.IOException;
+import java.io.ObjectInputStream;
 import java.io.Serializable;
-import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.LinkedHashSet;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
 
 /**
  * A system for handling the creation and storage of Memos.
+ * The memo system also keeps, for every memo, the set of events the memo is associated with, so that the
+ * events of a memo can be found without looking at any other event.
  *
  * @see Memo
  */
@@ -14,15 +24,40 @@ public class MemoSystem implements Serializable {
     private static final long serialVersionUID = 7263156044109039531L;
 
     /**
-     * A list of stored memos.
+     * The stored memos, in the order they were added.
      */
-    public ArrayList<Memo> memos;
+    private LinkedHashSet<Memo> memos;
+
+    /**
+     * The id number to be given to the next memo stored in this memo system.
+     */
+    private int nextMemoId = 1;
+
+    /**
+     * The stored memos by id number.
+     * It is rebuilt from the stored memos when this memo system is read from file.
+     */
+    private transient HashMap<Integer, Memo> memosById = new HashMap<>();
+
+    /**
+     * A map mapping each stored memo to the events it is associated with. The number of events of a memo is its
+     * reference count: a memo left with no events is removed from this memo system.
+     * It is rebuilt from the events of the calendar when the calendar is read from file.
+     */
+    private transient IdentityHashMap<Memo, LinkedHashSet<Event>> memoEvents = new IdentityHashMap<>();
+
+    /**
+     * A map mapping each stored memo to the recurring series it is associated with as a whole. A memo associated
+     * with a series is kept in this memo system even if it has no events of its own.
+     * It is rebuilt from the series of the calendar when the calendar is read from file.
+     */
+    private transient IdentityHashMap<Memo, LinkedHashSet<RecurringSeries>> memoSeries = new IdentityHashMap<>();
 
     /**
      * Initializes a new MemoSystem object with no memos.
      */
     public MemoSystem() {
-        this.memos = new ArrayList<>();
+        this.memos = new LinkedHashSet<>();
     }
 
     /**
@@ -31,26 +66,142 @@ public class MemoSystem implements Serializable {
      * @param events a list of events associated with the memo.
      * @param note   the message to be stored in the memo.
      */
-    public void createMemo(List<Event> events, String note) {
+    public Memo createMemo(List<Event> events, String note) {
         // initialize a new Memo object with specified note
         Memo memo = new Memo(note);
 
         // adds memo to the list of memos stored in this memo system
-        this.memos.add(memo);
+        storeMemo(memo);
 
         // adds memo to each event's memos from the input list of events
         for (Event event : events) {
+            linkMemo(memo, event);
+        }
+        return memo;
+    }
+
+    /**
+     * Associates the specified memo with the specified event, storing the memo in this memo system if it is not
+     * already stored.
+     *
+     * @param memo  a memo.
+     * @param event an event.
+     */
+    public void linkMemo(Memo memo, Event event) {
+        storeMemo(memo);
+        if (memoEvents.computeIfAbsent(memo, m -> new LinkedHashSet<>()).add(event)
+                && !event.getMemos().contains(memo)) {
             event.getMemos().add(memo);
         }
     }
 
     /**
-     * Gets a list of all the memos stored in this memo system.
+     * Associates the specified memo with every occurrence of the specified recurring series, storing the memo in
+     * this memo system if it is not already stored.
+     *
+     * @param memo   a memo.
+     * @param series a recurring series.
+     */
+    public void linkMemo(Memo memo, RecurringSeries series) {
+        storeMemo(memo);
+        if (memoSeries.computeIfAbsent(memo, m -> new LinkedHashSet<>()).add(series)
+                && !series.getMemos().contains(memo)) {
+            series.getMemos().add(memo);
+        }
+    }
+
+    /**
+     * Records the memos already held by the specified recurring series as associated with it, storing them in
+     * this memo system if they are not already stored.
+     *
+     * @param series a recurring series.
+     */
+    public void linkSeries(RecurringSeries series) {
+        for (Memo memo : series.getMemos()) {
+            linkMemo(memo, series);
+        }
+    }
+
+    /**
+     * Records the memos already held by the specified event as associated with it, storing them in this memo
+     * system if they are not already stored.
+     *
+     * @param event an event.
+     */
+    public void linkEvent(Event event) {
+        for (Memo memo : event.getMemos()) {
+            linkMemo(memo, event);
+        }
+    }
+
+    /**
+     * Removes all the memos from the specified event. Memos that are no longer associated with any event are
+     * removed from this memo system.
      *
-     * @return the list of stored memos.
+     * @param event an event.
+     */
+    public void unlinkEvent(Event event) {
+        for (Memo memo : event.getMemos()) {
+            Set<Event> events = memoEvents.get(memo);
+            if (events != null) {
+                events.remove(event);
+                if (events.isEmpty()) {
+                    memoEvents.remove(memo);
+                    if (!memoSeries.containsKey(memo)) {
+                        removeMemo(memo); // not associated with any other event
+                    }
+                }
+            }
+        }
+        event.deleteAllMemos();
+    }
+
+    /**
+     * Gets the events associated with the specified memo.
+     *
+     * @param memo a memo stored in this memo system.
+     * @return an unmodifiable view of the events of the memo.
+     */
+    public Set<Event> getEvents(Memo memo) {
+        Set<Event> events = memoEvents.get(memo);
+        if (events == null) {
+            return Collections.emptySet();
+        }
+        return Collections.unmodifiableSet(events);
+    }
+
+    /**
+     * Gets the recurring series associated as a whole with the specified memo.
+     *
+     * @param memo a memo stored in this memo system.
+     * @return an unmodifiable view of the recurring series of the memo.
+     */
+    public Set<RecurringSeries> getSeries(Memo memo) {
+        Set<RecurringSeries> series = memoSeries.get(memo);
+        if (series == null) {
+            return Collections.emptySet();
+        }
+        return Collections.unmodifiableSet(series);
+    }
+
+    /**
+     * Gets the number of events associated with the specified memo.
+     *
+     * @param memo a memo stored in this memo system.
+     * @return the number of events of the memo.
      */
-    public ArrayList<Memo> getMemos() {
-        return memos;
+    public int getEventCount(Memo memo) {
+        Set<Event> events = memoEvents.get(memo);
+        return events == null ? 0 : events.size();
+    }
+
+    /**
+     * Gets all the memos stored in this memo system.
+     *
+     * @return an unmodifiable view of the stored memos, in the order they were added.
+     */
+    public Collection<Memo> getMemos() {
+        return Collections.unmodifiableCollection(memos);
     }
 
     /**
@@ -61,23 +212,52 @@ public class MemoSystem implements Serializable {
      * @return the memo with the specified id number.
      */
     public Memo getMemo(int id) {
-        for (Memo memo : memos) {
-            if (memo.getIdNumber() == id) {
-                return memo;
-            }
+        Memo memo = findMemo(id);
+        if (memo == null) {
+            System.out.println("This is not a valid id number for a memo.");
         }
-        System.out.println("This is not a valid id number for a memo.");
-        return null;
+        return memo;
     }
 
     /**
-     * Removes the specified memo from the stored memos, if it exists.
+     * Gets a memo by its id number, without reporting a missing memo.
+     *
+     * @param id an id number.
+     * @return the memo with the id number, or <code>null</code> if there is none.
+     */
+    Memo findMemo(int id) {
+        return memosById.get(id);
+    }
+
+    /**
+     * Returns true if the specified memo is stored in this memo system.
+     *
+     * @param memo a memo.
+     * @return true if the memo is stored, otherwise false.
+     */
+    public boolean containsMemo(Memo memo) {
+        return memos.contains(memo);
+    }
+
+    /**
+     * Removes the specified memo from the stored memos, if it exists, and from the events it is associated with.
      *
      * @param memo a memo stored in this memo system.
      */
     public void deleteMemo(Memo memo) {
-        if (this.memos.contains(memo)) {
-            this.memos.remove(memo);
+        if (removeMemo(memo)) {
+            Set<Event> events = memoEvents.remove(memo);
+            if (events != null) {
+                for (Event event : events) {
+                    event.deleteMemo(memo);
+                }
+            }
+            Set<RecurringSeries> series = memoSeries.remove(memo);
+            if (series != null) {
+                for (RecurringSeries s : series) {
+                    s.getMemos().remove(memo);
+                }
+            }
             System.out.println("Memo deleted");
         } else {
             System.out.println("Entered invalid Memo"); // memo not in this memo system
@@ -96,4 +276,97 @@ public class MemoSystem implements Serializable {
             return memos.isEmpty();
         }
     }
-}
\ No newline at end of file
+
+    /**
+     * Gets the id number to be given to the next memo stored.
+     *
+     * @return the next memo id number.
+     */
+    int getNextMemoId() {
+        return nextMemoId;
+    }
+
+    /**
+     * Restores the memos of this memo system read from file, keeping their id numbers. Their associations are
+     * recorded again from the events and series of the calendar.
+     *
+     * @param nextMemoId the id number to be given to the next memo stored.
+     * @param stored     the stored memos.
+     */
+    void restore(int nextMemoId, Collection<Memo> stored) {
+        this.nextMemoId = nextMemoId;
+        memos.clear();
+        memosById.clear();
+        for (Memo memo : stored) {
+            memos.add(memo);
+            memosById.put(memo.getIdNumber(), memo);
+        }
+    }
+
+    /**
+     * Copies this memo system, as a snapshot of its memos and their associations that is not changed along with
+     * it.
+     *
+     * @return a copy of this memo system.
+     */
+    MemoSystem copy() {
+        MemoSystem copy = new MemoSystem();
+        copy.restore(nextMemoId, memos);
+        for (Map.Entry<Memo, LinkedHashSet<Event>> entry : memoEvents.entrySet()) {
+            copy.memoEvents.put(entry.getKey(), new LinkedHashSet<>(entry.getValue()));
+        }
+        for (Map.Entry<Memo, LinkedHashSet<RecurringSeries>> entry : memoSeries.entrySet()) {
+            copy.memoSeries.put(entry.getKey(), new LinkedHashSet<>(entry.getValue()));
+        }
+        return copy;
+    }
+
+    // helper methods
+
+    /**
+     * Stores the specified memo, giving it a new id number, if it is not already stored.
+     */
+    private void storeMemo(Memo memo) {
+        if (this.memos.add(memo)) {
+            memo.setIdNumber(nextMemoId++);
+            memosById.put(memo.getIdNumber(), memo);
+        }
+    }
+
+    /**
+     * Removes the specified memo from the stored memos.
+     *
+     * @return true if the memo was stored, otherwise false.
+     */
+    private boolean removeMemo(Memo memo) {
+        if (this.memos.remove(memo)) {
+            memosById.remove(memo.getIdNumber());
+            return true;
+        }
+        return false;
+    }
+
+    /**
+     * Starts with no recorded associations after reading this memo system from file; they are recorded again
+     * from the events and series of the calendar. A memo system saved before it numbered its memos has its
+     * memos numbered again.
+     */
+    @SuppressWarnings("unchecked")
+    private void readObject(ObjectInputStream in) throws IOException, ClassNotFoundException {
+        ObjectInputStream.GetField fields = in.readFields();
+        memos = new LinkedHashSet<>((Collection<Memo>) fields.get("memos", null)); // a list in old files
+        nextMemoId = fields.get("nextMemoId", 0);
+        if (nextMemoId == 0) { // numbered by a counter shared by every calendar before, so renumbered
+            nextMemoId = 1;
+            for (Memo memo : memos) {
+                memo.setIdNumber(nextMemoId++);
+            }
+        }
+        memoEvents = new IdentityHashMap<>();
+        memoSeries = new IdentityHashMap<>();
+        memosById = new HashMap<>();
+        for (Memo memo : memos) {
+            memosById.put(memo.getIdNumber(), memo);
+        }
+    }
+}
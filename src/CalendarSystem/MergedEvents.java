@@ -0,0 +1,131 @@
+package CalendarSystem;
+
+import java.util.AbstractCollection;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.PriorityQueue;
+
+/**
+ * A read-only view of several collections of events as one collection.
+ * If the view has an order, every collection must already be sorted by that order and the events of all of them
+ * are merged in that order as the view is iterated; otherwise the collections follow each other.
+ *
+ * @see Calendar
+ */
+class MergedEvents extends AbstractCollection<Event> {
+
+    /**
+     * The collections of events in this view.
+     */
+    private final List<Collection<Event>> parts;
+
+    /**
+     * The order the collections are sorted by, or <code>null</code> if they follow each other.
+     */
+    private final Comparator<Event> order;
+
+    /**
+     * Initializes a MergedEvents view of the specified collections.
+     *
+     * @param parts the collections of events in the view.
+     * @param order the order every collection is sorted by, or <code>null</code> if the collections are to
+     *              follow each other.
+     */
+    MergedEvents(List<Collection<Event>> parts, Comparator<Event> order) {
+        this.parts = parts;
+        this.order = order;
+    }
+
+    @Override
+    public Iterator<Event> iterator() {
+        if (order == null) {
+            return new Iterator<Event>() {
+                private int part;
+
+                private Iterator<Event> current = parts.isEmpty() ? null : parts.get(0).iterator();
+
+                @Override
+                public boolean hasNext() {
+                    while (current != null && !current.hasNext()) {
+                        part++;
+                        current = part < parts.size() ? parts.get(part).iterator() : null;
+                    }
+                    return current != null;
+                }
+
+                @Override
+                public Event next() {
+                    if (!hasNext()) {
+                        throw new NoSuchElementException();
+                    }
+                    return current.next();
+                }
+            };
+        }
+        return new MergeIterator();
+    }
+
+    @Override
+    public int size() {
+        int size = 0;
+        for (Collection<Event> part : parts) {
+            size += part.size();
+        }
+        return size;
+    }
+
+    /**
+     * An iterator taking the next event of all the collections from a heap holding the next event of each.
+     */
+    private class MergeIterator implements Iterator<Event> {
+
+        private final PriorityQueue<Head> heads = new PriorityQueue<>(Math.max(1, parts.size()),
+                (a, b) -> order.compare(a.event, b.event));
+
+        private MergeIterator() {
+            for (Collection<Event> part : parts) {
+                advance(new Head(part.iterator()));
+            }
+        }
+
+        @Override
+        public boolean hasNext() {
+            return !heads.isEmpty();
+        }
+
+        @Override
+        public Event next() {
+            Head head = heads.poll();
+            if (head == null) {
+                throw new NoSuchElementException();
+            }
+            Event next = head.event;
+            advance(head);
+            return next;
+        }
+
+        private void advance(Head head) {
+            if (head.rest.hasNext()) {
+                head.event = head.rest.next();
+                heads.add(head);
+            }
+        }
+    }
+
+    /**
+     * The next event of one of the collections, along with the rest of that collection.
+     */
+    private static class Head {
+
+        private final Iterator<Event> rest;
+
+        private Event event;
+
+        private Head(Iterator<Event> rest) {
+            this.rest = rest;
+        }
+    }
+}
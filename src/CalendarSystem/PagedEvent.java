@@ -0,0 +1,58 @@
+package CalendarSystem;
+
+import java.time.LocalDateTime;
+
+/**
+ * Represents an event read from a record of a calendar's memory-mapped event store.
+ * A paged event is created when it is looked up in the store; it becomes an event stored in the calendar once it
+ * is changed, keeping its id number.
+ *
+ * @see MappedEventStore
+ */
+public class PagedEvent extends Event {
+
+    private static final long serialVersionUID = 1L;
+
+    /**
+     * The store this event was read from.
+     */
+    private final MappedEventStore store;
+
+    /**
+     * The number of the record of this event in its store.
+     */
+    private final int record;
+
+    /**
+     * Initializes a new PagedEvent object for the specified record of the specified store.
+     *
+     * @param store  the store the event is read from.
+     * @param record the number of the record of the event.
+     * @param name   the name of the event.
+     * @param start  the start time and date of the event.
+     * @param end    the end time and date of the event.
+     */
+    PagedEvent(MappedEventStore store, int record, String name, LocalDateTime start, LocalDateTime end) {
+        super(name, start, end);
+        this.store = store;
+        this.record = record;
+    }
+
+    /**
+     * Gets the store this event was read from.
+     *
+     * @return the store of this event.
+     */
+    MappedEventStore getStore() {
+        return store;
+    }
+
+    /**
+     * Gets the number of the record of this event in its store.
+     *
+     * @return the record number of this event.
+     */
+    int getRecord() {
+        return record;
+    }
+}
@@ -0,0 +1,433 @@
+package CalendarSystem;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.time.Period;
+import java.util.AbstractCollection;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+import java.util.TreeSet;
+
+/**
+ * Represents a series of events that recur by a rule instead of being stored one by one.
+ * The n-th occurrence (counting from 0) of the series starts at <code>first + n * frequency</code> and lasts for
+ * the series' duration. The series ends after a number of occurrences or at an end date, and single occurrences
+ * can be excluded from it.
+ * <p>
+ * Occurrences are only created when they are looked up, as {@link SeriesOccurrence} events. An occurrence that
+ * is changed is excluded from the rule and stored in the calendar as an event of its own, which stays part of
+ * this series.
+ *
+ * @see SeriesSystem
+ * @see SeriesOccurrence
+ */
+public class RecurringSeries extends Series {
+
+    private static final long serialVersionUID = 1L;
+
+    /**
+     * The start time and date of the first occurrence of this series.
+     */
+    private final LocalDateTime first;
+
+    /**
+     * The duration of each occurrence of this series.
+     */
+    private final Duration duration;
+
+    /**
+     * The time between the starts of consecutive occurrences of this series.
+     */
+    private final Period frequency;
+
+    /**
+     * The number of occurrences of this series, excluded occurrences included.
+     */
+    private final int size;
+
+    /**
+     * The numbers of the occurrences excluded from this series.
+     */
+    private final TreeSet<Integer> exceptions = new TreeSet<>();
+
+    /**
+     * The memos associated with every occurrence of this series.
+     */
+    private final ArrayList<Memo> memos = new ArrayList<>();
+
+    /**
+     * Initializes a RecurringSeries object with the specified number of occurrences.
+     *
+     * @param name      the name of the series.
+     * @param first     the start time and date of the first occurrence.
+     * @param duration  the duration of each occurrence.
+     * @param frequency the time between the starts of consecutive occurrences.
+     * @param count     the number of occurrences.
+     */
+    public RecurringSeries(String name, LocalDateTime first, Duration duration, Period frequency, int count) {
+        super(name, new ArrayList<>());
+        checkRule(duration, frequency);
+        if (count < 0) {
+            throw new IllegalArgumentException("A series cannot have a negative number of events.");
+        }
+        this.first = first;
+        this.duration = duration;
+        this.frequency = frequency;
+        this.size = count;
+    }
+
+    /**
+     * Initializes a RecurringSeries object whose last occurrence starts no later than the specified date.
+     *
+     * @param name      the name of the series.
+     * @param first     the start time and date of the first occurrence.
+     * @param duration  the duration of each occurrence.
+     * @param frequency the time between the starts of consecutive occurrences; must not be zero.
+     * @param until     the latest start time and date of an occurrence.
+     */
+    public RecurringSeries(String name, LocalDateTime first, Duration duration, Period frequency,
+                           LocalDateTime until) {
+        super(name, new ArrayList<>());
+        checkRule(duration, frequency);
+        if (frequency.isZero()) {
+            throw new IllegalArgumentException("A series ending at a date needs a frequency.");
+        }
+        this.first = first;
+        this.duration = duration;
+        this.frequency = frequency;
+        this.size = countUntil(until);
+    }
+
+    private static void checkRule(Duration duration, Period frequency) {
+        if (duration.isNegative() || frequency.isNegative()) {
+            throw new IllegalArgumentException("A series cannot have a negative duration or frequency.");
+        }
+    }
+
+    /**
+     * Counts the occurrences starting no later than the specified date.
+     */
+    private int countUntil(LocalDateTime until) {
+        if (until.isBefore(first)) {
+            return 0;
+        }
+        // every occurrence starts at least this many days after the previous one
+        long minDays = frequency.toTotalMonths() * 28 + frequency.getDays();
+        long upper = minDays == 0 ? Integer.MAX_VALUE
+                : Math.min(Integer.MAX_VALUE, Duration.between(first, until).toDays() / minDays + 2);
+        return firstIndexStartingAfter(until, (int) upper);
+    }
+
+    // Methods for finding occurrences
+
+    /**
+     * Gets the start time and date of the specified occurrence.
+     *
+     * @param index the number of an occurrence, counting from 0.
+     * @return the start time of the occurrence.
+     */
+    public LocalDateTime getStart(int index) {
+        return first.plus(frequency.multipliedBy(index));
+    }
+
+    /**
+     * Gets the number of occurrences of this series that are not excluded.
+     *
+     * @return the number of occurrences of this series.
+     */
+    public int getOccurrenceCount() {
+        return size - exceptions.size();
+    }
+
+    /**
+     * Gets the specified occurrence of this series.
+     *
+     * @param index the number of an occurrence, counting from 0.
+     * @return the occurrence, or <code>null</code> if there is no such occurrence or it is excluded.
+     */
+    public SeriesOccurrence getOccurrence(int index) {
+        if (index < 0 || index >= size || exceptions.contains(index)) {
+            return null;
+        }
+        return new SeriesOccurrence(this, index, getStart(index), getStart(index).plus(duration));
+    }
+
+    /**
+     * Gets the occurrence of this series with the specified name, given to occurrences as
+     * "<i>series name</i>: Event <i>number</i>" with numbers counting from 1.
+     *
+     * @param name the name of an event.
+     * @return the occurrence with the name, or <code>null</code> if there is none.
+     */
+    public SeriesOccurrence getOccurrence(String name) {
+        String prefix = getName() + ": Event ";
+        if (!name.startsWith(prefix)) {
+            return null;
+        }
+        try {
+            return getOccurrence(Integer.parseInt(name.substring(prefix.length())) - 1);
+        } catch (NumberFormatException e) {
+            return null;
+        }
+    }
+
+    /**
+     * Gets the occurrences of this series that overlap the specified range, ordered by start time.
+     *
+     * @param from the start of the range (inclusive).
+     * @param to   the end of the range (inclusive).
+     * @return a view of the occurrences overlapping the range.
+     */
+    public Collection<Event> getOccurrences(LocalDateTime from, LocalDateTime to) {
+        return new OccurrenceView(firstIndexEndingFrom(from), firstIndexStartingAfter(to, size));
+    }
+
+    /**
+     * Gets the occurrences of this series that end strictly before the specified time.
+     *
+     * @param time a time.
+     * @return a view of the occurrences ending before the time, ordered by start time.
+     */
+    public Collection<Event> getOccurrencesEndingBefore(LocalDateTime time) {
+        return new OccurrenceView(0, firstIndexEndingFrom(time));
+    }
+
+    /**
+     * Gets the occurrences of this series that start strictly after the specified time.
+     *
+     * @param time a time.
+     * @return a view of the occurrences starting after the time, ordered by start time.
+     */
+    public Collection<Event> getOccurrencesStartingAfter(LocalDateTime time) {
+        return new OccurrenceView(firstIndexStartingAfter(time, size), size);
+    }
+
+    /**
+     * Gets all the occurrences of this series as they are now, in a view that occurrences excluded later stay
+     * in, so that it can be read while the series is changed. Only the excluded occurrence numbers are copied.
+     *
+     * @return a view of the occurrences of this series, ordered by start time.
+     */
+    public Collection<Event> getOccurrenceSnapshot() {
+        return new OccurrenceView(0, size, new TreeSet<>(exceptions));
+    }
+
+    /**
+     * Gets all the events of this series: the events stored on their own, followed by the occurrences of the
+     * rule.
+     *
+     * @return a view of the events in this series.
+     */
+    @Override
+    public Collection<Event> getEvents() {
+        final Collection<Event> stored = super.getEvents();
+        final Collection<Event> occurrences = new OccurrenceView(0, size);
+        return new AbstractCollection<Event>() {
+            @Override
+            public Iterator<Event> iterator() {
+                final Iterator<Event> storedEvents = stored.iterator();
+                final Iterator<Event> generated = occurrences.iterator();
+                return new Iterator<Event>() {
+                    @Override
+                    public boolean hasNext() {
+                        return storedEvents.hasNext() || generated.hasNext();
+                    }
+
+                    @Override
+                    public Event next() {
+                        return storedEvents.hasNext() ? storedEvents.next() : generated.next();
+                    }
+                };
+            }
+
+            @Override
+            public int size() {
+                return stored.size() + occurrences.size();
+            }
+        };
+    }
+
+    /**
+     * Gets the events of this series that are stored on their own, in the order they were added to it.
+     *
+     * @return an unmodifiable view of the stored events of this series.
+     */
+    public Collection<Event> getStoredEvents() {
+        return Collections.unmodifiableCollection(super.getEvents());
+    }
+
+    /**
+     * Gets the duration of each occurrence of this series.
+     *
+     * @return the duration of an occurrence.
+     */
+    public Duration getDuration() {
+        return duration;
+    }
+
+    /**
+     * Gets the time between the starts of consecutive occurrences of this series.
+     *
+     * @return the frequency of this series.
+     */
+    public Period getFrequency() {
+        return frequency;
+    }
+
+    /**
+     * Gets the number of occurrences of this series, excluded occurrences included.
+     *
+     * @return the number of occurrences the rule of this series produces.
+     */
+    int getSize() {
+        return size;
+    }
+
+    /**
+     * Gets the numbers of the occurrences excluded from this series, in increasing order.
+     *
+     * @return an unmodifiable view of the excluded occurrence numbers.
+     */
+    Collection<Integer> getExceptions() {
+        return Collections.unmodifiableSet(exceptions);
+    }
+
+    // Methods for editing this series
+
+    /**
+     * Excludes the specified occurrence from the rule of this series.
+     *
+     * @param index the number of an occurrence, counting from 0.
+     */
+    public void exclude(int index) {
+        if (index >= 0 && index < size) {
+            exceptions.add(index);
+        }
+    }
+
+    /**
+     * Gets the start times and dates of the occurrences excluded from this series.
+     *
+     * @return a list of the start times of the excluded occurrences.
+     */
+    public ArrayList<LocalDateTime> getExceptionDates() {
+        ArrayList<LocalDateTime> dates = new ArrayList<>();
+        for (int index : exceptions) {
+            dates.add(getStart(index));
+        }
+        return dates;
+    }
+
+    /**
+     * Gets the memos associated with every occurrence of this series.
+     *
+     * @return the list of memos of this series.
+     */
+    public ArrayList<Memo> getMemos() {
+        return memos;
+    }
+
+    // helper methods
+
+    /**
+     * Finds the first occurrence ending no earlier than the specified time.
+     */
+    private int firstIndexEndingFrom(LocalDateTime time) {
+        int low = 0;
+        int high = size;
+        while (low < high) {
+            int mid = (low + high) >>> 1;
+            if (getStart(mid).plus(duration).isBefore(time)) {
+                low = mid + 1;
+            } else {
+                high = mid;
+            }
+        }
+        return low;
+    }
+
+    /**
+     * Finds the first occurrence, among the first <code>limit</code> ones, starting strictly after the specified
+     * time.
+     */
+    private int firstIndexStartingAfter(LocalDateTime time, int limit) {
+        int low = 0;
+        int high = limit;
+        while (low < high) {
+            int mid = (low + high) >>> 1;
+            if (getStart(mid).isAfter(time)) {
+                high = mid;
+            } else {
+                low = mid + 1;
+            }
+        }
+        return low;
+    }
+
+    /**
+     * A read-only view of a range of occurrences of this series, skipping the excluded ones.
+     * Occurrences are created as the view is iterated.
+     */
+    private class OccurrenceView extends AbstractCollection<Event> {
+
+        private final int from;
+
+        private final int to;
+
+        /**
+         * The numbers of the occurrences the view skips.
+         */
+        private final TreeSet<Integer> excluded;
+
+        private OccurrenceView(int from, int to) {
+            this(from, to, exceptions);
+        }
+
+        private OccurrenceView(int from, int to, TreeSet<Integer> excluded) {
+            this.from = from;
+            this.to = Math.max(from, to);
+            this.excluded = excluded;
+        }
+
+        @Override
+        public Iterator<Event> iterator() {
+            return new Iterator<Event>() {
+                private int next = skipExcluded(from);
+
+                @Override
+                public boolean hasNext() {
+                    return next < to;
+                }
+
+                @Override
+                public Event next() {
+                    if (!hasNext()) {
+                        throw new NoSuchElementException();
+                    }
+                    LocalDateTime start = getStart(next);
+                    Event occurrence = new SeriesOccurrence(RecurringSeries.this, next, start, start.plus(duration));
+                    next = skipExcluded(next + 1);
+                    return occurrence;
+                }
+            };
+        }
+
+        private int skipExcluded(int index) {
+            while (index < to && excluded.contains(index)) {
+                index++;
+            }
+            return index;
+        }
+
+        @Override
+        public int size() {
+            if (from >= to) {
+                return 0;
+            }
+            return (to - from) - excluded.subSet(from, to).size();
+        }
+    }
+}
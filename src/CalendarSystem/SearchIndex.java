@@ -0,0 +1,481 @@
+package CalendarSystem;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.SortedMap;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+
+/**
+ * An inverted index over the words found in the name, tag, series names and memo notes of events.
+ * Every word of a search query may match a word of an event exactly or as a prefix; events are ranked by how
+ * well, and in which of their fields, they match the query.
+ * <p>
+ * Every indexed event is given a small slot number, so that the scores of a search are accumulated in plain
+ * arrays instead of in maps built for every query. Each search takes arrays of its own from a pool, so searches
+ * made at the same time by several threads holding a calendar's read lock do not share them.
+ *
+ * @see Calendar
+ */
+public class SearchIndex {
+
+    /**
+     * The weight of a word found in the name of an event.
+     */
+    private static final int NAME_WEIGHT = 8;
+
+    /**
+     * The weight of a word found in the tag of an event.
+     */
+    private static final int TAG_WEIGHT = 4;
+
+    /**
+     * The weight of a word found in the name of a series containing an event.
+     */
+    private static final int SERIES_WEIGHT = 2;
+
+    /**
+     * The weight of a word found in the note of a memo of an event.
+     */
+    private static final int MEMO_WEIGHT = 1;
+
+    /**
+     * An indexed event along with the words it was last indexed with.
+     */
+    private static class Document {
+
+        private final Event event;
+
+        /**
+         * The position of this document in the score arrays of this index.
+         */
+        private final int slot;
+
+        /**
+         * The words of this document, each with its weight and the position of this document in the word's
+         * posting.
+         */
+        private Map<String, int[]> words = Collections.emptyMap();
+
+        private Document(Event event, int slot) {
+            this.event = event;
+            this.slot = slot;
+        }
+    }
+
+    /**
+     * The documents containing a word, along with the weight of the word in each of them.
+     */
+    private static class Posting {
+
+        private Document[] docs = new Document[4];
+
+        private int[] weights = new int[4];
+
+        private int size;
+
+        /**
+         * Adds the specified document to this posting.
+         *
+         * @return the position of the document in this posting.
+         */
+        private int add(Document doc, int weight) {
+            if (size == docs.length) {
+                docs = Arrays.copyOf(docs, size * 2);
+                weights = Arrays.copyOf(weights, size * 2);
+            }
+            docs[size] = doc;
+            weights[size] = weight;
+            return size++;
+        }
+
+        /**
+         * Removes the document at the specified position, moving the last document of this posting into it.
+         *
+         * @return the moved document, or <code>null</code> if the removed document was the last one.
+         */
+        private Document removeAt(int position) {
+            size--;
+            Document moved = null;
+            if (position != size) {
+                moved = docs[size];
+                docs[position] = moved;
+                weights[position] = weights[size];
+            }
+            docs[size] = null;
+            return moved;
+        }
+    }
+
+    /**
+     * A map mapping each indexed word, in sorted order, to the documents containing it.
+     */
+    private final TreeMap<String, Posting> postings = new TreeMap<>();
+
+    /**
+     * A map mapping each indexed event to its document.
+     */
+    private final IdentityHashMap<Event, Document> documents = new IdentityHashMap<>();
+
+    /**
+     * The slots given up by removed documents, to be given to new documents.
+     */
+    private int[] freeSlots = new int[16];
+
+    /**
+     * The number of free slots.
+     */
+    private int freeCount;
+
+    /**
+     * The slot to be given to the next document when there is no free slot.
+     */
+    private int nextSlot;
+
+    /**
+     * The arrays a search accumulates the scores of the documents in, by slot.
+     */
+    private static class Scores {
+
+        /**
+         * For every slot, the last search step matched by the document in the slot.
+         */
+        private int[] marks = new int[16];
+
+        /**
+         * For every slot, the best score of the document for the current query word.
+         */
+        private int[] bestScores = new int[16];
+
+        /**
+         * For every slot, the total score of the document for the query words matched so far.
+         */
+        private int[] totalScores = new int[16];
+
+        /**
+         * The last search step used; every query word of every search is a new step.
+         */
+        private int step;
+
+        /**
+         * Makes room for the specified number of slots.
+         */
+        private void ensureCapacity(int slots) {
+            if (slots > marks.length) {
+                int capacity = Math.max(slots, marks.length * 2);
+                marks = Arrays.copyOf(marks, capacity);
+                bestScores = Arrays.copyOf(bestScores, capacity);
+                totalScores = Arrays.copyOf(totalScores, capacity);
+            }
+        }
+    }
+
+    /**
+     * The score arrays not in use by a search.
+     */
+    private final ConcurrentLinkedQueue<Scores> idleScores = new ConcurrentLinkedQueue<>();
+
+    /**
+     * Indexes the specified event under the current words of its name, tag, series and memos, replacing the
+     * words it was previously indexed with.
+     *
+     * @param e the event to be indexed.
+     */
+    public void update(Event e) {
+        Map<String, int[]> words = new HashMap<>();
+        addWords(words, e.getEventName(), NAME_WEIGHT);
+        addWords(words, e.getTag(), TAG_WEIGHT);
+        for (Series s : e.getSeries()) {
+            addWords(words, s.getName(), SERIES_WEIGHT);
+        }
+        for (Memo m : e.getMemos()) {
+            addWords(words, m.getNote(), MEMO_WEIGHT);
+        }
+
+        Document doc = documents.get(e);
+        if (doc == null) {
+            doc = new Document(e, takeSlot());
+            documents.put(e, doc);
+        }
+        for (Map.Entry<String, int[]> old : doc.words.entrySet()) {
+            int[] entry = words.get(old.getKey());
+            if (entry == null) {
+                removePosting(old.getKey(), old.getValue()[1]);
+            } else {
+                // keeps the document's position in the posting, with the new weight
+                entry[1] = old.getValue()[1];
+                postings.get(old.getKey()).weights[entry[1]] = entry[0];
+            }
+        }
+        for (Map.Entry<String, int[]> entry : words.entrySet()) {
+            if (!doc.words.containsKey(entry.getKey())) {
+                entry.getValue()[1] = postings.computeIfAbsent(entry.getKey(), w -> new Posting())
+                        .add(doc, entry.getValue()[0]);
+            }
+        }
+        doc.words = words;
+    }
+
+    /**
+     * Removes the specified event from this index.
+     *
+     * @param e an indexed event.
+     */
+    public void remove(Event e) {
+        Document doc = documents.remove(e);
+        if (doc != null) {
+            for (Map.Entry<String, int[]> entry : doc.words.entrySet()) {
+                removePosting(entry.getKey(), entry.getValue()[1]);
+            }
+            if (freeCount == freeSlots.length) {
+                freeSlots = Arrays.copyOf(freeSlots, freeCount * 2);
+            }
+            freeSlots[freeCount++] = doc.slot;
+        }
+    }
+
+    /**
+     * Removes every event from this index.
+     */
+    public void clear() {
+        postings.clear();
+        documents.clear();
+        freeCount = 0;
+        nextSlot = 0;
+    }
+
+    /**
+     * Finds the events matching every word of the specified query, best matches first. A query word matches an
+     * event word that it is equal to or a prefix of; exact matches rank above prefix matches.
+     *
+     * @param query the words to search for.
+     * @param limit the greatest number of events to return.
+     * @return a list of at most <code>limit</code> matching events, without duplicates.
+     */
+    public List<Event> search(String query, int limit) {
+        List<String> words = tokenize(query);
+        if (words.isEmpty() || limit <= 0) {
+            return new ArrayList<>();
+        }
+        // matches the most selective words first, so that fewer documents are carried to the next words
+        words.sort((a, b) -> Integer.compare(estimateMatches(a), estimateMatches(b)));
+        Scores scores = idleScores.poll();
+        if (scores == null) {
+            scores = new Scores();
+        }
+        try {
+            scores.ensureCapacity(nextSlot);
+            if (scores.step > Integer.MAX_VALUE - words.size() - 1) {
+                Arrays.fill(scores.marks, 0);
+                scores.step = 0;
+            }
+            List<Document> matched = new ArrayList<>();
+            for (int i = 0; i < words.size(); i++) {
+                matched = match(scores, words.get(i), i == 0 ? -1 : scores.step, ++scores.step);
+                if (matched.isEmpty()) {
+                    return new ArrayList<>();
+                }
+            }
+            return rank(scores, matched, limit);
+        } finally {
+            idleScores.offer(scores);
+        }
+    }
+
+    /**
+     * Returns true if every word of the specified query matches a word of the name or of the memo notes of the
+     * specified recurring series, whose occurrences are not indexed.
+     *
+     * @param query  the words to search for.
+     * @param series a recurring series.
+     * @return true if the series matches the query, otherwise false.
+     */
+    public static boolean matches(String query, RecurringSeries series) {
+        List<String> texts = new ArrayList<>();
+        texts.add(series.getName());
+        for (Memo m : series.getMemos()) {
+            texts.add(m.getNote());
+        }
+        return matches(query, texts.toArray(new String[0]));
+    }
+
+    /**
+     * Returns true if every word of the specified query matches a word of the specified texts, either exactly or
+     * as its beginning.
+     *
+     * @param query the words to search for.
+     * @param texts the texts to search, which may be <code>null</code>.
+     * @return true if the texts match the query, otherwise false.
+     */
+    public static boolean matches(String query, String... texts) {
+        List<String> words = tokenize(query);
+        if (words.isEmpty()) {
+            return false;
+        }
+        List<String> textWords = new ArrayList<>();
+        for (String text : texts) {
+            textWords.addAll(tokenize(text));
+        }
+        for (String word : words) {
+            boolean found = false;
+            for (String textWord : textWords) {
+                if (textWord.startsWith(word)) {
+                    found = true;
+                    break;
+                }
+            }
+            if (!found) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    // helper methods
+
+    /**
+     * Finds the documents matching the specified query word, among the documents marked with the previous step
+     * (or among all documents if <code>previous</code> is negative), and marks them with the current step.
+     * The best score of every matching document for the word is added to its total score.
+     */
+    private List<Document> match(Scores scores, String word, int previous, int current) {
+        int[] marks = scores.marks;
+        int[] bestScores = scores.bestScores;
+        int[] totalScores = scores.totalScores;
+        List<Document> matched = new ArrayList<>();
+        SortedMap<String, Posting> prefixed = postings.subMap(word, word + Character.MAX_VALUE);
+        for (Map.Entry<String, Posting> entry : prefixed.entrySet()) {
+            boolean exact = entry.getKey().length() == word.length();
+            Posting posting = entry.getValue();
+            for (int i = 0; i < posting.size; i++) {
+                Document doc = posting.docs[i];
+                int slot = doc.slot;
+                int score = exact ? posting.weights[i] * 2 : posting.weights[i];
+                if (marks[slot] == current) {
+                    bestScores[slot] = Math.max(bestScores[slot], score);
+                } else if (previous < 0 || marks[slot] == previous) {
+                    if (previous < 0) {
+                        totalScores[slot] = 0;
+                    }
+                    marks[slot] = current;
+                    bestScores[slot] = score;
+                    matched.add(doc);
+                }
+            }
+        }
+        for (Document doc : matched) {
+            totalScores[doc.slot] += bestScores[doc.slot];
+        }
+        return matched;
+    }
+
+    /**
+     * Orders the specified documents by decreasing total score, then by event id number, and keeps the first
+     * <code>limit</code> of them.
+     */
+    private List<Event> rank(Scores scores, List<Document> matched, int limit) {
+        int[] totalScores = scores.totalScores;
+        Comparator<Document> order = (a, b) -> {
+            int byScore = Integer.compare(totalScores[b.slot], totalScores[a.slot]);
+            return byScore != 0 ? byScore : Long.compare(a.event.getId(), b.event.getId());
+        };
+        List<Document> best;
+        if (limit >= matched.size()) {
+            best = matched;
+        } else {
+            // keeps the best documents in a heap whose head is the worst of them
+            PriorityQueue<Document> heap = new PriorityQueue<>(limit + 1, order.reversed());
+            for (Document doc : matched) {
+                if (heap.size() < limit) {
+                    heap.add(doc);
+                } else if (order.compare(doc, heap.peek()) < 0) {
+                    heap.poll();
+                    heap.add(doc);
+                }
+            }
+            best = new ArrayList<>(heap);
+        }
+        best.sort(order);
+        List<Event> result = new ArrayList<>(best.size());
+        for (Document doc : best) {
+            result.add(doc.event);
+        }
+        return result;
+    }
+
+    /**
+     * Estimates the number of documents matching the specified query word.
+     */
+    private int estimateMatches(String word) {
+        int estimate = 0;
+        for (Posting posting : postings.subMap(word, word + Character.MAX_VALUE).values()) {
+            estimate += posting.size;
+        }
+        return estimate;
+    }
+
+    private int takeSlot() {
+        if (freeCount > 0) {
+            return freeSlots[--freeCount];
+        }
+        return nextSlot++;
+    }
+
+    /**
+     * Removes the document at the specified position of the posting of the specified word.
+     */
+    private void removePosting(String word, int position) {
+        Posting posting = postings.get(word);
+        Document moved = posting.removeAt(position);
+        if (moved != null) {
+            moved.words.get(word)[1] = position;
+        }
+        if (posting.size == 0) {
+            postings.remove(word);
+        }
+    }
+
+    /**
+     * Adds the words of the specified text, with the specified weight, to the words of a document.
+     * Every word is mapped to its weight and to a position to be filled in later.
+     */
+    private static void addWords(Map<String, int[]> words, String text, int weight) {
+        for (String word : tokenize(text)) {
+            int[] entry = words.computeIfAbsent(word, w -> new int[2]);
+            entry[0] += weight;
+        }
+    }
+
+    /**
+     * Splits the specified text into lower case words made of letters and digits.
+     *
+     * @param text a text.
+     * @return the words of the text, in order.
+     */
+    public static List<String> tokenize(String text) {
+        List<String> words = new ArrayList<>();
+        if (text == null || text.isEmpty()) {
+            return words;
+        }
+        String lower = text.toLowerCase(Locale.ROOT);
+        int start = -1;
+        for (int i = 0; i <= lower.length(); i++) {
+            boolean inWord = i < lower.length() && Character.isLetterOrDigit(lower.charAt(i));
+            if (inWord && start < 0) {
+                start = i;
+            } else if (!inWord && start >= 0) {
+                words.add(lower.substring(start, i));
+                start = -1;
+            }
+        }
+        return words;
+    }
+}
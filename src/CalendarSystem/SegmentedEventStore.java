@@ -0,0 +1,623 @@
+package CalendarSystem;
+
+import java.io.BufferedInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.time.LocalDateTime;
+import java.time.YearMonth;
+import java.time.ZoneOffset;
+import java.time.temporal.ChronoUnit;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+
+/**
+ * Holds the events of a calendar that are kept out of its snapshot, in one {@link MappedEventStore} file per
+ * month of their start time, listed by a small manifest file.
+ * <p>
+ * Opening the store only reads the manifest, and maps the months around the current time; the other months are
+ * mapped when a query first reaches them, or in the background. Every month is described in the manifest by the
+ * range of the times and id numbers of its events, so a query only maps the months that may answer it.
+ * <p>
+ * A snapshot only writes the months whose events changed since they were last written; the other months keep
+ * their files, which are named after the month and the generation of the snapshot that wrote them. The manifest
+ * is named after the generation of its snapshot.
+ *
+ * @see CalendarManager
+ * @see MappedEventStore
+ */
+public class SegmentedEventStore {
+
+    /**
+     * The first four bytes of a manifest file.
+     */
+    private static final int MAGIC = 0x43414C4D;
+
+    /**
+     * The version of the format written.
+     */
+    private static final int VERSION = 1;
+
+    /**
+     * The number of months either side of the current month mapped when the store is opened.
+     */
+    private static final int NEAR_MONTHS = 1;
+
+    /**
+     * The file of the events of one month, along with what the manifest records of it.
+     */
+    private static class Segment {
+
+        /**
+         * The month of the start times of the events, or <code>null</code> if the events may start in any month,
+         * as they do in the single event store written by earlier versions.
+         */
+        private final YearMonth month;
+
+        private final File file;
+
+        private final long generation;
+
+        private final int count;
+
+        /**
+         * The range of the start times, end times and id numbers of the events, in seconds from the epoch.
+         */
+        private final long minStart;
+        private final long maxStart;
+        private final long minEnd;
+        private final long maxEnd;
+        private final long minId;
+        private final long maxId;
+
+        /**
+         * The events of the file, once it is mapped.
+         */
+        private MappedEventStore store;
+
+        private Segment(YearMonth month, File file, long generation, int count, long minStart, long maxStart,
+                        long minEnd, long maxEnd, long minId, long maxId) {
+            this.month = month;
+            this.file = file;
+            this.generation = generation;
+            this.count = count;
+            this.minStart = minStart;
+            this.maxStart = maxStart;
+            this.minEnd = minEnd;
+            this.maxEnd = maxEnd;
+            this.minId = minId;
+            this.maxId = maxId;
+        }
+
+        /**
+         * Maps the file of this segment, unless it is mapped already.
+         */
+        private synchronized MappedEventStore open() throws IOException {
+            if (store == null) {
+                MappedEventStore opened = MappedEventStore.open(file);
+                if (opened.getGeneration() != generation || opened.size() != count) {
+                    throw new IOException(file + " does not match its manifest.");
+                }
+                store = opened;
+            }
+            return store;
+        }
+
+        /**
+         * Gets the events of this segment, mapping its file if needed.
+         */
+        private MappedEventStore store() {
+            try {
+                return open();
+            } catch (IOException ex) {
+                throw new UncheckedIOException(ex);
+            }
+        }
+
+        private synchronized boolean isOpen() {
+            return store != null;
+        }
+
+        private int removedCount() {
+            return isOpen() ? store().getRemovedCount() : 0;
+        }
+
+        private boolean overlaps(long from, long to) {
+            return minStart <= to && maxEnd >= from;
+        }
+    }
+
+    /**
+     * A month as last written to file: the segment written and what its events were made of.
+     */
+    private static class Written {
+
+        private final Segment segment;
+
+        /**
+         * The number of events taken out of the segments read for the month, and the fields of the events
+         * stored in the calendar for the month, when the month was written.
+         */
+        private final int removedCount;
+        private final List<List<Object>> stored;
+
+        private Written(Segment segment, int removedCount, List<List<Object>> stored) {
+            this.segment = segment;
+            this.removedCount = removedCount;
+            this.stored = stored;
+        }
+    }
+
+    /**
+     * The files to write for a new snapshot of the store.
+     */
+    static class Update {
+
+        private final Map<File, byte[]> files = new LinkedHashMap<>();
+
+        private final Set<File> referenced = new LinkedHashSet<>();
+
+        private int count;
+
+        /**
+         * Gets the files to write, and their contents, the manifest last.
+         *
+         * @return the files to write.
+         */
+        Map<File, byte[]> getFiles() {
+            return files;
+        }
+
+        /**
+         * Gets every file of the new snapshot of the store, written now or before.
+         *
+         * @return the files of the store.
+         */
+        Set<File> getReferencedFiles() {
+            return referenced;
+        }
+
+        /**
+         * Gets the number of events in the new snapshot of the store.
+         *
+         * @return the number of events.
+         */
+        int getCount() {
+            return count;
+        }
+    }
+
+    /**
+     * The segments read when this store was opened, ordered by month. Queries are answered from them.
+     */
+    private final List<Segment> segments;
+
+    /**
+     * The months as last written to file, which may differ from the segments read once a snapshot is taken.
+     */
+    private TreeMap<YearMonth, Written> written = new TreeMap<>();
+
+    private SegmentedEventStore(List<Segment> segments) {
+        this.segments = segments;
+    }
+
+    /**
+     * Creates an event store with no events.
+     *
+     * @return an empty event store.
+     */
+    static SegmentedEventStore empty() {
+        return new SegmentedEventStore(Collections.<Segment>emptyList());
+    }
+
+    /**
+     * Opens the event store of the snapshot of the specified generation in the specified file, reading its
+     * manifest and mapping the months around the specified time into memory. The single event store file
+     * written by earlier versions is read as one segment, and written by month with the next snapshot.
+     *
+     * @param snapshot   the file of a snapshot.
+     * @param generation the generation of the snapshot.
+     * @param now        the current time.
+     * @return the event store.
+     * @throws IOException if the store cannot be read.
+     */
+    static SegmentedEventStore open(File snapshot, long generation, LocalDateTime now) throws IOException {
+        File manifest = manifestFile(snapshot, generation);
+        File single = new File(snapshot.getPath() + "." + generation + ".events");
+        if (!manifest.exists() && single.exists()) {
+            MappedEventStore store = MappedEventStore.open(single);
+            Segment all = new Segment(null, single, generation, store.size(), Long.MIN_VALUE, Long.MAX_VALUE,
+                    Long.MIN_VALUE, Long.MAX_VALUE, Long.MIN_VALUE, Long.MAX_VALUE);
+            all.store = store;
+            return new SegmentedEventStore(Collections.singletonList(all));
+        }
+
+        List<Segment> segments = new ArrayList<>();
+        DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(manifest)));
+        try {
+            if (in.readInt() != MAGIC) {
+                throw new IOException(manifest + " is not a manifest file.");
+            }
+            int version = in.readInt();
+            if (version < 1 || version > VERSION) {
+                throw new IOException("Manifest version " + version + " is newer than this program.");
+            }
+            if (in.readLong() != generation) {
+                throw new IOException(manifest + " does not belong to " + snapshot + ".");
+            }
+            int count = in.readInt();
+            for (int i = 0; i < count; i++) {
+                YearMonth month = YearMonth.of(in.readInt(), in.readByte());
+                long segmentGeneration = in.readLong();
+                segments.add(new Segment(month, segmentFile(snapshot, month, segmentGeneration), segmentGeneration,
+                        in.readInt(), in.readLong(), in.readLong(), in.readLong(), in.readLong(), in.readLong(),
+                        in.readLong()));
+            }
+        } finally {
+            in.close();
+        }
+
+        SegmentedEventStore store = new SegmentedEventStore(segments);
+        YearMonth current = YearMonth.from(now);
+        for (Segment s : segments) {
+            if (!s.file.isFile()) {
+                throw new IOException(s.file + " is missing.");
+            }
+            store.written.put(s.month, new Written(s, 0, Collections.<List<Object>>emptyList()));
+            if (Math.abs(current.until(s.month, ChronoUnit.MONTHS)) <= NEAR_MONTHS) {
+                s.open().load(); // read now, as the current months are looked at first
+            }
+        }
+        return store;
+    }
+
+    /**
+     * Maps every month of this store that is not mapped yet. Called in the background after opening the store.
+     *
+     * @throws IOException if a month cannot be mapped.
+     */
+    void openAll() throws IOException {
+        for (Segment s : segments) {
+            s.open();
+        }
+    }
+
+    /**
+     * Gets the number of events in this store, without those taken out of it.
+     *
+     * @return the number of events.
+     */
+    public int size() {
+        int size = 0;
+        for (Segment s : segments) {
+            size += s.count - s.removedCount();
+        }
+        return size;
+    }
+
+    // Methods for looking up events
+
+    /**
+     * Gets a view of the events in this store, ordered by start time.
+     *
+     * @return an unmodifiable view of the events.
+     */
+    public Collection<Event> getEvents() {
+        List<Collection<Event>> parts = new ArrayList<>();
+        for (Segment s : segments) {
+            parts.add(s.store().getEvents());
+        }
+        return new MergedEvents(parts, null); // the months follow each other
+    }
+
+    /**
+     * Gets a view of the events that overlap the specified range, ordered by start time.
+     *
+     * @param from the start of the range (inclusive).
+     * @param to   the end of the range (inclusive).
+     * @return an unmodifiable view of the events overlapping the range.
+     * @see MappedEventStore#findOverlapping(LocalDateTime, LocalDateTime)
+     */
+    public Collection<Event> findOverlapping(LocalDateTime from, LocalDateTime to) {
+        long fromSecond = from.toEpochSecond(ZoneOffset.UTC);
+        long toSecond = to.toEpochSecond(ZoneOffset.UTC);
+        List<Collection<Event>> parts = new ArrayList<>();
+        for (Segment s : segments) {
+            if (s.overlaps(fromSecond, toSecond)) {
+                parts.add(s.store().findOverlapping(from, to));
+            }
+        }
+        return new MergedEvents(parts, null);
+    }
+
+    /**
+     * Gets a view of the events that end strictly before the specified time, ordered by end time.
+     *
+     * @param time a time.
+     * @return an unmodifiable view of the events ending before <code>time</code>.
+     */
+    public Collection<Event> endingBefore(LocalDateTime time) {
+        long second = time.toEpochSecond(ZoneOffset.UTC);
+        List<Collection<Event>> parts = new ArrayList<>();
+        for (Segment s : segments) {
+            if (s.minEnd <= second) {
+                parts.add(s.store().endingBefore(time));
+            }
+        }
+        return new MergedEvents(parts, Comparator.comparing(Event::getEndTime));
+    }
+
+    /**
+     * Gets a view of the events that start strictly after the specified time, ordered by start time.
+     *
+     * @param time a time.
+     * @return an unmodifiable view of the events starting after <code>time</code>.
+     */
+    public Collection<Event> startingAfter(LocalDateTime time) {
+        long second = time.toEpochSecond(ZoneOffset.UTC);
+        List<Collection<Event>> parts = new ArrayList<>();
+        for (Segment s : segments) {
+            if (s.maxStart >= second) {
+                parts.add(s.store().startingAfter(time));
+            }
+        }
+        return new MergedEvents(parts, null);
+    }
+
+    /**
+     * Gets the event in this store with the specified id number.
+     *
+     * @param id an id number.
+     * @return the event with the id number, or <code>null</code> if there is none.
+     */
+    public Event get(long id) {
+        for (Segment s : segments) {
+            if (s.minId <= id && id <= s.maxId) {
+                Event e = s.store().get(id);
+                if (e != null) {
+                    return e;
+                }
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Gets a view of the events in this store with the specified name.
+     *
+     * @param name the name of an event.
+     * @return an unmodifiable view of the events with the name, ordered by start time.
+     */
+    public Collection<Event> getByName(String name) {
+        List<Collection<Event>> parts = new ArrayList<>();
+        for (Segment s : segments) {
+            parts.add(s.store().getByName(name));
+        }
+        return new MergedEvents(parts, null);
+    }
+
+    /**
+     * Gets a view of the events in this store with the specified tag.
+     *
+     * @param tag a tag.
+     * @return an unmodifiable view of the events with the tag, ordered by start time.
+     */
+    public Collection<Event> getByTag(String tag) {
+        List<Collection<Event>> parts = new ArrayList<>();
+        for (Segment s : segments) {
+            parts.add(s.store().getByTag(tag));
+        }
+        return new MergedEvents(parts, null);
+    }
+
+    /**
+     * Finds the events in this store whose name and tag match every word of the specified query.
+     *
+     * @param query the words to search for.
+     * @param limit the greatest number of events to return.
+     * @return the matching events, ordered by start time.
+     * @see MappedEventStore#search(String, int)
+     */
+    public List<Event> search(String query, int limit) {
+        List<Event> found = new ArrayList<>();
+        for (Segment s : segments) {
+            if (found.size() >= limit) {
+                break;
+            }
+            found.addAll(s.store().search(query, limit - found.size()));
+        }
+        return found;
+    }
+
+    /**
+     * Returns true if the specified event was read from this store and has not been taken out of it.
+     *
+     * @param e an event.
+     * @return true if the event is in this store, otherwise false.
+     */
+    public boolean contains(Event e) {
+        if (!(e instanceof PagedEvent)) {
+            return false;
+        }
+        for (Segment s : segments) {
+            if (s.isOpen() && s.store() == ((PagedEvent) e).getStore()) {
+                return s.store().contains(e);
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Takes the specified event out of this store. The files are not changed.
+     *
+     * @param e an event read from this store.
+     */
+    void remove(PagedEvent e) {
+        if (contains(e)) {
+            e.getStore().remove(e);
+        }
+    }
+
+    // Methods for writing the store
+
+    /**
+     * Encodes the months of this store whose events changed since they were last written, with the specified
+     * events stored in the calendar added, as files of the snapshot of the specified generation. The months
+     * are recorded as written.
+     *
+     * @param snapshot   the file of the snapshot.
+     * @param generation the generation of the snapshot.
+     * @param stored     the events stored in the calendar that are to be kept in the store.
+     * @return the files to write.
+     * @throws IOException if the events do not fit in event store files.
+     */
+    Update write(File snapshot, long generation, Collection<Event> stored) throws IOException {
+        TreeMap<YearMonth, List<Event>> storedByMonth = new TreeMap<>();
+        for (Event e : stored) {
+            storedByMonth.computeIfAbsent(YearMonth.from(e.getStartTime()), m -> new ArrayList<>()).add(e);
+        }
+        Set<YearMonth> months = new LinkedHashSet<>(written.keySet());
+        months.addAll(storedByMonth.keySet());
+        for (Segment s : segments) {
+            if (s.month != null) {
+                months.add(s.month);
+            } else {
+                for (Event e : s.store().getEvents()) {
+                    months.add(YearMonth.from(e.getStartTime()));
+                }
+            }
+        }
+
+        Update update = new Update();
+        TreeMap<YearMonth, Written> next = new TreeMap<>();
+        for (YearMonth month : months) {
+            List<Event> storedEvents = storedByMonth.getOrDefault(month, Collections.<Event>emptyList());
+            List<List<Object>> fields = new ArrayList<>(storedEvents.size());
+            for (Event e : storedEvents) {
+                fields.add(Arrays.<Object>asList(e.getId(), e.getEventName(), e.getStartTime(), e.getEndTime(),
+                        e.getTag(), e.getStatus()));
+            }
+            List<Segment> read = segmentsOf(month);
+            int removedCount = 0;
+            for (Segment s : read) {
+                removedCount += s.removedCount();
+            }
+
+            Written last = written.get(month);
+            if (last != null && last.removedCount == removedCount && last.stored.equals(fields)) {
+                next.put(month, last); // unchanged since it was written
+            } else {
+                List<Event> events = new ArrayList<>(storedEvents);
+                LocalDateTime start = month.atDay(1).atStartOfDay();
+                for (Segment s : read) {
+                    events.addAll(s.store().startingBetween(start, start.plusMonths(1)));
+                }
+                if (events.isEmpty()) {
+                    continue;
+                }
+                Segment segment = describe(snapshot, month, generation, events);
+                ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+                MappedEventStore.write(events, generation, bytes);
+                update.files.put(segment.file, bytes.toByteArray());
+                next.put(month, new Written(segment, removedCount, fields));
+            }
+        }
+
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        DataOutputStream manifest = new DataOutputStream(bytes);
+        manifest.writeInt(MAGIC);
+        manifest.writeInt(VERSION);
+        manifest.writeLong(generation);
+        manifest.writeInt(next.size());
+        for (Written w : next.values()) {
+            Segment s = w.segment;
+            manifest.writeInt(s.month.getYear());
+            manifest.writeByte(s.month.getMonthValue());
+            manifest.writeLong(s.generation);
+            manifest.writeInt(s.count);
+            manifest.writeLong(s.minStart);
+            manifest.writeLong(s.maxStart);
+            manifest.writeLong(s.minEnd);
+            manifest.writeLong(s.maxEnd);
+            manifest.writeLong(s.minId);
+            manifest.writeLong(s.maxId);
+            update.referenced.add(s.file);
+            update.count += s.count;
+        }
+        manifest.flush();
+        if (!next.isEmpty()) {
+            File manifestFile = manifestFile(snapshot, generation);
+            update.files.put(manifestFile, bytes.toByteArray());
+            update.referenced.add(manifestFile);
+        }
+        written = next;
+        return update;
+    }
+
+    // helper methods
+
+    /**
+     * Gets the segments read that may hold events starting in the specified month.
+     */
+    private List<Segment> segmentsOf(YearMonth month) {
+        List<Segment> found = new ArrayList<>();
+        for (Segment s : segments) {
+            if (s.month == null || s.month.equals(month)) {
+                found.add(s);
+            }
+        }
+        return found;
+    }
+
+    /**
+     * Describes the segment of the specified events of the specified month, written with the snapshot of the
+     * specified generation.
+     */
+    private static Segment describe(File snapshot, YearMonth month, long generation, List<Event> events) {
+        long minStart = Long.MAX_VALUE;
+        long maxStart = Long.MIN_VALUE;
+        long minEnd = Long.MAX_VALUE;
+        long maxEnd = Long.MIN_VALUE;
+        long minId = Long.MAX_VALUE;
+        long maxId = Long.MIN_VALUE;
+        for (Event e : events) {
+            long start = e.getStartTime().toEpochSecond(ZoneOffset.UTC);
+            long end = e.getEndTime().toEpochSecond(ZoneOffset.UTC);
+            minStart = Math.min(minStart, start);
+            maxStart = Math.max(maxStart, start + 1); // rounded up past the nanoseconds
+            minEnd = Math.min(minEnd, end);
+            maxEnd = Math.max(maxEnd, end + 1);
+            minId = Math.min(minId, e.getId());
+            maxId = Math.max(maxId, e.getId());
+        }
+        return new Segment(month, segmentFile(snapshot, month, generation), generation, events.size(), minStart,
+                maxStart, minEnd, maxEnd, minId, maxId);
+    }
+
+    /**
+     * Gets the file of the events of the specified month written with the snapshot of the specified generation.
+     */
+    private static File segmentFile(File snapshot, YearMonth month, long generation) {
+        return new File(snapshot.getPath() + "." + month + "." + generation + ".events");
+    }
+
+    /**
+     * Gets the manifest file of the snapshot of the specified generation.
+     */
+    private static File manifestFile(File snapshot, long generation) {
+        return new File(snapshot.getPath() + "." + generation + ".manifest");
+    }
+}
@@ -10,6 +10,8 @@ import java.util.Collection;
  */
 public class Series implements Serializable {
 
+    private static final long serialVersionUID = 4625856356395600102L;
+
     /**
      * The name of this series.
      */
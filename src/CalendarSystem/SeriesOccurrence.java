@@ -0,0 +1,59 @@
+package CalendarSystem;
+
+import java.time.LocalDateTime;
+
+/**
+ * Represents one occurrence of a recurring series.
+ * An occurrence is created when it is looked up in its series; it becomes an event stored in the calendar once it
+ * is changed.
+ *
+ * @see RecurringSeries
+ */
+public class SeriesOccurrence extends Event {
+
+    private static final long serialVersionUID = 1L;
+
+    /**
+     * The series this is an occurrence of.
+     */
+    private final RecurringSeries rule;
+
+    /**
+     * The number of this occurrence in its series, counting from 0.
+     */
+    private final int index;
+
+    /**
+     * Initializes a new SeriesOccurrence object for the specified occurrence of the specified series.
+     *
+     * @param rule  the series this is an occurrence of.
+     * @param index the number of the occurrence, counting from 0.
+     * @param start the start time and date of the occurrence.
+     * @param end   the end time and date of the occurrence.
+     */
+    SeriesOccurrence(RecurringSeries rule, int index, LocalDateTime start, LocalDateTime end) {
+        super(rule.getName() + ": Event " + (index + 1), start, end);
+        this.rule = rule;
+        this.index = index;
+        associateSeries(rule);
+        getMemos().addAll(rule.getMemos());
+    }
+
+    /**
+     * Gets the series this is an occurrence of.
+     *
+     * @return the series of this occurrence.
+     */
+    public RecurringSeries getRule() {
+        return rule;
+    }
+
+    /**
+     * Gets the number of this occurrence in its series.
+     *
+     * @return the number of this occurrence, counting from 0.
+     */
+    public int getIndex() {
+        return index;
+    }
+}
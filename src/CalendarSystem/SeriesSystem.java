@@ -1,5 +1,7 @@
 package CalendarSystem;
 
+import java.io.IOException;
+import java.io.ObjectInputStream;
 import java.io.Serializable;
 import java.time.Duration;
 import java.time.LocalDateTime;
@@ -11,14 +13,22 @@ import java.util.Collection;
  * A system that handles the storage and creation of series.
  *
  * @see Series
+ * @see RecurringSeries
  */
 public class SeriesSystem implements Serializable {
 
+    private static final long serialVersionUID = 5636497896206445763L;
+
     /**
      * A list of series stored in this series system.
      */
     private ArrayList<Series> mySeries = new ArrayList<>();
 
+    /**
+     * The series stored in this series system whose events recur by a rule.
+     */
+    private ArrayList<RecurringSeries> myRecurringSeries = new ArrayList<>();
+
     /**
      * Creates a new Series object using the specified name and collection of events and adds
      * it to this series system's stored series.
@@ -35,28 +45,83 @@ public class SeriesSystem implements Serializable {
         }
     }
 
+    /**
+     * Restores the series of this series system read from file.
+     *
+     * @param series the stored series, in the order they were added.
+     */
+    void restore(Collection<Series> series) {
+        for (Series s : series) {
+            mySeries.add(s);
+            if (s instanceof RecurringSeries) {
+                myRecurringSeries.add((RecurringSeries) s);
+            }
+        }
+    }
+
     public ArrayList<Series> getSeries() {
         return mySeries;
     }
 
     /**
-     * Builds a new Series object using the given parameters, stores
-     * it in this series system and returns the collection of events in the series.
+     * Gets the series stored in this series system whose events recur by a rule.
+     *
+     * @return the list of recurring series.
+     */
+    public ArrayList<RecurringSeries> getRecurringSeries() {
+        return myRecurringSeries;
+    }
+
+    /**
+     * Builds a new recurring series using the given parameters and stores it in this series system.
+     * The events of the series are not created until they are looked up.
      *
      * @param d     the duration of each event in the series.
      * @param freq  duration between each event.
      * @param num   the number of events in the series.
      * @param first the dateTime of the first event in the series.
+     * @return the new series.
      */
-    public Collection<Event> buildSeries(String name, Duration d, Period freq, int num, LocalDateTime first) {
-        ArrayList<Event> newEvents = new ArrayList<>();
-        newEvents.add(new Event(name + ": Event 1", first, first.plus(d)));
-        for (int i = 2; i <= num; i++) {
-            first = first.plus(freq);
-            newEvents.add(new Event(name + ": Event " + i, first, first.plus(d)));
+    public RecurringSeries buildSeries(String name, Duration d, Period freq, int num, LocalDateTime first) {
+        return addRecurringSeries(new RecurringSeries(name, first, d, freq, num));
+    }
+
+    /**
+     * Builds a new recurring series using the given parameters and stores it in this series system.
+     * The events of the series are not created until they are looked up.
+     *
+     * @param d     the duration of each event in the series.
+     * @param freq  duration between each event; must not be zero.
+     * @param until the latest dateTime at which an event of the series starts.
+     * @param first the dateTime of the first event in the series.
+     * @return the new series.
+     */
+    public RecurringSeries buildSeries(String name, Duration d, Period freq, LocalDateTime until,
+                                       LocalDateTime first) {
+        return addRecurringSeries(new RecurringSeries(name, first, d, freq, until));
+    }
+
+    private RecurringSeries addRecurringSeries(RecurringSeries s) {
+        mySeries.add(s);
+        myRecurringSeries.add(s);
+        return s;
+    }
+
+    /**
+     * Gets the occurrence of a recurring series with the specified name.
+     *
+     * @param eventName the name of an event.
+     * @return the occurrence with the name, or <code>null</code> if there is none.
+     * @see RecurringSeries#getOccurrence(String)
+     */
+    public SeriesOccurrence findOccurrence(String eventName) {
+        for (RecurringSeries s : myRecurringSeries) {
+            SeriesOccurrence occurrence = s.getOccurrence(eventName);
+            if (occurrence != null) {
+                return occurrence;
+            }
         }
-        createSeries(name, newEvents);
-        return newEvents;
+        return null;
     }
 
     /**
@@ -85,4 +150,14 @@ public class SeriesSystem implements Serializable {
         }
         return new ArrayList<>();
     }
-}
\ No newline at end of file
+
+    /**
+     * Starts with no recurring series after reading a series system saved before series could recur.
+     */
+    private void readObject(ObjectInputStream in) throws IOException, ClassNotFoundException {
+        in.defaultReadObject();
+        if (myRecurringSeries == null) {
+            myRecurringSeries = new ArrayList<>();
+        }
+    }
+}
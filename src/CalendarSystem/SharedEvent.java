@@ -0,0 +1,177 @@
+package CalendarSystem;
+
+import java.time.LocalDateTime;
+
+/**
+ * Represents an event shared by one user with another: a copy of the event's name, times, tag and memo notes,
+ * along with where it came from, and nothing else of the sender's calendar.
+ * A shared event becomes an event of its own in the recipient's calendar; its size does not depend on the
+ * series, memos or calendar of the event it was copied from.
+ *
+ * @see EventInbox
+ */
+public class SharedEvent {
+
+    /**
+     * The name of the user who shared the event.
+     */
+    private final String sender;
+
+    /**
+     * The id number of the event in the sender's calendar, or 0 if it was not stored in one.
+     */
+    private final long originId;
+
+    /**
+     * The name of the event.
+     */
+    private final String name;
+
+    /**
+     * The start time and date of the event.
+     */
+    private final LocalDateTime startTime;
+
+    /**
+     * The end time and date of the event.
+     */
+    private final LocalDateTime endTime;
+
+    /**
+     * The tag of the event, or <code>null</code> if it has none.
+     */
+    private final String tag;
+
+    /**
+     * The notes of the memos of the event, one per line, or <code>null</code> if it had none.
+     */
+    private final String note;
+
+    /**
+     * Initializes a new SharedEvent object using the specified parameters.
+     *
+     * @param sender    the name of the user sharing the event.
+     * @param originId  the id number of the event in the sender's calendar.
+     * @param name      the name of the event.
+     * @param startTime the start time and date of the event.
+     * @param endTime   the end time and date of the event.
+     * @param tag       the tag of the event, or <code>null</code>.
+     * @param note      the memo text of the event, or <code>null</code>.
+     */
+    public SharedEvent(String sender, long originId, String name, LocalDateTime startTime, LocalDateTime endTime,
+                       String tag, String note) {
+        this.sender = sender;
+        this.originId = originId;
+        this.name = name;
+        this.startTime = startTime;
+        this.endTime = endTime;
+        this.tag = tag;
+        this.note = note;
+    }
+
+    /**
+     * Copies the specified event to be shared by the specified user.
+     *
+     * @param sender the name of the user sharing the event.
+     * @param event  the event being shared.
+     * @return the shared copy of the event.
+     */
+    public static SharedEvent of(String sender, Event event) {
+        StringBuilder notes = new StringBuilder();
+        for (Memo m : event.getMemos()) {
+            if (notes.length() > 0) {
+                notes.append('\n');
+            }
+            notes.append(m.getNote());
+        }
+        return new SharedEvent(sender, event.getId(), event.getEventName(), event.getStartTime(),
+                event.getEndTime(), event.getTag(), notes.length() > 0 ? notes.toString() : null);
+    }
+
+    /**
+     * Creates an event of its own from this shared event, with a single memo holding its memo text.
+     *
+     * @return a new event, not stored in any calendar.
+     */
+    public Event toEvent() {
+        Event event = new Event(name, startTime, endTime);
+        event.setTag(tag);
+        if (note != null) {
+            event.getMemos().add(new Memo(note));
+        }
+        return event;
+    }
+
+    /**
+     * Returns true if this event and the specified one are copies of the same event of the same sender.
+     *
+     * @param other a shared event.
+     * @return true if both were shared from the same event, otherwise false.
+     */
+    public boolean isSameOrigin(SharedEvent other) {
+        return originId != 0 && originId == other.originId && sender != null && sender.equals(other.sender);
+    }
+
+    /**
+     * Gets the name of the user who shared the event.
+     *
+     * @return the name of the sender.
+     */
+    public String getSender() {
+        return sender;
+    }
+
+    /**
+     * Gets the id number of the event in the sender's calendar.
+     *
+     * @return the id number of the original event, or 0 if it was not stored.
+     */
+    public long getOriginId() {
+        return originId;
+    }
+
+    /**
+     * Gets the name of the shared event.
+     *
+     * @return the name of the event.
+     */
+    public String getName() {
+        return name;
+    }
+
+    /**
+     * Gets the start time and date of the shared event.
+     *
+     * @return the start time of the event.
+     */
+    public LocalDateTime getStartTime() {
+        return startTime;
+    }
+
+    /**
+     * Gets the end time and date of the shared event.
+     *
+     * @return the end time of the event.
+     */
+    public LocalDateTime getEndTime() {
+        return endTime;
+    }
+
+    /**
+     * Gets the tag of the shared event.
+     *
+     * @return the tag of the event, or <code>null</code> if it has none.
+     */
+    public String getTag() {
+        return tag;
+    }
+
+    /**
+     * Gets the memo text of the shared event.
+     *
+     * @return the notes of the memos of the event, one per line, or <code>null</code> if it had none.
+     */
+    public String getNote() {
+        return note;
+    }
+}
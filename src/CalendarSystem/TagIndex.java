@@ -0,0 +1,104 @@
+package CalendarSystem;
+
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.Set;
+
+/**
+ * An index of the events of a calendar by their tag.
+ * The index also keeps one shared copy of every tag, which is handed back to the events carrying that tag.
+ *
+ * @see Calendar
+ */
+public class TagIndex {
+
+    /**
+     * The events carrying a tag, along with the shared copy of that tag.
+     */
+    private static class TagEntry {
+
+        private final String tag;
+
+        private final LinkedHashSet<Event> events = new LinkedHashSet<>();
+
+        private TagEntry(String tag) {
+            this.tag = tag;
+        }
+    }
+
+    /**
+     * A map mapping each tag to the events carrying it.
+     */
+    private final HashMap<String, TagEntry> entries = new HashMap<>();
+
+    /**
+     * Adds the specified event to this index under its current tag.
+     *
+     * @param e the event to be added.
+     * @return the shared copy of the event's tag.
+     */
+    public String add(Event e) {
+        TagEntry entry = entries.computeIfAbsent(e.getTag(), TagEntry::new);
+        entry.events.add(e);
+        return entry.tag;
+    }
+
+    /**
+     * Removes the specified event from this index. The event's tag must not have changed since it was added.
+     *
+     * @param e an event in this index.
+     * @return true if the event was in this index, otherwise false.
+     */
+    public boolean remove(Event e) {
+        TagEntry entry = entries.get(e.getTag());
+        if (entry == null || !entry.events.remove(e)) {
+            return false;
+        }
+        if (entry.events.isEmpty()) {
+            entries.remove(e.getTag());
+        }
+        return true;
+    }
+
+    /**
+     * Removes every event from this index.
+     */
+    public void clear() {
+        entries.clear();
+    }
+
+    /**
+     * Gets the events carrying the specified tag.
+     *
+     * @param tag a tag.
+     * @return an unmodifiable view of the events with the tag.
+     */
+    public Set<Event> getEvents(String tag) {
+        TagEntry entry = entries.get(tag);
+        if (entry == null) {
+            return Collections.emptySet();
+        }
+        return Collections.unmodifiableSet(entry.events);
+    }
+
+    /**
+     * Gets the number of events carrying the specified tag.
+     *
+     * @param tag a tag.
+     * @return the number of events with the tag.
+     */
+    public int count(String tag) {
+        TagEntry entry = entries.get(tag);
+        return entry == null ? 0 : entry.events.size();
+    }
+
+    /**
+     * Gets all the tags carried by at least one event in this index.
+     *
+     * @return an unmodifiable view of the tags in this index.
+     */
+    public Set<String> getTags() {
+        return Collections.unmodifiableSet(entries.keySet());
+    }
+}
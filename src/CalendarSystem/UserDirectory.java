@@ -0,0 +1,523 @@
+package CalendarSystem;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileLock;
+import java.nio.charset.StandardCharsets;
+import java.security.GeneralSecurityException;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.security.SecureRandom;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Base64;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import javax.crypto.SecretKeyFactory;
+import javax.crypto.spec.PBEKeySpec;
+
+/**
+ * Holds the users of the application: their names and passwords, one user per line of a CSV file, with a hash
+ * index of the file so that a user is found without reading the others.
+ * <p>
+ * Passwords are stored as salted PBKDF2 hashes, as <code>pbkdf2$iterations$salt$hash</code> with the salt and
+ * hash in Base64. The lines of earlier versions, which held the passwords themselves, are hashed the first time
+ * the directory is used: the user's line is appended again with the hash, and the old line blanked. A password
+ * checked once is checked again against a digest kept in memory, so that a server checking the password of
+ * every request does not hash it every time.
+ * <p>
+ * The index file next to the CSV file is an open-addressing hash table of the offsets of the lines, with a
+ * header giving how much of the CSV file it covers; lines appended to the file by earlier versions, or by a
+ * process that crashed before updating the index, are indexed the next time the directory is used. The users
+ * looked up recently are kept in memory.
+ * <p>
+ * Every operation that reads the files holds a lock on the CSV file, so several running applications can share
+ * it: adding a user holds the lock while the user is checked for, appended and indexed.
+ */
+public class UserDirectory {
+
+    /**
+     * The first four bytes of an index file.
+     */
+    private static final int MAGIC = 0x43414C55;
+
+    /**
+     * The version of the format written. Version 2 indexes a CSV file whose passwords are all hashed; an index of
+     * version 1 is rebuilt, hashing the passwords.
+     */
+    private static final int VERSION = 2;
+
+    private static final int HEADER_LENGTH = 32;
+
+    private static final int SLOT_LENGTH = 12;
+
+    private static final int MIN_SLOTS = 64;
+
+    /**
+     * The greatest number of users kept in memory.
+     */
+    private static final int MAX_CACHED_USERS = 1024;
+
+    /**
+     * The start of a hashed password, the number of iterations of PBKDF2 new hashes are made with, and the
+     * length of their salt and hash in bytes.
+     */
+    private static final String HASH_PREFIX = "pbkdf2$";
+    private static final int ITERATIONS = 100000;
+    private static final int SALT_LENGTH = 16;
+    private static final int HASH_LENGTH = 32;
+
+    private static final SecureRandom random = new SecureRandom();
+
+    /**
+     * The CSV file of the users, and its hash index.
+     */
+    private final File file;
+    private final File indexFile;
+
+    /**
+     * The number of slots in the index, the number of them in use, and the length of the CSV file indexed.
+     */
+    private int slots;
+    private int used;
+    private long indexedLength;
+
+    /**
+     * The hashed passwords of the users looked up recently, by user name, least recently used first.
+     */
+    private final Map<String, String> cache = new LinkedHashMap<String, String>(16, 0.75f, true) {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<String, String> eldest) {
+            return size() > MAX_CACHED_USERS;
+        }
+    };
+
+    /**
+     * The digests of the passwords checked, with the hashed passwords they were checked against, by user name.
+     */
+    private final Map<String, byte[]> verified = new HashMap<>();
+
+    /**
+     * Creates the directory of the users in the specified CSV file, which is created when the first user is
+     * added.
+     *
+     * @param file the CSV file of the users.
+     */
+    public UserDirectory(File file) {
+        this.file = file;
+        this.indexFile = new File(file.getPath() + ".idx");
+    }
+
+    /**
+     * Returns true if a user with the specified name exists.
+     *
+     * @param name the name of a user.
+     * @return true if the user exists, otherwise false.
+     * @throws IOException if the users cannot be read.
+     */
+    public synchronized boolean hasUser(String name) throws IOException {
+        return getRecord(name) != null;
+    }
+
+    /**
+     * Returns true if a user with the specified name exists and has the specified password.
+     *
+     * @param name     the name of a user.
+     * @param password a password.
+     * @return true if the password is the user's, otherwise false.
+     * @throws IOException if the users cannot be read.
+     */
+    public synchronized boolean checkPassword(String name, String password) throws IOException {
+        String stored = getRecord(name);
+        if (stored == null) {
+            return false;
+        }
+        byte[] digest = digest(stored, password);
+        byte[] known = verified.get(name);
+        if (known != null && MessageDigest.isEqual(known, digest)) {
+            return true;
+        }
+        if (!matches(stored, password)) {
+            return false;
+        }
+        if (verified.size() >= MAX_CACHED_USERS) {
+            verified.clear();
+        }
+        verified.put(name, digest);
+        return true;
+    }
+
+    /**
+     * Adds a user with the specified name and password, unless a user with the name already exists.
+     *
+     * @param name     the name of the new user; must not contain commas or line breaks.
+     * @param password the password of the new user; must not contain line breaks.
+     * @return true if the user was added, otherwise false.
+     * @throws IOException if the user cannot be written.
+     */
+    public synchronized boolean addUser(String name, String password) throws IOException {
+        if (name.isEmpty() || name.contains(",") || name.contains("\n") || password.contains("\n")) {
+            return false;
+        }
+        String record = hashPassword(password);
+        try (RandomAccessFile csv = new RandomAccessFile(file, "rw");
+             RandomAccessFile index = new RandomAccessFile(indexFile, "rw")) {
+            FileLock lock = csv.getChannel().lock(); // released when the file is closed
+            catchUp(csv, index);
+            if (find(csv, index, name) >= 0) {
+                return false;
+            }
+            long offset = append(csv, name, record);
+            csv.getFD().sync();
+            insert(csv, index, name, offset);
+            indexedLength = csv.length();
+            writeHeader(index);
+        }
+        cache.put(name, record);
+        return true;
+    }
+
+    // helper methods
+
+    /**
+     * Gets the hashed password of the user with the specified name, from memory or from the index.
+     */
+    private String getRecord(String name) throws IOException {
+        String record = cache.get(name);
+        if (record != null || !file.exists()) {
+            return record;
+        }
+        try (RandomAccessFile csv = new RandomAccessFile(file, "rw");
+             RandomAccessFile index = new RandomAccessFile(indexFile, "rw")) {
+            FileLock lock = csv.getChannel().lock(); // looking up may index new lines; released on closing
+            catchUp(csv, index);
+            long offset = find(csv, index, name);
+            if (offset < 0) {
+                return null;
+            }
+            record = readRecord(csv, offset)[1];
+        }
+        cache.put(name, record);
+        return record;
+    }
+
+    /**
+     * Reads the header of the index, rebuilding the index if it is missing or does not match the CSV file, and
+     * indexes the lines of the CSV file past those already indexed. The passwords of the lines read are hashed
+     * if they are not yet.
+     */
+    private void catchUp(RandomAccessFile csv, RandomAccessFile index) throws IOException {
+        boolean valid = index.length() >= HEADER_LENGTH;
+        if (valid) {
+            index.seek(0);
+            valid = index.readInt() == MAGIC && index.readInt() == VERSION;
+            slots = index.readInt();
+            used = index.readInt();
+            indexedLength = index.readLong();
+            valid = valid && slots >= MIN_SLOTS && index.length() == HEADER_LENGTH + (long) slots * SLOT_LENGTH
+                    && indexedLength <= csv.length();
+        }
+        if (!valid) {
+            rebuild(csv, index, MIN_SLOTS);
+            hashPasswords(csv, index, 0);
+        }
+        long length = csv.length();
+        if (indexedLength == length) {
+            return;
+        }
+        long base = indexedLength; // the index may be rebuilt while the tail is indexed
+        byte[] tail = new byte[(int) (length - base)];
+        csv.seek(base);
+        csv.readFully(tail);
+        int start = 0;
+        for (int i = 0; i <= tail.length; i++) {
+            if (i == tail.length || tail[i] == '\n') {
+                String line = new String(tail, start, i - start, StandardCharsets.UTF_8);
+                int comma = line.indexOf(',');
+                if (comma > 0) {
+                    insert(csv, index, line.substring(0, comma), base + start);
+                }
+                start = i + 1;
+            }
+        }
+        indexedLength = length;
+        writeHeader(index);
+        hashPasswords(csv, index, base);
+    }
+
+    /**
+     * Hashes the passwords of the lines of the CSV file from the specified offset that hold the passwords
+     * themselves: the last line of each such user is appended again with the password hashed, and indexed, then
+     * the lines are blanked. The lines are appended and forced to disk before any line is blanked.
+     */
+    private void hashPasswords(RandomAccessFile csv, RandomAccessFile index, long from) throws IOException {
+        byte[] lines = new byte[(int) (csv.length() - from)];
+        csv.seek(from);
+        csv.readFully(lines);
+        Map<String, String> last = new LinkedHashMap<>(); // the password of the last line of each user read
+        List<long[]> plain = new ArrayList<>(); // the start and end of each line to blank
+        int start = 0;
+        for (int i = 0; i <= lines.length; i++) {
+            if (i == lines.length || lines[i] == '\n') {
+                String line = new String(lines, start, i - start, StandardCharsets.UTF_8).replace("\r", "");
+                int comma = line.indexOf(',');
+                if (comma > 0) {
+                    String name = line.substring(0, comma);
+                    String password = line.substring(comma + 1);
+                    last.put(name, password);
+                    if (!password.startsWith(HASH_PREFIX)) {
+                        plain.add(new long[]{from + start, from + i});
+                    }
+                }
+                start = i + 1;
+            }
+        }
+        if (plain.isEmpty()) {
+            return;
+        }
+        for (Map.Entry<String, String> user : last.entrySet()) {
+            if (!user.getValue().startsWith(HASH_PREFIX)) {
+                String name = user.getKey();
+                insert(csv, index, name, append(csv, name, hashPassword(user.getValue())));
+                cache.remove(name);
+            }
+        }
+        csv.getFD().sync();
+        indexedLength = csv.length();
+        writeHeader(index);
+        for (long[] line : plain) {
+            byte[] blank = new byte[(int) (line[1] - line[0])];
+            Arrays.fill(blank, (byte) ' ');
+            csv.seek(line[0]);
+            csv.write(blank);
+        }
+        csv.getFD().sync();
+    }
+
+    /**
+     * Appends the line of the specified user to the end of the CSV file.
+     *
+     * @return the offset of the line.
+     */
+    private static long append(RandomAccessFile csv, String name, String record) throws IOException {
+        long offset = csv.length();
+        if (offset > 0 && readByte(csv, offset - 1) != '\n') { // a line written without its line break
+            csv.seek(offset);
+            csv.write('\n');
+            offset++;
+        }
+        csv.seek(offset);
+        csv.write((name + "," + record + "\n").getBytes(StandardCharsets.UTF_8));
+        return offset;
+    }
+
+    /**
+     * Finds the offset of the line of the user with the specified name in the CSV file.
+     *
+     * @return the offset of the line, or -1 if there is no such user.
+     */
+    private long find(RandomAccessFile csv, RandomAccessFile index, String name) throws IOException {
+        int hash = hash(name);
+        for (int slot = hash % slots; ; slot = (slot + 1) % slots) {
+            index.seek(HEADER_LENGTH + (long) slot * SLOT_LENGTH);
+            int slotHash = index.readInt();
+            long offset = index.readLong() - 1;
+            if (offset < 0) {
+                return -1;
+            }
+            if (slotHash == hash && readRecord(csv, offset)[0].equals(name)) {
+                return offset;
+            }
+        }
+    }
+
+    /**
+     * Indexes the line of the user with the specified name at the specified offset. A later line for the same
+     * user replaces the earlier one. The index is rebuilt from the whole CSV file when it fills up.
+     */
+    private void insert(RandomAccessFile csv, RandomAccessFile index, String name, long offset) throws IOException {
+        if ((used + 1) * 2 > slots) {
+            rebuild(csv, index, slots * 2);
+        }
+        int hash = hash(name);
+        for (int slot = hash % slots; ; slot = (slot + 1) % slots) {
+            long position = HEADER_LENGTH + (long) slot * SLOT_LENGTH;
+            index.seek(position);
+            int slotHash = index.readInt();
+            long slotOffset = index.readLong() - 1;
+            if (slotOffset < 0 || (slotHash == hash && readRecord(csv, slotOffset)[0].equals(name))) {
+                if (slotOffset < 0) {
+                    used++;
+                }
+                index.seek(position);
+                index.writeInt(hash);
+                index.writeLong(offset + 1);
+                return;
+            }
+        }
+    }
+
+    /**
+     * Rebuilds the index, with at least the specified number of slots, from every line of the CSV file.
+     */
+    private void rebuild(RandomAccessFile csv, RandomAccessFile index, int minSlots) throws IOException {
+        byte[] lines = new byte[(int) csv.length()];
+        csv.seek(0);
+        csv.readFully(lines);
+        int count = 1;
+        for (byte b : lines) {
+            if (b == '\n') {
+                count++;
+            }
+        }
+        int newSlots = minSlots;
+        while (newSlots < count * 4) { // leaves room to grow before the next rebuild
+            newSlots *= 2;
+        }
+        int[] hashes = new int[newSlots];
+        long[] offsets = new long[newSlots];
+        String[] names = new String[newSlots];
+        used = 0;
+        int start = 0;
+        for (int i = 0; i <= lines.length; i++) {
+            if (i == lines.length || lines[i] == '\n') {
+                String line = new String(lines, start, i - start, StandardCharsets.UTF_8);
+                int comma = line.indexOf(',');
+                if (comma > 0) {
+                    String name = line.substring(0, comma);
+                    int hash = hash(name);
+                    int slot = hash % newSlots;
+                    while (names[slot] != null && !names[slot].equals(name)) {
+                        slot = (slot + 1) % newSlots;
+                    }
+                    if (names[slot] == null) {
+                        used++;
+                    }
+                    hashes[slot] = hash;
+                    offsets[slot] = start + 1;
+                    names[slot] = name;
+                }
+                start = i + 1;
+            }
+        }
+        ByteBuffer table = ByteBuffer.allocate(newSlots * SLOT_LENGTH);
+        for (int slot = 0; slot < newSlots; slot++) {
+            table.putInt(hashes[slot]).putLong(offsets[slot]);
+        }
+        index.setLength(0);
+        index.seek(HEADER_LENGTH);
+        index.write(table.array());
+        slots = newSlots;
+        indexedLength = lines.length;
+        writeHeader(index);
+    }
+
+    private void writeHeader(RandomAccessFile index) throws IOException {
+        index.seek(0);
+        index.writeInt(MAGIC);
+        index.writeInt(VERSION);
+        index.writeInt(slots);
+        index.writeInt(used);
+        index.writeLong(indexedLength);
+        index.writeLong(0);
+    }
+
+    /**
+     * Reads the name and password on the line at the specified offset of the CSV file.
+     */
+    private static String[] readRecord(RandomAccessFile csv, long offset) throws IOException {
+        FileChannel channel = csv.getChannel();
+        ByteArrayOutputStream line = new ByteArrayOutputStream();
+        ByteBuffer buffer = ByteBuffer.allocate(128);
+        long position = offset;
+        boolean ended = false;
+        while (!ended && channel.read(buffer, position) > 0) {
+            buffer.flip();
+            while (buffer.hasRemaining()) {
+                byte b = buffer.get();
+                position++;
+                if (b == '\n') {
+                    ended = true;
+                    break;
+                }
+                line.write(b);
+            }
+            buffer.clear();
+        }
+        String record = new String(line.toByteArray(), StandardCharsets.UTF_8);
+        int comma = record.indexOf(',');
+        if (comma < 0) {
+            return new String[]{record, ""};
+        }
+        return new String[]{record.substring(0, comma), record.substring(comma + 1).replace("\r", "")};
+    }
+
+    private static int readByte(RandomAccessFile csv, long position) throws IOException {
+        csv.seek(position);
+        return csv.read();
+    }
+
+    private static int hash(String name) {
+        return name.hashCode() & 0x7FFFFFFF;
+    }
+
+    /**
+     * Hashes the specified password with a new salt.
+     *
+     * @return the hashed password, as stored in the CSV file.
+     */
+    private static String hashPassword(String password) {
+        byte[] salt = new byte[SALT_LENGTH];
+        random.nextBytes(salt);
+        Base64.Encoder base64 = Base64.getEncoder();
+        return HASH_PREFIX + ITERATIONS + "$" + base64.encodeToString(salt) + "$"
+                + base64.encodeToString(pbkdf2(password.toCharArray(), salt, ITERATIONS, HASH_LENGTH));
+    }
+
+    /**
+     * Returns true if the specified password has the specified hash.
+     */
+    private static boolean matches(String record, String password) {
+        String[] parts = record.split("\\$");
+        if (parts.length != 4 || !record.startsWith(HASH_PREFIX)) {
+            return false;
+        }
+        try {
+            byte[] salt = Base64.getDecoder().decode(parts[2]);
+            byte[] expected = Base64.getDecoder().decode(parts[3]);
+            byte[] actual = pbkdf2(password.toCharArray(), salt, Integer.parseInt(parts[1]), expected.length);
+            return MessageDigest.isEqual(expected, actual);
+        } catch (IllegalArgumentException ex) { // a malformed line
+            return false;
+        }
+    }
+
+    private static byte[] pbkdf2(char[] password, byte[] salt, int iterations, int length) {
+        try {
+            PBEKeySpec spec = new PBEKeySpec(password, salt, iterations, length * 8);
+            return SecretKeyFactory.getInstance("PBKDF2WithHmacSHA256").generateSecret(spec).getEncoded();
+        } catch (GeneralSecurityException ex) {
+            throw new IllegalStateException("PBKDF2 is not available.", ex);
+        }
+    }
+
+    /**
+     * Digests the specified password together with the hashed password it was checked against.
+     */
+    private static byte[] digest(String record, String password) {
+        try {
+            MessageDigest sha = MessageDigest.getInstance("SHA-256");
+            sha.update(record.getBytes(StandardCharsets.UTF_8));
+            sha.update((byte) '\n');
+            return sha.digest(password.getBytes(StandardCharsets.UTF_8));
+        } catch (NoSuchAlgorithmException ex) {
+            throw new IllegalStateException("SHA-256 is not available.", ex);
+        }
+    }
+}
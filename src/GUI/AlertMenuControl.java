@@ -2,6 +2,7 @@ package GUI;
 
 import CalendarSystem.*;
 import CalendarSystem.Alert;
+import javafx.application.Platform;
 import javafx.collections.FXCollections;
 import javafx.collections.ObservableList;
 import javafx.fxml.FXML;
@@ -13,6 +14,7 @@ import javafx.stage.Stage;
 
 import java.io.IOException;
 import java.time.LocalDateTime;
+import java.util.Collections;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
@@ -27,6 +29,8 @@ public class AlertMenuControl extends Controller{
     @FXML private TableColumn<AlertSystemData, LocalDateTime> timeColumn;
     @FXML private TableColumn<AlertSystemData, String> typeColumn;
     @FXML private Button returnToMenu;
+    private final ObservableList<Alert> allAlertTableItems = FXCollections.observableArrayList();
+    private ChangeSubscription alertChanges;
 
     /**
      * initialize the tableview in the scene
@@ -38,35 +42,88 @@ public class AlertMenuControl extends Controller{
         nameColumn.setCellValueFactory(new PropertyValueFactory<>("eventName"));
         messageColumn.setCellValueFactory(new PropertyValueFactory<>("message"));
         typeColumn.setCellValueFactory(new PropertyValueFactory<>("type"));
+        fillUpcomingTable();
+
+        //Populate all alerts table
+        allNameColumn.setCellValueFactory(new PropertyValueFactory<>("name"));
+        allDataColumn.setCellValueFactory(new PropertyValueFactory<>("data"));
+        allAlertTableItems.setAll(getCalendar().getAllAlerts());
+        allTableView.setItems(allAlertTableItems);
+
+        //Follow the changes to the alerts instead of reading them all again
+        if (alertChanges == null) {
+            alertChanges = getCalendar().getChangeFeed().subscribe(new ChangeSubscriber() {
+                @Override
+                public void onSubscribe(ChangeSubscription subscription) {
+                    subscription.request(Long.MAX_VALUE);
+                }
+
+                @Override
+                public void onNext(List<CalendarChange> changes) {
+                    applyChanges(changes);
+                }
+            }, Platform::runLater);
+        }
+    }
+
+    /*
+     * Fills the upcoming alerts table from the alert times of the alert system
+     */
+    private void fillUpcomingTable() {
         ObservableList<AlertSystemData> upcomingAlertTableItems = FXCollections.observableArrayList();
 
         //add by running through alert system
-        Map<LocalDateTime, List<Alert>> dateAlertsMap = getCalendar().getMyAlerts().getDateAlertsMap();
-        Set<LocalDateTime> alertTimes = getCalendar().getMyAlerts().getCurrAlertTime();
+        AlertSystem alertSystem = getCalendar().getMyAlerts();
+        Map<LocalDateTime, Set<Alert>> dateAlertsMap = alertSystem.getDateAlertsMap();
+        Set<LocalDateTime> alertTimes = alertSystem.getCurrAlertTime();
         for(LocalDateTime d: alertTimes){
-            List<Alert> alerts = dateAlertsMap.get(d);
+            Set<Alert> alerts = dateAlertsMap.getOrDefault(d, Collections.emptySet());
             for(Alert a: alerts){
                 upcomingAlertTableItems.add(new AlertSystemData(d, a.getName(), a.getMessage(), a.getAlertType()));
             }
         }
-
-        //Populate all alerts table
-        allNameColumn.setCellValueFactory(new PropertyValueFactory<>("name"));
-        allDataColumn.setCellValueFactory(new PropertyValueFactory<>("data"));
-        ObservableList<Alert> allAlertTableItems = FXCollections.observableArrayList();
-        allAlertTableItems.addAll(getCalendar().getAllAlerts());
-
-        allTableView.setItems(allAlertTableItems);
         upcomingTableView.setItems(upcomingAlertTableItems);
     }
 
+    /*
+     * Applies the changes made to the calendar to the tables: alerts added or removed are added to or removed
+     * from the all alerts table, and the upcoming alerts table is filled again only if an alert changed
+     */
+    private void applyChanges(List<CalendarChange> changes) {
+        boolean alertsChanged = false;
+        for (CalendarChange change : changes) {
+            switch (change.getKind()) {
+                case ALERT_ADDED:
+                    allAlertTableItems.add(change.getAlert());
+                    alertsChanged = true;
+                    break;
+                case ALERT_REMOVED:
+                    allAlertTableItems.remove(change.getAlert());
+                    alertsChanged = true;
+                    break;
+                case ALERT_CHANGED:
+                    alertsChanged = true;
+                    break;
+                case RESET:
+                    allAlertTableItems.setAll(getCalendar().getAllAlerts());
+                    alertsChanged = true;
+                    break;
+                default:
+                    break;
+            }
+        }
+        if (alertsChanged) {
+            fillUpcomingTable();
+            allTableView.refresh();
+        }
+    }
+
     /**
      * create a new individual alert
      */
     @FXML private void createIndividualAlert(){
         try{
             openWindowAndGetLoader("Create Individual Alert",  "IAlertCreator.fxml");
-            refreshTables();
         }
         catch(IOException e){
             e.printStackTrace();
@@ -79,7 +136,6 @@ public class AlertMenuControl extends Controller{
     @FXML private void createFrequentAlert(){
         try{
             openWindowAndGetLoader("Create Frequent Alert", "FAlertCreator.fxml");
-            refreshTables();
         }
         catch(IOException e){
             e.printStackTrace();
@@ -117,7 +173,6 @@ public class AlertMenuControl extends Controller{
                     alertEditor.setEdit_Mode(true);
                     alertEditWindow.showAndWait();
                 }
-                refreshTables();
                 getCalendarManager().saveToFile();
             } catch (IOException e) {
                 e.printStackTrace();
@@ -133,7 +188,6 @@ public class AlertMenuControl extends Controller{
         Alert selected = allTableView.getSelectionModel().getSelectedItem();
         if (selected != null) {
             getCalendar().deleteAlert(selected);
-            refreshTables();
             getCalendarManager().saveToFile();
         }
     }
@@ -143,15 +197,9 @@ public class AlertMenuControl extends Controller{
      * @throws IOException if fails to return to menu
      */
     @FXML private void setReturnToMenu() throws IOException{
+        if (alertChanges != null) {
+            alertChanges.cancel();
+        }
         setScreen("MainMenuScene.fxml", returnToMenu);
     }
-
-    /**
-     * refresh the tables
-     */
-    private void refreshTables(){
-        initScreen();
-        allTableView.refresh();
-        upcomingTableView.refresh();
-    }
 }
@@ -2,6 +2,7 @@ package GUI;
 
 import CalendarSystem.CalendarManager;
 import CalendarSystem.Calendar;
+import CalendarSystem.UserDirectory;
 import javafx.fxml.FXMLLoader;
 import javafx.scene.Node;
 import javafx.scene.Parent;
@@ -9,6 +10,7 @@ import javafx.scene.Scene;
 import javafx.stage.Modality;
 import javafx.stage.Stage;
 import javafx.util.StringConverter;
+import java.io.File;
 import java.io.IOException;
 import java.time.LocalDate;
 import java.time.format.DateTimeFormatter;
@@ -17,6 +19,8 @@ public abstract class Controller {
 
     private CalendarManager calendarManager;
 
+    private static final UserDirectory users = new UserDirectory(new File("users.csv"));
+
     private String theme = "GUI/Light.css";
 
     protected void setTheme(String theme) {this.theme = theme;}
@@ -35,6 +39,10 @@ public abstract class Controller {
         return calendarManager;
     }
 
+    protected UserDirectory getUserDirectory() {
+        return users;
+    }
+
     /*
      * Changes scene to display on the stage <item> is on to a new scene
      * specified by <fxmlFileName>. Then initializes the new scene controller
@@ -1,6 +1,7 @@
 package GUI;
 
 import CalendarSystem.Memo;
+import CalendarSystem.Series;
 import javafx.fxml.FXML;
 import javafx.scene.Node;
 import javafx.scene.control.*;
@@ -133,14 +134,13 @@ public class EventCreatorControl extends Controller {
             Long num = parseNumberInput(numEvents, eventNumLabel);
             assert num != null;
             assert fre != null;
-            getCalendar().addSeries(seriesName, Duration.ofMinutes(dur),
+            Series newSeries = getCalendar().addSeries(seriesName, Duration.ofMinutes(dur),
                     Period.ofDays(fre.intValue()), num.intValue(), start);
-            ArrayList<Event> newSeries = new ArrayList<>(getCalendar().findEventsBySeries(seriesName));
-            eventTable.getItems().addAll(newSeries);
-            setEventMemo(newSeries);
+            setSeriesMemo(newSeries);
+            eventTable.getItems().addAll(newSeries.getEvents());
             successMsg.setVisible(true);
             reset();
-        } catch (NullPointerException n) { errorMsg.setVisible(true);}
+        } catch (NullPointerException | IllegalArgumentException n) { errorMsg.setVisible(true);}
     }
 
     //Helper for createSeriesEvent
@@ -179,12 +179,12 @@ public class EventCreatorControl extends Controller {
     }
 
     private void addSingleEvent(Event newEvent) {
-        setEventMemo(new ArrayList<>(Collections.singletonList(newEvent)));
         if (!eventTag.getText().equals("")) {
             newEvent.setTag(eventTag.getText());
         }
-        eventTable.getItems().add(newEvent);
         getCalendar().addEvent(newEvent);
+        setEventMemo(new ArrayList<>(Collections.singletonList(newEvent)));
+        eventTable.getItems().add(newEvent);
         reset();
         successMsg.setVisible(true);
     }
@@ -199,7 +199,24 @@ public class EventCreatorControl extends Controller {
         } else if (memoOptions.getItems().contains(selectedMemo)) {
             for (Memo m : getCalendar().getMyMemos().getMemos()) {
                 if (m.getNote().equals(selectedMemo)) {
-                    for (Event e : eventsToAdd) { e.getMemos().add(m); }
+                    getCalendar().addMemo(m, eventsToAdd);
+                    break;
+                }
+            }
+        }
+    }
+
+    private void setSeriesMemo(Series series) {
+        String selectedMemo = memoOptions.getValue();
+        if (selectedMemo == null) {selectedMemo = "";}
+        if (!selectedMemo.equals("") &&
+                !memoOptions.getItems().contains(selectedMemo)) {
+            getCalendar().createMemo(series, selectedMemo);
+            memoOptions.getItems().add(selectedMemo);
+        } else if (memoOptions.getItems().contains(selectedMemo)) {
+            for (Memo m : getCalendar().getMyMemos().getMemos()) {
+                if (m.getNote().equals(selectedMemo)) {
+                    getCalendar().addMemo(m, series);
                     break;
                 }
             }
@@ -16,6 +16,7 @@ import java.time.LocalDateTime;
 import java.time.format.DateTimeFormatter;
 import java.time.format.DateTimeParseException;
 import java.util.ArrayList;
+import java.util.LinkedHashSet;
 
 public class EventMenuController extends Controller {
 
@@ -216,16 +217,12 @@ public class EventMenuController extends Controller {
         String userInput = searchBar.getText();
         eventTable.getItems().clear();
         if (!userInput.equals("")) {
-            eventTable.getItems().addAll(getCalendar().findEventsBySeries(userInput));
-            eventTable.getItems().addAll(getCalendar().findEvent(userInput));
-            eventTable.getItems().addAll(getCalendar().findEventByMemoNote(userInput));
-            if (getCalendar().getEvent(userInput) != null) {
-                eventTable.getItems().add(getCalendar().getEvent(userInput));
-            }
+            LinkedHashSet<Event> results = new LinkedHashSet<>(getCalendar().searchEvents(userInput));
             try {
-                eventTable.getItems().addAll(getCalendar().findEvent(LocalDate.parse(userInput,
+                results.addAll(getCalendar().findEvent(LocalDate.parse(userInput,
                         DateTimeFormatter.ofPattern("dd/MM/yyyy"))));
             } catch (DateTimeParseException d) {}
+            eventTable.getItems().addAll(results);
         }
     }
 
@@ -258,7 +255,7 @@ public class EventMenuController extends Controller {
                     instructions.setText("Event Shared!\nWaiting on " + username + "'s response");
                     userInput.clear();
                 } else { instructions.setText(username + "'s account not found"); }
-            } catch (IOException | ClassNotFoundException ex) {
+            } catch (IOException ex) {
                 instructions.setText("An unexpected error has occured");
             }
         });
@@ -78,7 +78,7 @@ public class FAlertCreatorControl extends Controller {
             } else {
                 //valid alert inputs!!!
                 if (edit_Mode) {
-                    calendar.getMyAlerts().editFrequentAlert(alert, messageVal, durationVal);
+                    calendar.editFrequentAlert(alert, messageVal, durationVal);
                     edited = true;
                 }
                 else
@@ -103,7 +103,7 @@ public class FAlertCreatorControl extends Controller {
         Calendar calendar = getCalendar();
         resetError();
         boolean result = false;
-        if(!calendar.getEventNames().contains(eventName.getText())){
+        if(!calendar.hasEvent(eventName.getText())){
             eventNameLabel.setTextFill(Paint.valueOf("red"));
             eventErrorMsg.setVisible(true);
             result = true;
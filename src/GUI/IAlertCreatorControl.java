@@ -75,7 +75,7 @@ public class IAlertCreatorControl extends Controller {
 
             //create/edit the individual alert
             if (edit_Mode) {
-                calendar.getMyAlerts().editIndividualAlert(alert, messageVal, dateTimeVal);
+                calendar.editIndividualAlert(alert, messageVal, dateTimeVal);
                 edited = true;
             } else
                 calendar.addIndividualAlert(calendar.getEvent(eventNameVal), messageVal, dateTimeVal);
@@ -101,7 +101,7 @@ public class IAlertCreatorControl extends Controller {
         Calendar calendar = getCalendar();
         resetError();
         boolean result = false;
-        if (!calendar.getEventNames().contains(eventName.getText())) {
+        if (!calendar.hasEvent(eventName.getText())) {
             eventNameLabel.setTextFill(Paint.valueOf("red"));
             eventErrorMsg.setVisible(true);
             result = true;
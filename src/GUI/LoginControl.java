@@ -1,19 +1,15 @@
 package GUI;
 
 import javafx.fxml.FXML;
-import javafx.fxml.FXMLLoader;
 import javafx.scene.control.Button;
 import javafx.scene.control.Label;
 import javafx.scene.control.PasswordField;
 import javafx.scene.control.TextField;
-import java.io.FileInputStream;
-import java.io.FileNotFoundException;
 import java.io.IOException;
-import java.util.ArrayList;
-import java.util.HashMap;
-import java.util.Scanner;
 
+import CalendarSystem.Alert;
 import CalendarSystem.CalendarManager;
+import javafx.application.Platform;
 import javafx.stage.Stage;
 
 public class LoginControl extends Controller {
@@ -36,22 +32,20 @@ public class LoginControl extends Controller {
 
     @FXML
     private void newUser() throws IOException {
-        FXMLLoader signUpLoader = setNewWindowAndGetLoader("UserCreatorScene.fxml",
-                (Stage) createNewUser.getScene().getWindow(), 900, 600);
-        UserCreatorControl signUpControl = signUpLoader.getController();
-        signUpControl.setUsernames(new ArrayList<>(getUsers().keySet()));
+        setNewWindowAndGetLoader("UserCreatorScene.fxml", (Stage) createNewUser.getScene().getWindow(), 900, 600);
     }
 
     @FXML
     private void login() throws ClassNotFoundException, IOException {
         String user = userInfo.getText();
         String pswd = passInfo.getText();
-        HashMap<String, String> users = getUsers();
-        if (users.containsKey(user)) {
-            if (users.get(user).equals(pswd)) {
+        if (getUserDirectory().hasUser(user)) {
+            if (getUserDirectory().checkPassword(user, pswd)) {
                 CalendarManager cm = new CalendarManager("./user_data/" + user + "_");
+                cm.getAlertScheduler().addListener((alert, time) -> Platform.runLater(() -> showAlert(alert)));
                 setCalendarManager(cm);
                 cm.saveToFile();
+                ((Stage) userInfo.getScene().getWindow()).setOnHidden(e -> closeOnExit(cm));
                 setScreen("MainMenuScene.fxml", userInfo);
             } else {
                 errorIn.setVisible(true);
@@ -61,15 +55,25 @@ public class LoginControl extends Controller {
         }
     }
 
-    private HashMap<String, String> getUsers() throws FileNotFoundException {
-        Scanner scanner = new Scanner(new FileInputStream("users.csv"));
-        String[] login;
-        HashMap<String, String> users = new HashMap<>();
-        while (scanner.hasNextLine()) {
-            login = scanner.nextLine().split(",");
-            users.put(login[0], login[1]);
+    /*
+     * Writes the calendar of <cm> to file before the application exits
+     */
+    private void closeOnExit(CalendarManager cm) {
+        try {
+            cm.close();
+        } catch (IOException ex) {
+            ex.printStackTrace();
         }
-        return users;
+    }
+
+    private void showAlert(Alert alert) {
+        Label alertMsg = new Label(alert.getName() + " at " + alert.getEventTime() + "\n\n" + alert.getMessage());
+        alertMsg.wrapTextProperty().setValue(true);
+        Button dismiss = new Button("Dismiss");
+        PopUp alertPopUp = new PopUp("Alert", getTheme());
+        dismiss.setOnAction(e -> alertPopUp.exit());
+        alertPopUp.getContent().addAll(alertMsg, dismiss);
+        alertPopUp.display();
     }
 
 }
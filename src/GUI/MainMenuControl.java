@@ -1,19 +1,24 @@
 package GUI;
 
+import CalendarSystem.CalendarChange;
+import CalendarSystem.ChangeSubscriber;
+import CalendarSystem.ChangeSubscription;
 import CalendarSystem.Event;
 import javafx.animation.Animation;
 import javafx.animation.KeyFrame;
 import javafx.animation.Timeline;
+import javafx.application.Platform;
 import javafx.fxml.FXML;
 import javafx.scene.control.*;
 import javafx.scene.layout.GridPane;
 import javafx.scene.layout.HBox;
-import javafx.scene.layout.VBox;
 import javafx.util.Duration;
 import java.io.IOException;
-import java.time.LocalDate;
 import java.time.LocalDateTime;
+import java.time.YearMonth;
 import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
 
 
 public class MainMenuControl extends Controller {
@@ -35,29 +40,54 @@ public class MainMenuControl extends Controller {
     @FXML
     private GridPane monthlyCalendar;
     @FXML
+    private Label shownMonthLabel;
+    @FXML
     private ChoiceBox<String> calendarSelect;
 
+    private MonthGrid monthGrid;
+
+    private MonthCache monthCache;
+
+    private YearMonth shownMonth = YearMonth.now();
+
+    private ChangeSubscription calendarChanges;
+
     @FXML
     private void logOut() throws IOException {
         getCalendarManager().saveToFile();
+        getCalendarManager().close(); // waits for the calendar to be written
+        stopFollowingCalendar();
         setScreen("LoginScene.fxml", logOutButton);
     }
 
     @FXML private void viewEvents() throws IOException {
+        stopFollowingCalendar();
         setScreen("EventMenuScene.fxml", eventButton);
     }
 
     @FXML
     private void viewMemos() throws IOException {
+        stopFollowingCalendar();
         setScreen("MemoMenuScene.fxml", memoButton);
     }
 
     @FXML
     private void viewAlerts() throws IOException {
+        stopFollowingCalendar();
         setScreen("AlertMenuScene.fxml", alertButton);
     }
     
 
+    @FXML
+    private void showPreviousMonth() {
+        showMonth(shownMonth.minusMonths(1));
+    }
+
+    @FXML
+    private void showNextMonth() {
+        showMonth(shownMonth.plusMonths(1));
+    }
+
     @FXML
     private void changeTheme() {
         if (getTheme().equals("GUI/Light.css")) {
@@ -84,10 +114,11 @@ public class MainMenuControl extends Controller {
         }
     }
 
-    private void displayInvites() {
+    private void displayInvites() throws IOException {
+        getCalendarManager().receiveInvites(); // drains the events shared since the last login
         ArrayList<Event> viewed = new ArrayList<>();
         for (Event event : getCalendar().getEventInvites()) {
-            if (!getCalendar().getMyEvents().contains(event)) {
+            if (!getCalendar().containsEvent(event)) {
                 Label newEventMsg = new Label("You've received a new event!\n\n" +
                         event.toString() + "\n\nAdd to calendar?");
                 newEventMsg.wrapTextProperty().setValue(true);
@@ -110,7 +141,7 @@ public class MainMenuControl extends Controller {
                 eventInvite.display();
             }
         }
-        getCalendar().getEventInvites().removeAll(viewed);
+        getCalendar().removeEventInvites(viewed);
     }
 
     private void initThemeSwitch() {
@@ -134,38 +165,92 @@ public class MainMenuControl extends Controller {
     }
 
     private void initMonthlyCalendar() {
-        int currMonth = LocalDateTime.now().getMonthValue();
-        int currYear = LocalDateTime.now().getYear();
-        int firstDayOfWeek = LocalDate.of(currYear, currMonth, 1).getDayOfWeek().getValue() % 7;
-        LocalDate calCurrDay = LocalDate.of(currYear, currMonth, 1).minusDays(firstDayOfWeek);
-        for (int w = 1; w < 7; w++) {
-            for (int d = 0; d < 7; d++) {
-                VBox day = initMonthlyDayBox(d, w, calCurrDay);
-                addEventLabels(day, getCalendar().findEvent(calCurrDay));
-                monthlyCalendar.getChildren().add(day);
-                calCurrDay = calCurrDay.plusDays(1L);
+        if (monthGrid == null) {
+            monthGrid = new MonthGrid(monthlyCalendar);
+            monthCache = new MonthCache(getCalendar());
+        } else {
+            monthCache.setCalendar(getCalendar());
+        }
+        showMonth(shownMonth);
+        followCalendar();
+    }
+
+    /*
+     * Shows the specified month in the month grid: at once if it was prefetched, otherwise once it is looked up
+     * in the background. The months on either side of it are prefetched.
+     */
+    private void showMonth(YearMonth month) {
+        shownMonth = month;
+        shownMonthLabel.setText(" " + month.getMonth().toString() + " " + month.getYear() + " ");
+        CompletableFuture<MonthGrid.Month> data = monthCache.get(month);
+        if (data.isDone() && !data.isCompletedExceptionally()) {
+            monthGrid.show(data.join());
+            return;
+        }
+        data.whenCompleteAsync((loaded, ex) -> {
+            if (ex != null) {
+                ex.printStackTrace();
+            } else if (loaded.getMonth().equals(shownMonth)) { // not if another month was asked for since
+                monthGrid.show(loaded);
+            }
+        }, Platform::runLater);
+    }
+
+    /*
+     * Subscribes to the changes made to the selected calendar, to show them in the month grid
+     */
+    private void followCalendar() {
+        stopFollowingCalendar();
+        calendarChanges = getCalendar().getChangeFeed().subscribe(new ChangeSubscriber() {
+            private ChangeSubscription subscription;
+
+            @Override
+            public void onSubscribe(ChangeSubscription subscription) {
+                this.subscription = subscription;
+                subscription.request(1);
+            }
+
+            @Override
+            public void onNext(List<CalendarChange> changes) {
+                for (CalendarChange change : changes) {
+                    forgetChangedMonths(change);
+                }
+                showMonth(shownMonth); // only the cells that changed are redrawn
+                subscription.request(1);
             }
+        }, Platform::runLater);
+    }
+
+    /*
+     * Forgets the months kept whose grid shows the days of the event of the specified change, before and after
+     * the change; memos, alerts and invites are not shown in the grid
+     */
+    private void forgetChangedMonths(CalendarChange change) {
+        switch (change.getKind()) {
+            case EVENT_RETIMED:
+                monthCache.invalidate(change.getPreviousStartTime().toLocalDate(),
+                        change.getPreviousEndTime().toLocalDate());
+                // and the days it moved to, below
+            case EVENT_ADDED:
+            case EVENT_REMOVED:
+            case EVENT_CHANGED:
+                monthCache.invalidate(change.getStartTime().toLocalDate(), change.getEndTime().toLocalDate());
+                break;
+            case RESET:
+                monthCache.invalidate();
+                break;
+            default:
+                break;
         }
     }
 
-    private VBox initMonthlyDayBox(int dayOfWeek, int weekNum, LocalDate currDay) {
-        VBox day = new VBox();
-        day.getStyleClass().add("calendar-grid");
-        day.setSpacing(3.0);
-        day.setPrefHeight(84.0);
-        day.setPrefWidth(100.0);
-        GridPane.setConstraints(day, dayOfWeek, weekNum);
-        Label dayOfMonth = new Label(" " + Integer.toString(currDay.getDayOfMonth()) + " ");
-        if (currDay.equals(LocalDate.now())) {dayOfMonth.setStyle("-fx-background-color: #5FB1FE");}
-        day.getChildren().add(dayOfMonth);
-        return day;
-    }
-
-    private void addEventLabels(VBox dayBox, ArrayList<Event> events) {
-        for (Event e : events) {
-            Label eventLabel = new Label(e.getEventName());
-            eventLabel.getStyleClass().add("calendar-event");
-            dayBox.getChildren().add(eventLabel);
+    /*
+     * Stops following the changes made to the selected calendar, when leaving this screen
+     */
+    private void stopFollowingCalendar() {
+        if (calendarChanges != null) {
+            calendarChanges.cancel();
+            calendarChanges = null;
         }
     }
 
@@ -98,7 +98,7 @@ public class MemoMenuControl extends Controller {
         save.setOnAction(e -> {
             try {
                 if (!note.getText().equals("")) {
-                    memo.setNote(note.getText());
+                    getCalendar().changeMemoNote(memo, note.getText());
                 }
             } catch (NullPointerException nullp) {
             }
@@ -141,7 +141,7 @@ public class MemoMenuControl extends Controller {
             List<Event> l = new ArrayList<>();
             l.add(events.getValue());
             successMsg.setVisible(true);
-            getCalendar().getMyMemos().createMemo(l, note);
+            getCalendar().createMemo(l, note);
             memoTable.getItems().clear();
             memoTable.getItems().addAll(getCalendar().getMyMemos().getMemos());
         }
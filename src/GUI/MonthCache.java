@@ -0,0 +1,122 @@
+package GUI;
+
+import CalendarSystem.Calendar;
+
+import java.time.LocalDate;
+import java.time.YearMonth;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * Looks up the months of a calendar for the month grid on a background thread, and keeps the months looked up
+ * recently, so that moving to the month before or after the one shown needs no lookup.
+ * <p>
+ * Every month asked for, and the months on either side of it, are looked up one at a time on a daemon thread
+ * shared by all the caches, in the order they were asked for. The months kept are forgotten, least recently
+ * used first, once there are more than {@value #MAX_MONTHS}, and when the calendar changes in the days they
+ * show.
+ *
+ * @see MonthGrid
+ */
+public class MonthCache {
+
+    /**
+     * The greatest number of months kept.
+     */
+    public static final int MAX_MONTHS = 12;
+
+    /**
+     * The thread looking up months.
+     */
+    private static final ExecutorService loader = Executors.newSingleThreadExecutor(task -> {
+        Thread thread = new Thread(task, "Month loader");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    /**
+     * The months looked up or being looked up, least recently used first.
+     */
+    private final Map<YearMonth, CompletableFuture<MonthGrid.Month>> months =
+            new LinkedHashMap<YearMonth, CompletableFuture<MonthGrid.Month>>(16, 0.75f, true) {
+                @Override
+                protected boolean removeEldestEntry(Map.Entry<YearMonth, CompletableFuture<MonthGrid.Month>> eldest) {
+                    return size() > MAX_MONTHS;
+                }
+            };
+
+    /**
+     * The calendar whose months are looked up.
+     */
+    private Calendar calendar;
+
+    /**
+     * Creates a cache of the months of the specified calendar.
+     *
+     * @param calendar a calendar.
+     */
+    public MonthCache(Calendar calendar) {
+        this.calendar = calendar;
+    }
+
+    /**
+     * Gets the specified month, looking it up in the background if it is not kept, and starts looking up the
+     * months on either side of it.
+     *
+     * @param month a month.
+     * @return the month, which is done already if it was kept.
+     */
+    public synchronized CompletableFuture<MonthGrid.Month> get(YearMonth month) {
+        CompletableFuture<MonthGrid.Month> data = fetch(month);
+        fetch(month.minusMonths(1));
+        fetch(month.plusMonths(1));
+        months.get(month); // the month asked for is the most recently used
+        return data;
+    }
+
+    /**
+     * Forgets the months kept, after the calendar was changed.
+     */
+    public synchronized void invalidate() {
+        months.clear();
+    }
+
+    /**
+     * Forgets the months kept whose grid shows a day of the specified range, after the calendar was changed in
+     * those days.
+     *
+     * @param from the first day changed.
+     * @param to   the last day changed.
+     */
+    public synchronized void invalidate(LocalDate from, LocalDate to) {
+        months.keySet().removeIf(month -> MonthGrid.shows(month, from, to));
+    }
+
+    /**
+     * Forgets the months kept, and looks up the months of the specified calendar from now on.
+     *
+     * @param calendar a calendar.
+     */
+    public synchronized void setCalendar(Calendar calendar) {
+        this.calendar = calendar;
+        months.clear();
+    }
+
+    // helper methods
+
+    /**
+     * Gets the specified month if it is kept, or starts looking it up.
+     */
+    private CompletableFuture<MonthGrid.Month> fetch(YearMonth month) {
+        CompletableFuture<MonthGrid.Month> data = months.get(month);
+        if (data == null || data.isCompletedExceptionally()) {
+            Calendar source = calendar;
+            data = CompletableFuture.supplyAsync(() -> MonthGrid.load(source, month), loader);
+            months.put(month, data);
+        }
+        return data;
+    }
+}
@@ -0,0 +1,268 @@
+package GUI;
+
+import CalendarSystem.Calendar;
+import CalendarSystem.Event;
+import javafx.scene.control.Label;
+import javafx.scene.layout.GridPane;
+import javafx.scene.layout.VBox;
+
+import java.time.LocalDate;
+import java.time.YearMonth;
+import java.time.temporal.ChronoUnit;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Objects;
+
+/**
+ * The month view of a calendar: six weeks of day cells in a grid pane, under the row of weekday names.
+ * <p>
+ * The cells are created once and kept; showing a month looks up its events with one range query and changes
+ * only the cells whose date or events differ from what they show. A cell shows the names of its first few
+ * events and "+N more" for the rest, and the labels of the event names are reused from a pool.
+ * <p>
+ * The events of a month can be looked up away from the JavaFX thread with {@link #load(Calendar, YearMonth)},
+ * and the month shown later with {@link #show(Month)}.
+ *
+ * @see MonthCache
+ */
+public class MonthGrid {
+
+    /**
+     * The number of weeks shown, and the number of days in a week.
+     */
+    private static final int WEEKS = 6;
+    private static final int DAYS = 7;
+
+    /**
+     * The greatest number of event names shown in a cell.
+     */
+    private static final int MAX_EVENT_LABELS = 3;
+
+    /**
+     * One day of the grid, with what it currently shows.
+     */
+    private static class Cell {
+
+        private final VBox box = new VBox();
+
+        private final Label dayLabel = new Label();
+
+        private final Label moreLabel = new Label();
+
+        /**
+         * The labels showing event names, taken from the pool.
+         */
+        private final List<Label> eventLabels = new ArrayList<>();
+
+        private LocalDate date;
+
+        private boolean today;
+
+        private List<String> names = new ArrayList<>();
+
+        private int more;
+    }
+
+    /**
+     * The events of the days of the grid for one month, as the cells show them.
+     */
+    public static class Month {
+
+        private final YearMonth month;
+
+        private final LocalDate firstDay;
+
+        /**
+         * The names of the events shown in each cell, and the number of events of each cell not shown.
+         */
+        private final List<List<String>> names;
+        private final int[] more;
+
+        private Month(YearMonth month, LocalDate firstDay, List<List<String>> names, int[] more) {
+            this.month = month;
+            this.firstDay = firstDay;
+            this.names = names;
+            this.more = more;
+        }
+
+        /**
+         * Gets the month whose events these are.
+         *
+         * @return the month.
+         */
+        public YearMonth getMonth() {
+            return month;
+        }
+    }
+
+    private final Cell[] cells = new Cell[WEEKS * DAYS];
+
+    /**
+     * The event labels not shown in any cell.
+     */
+    private final ArrayDeque<Label> labelPool = new ArrayDeque<>();
+
+    /**
+     * The month shown, or <code>null</code> if none has been shown yet.
+     */
+    private YearMonth month;
+
+    /**
+     * Creates the cells of the month view in the specified grid pane, below its first row.
+     *
+     * @param grid the grid pane showing the month.
+     */
+    public MonthGrid(GridPane grid) {
+        for (int i = 0; i < cells.length; i++) {
+            Cell cell = new Cell();
+            cell.box.getStyleClass().add("calendar-grid");
+            cell.box.setSpacing(3.0);
+            cell.box.setPrefHeight(84.0);
+            cell.box.setPrefWidth(100.0);
+            cell.moreLabel.getStyleClass().add("calendar-event");
+            cell.box.getChildren().add(cell.dayLabel);
+            GridPane.setConstraints(cell.box, i % DAYS, i / DAYS + 1);
+            grid.getChildren().add(cell.box);
+            cells[i] = cell;
+        }
+    }
+
+    /**
+     * Gets the month shown.
+     *
+     * @return the month shown, or <code>null</code> if none has been shown yet.
+     */
+    public YearMonth getMonth() {
+        return month;
+    }
+
+    /**
+     * Shows the events of the specified calendar in the specified month, changing only the cells that differ
+     * from what they show.
+     *
+     * @param calendar a calendar.
+     * @param month    the month to show.
+     */
+    public void show(Calendar calendar, YearMonth month) {
+        show(load(calendar, month));
+    }
+
+    /**
+     * Shows the specified month, changing only the cells that differ from what they show.
+     *
+     * @param data the events of the month, as looked up by {@link #load(Calendar, YearMonth)}.
+     */
+    public void show(Month data) {
+        this.month = data.month;
+        LocalDate today = LocalDate.now();
+        for (int i = 0; i < cells.length; i++) {
+            LocalDate date = data.firstDay.plusDays(i);
+            update(cells[i], date, date.equals(today), data.names.get(i), data.more[i]);
+        }
+    }
+
+    /**
+     * Looks up the events of the specified calendar on the days shown for the specified month, with one range
+     * query. Does not touch the grid, so it can be called from any thread.
+     *
+     * @param calendar a calendar.
+     * @param month    a month.
+     * @return the events of the month, to be shown.
+     */
+    public static Month load(Calendar calendar, YearMonth month) {
+        LocalDate first = firstDay(month);
+        LocalDate last = first.plusDays(WEEKS * DAYS - 1);
+        List<List<Event>> days = new ArrayList<>();
+        for (int i = 0; i < WEEKS * DAYS; i++) {
+            days.add(new ArrayList<>());
+        }
+        // one lookup for the whole grid, in order of start time
+        for (Event e : calendar.findEvents(first.atStartOfDay(), last.plusDays(1).atStartOfDay().minusNanos(1))) {
+            LocalDate from = e.getStartTime().toLocalDate().isBefore(first) ? first : e.getStartTime().toLocalDate();
+            LocalDate to = e.getEndTime().toLocalDate().isAfter(last) ? last : e.getEndTime().toLocalDate();
+            for (LocalDate d = from; !d.isAfter(to); d = d.plusDays(1)) {
+                days.get((int) ChronoUnit.DAYS.between(first, d)).add(e);
+            }
+        }
+        List<List<String>> names = new ArrayList<>();
+        int[] more = new int[WEEKS * DAYS];
+        for (int i = 0; i < WEEKS * DAYS; i++) {
+            List<Event> events = days.get(i);
+            List<String> shown = new ArrayList<>();
+            for (Event e : events.subList(0, Math.min(events.size(), MAX_EVENT_LABELS))) {
+                shown.add(e.getEventName());
+            }
+            names.add(shown);
+            more[i] = events.size() - shown.size();
+        }
+        return new Month(month, first, names, more);
+    }
+
+    /**
+     * Returns true if the grid of the specified month shows a day of the specified range.
+     *
+     * @param month a month.
+     * @param from  the first day of the range.
+     * @param to    the last day of the range.
+     * @return true if the range and the grid of the month share a day, otherwise false.
+     */
+    static boolean shows(YearMonth month, LocalDate from, LocalDate to) {
+        LocalDate first = firstDay(month);
+        return !first.isAfter(to) && !first.plusDays(WEEKS * DAYS - 1).isBefore(from);
+    }
+
+    // helper methods
+
+    /**
+     * Gets the Sunday on or before the first day of the specified month, the first day of the grid.
+     */
+    private static LocalDate firstDay(YearMonth month) {
+        LocalDate first = month.atDay(1);
+        return first.minusDays(first.getDayOfWeek().getValue() % 7);
+    }
+
+    /**
+     * Changes what the specified cell shows, if it differs from what it shows.
+     */
+    private void update(Cell cell, LocalDate date, boolean today, List<String> names, int more) {
+        if (!date.equals(cell.date) || today != cell.today) {
+            cell.dayLabel.setText(" " + date.getDayOfMonth() + " ");
+            cell.dayLabel.setStyle(today ? "-fx-background-color: #5FB1FE" : "");
+            cell.date = date;
+            cell.today = today;
+        }
+        if (names.equals(cell.names) && more == cell.more) {
+            return;
+        }
+        cell.box.getChildren().remove(cell.moreLabel);
+        while (cell.eventLabels.size() > names.size()) {
+            Label label = cell.eventLabels.remove(cell.eventLabels.size() - 1);
+            cell.box.getChildren().remove(label);
+            labelPool.push(label);
+        }
+        while (cell.eventLabels.size() < names.size()) {
+            Label label = labelPool.isEmpty() ? newEventLabel() : labelPool.pop();
+            cell.eventLabels.add(label);
+            cell.box.getChildren().add(label);
+        }
+        for (int i = 0; i < names.size(); i++) {
+            Label label = cell.eventLabels.get(i);
+            if (!Objects.equals(label.getText(), names.get(i))) {
+                label.setText(names.get(i));
+            }
+        }
+        if (more > 0) {
+            cell.moreLabel.setText("+" + more + " more");
+            cell.box.getChildren().add(cell.moreLabel);
+        }
+        cell.names = names;
+        cell.more = more;
+    }
+
+    private static Label newEventLabel() {
+        Label label = new Label();
+        label.getStyleClass().add("calendar-event");
+        return label;
+    }
+}
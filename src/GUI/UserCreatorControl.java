@@ -7,12 +7,9 @@ import javafx.scene.control.PasswordField;
 import javafx.scene.control.TextField;
 
 import java.io.IOException;
-import java.io.FileWriter;
-import java.util.ArrayList;
 
 public class UserCreatorControl extends Controller {
 
-    private ArrayList<String> users = new ArrayList<>();
     @FXML
     private Label errorIn;
     @FXML
@@ -26,8 +23,6 @@ public class UserCreatorControl extends Controller {
     @FXML
     private Button goToLogin;
 
-    protected void setUsernames(ArrayList<String> users) {this.users = users;}
-
     @FXML
     private void goBackToLogin() throws IOException {
         setScreen("LoginScene.fxml", goToLogin);
@@ -40,15 +35,9 @@ public class UserCreatorControl extends Controller {
         String password = passwordInput.getText();
         String password2 = passwordAgainInput.getText();
 
-        if (isValidUser(user) && !password.equals("") && password.equals(password2)) {
+        if (isValidUser(user) && !password.equals("") && password.equals(password2)
+                && getUserDirectory().addUser(user, password)) { // fails if the user was added meanwhile
 
-            FileWriter writer = new FileWriter("users.csv", true);
-            writer.append(user);
-            writer.append(",");
-            writer.append(password);
-            writer.append("\n");
-            writer.flush();
-            writer.close();
             errorIn.setVisible(false);
             success.setVisible(true);
 
@@ -61,11 +50,11 @@ public class UserCreatorControl extends Controller {
         }
     }
 
-    private boolean isValidUser(String username) {
-        if (users.contains(username)) {
+    private boolean isValidUser(String username) throws IOException {
+        if (getUserDirectory().hasUser(username)) {
             errorIn.setText("This username already exists!");
             return false;
-        } else if (username.equals("") || username.contains("_")){
+        } else if (username.equals("") || username.contains("_") || username.contains(",")){
             errorIn.setText("Not a valid username!");
             return false;
         } else {
@@ -0,0 +1,509 @@
+package Server;
+
+import CalendarSystem.Alert;
+import CalendarSystem.Calendar;
+import CalendarSystem.CalendarManager;
+import CalendarSystem.Event;
+import CalendarSystem.UserDirectory;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.UnsupportedEncodingException;
+import java.net.InetSocketAddress;
+import java.net.URLDecoder;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeParseException;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Serves the users' calendars as a JSON API over HTTP, without the JavaFX interface, so that one program serves
+ * many users at once.
+ * <p>
+ * A request names its user and password in the <code>X-User</code> and <code>X-Password</code> headers, and its
+ * parameters in its query string, or in its form-encoded body for a POST. Times are ISO-8601 local times. The
+ * calendar manager of a user stays in memory once the user has made a request, so requests only read the user's
+ * files the first time. Requests are handled on a pool of threads: lookups run concurrently, and changes to one
+ * user's calendars are made one at a time. A request uses the calendar the user's requests use when it starts,
+ * even if another request of the user switches to another calendar meanwhile.
+ * <ul>
+ * <li><code>GET /calendars</code> lists the user's calendars.</li>
+ * <li><code>POST /calendars</code> creates the calendar <code>name</code>, which the user's requests then use.</li>
+ * <li><code>GET /events</code> lists the events <code>from</code> a time <code>to</code> another, on a
+ * <code>date</code>, with a <code>tag</code>, or all of them, up to <code>limit</code> events, which must not be
+ * negative.</li>
+ * <li><code>POST /events</code> adds the event <code>name</code> from <code>start</code> to <code>end</code>,
+ * with an optional <code>tag</code>, empty by default.</li>
+ * <li><code>POST /share</code> shares the event with id <code>event</code> with the user <code>to</code>.</li>
+ * <li><code>GET /alerts</code> lists the alerts.</li>
+ * <li><code>POST /alerts</code> adds an alert with <code>message</code> at <code>time</code> for the event with
+ * id <code>event</code>.</li>
+ * <li><code>POST /archive</code> moves the events that ended <code>before</code> a time into the archive of the
+ * calendar, where they are still found by the lookups above.</li>
+ * </ul>
+ *
+ * @see CalendarManager
+ */
+public class CalendarServer {
+
+    /**
+     * The greatest number of events a list of events returns unless a limit is given.
+     */
+    private static final int DEFAULT_LIMIT = 100;
+
+    private static final Logger logger = Logger.getLogger(CalendarServer.class.getName());
+
+    static {
+        // the headers and the body of a response are sent separately; without this, the body of every response on
+        // a kept-alive connection waits for the client to acknowledge the headers, which it delays by up to 40 ms
+        if (System.getProperty("sun.net.httpserver.nodelay") == null) {
+            System.setProperty("sun.net.httpserver.nodelay", "true");
+        }
+    }
+
+    private final HttpServer server;
+
+    private final ExecutorService executor;
+
+    private final UserDirectory users = new UserDirectory(new File("users.csv"));
+
+    /**
+     * The calendar managers of the users who made requests, by user name.
+     */
+    private final Map<String, CalendarManager> managers = new ConcurrentHashMap<>();
+
+    /**
+     * The locks the changes to the calendars of a user are made under, one at a time, by calendar manager. The
+     * managers' own monitors are not used, as a manager takes its monitor on its writer thread, which a change
+     * such as archiving waits for.
+     */
+    private final Map<CalendarManager, Object> changeLocks = new ConcurrentHashMap<>();
+
+    /**
+     * Creates a server listening on the specified port, handling requests on the specified number of threads.
+     *
+     * @param port    the port to listen on.
+     * @param threads the number of threads handling requests.
+     * @throws IOException if the port cannot be listened on.
+     */
+    public CalendarServer(int port, int threads) throws IOException {
+        server = HttpServer.create(new InetSocketAddress(port), 1024);
+        executor = Executors.newFixedThreadPool(threads);
+        server.setExecutor(executor);
+        server.createContext("/calendars", exchange -> handle(exchange, this::calendars));
+        server.createContext("/events", exchange -> handle(exchange, this::events));
+        server.createContext("/share", exchange -> handle(exchange, this::share));
+        server.createContext("/alerts", exchange -> handle(exchange, this::alerts));
+        server.createContext("/archive", exchange -> handle(exchange, this::archive));
+    }
+
+    public static void main(String[] args) throws IOException {
+        int port = args.length > 0 ? Integer.parseInt(args[0]) : 8080;
+        int threads = args.length > 1 ? Integer.parseInt(args[1])
+                : Runtime.getRuntime().availableProcessors() * 8; // requests mostly wait on files and sockets
+        CalendarServer calendarServer = new CalendarServer(port, threads);
+        Runtime.getRuntime().addShutdownHook(new Thread(calendarServer::stop));
+        calendarServer.start();
+        logger.log(Level.INFO, "Serving calendars on port " + port + ".");
+    }
+
+    /**
+     * Starts handling requests.
+     */
+    public void start() {
+        server.start();
+    }
+
+    /**
+     * Stops handling requests, and saves and closes the calendars of the users.
+     */
+    public void stop() {
+        server.stop(1);
+        executor.shutdown();
+        try {
+            executor.awaitTermination(5, TimeUnit.SECONDS);
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+        }
+        for (CalendarManager manager : managers.values()) {
+            try {
+                manager.close();
+            } catch (IOException ex) {
+                logger.log(Level.SEVERE, "Cannot save the calendars of a user.", ex);
+            }
+        }
+        managers.clear();
+        changeLocks.clear();
+    }
+
+    // Methods for handling requests
+
+    /**
+     * A handler of the requests of a user.
+     */
+    private interface Handler {
+
+        /**
+         * Handles a request of the specified user, writing the JSON response into the specified builder.
+         *
+         * @return the HTTP status of the response.
+         */
+        int handle(HttpExchange exchange, CalendarManager manager, Map<String, String> params, StringBuilder json)
+                throws IOException;
+    }
+
+    /**
+     * Thrown when a request is missing a parameter or has a malformed one.
+     */
+    private static class BadRequestException extends RuntimeException {
+
+        private static final long serialVersionUID = 1L;
+
+        private BadRequestException(String message) {
+            super(message);
+        }
+    }
+
+    private void handle(HttpExchange exchange, Handler handler) throws IOException {
+        StringBuilder json = new StringBuilder();
+        int status;
+        try {
+            String user = exchange.getRequestHeaders().getFirst("X-User");
+            String password = exchange.getRequestHeaders().getFirst("X-Password");
+            if (user == null || password == null || !users.checkPassword(user, password)) {
+                status = 401;
+                error(json, "Unknown user or wrong password.");
+            } else {
+                status = handler.handle(exchange, manager(user), params(exchange), json);
+            }
+        } catch (BadRequestException ex) {
+            json.setLength(0);
+            status = 400;
+            error(json, ex.getMessage());
+        } catch (Exception ex) {
+            logger.log(Level.SEVERE, "Cannot handle " + exchange.getRequestMethod() + " " + exchange.getRequestURI()
+                    + ".", ex);
+            json.setLength(0);
+            status = 500;
+            error(json, "An unexpected error has occurred.");
+        }
+        byte[] body = json.toString().getBytes(StandardCharsets.UTF_8);
+        exchange.getResponseHeaders().set("Content-Type", "application/json; charset=utf-8");
+        exchange.sendResponseHeaders(status, body.length);
+        try (OutputStream out = exchange.getResponseBody()) {
+            out.write(body);
+        }
+    }
+
+    /**
+     * Gets the calendar manager of the specified user, reading the user's default calendar the first time.
+     */
+    private CalendarManager manager(String user) {
+        return managers.computeIfAbsent(user, name -> {
+            try {
+                return new CalendarManager("./user_data/" + name + "_");
+            } catch (IOException | ClassNotFoundException ex) {
+                throw new IllegalStateException("Cannot read the calendar of " + name + ".", ex);
+            }
+        });
+    }
+
+    /**
+     * Gets the lock the changes to the calendars of the user of the specified calendar manager are made under.
+     */
+    private Object changeLock(CalendarManager manager) {
+        return changeLocks.computeIfAbsent(manager, m -> new Object());
+    }
+
+    private int calendars(HttpExchange exchange, CalendarManager manager, Map<String, String> params,
+                          StringBuilder json) throws IOException {
+        if (isPost(exchange)) {
+            String name = required(params, "name");
+            if (name.contains("_") || name.contains("/") || name.contains("\\")) {
+                throw new BadRequestException("Not a valid calendar name.");
+            }
+            synchronized (changeLock(manager)) {
+                manager.createCalendar(name);
+            }
+        }
+        json.append('[');
+        boolean first = true;
+        for (String name : manager.getUserCalendars()) {
+            json.append(first ? "" : ",");
+            string(json, name);
+            first = false;
+        }
+        json.append(']');
+        return isPost(exchange) ? 201 : 200;
+    }
+
+    private int events(HttpExchange exchange, CalendarManager manager, Map<String, String> params,
+                       StringBuilder json) throws IOException {
+        if (isPost(exchange)) {
+            Event event = new Event(required(params, "name"), time(params, "start"), time(params, "end"));
+            if (event.getEndTime().isBefore(event.getStartTime())) {
+                throw new BadRequestException("The event ends before it starts.");
+            }
+            event.setTag(params.getOrDefault("tag", "")); // the tag of an event is never null
+            synchronized (changeLock(manager)) { // added to the calendar that is saved, before the next change of the user
+                manager.getCalendar().addEvent(event);
+                manager.saveToFile();
+            }
+            event(json, event);
+            return 201;
+        }
+        Calendar calendar = manager.getCalendar(); // every lookup below is made in the same calendar
+        Collection<Event> events;
+        if (params.containsKey("from") || params.containsKey("to")) {
+            events = calendar.findEvents(time(params, "from"), time(params, "to"));
+        } else if (params.containsKey("date")) {
+            try {
+                events = calendar.findEvent(LocalDate.parse(params.get("date")));
+            } catch (DateTimeParseException ex) {
+                throw new BadRequestException("Not a valid date: " + params.get("date"));
+            }
+        } else if (params.containsKey("tag")) {
+            events = calendar.findEvent(params.get("tag"));
+        } else {
+            events = calendar.getMyEvents(); // a copy, listed below while other requests change the calendar
+        }
+        long limit = params.containsKey("limit") ? number(params, "limit") : DEFAULT_LIMIT;
+        if (limit < 0) {
+            throw new BadRequestException("The limit is negative.");
+        }
+        json.append('[');
+        int count = 0;
+        for (Event e : events) {
+            if (count == limit) {
+                break;
+            }
+            json.append(count > 0 ? "," : "");
+            event(json, e);
+            count++;
+        }
+        json.append(']');
+        return 200;
+    }
+
+    private int share(HttpExchange exchange, CalendarManager manager, Map<String, String> params,
+                      StringBuilder json) throws IOException {
+        if (!isPost(exchange)) {
+            return methodNotAllowed(json);
+        }
+        String to = required(params, "to");
+        boolean shared;
+        synchronized (changeLock(manager)) { // the event of the calendar the user's requests use
+            Event event = manager.getCalendar().getEvent(number(params, "event"));
+            if (event == null) {
+                error(json, "No such event.");
+                return 404;
+            }
+            shared = manager.shareEvent(to, event);
+        }
+        if (!shared) {
+            error(json, "No such user.");
+            return 404;
+        }
+        json.append("{\"shared\":true}");
+        return 200;
+    }
+
+    private int alerts(HttpExchange exchange, CalendarManager manager, Map<String, String> params,
+                       StringBuilder json) throws IOException {
+        Calendar calendar;
+        if (isPost(exchange)) {
+            long id = number(params, "event");
+            LocalDateTime time = time(params, "time");
+            String message = required(params, "message");
+            synchronized (changeLock(manager)) { // the event is looked up in the calendar the alert is added to and saved
+                calendar = manager.getCalendar();
+                Event event = calendar.getEvent(id);
+                if (event == null) {
+                    error(json, "No such event.");
+                    return 404;
+                }
+                calendar.addIndividualAlert(event, message, time);
+                manager.saveToFile();
+            }
+        } else {
+            calendar = manager.getCalendar();
+        }
+        json.append('[');
+        boolean first = true;
+        for (Alert a : calendar.getAllAlerts()) {
+            json.append(first ? "" : ",");
+            json.append("{\"id\":").append(a.getId()).append(",\"type\":");
+            string(json, a.getAlertType());
+            json.append(",\"event\":");
+            if (a.getEvent() != null) {
+                json.append(a.getEvent().getId());
+            } else {
+                json.append("null");
+            }
+            json.append(",\"name\":");
+            string(json, a.getName());
+            json.append(",\"message\":");
+            string(json, a.getMessage());
+            json.append(",\"eventTime\":");
+            string(json, String.valueOf(a.getEventTime()));
+            json.append(",\"description\":");
+            string(json, a.getData());
+            json.append('}');
+            first = false;
+        }
+        json.append(']');
+        return isPost(exchange) ? 201 : 200;
+    }
+
+    private int archive(HttpExchange exchange, CalendarManager manager, Map<String, String> params,
+                        StringBuilder json) throws IOException {
+        if (!isPost(exchange)) {
+            return methodNotAllowed(json);
+        }
+        LocalDateTime before = time(params, "before");
+        int archived;
+        synchronized (changeLock(manager)) { // the calendar archived is the one saved, before the next change of the user
+            archived = manager.archiveEventsBefore(before);
+        }
+        json.append("{\"archived\":").append(archived).append('}');
+        return 200;
+    }
+
+    // helper methods
+
+    private static boolean isPost(HttpExchange exchange) {
+        return "POST".equalsIgnoreCase(exchange.getRequestMethod());
+    }
+
+    private static int methodNotAllowed(StringBuilder json) {
+        error(json, "Method not allowed.");
+        return 405;
+    }
+
+    /**
+     * Reads the parameters of the specified request, from its query string and, for a POST, its body.
+     */
+    private static Map<String, String> params(HttpExchange exchange) throws IOException {
+        Map<String, String> params = new HashMap<>();
+        parse(exchange.getRequestURI().getRawQuery(), params);
+        if (isPost(exchange)) {
+            ByteArrayOutputStream body = new ByteArrayOutputStream();
+            try (InputStream in = exchange.getRequestBody()) {
+                byte[] buffer = new byte[4096];
+                for (int n = in.read(buffer); n > 0; n = in.read(buffer)) {
+                    body.write(buffer, 0, n);
+                }
+            }
+            parse(new String(body.toByteArray(), StandardCharsets.UTF_8), params);
+        }
+        return params;
+    }
+
+    private static void parse(String encoded, Map<String, String> params) throws UnsupportedEncodingException {
+        if (encoded == null || encoded.isEmpty()) {
+            return;
+        }
+        for (String pair : encoded.split("&")) {
+            int equals = pair.indexOf('=');
+            String key = URLDecoder.decode(equals < 0 ? pair : pair.substring(0, equals), "UTF-8");
+            String value = equals < 0 ? "" : URLDecoder.decode(pair.substring(equals + 1), "UTF-8");
+            params.put(key, value);
+        }
+    }
+
+    private static String required(Map<String, String> params, String key) {
+        String value = params.get(key);
+        if (value == null || value.isEmpty()) {
+            throw new BadRequestException("Missing parameter: " + key);
+        }
+        return value;
+    }
+
+    private static LocalDateTime time(Map<String, String> params, String key) {
+        try {
+            return LocalDateTime.parse(required(params, key));
+        } catch (DateTimeParseException ex) {
+            throw new BadRequestException("Not a valid time: " + params.get(key));
+        }
+    }
+
+    private static long number(Map<String, String> params, String key) {
+        try {
+            return Long.parseLong(required(params, key));
+        } catch (NumberFormatException ex) {
+            throw new BadRequestException("Not a valid number: " + params.get(key));
+        }
+    }
+
+    private static void event(StringBuilder json, Event e) {
+        json.append("{\"id\":").append(e.getId()).append(",\"name\":");
+        string(json, e.getEventName());
+        json.append(",\"start\":");
+        string(json, e.getStartTime().toString());
+        json.append(",\"end\":");
+        string(json, e.getEndTime().toString());
+        json.append(",\"tag\":");
+        string(json, e.getTag());
+        json.append(",\"status\":");
+        string(json, e.getStatus());
+        json.append('}');
+    }
+
+    private static void error(StringBuilder json, String message) {
+        json.append("{\"error\":");
+        string(json, message);
+        json.append('}');
+    }
+
+    /**
+     * Appends the specified string to the specified JSON, quoted and escaped, or <code>null</code>.
+     */
+    private static void string(StringBuilder json, String s) {
+        if (s == null) {
+            json.append("null");
+            return;
+        }
+        json.append('"');
+        for (int i = 0; i < s.length(); i++) {
+            char c = s.charAt(i);
+            switch (c) {
+                case '"':
+                    json.append("\\\"");
+                    break;
+                case '\\':
+                    json.append("\\\\");
+                    break;
+                case '\n':
+                    json.append("\\n");
+                    break;
+                case '\r':
+                    json.append("\\r");
+                    break;
+                case '\t':
+                    json.append("\\t");
+                    break;
+                default:
+                    if (c < 0x20) {
+                        json.append(String.format("\\u%04x", (int) c));
+                    } else {
+                        json.append(c);
+                    }
+            }
+        }
+        json.append('"');
+    }
+}
@@ -0,0 +1,129 @@
+package CalendarSystem;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Runs lookups on a calendar from more and more reader threads while a writer thread keeps changing it, and
+ * reports the lookups made per second with each number of readers, so that it shows how the lookups scale.
+ * <p>
+ * The writer changes tags, and adds, moves and deletes its own events, so the calendar ends with as many events
+ * as it started with. Exits with an error if a lookup throws anything, if a search does not find the event it
+ * searches for, or if the number of events changed.
+ * <p>
+ * Run with the test and source classes on the class path; takes the seconds to run each number of readers for
+ * as its argument, 2 by default.
+ */
+public class ConcurrencyStress {
+
+    private static final int EVENTS = 20000;
+    private static final int TAGS = 50;
+    private static final LocalDateTime START = LocalDateTime.of(2026, 1, 1, 9, 0);
+
+    public static void main(String[] args) throws Exception {
+        int seconds = args.length > 0 ? Integer.parseInt(args[0]) : 2;
+        Calendar calendar = new Calendar();
+        Random random = new Random(1);
+        for (int i = 0; i < EVENTS; i++) {
+            LocalDateTime start = START.plusHours(random.nextInt(2 * 365 * 24));
+            Event e = new Event("event" + i, start, start.plusHours(2));
+            calendar.addEvent(e);
+            calendar.changeEventTag("tag" + (i % TAGS), e);
+        }
+        calendar.addIndividualAlert(calendar.getEvent("event0"), "alert", START);
+        int count = calendar.getMyEvents().size();
+
+        for (int readers = 1; readers <= 8; readers *= 2) {
+            AtomicBoolean stop = new AtomicBoolean();
+            AtomicLong reads = new AtomicLong();
+            AtomicLong writes = new AtomicLong();
+            List<Throwable> failures = new ArrayList<>();
+            List<Thread> threads = new ArrayList<>();
+            threads.add(new Thread(() -> {
+                Random changes = new Random(2);
+                int n = 0;
+                try {
+                    while (!stop.get()) {
+                        Event e = calendar.getEvent("event" + changes.nextInt(EVENTS));
+                        calendar.changeEventTag("tag" + changes.nextInt(TAGS), e);
+                        LocalDateTime start = START.plusHours(changes.nextInt(2 * 365 * 24));
+                        Event added = new Event("added" + n++, start, start.plusHours(1));
+                        calendar.addEvent(added);
+                        calendar.changeEventTime(added, start.plusHours(3), start.plusHours(4));
+                        calendar.deleteEvent(added);
+                        writes.incrementAndGet();
+                        Thread.yield();
+                    }
+                } catch (Throwable t) {
+                    synchronized (failures) {
+                        failures.add(t);
+                    }
+                }
+            }, "Writer"));
+            for (int i = 0; i < readers; i++) {
+                int seed = i;
+                threads.add(new Thread(() -> {
+                    Random lookups = new Random(seed);
+                    try {
+                        while (!stop.get()) {
+                            LocalDateTime from = START.plusDays(lookups.nextInt(700));
+                            calendar.findEvents(from, from.plusDays(7));
+                            calendar.findEvent("tag" + lookups.nextInt(TAGS));
+                            String name = "event" + (1000 + lookups.nextInt(EVENTS - 1000)); // matches few others
+                            boolean found = false;
+                            for (Event e : calendar.searchEvents(name, 20)) {
+                                found |= e.getEventName().equals(name);
+                            }
+                            check(found, "the search for " + name + " finds it");
+                            check(calendar.getEvents(name).size() == 1, "one event is named " + name);
+                            calendar.getMyAlerts().getCurrAlerts();
+                            calendar.getMyMemos().getMemos();
+                            int seen = 0;
+                            for (Event e : calendar.getFutureEvents()) {
+                                if (++seen > 50) {
+                                    break;
+                                }
+                            }
+                            reads.incrementAndGet();
+                        }
+                    } catch (Throwable t) {
+                        synchronized (failures) {
+                            failures.add(t);
+                        }
+                    }
+                }, "Reader " + i));
+            }
+            for (Thread t : threads) {
+                t.start();
+            }
+            Thread.sleep(seconds * 1000L);
+            stop.set(true);
+            for (Thread t : threads) {
+                t.join();
+            }
+            System.out.println(readers + " readers: " + reads.get() / seconds + " lookups/s, " + writes.get() / seconds
+                    + " changes/s");
+            if (!failures.isEmpty()) {
+                AssertionError error = new AssertionError("A lookup or change failed with " + readers + " readers.");
+                for (Throwable t : failures) {
+                    error.addSuppressed(t);
+                }
+                throw error;
+            }
+            check(reads.get() > 0 && writes.get() > 0, "both lookups and changes were made");
+            check(calendar.getMyEvents().size() == count,
+                    count + " events, got " + calendar.getMyEvents().size());
+        }
+        System.out.println("ConcurrencyStress passed.");
+    }
+
+    private static void check(boolean condition, String message) {
+        if (!condition) {
+            throw new AssertionError(message);
+        }
+    }
+}
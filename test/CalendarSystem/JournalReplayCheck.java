@@ -0,0 +1,104 @@
+package CalendarSystem;
+
+import java.io.File;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.time.LocalDateTime;
+import java.util.Collections;
+import java.util.zip.CRC32;
+
+/**
+ * Checks that the journal of a calendar replays to the calendar that was saved: a <code>null</code> memo note or
+ * tag is read back as <code>null</code>, and an entry that does not apply is skipped without losing the entries
+ * after it.
+ * <p>
+ * Run with the test and source classes on the class path; exits with an error if a check fails.
+ */
+public class JournalReplayCheck {
+
+    /**
+     * The length of the header of a journal file, and the type of the entry of a deleted event.
+     */
+    private static final int HEADER_LENGTH = 16;
+    private static final byte EVENT_DELETED = 2;
+
+    public static void main(String[] args) throws Exception {
+        File dir = Files.createTempDirectory("journal").toFile();
+        LocalDateTime start = LocalDateTime.of(2024, 3, 4, 9, 0);
+
+        // null strings are replayed as null
+        CalendarManager manager = new CalendarManager(dir + "/n_");
+        manager.saveToFile();
+        manager.flush(); // the snapshot the changes below are journaled after
+        Calendar calendar = manager.getCalendar();
+        Event untagged = new Event("Untagged", start, start.plusHours(1));
+        calendar.addEvent(untagged);
+        calendar.changeEventTag(null, untagged);
+        calendar.createMemo(Collections.singletonList(untagged), null);
+        manager.saveToFile();
+        manager.close();
+        check(new File(dir, "n_default.ser.journal").length() > HEADER_LENGTH, "the changes are in the journal");
+        manager = new CalendarManager(dir + "/n_");
+        Event read = manager.getCalendar().getEvent("Untagged");
+        check(read != null, "the event is replayed");
+        check(read.getTag() == null, "a null tag is replayed as null, got \"" + read.getTag() + "\"");
+        check(read.getMemos().size() == 1 && read.getMemos().get(0).getNote() == null,
+                "a null memo note is replayed as null");
+        manager.close();
+
+        // an entry that does not apply is skipped, and the entries after it are kept
+        manager = new CalendarManager(dir + "/s_");
+        manager.saveToFile();
+        manager.flush();
+        calendar = manager.getCalendar();
+        for (String name : new String[]{"First", "Second", "Third"}) {
+            calendar.addEvent(new Event(name, start, start.plusHours(1)));
+        }
+        calendar.deleteEvent(calendar.getEvent("First"));
+        calendar.addEvent(new Event("Fourth", start, start.plusHours(1)));
+        manager.saveToFile();
+        manager.close();
+        File journal = new File(dir, "s_default.ser.journal");
+        byte[] bytes = Files.readAllBytes(journal.toPath());
+        check(retarget(bytes, EVENT_DELETED, 999), "the journal has the deleted event");
+        Files.write(journal.toPath(), bytes);
+        manager = new CalendarManager(dir + "/s_");
+        calendar = manager.getCalendar();
+        for (String name : new String[]{"First", "Second", "Third", "Fourth"}) {
+            check(calendar.getEvent(name) != null, "the event " + name + " is replayed");
+        }
+        manager.close();
+        check(new File(dir, "s_default.ser.journal.skipped").exists(), "a copy of the journal is kept");
+        check(Files.readAllBytes(journal.toPath()).length == bytes.length, "the journal is not cut back");
+
+        System.out.println("JournalReplayCheck passed.");
+    }
+
+    /**
+     * Changes the event id of the first entry of the specified type to the specified id, and its checksum with it.
+     *
+     * @return true if an entry of the type was found.
+     */
+    private static boolean retarget(byte[] journal, byte type, long id) {
+        ByteBuffer buffer = ByteBuffer.wrap(journal);
+        int position = HEADER_LENGTH;
+        while (position + 8 < journal.length) {
+            int length = buffer.getInt(position);
+            if (journal[position + 8] == type) {
+                buffer.putLong(position + 9, id);
+                CRC32 crc = new CRC32();
+                crc.update(journal, position + 8, length);
+                buffer.putInt(position + 4, (int) crc.getValue());
+                return true;
+            }
+            position += 8 + length;
+        }
+        return false;
+    }
+
+    private static void check(boolean condition, String message) {
+        if (!condition) {
+            throw new AssertionError(message);
+        }
+    }
+}
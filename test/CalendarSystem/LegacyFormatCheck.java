@@ -0,0 +1,128 @@
+package CalendarSystem;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * Checks that calendars saved with Java serialization by the first version of the application are read, and
+ * saved again in the binary format without losing anything, and that a file that cannot be read is never saved
+ * over.
+ * <p>
+ * The fixture <code>legacy-calendar.ser</code> was written by the first version, with events, a tag, memos shared
+ * by two events, an individual and a frequent alert, a recurring and a named series and an event invite.
+ * <p>
+ * Run from the root of the repository, with the test and source classes on the class path; exits with an error
+ * if a check fails.
+ */
+public class LegacyFormatCheck {
+
+    public static void main(String[] args) throws Exception {
+        File resources = new File(args.length > 0 ? args[0] : "test/resources");
+        File dir = Files.createTempDirectory("legacy").toFile();
+
+        // the fixture, with what it holds
+        File legacy = new File(resources, "legacy-calendar.ser");
+        byte[] legacyBytes = Files.readAllBytes(legacy.toPath());
+        Files.copy(legacy.toPath(), new File(dir, "u_default.ser").toPath());
+        CalendarManager manager = new CalendarManager(dir + "/u_");
+        Calendar calendar = manager.getCalendar();
+        String summary = summarize(calendar);
+        check(calendar.getMyEvents().size() == 7, "7 events, got " + calendar.getMyEvents().size());
+        Event standup = calendar.getEvent("Standup");
+        Event review = calendar.getEvent("Review");
+        check(standup != null && review != null, "the events are found by name");
+        check("work".equals(standup.getTag()), "the tag is kept");
+        check(standup.getMemos().size() == 1 && standup.getMemos().get(0) == review.getMemos().get(0),
+                "the memo of two events is shared");
+        check(calendar.findEvent(standup.getMemos().get(0)).size() == 2, "the memo finds both of its events");
+        check(calendar.getAllAlerts().size() == 2, "2 alerts, got " + calendar.getAllAlerts().size());
+        Set<Long> ids = new HashSet<>();
+        for (Alert alert : calendar.getAllAlerts()) {
+            check(alert.getEvent() == standup || alert.getEvent() == review, "an alert knows its event");
+            check(alert.getId() > 0 && ids.add(alert.getId()), "the alerts are numbered");
+        }
+        ids.clear();
+        for (Event e : calendar.getMyEvents()) {
+            check(e.getId() > 0 && ids.add(e.getId()), "the events are numbered");
+        }
+        check(calendar.findEventsBySeries("Work").size() == 2, "the named series is kept");
+        check(calendar.findEventsBySeries("Weekly sync").size() == 3, "the built series is kept");
+        check(calendar.getEventInvites().size() == 1, "the event invite is kept");
+        check(Arrays.equals(legacyBytes, Files.readAllBytes(new File(dir, "u_default.ser.old").toPath())),
+                "the file in the old format is kept");
+
+        // saved again in the binary format, and read back the same
+        manager.close();
+        byte[] header = Arrays.copyOf(Files.readAllBytes(new File(dir, "u_default.ser").toPath()), 4);
+        check(CalendarCodec.isCalendarFile(header), "the calendar is saved in the binary format");
+        manager = new CalendarManager(dir + "/u_");
+        check(summary.equals(summarize(manager.getCalendar())),
+                "the calendar read back differs:\n" + summary + "\n" + summarize(manager.getCalendar()));
+        manager.close();
+
+        // the calendar the application ships with
+        Files.copy(new File("user_data/user_default.ser").toPath(), new File(dir, "s_default.ser").toPath(),
+                StandardCopyOption.REPLACE_EXISTING);
+        manager = new CalendarManager(dir + "/s_");
+        check(!manager.getCalendar().getMyEvents().isEmpty(), "the shipped calendar has events");
+        manager.close();
+
+        // a file that cannot be read is kept as it is
+        File broken = new File(dir, "b_default.ser");
+        byte[] brokenBytes = Arrays.copyOf(legacyBytes, legacyBytes.length / 2);
+        Files.write(broken.toPath(), brokenBytes);
+        try {
+            new CalendarManager(dir + "/b_").close();
+            check(false, "a broken file is reported");
+        } catch (IOException expected) {
+            // reported, and not saved over
+        }
+        check(Arrays.equals(brokenBytes, Files.readAllBytes(broken.toPath())), "a broken file is not saved over");
+        check(new File(dir, "b_default.ser.unreadable").exists(), "a copy of a broken file is kept");
+
+        System.out.println("LegacyFormatCheck passed.");
+    }
+
+    /**
+     * Describes everything the calendar holds, event by event in order of id number.
+     */
+    private static String summarize(Calendar calendar) {
+        List<Event> events = new ArrayList<>(calendar.getMyEvents());
+        events.sort(Comparator.comparingLong(Event::getId));
+        StringBuilder s = new StringBuilder();
+        for (Event e : events) {
+            s.append(e.getId()).append(' ').append(e.getEventName()).append(' ').append(e.getStartTime())
+                    .append(' ').append(e.getEndTime()).append(' ').append(e.getTag());
+            for (Memo m : e.getMemos()) {
+                s.append(" memo ").append(m.getIdNumber()).append(':').append(m.getNote());
+            }
+            for (Series series : e.getSeries()) {
+                s.append(" series ").append(series.getName());
+            }
+            List<String> alerts = new ArrayList<>();
+            for (Alert a : calendar.getMyAlerts().getAlerts(e)) {
+                alerts.add(a.getId() + ":" + a.getAlertType() + ":" + a.getMessage() + ":" + a.getData());
+            }
+            alerts.sort(null);
+            s.append(" alerts ").append(alerts).append('\n');
+        }
+        for (Event e : calendar.getEventInvites()) {
+            s.append("invite ").append(e.getEventName()).append(' ').append(e.getStartTime()).append('\n');
+        }
+        return s.toString();
+    }
+
+    private static void check(boolean condition, String message) {
+        if (!condition) {
+            throw new AssertionError(message);
+        }
+    }
+}
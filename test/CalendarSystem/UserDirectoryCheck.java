@@ -0,0 +1,59 @@
+package CalendarSystem;
+
+import java.io.File;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * Checks that the user directory stores passwords hashed, and that the passwords written by earlier versions
+ * are hashed in place without losing a user, including lines appended to the file after it was indexed.
+ * <p>
+ * Run with the test and source classes on the class path; exits with an error if a check fails.
+ */
+public class UserDirectoryCheck {
+
+    public static void main(String[] args) throws Exception {
+        File dir = Files.createTempDirectory("users").toFile();
+        File csv = new File(dir, "users.csv");
+
+        // a file of the first version, with a user whose later line replaces the earlier one
+        Files.write(csv.toPath(), "user,password\nbob,secret\nbob,newer\n".getBytes(StandardCharsets.UTF_8));
+        UserDirectory users = new UserDirectory(csv);
+        check(users.checkPassword("user", "password"), "the password of the first user is kept");
+        check(users.checkPassword("bob", "newer"), "the password of the later line is kept");
+        check(!users.checkPassword("bob", "secret"), "the password of the earlier line is replaced");
+        check(!users.checkPassword("user", "wrong"), "a wrong password is refused");
+        checkHashed(csv, "password", "secret", "newer");
+
+        // a user added, and a line appended by an earlier version after the file was indexed
+        check(users.addUser("carol", "pw1234"), "a user is added");
+        check(!users.addUser("carol", "other"), "a user is added once");
+        Files.write(csv.toPath(), "dave,plain\n".getBytes(StandardCharsets.UTF_8), StandardOpenOption.APPEND);
+        UserDirectory reopened = new UserDirectory(csv);
+        check(reopened.checkPassword("dave", "plain"), "an appended line is read");
+        check(reopened.checkPassword("carol", "pw1234"), "an added user is read back");
+        check(reopened.checkPassword("user", "password") && reopened.checkPassword("user", "password"),
+                "a password is checked again");
+        check(!reopened.checkPassword("carol", "other") && !reopened.hasUser("erin"), "unknown users are refused");
+        checkHashed(csv, "password", "secret", "newer", "pw1234", "plain");
+
+        System.out.println("UserDirectoryCheck passed.");
+    }
+
+    /**
+     * Checks that none of the specified passwords is in the CSV file.
+     */
+    private static void checkHashed(File csv, String... passwords) throws Exception {
+        String text = new String(Files.readAllBytes(csv.toPath()), StandardCharsets.UTF_8);
+        for (String password : passwords) {
+            check(!text.contains("," + password + "\n"), "the password " + password + " is hashed:\n" + text);
+        }
+    }
+
+    private static void check(boolean condition, String message) {
+        if (!condition) {
+            throw new AssertionError(message);
+        }
+    }
+}
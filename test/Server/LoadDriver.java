@@ -0,0 +1,203 @@
+package Server;
+
+import CalendarSystem.UserDirectory;
+
+import java.io.BufferedInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Drives a calendar server with requests from many connections at once, and reports the requests it handled per
+ * second.
+ * <p>
+ * The driver starts a server in the current directory, which it fills with users and their calendars, so run it
+ * in an empty directory. Each user is given events over a month; then every connection keeps asking for the
+ * events of a random day of a random user, reusing its connection as browsers and HTTP clients do. Exits with an
+ * error if a request fails, or if a request that is not valid is not refused.
+ * <p>
+ * Arguments, all optional: the port, the number of connections, the seconds to measure for, and the number of
+ * threads of the server.
+ */
+public class LoadDriver {
+
+    private static final int USERS = 20;
+    private static final int EVENTS_PER_USER = 50;
+    private static final String PASSWORD = "password";
+
+    public static void main(String[] args) throws Exception {
+        int port = args.length > 0 ? Integer.parseInt(args[0]) : 18080;
+        int connections = args.length > 1 ? Integer.parseInt(args[1]) : 32;
+        int seconds = args.length > 2 ? Integer.parseInt(args[2]) : 5;
+        int threads = args.length > 3 ? Integer.parseInt(args[3]) : Runtime.getRuntime().availableProcessors() * 8;
+
+        new File("user_data").mkdirs();
+        UserDirectory users = new UserDirectory(new File("users.csv"));
+        for (int u = 0; u < USERS; u++) {
+            users.addUser("user" + u, PASSWORD);
+        }
+        CalendarServer server = new CalendarServer(port, threads);
+        server.start();
+        try {
+            try (Connection setup = new Connection(port)) {
+                for (int u = 0; u < USERS; u++) {
+                    for (int i = 0; i < EVENTS_PER_USER; i++) {
+                        String day = "2026-10-" + (10 + i % 18);
+                        setup.request("POST", "/events", "user" + u, "name=event" + i + "&start=" + day
+                                + "T09:00&end=" + day + "T10:00&tag=tag" + i % 3, 201);
+                    }
+                }
+                String untagged = setup.request("POST", "/events", "user0",
+                        "name=untagged&start=2026-10-09T09:00&end=2026-10-09T10:00", 201);
+                if (!untagged.contains("\"tag\":\"\"")) {
+                    throw new AssertionError("An event added without a tag has an empty tag: " + untagged);
+                }
+                setup.request("GET", "/events?limit=-1", "user0", null, 400);
+                String before = setup.request("GET", "/events?date=2026-10-10", "user1", null, 200);
+                String archived = setup.request("POST", "/archive", "user1", "before=2026-10-12T00:00", 200);
+                String after = setup.request("GET", "/events?date=2026-10-10", "user1", null, 200);
+                if (archived.equals("{\"archived\":0}") || !after.equals(before)) {
+                    throw new AssertionError("Archived events are listed as before: " + archived + " " + before
+                            + " " + after);
+                }
+            }
+
+            AtomicBoolean stop = new AtomicBoolean();
+            AtomicBoolean measuring = new AtomicBoolean();
+            AtomicLong requests = new AtomicLong();
+            List<Throwable> failures = new ArrayList<>();
+            List<Thread> clients = new ArrayList<>();
+            for (int i = 0; i < connections; i++) {
+                int seed = i;
+                clients.add(new Thread(() -> {
+                    Random random = new Random(seed);
+                    try (Connection connection = new Connection(port)) {
+                        while (!stop.get()) {
+                            connection.request("GET", "/events?date=2026-10-" + (10 + random.nextInt(18)),
+                                    "user" + random.nextInt(USERS), null, 200);
+                            if (measuring.get()) {
+                                requests.incrementAndGet();
+                            }
+                        }
+                    } catch (Throwable t) {
+                        synchronized (failures) {
+                            failures.add(t);
+                        }
+                    }
+                }, "Client " + i));
+            }
+            for (Thread client : clients) {
+                client.start();
+            }
+            Thread.sleep(1000); // warms up
+            measuring.set(true);
+            Thread.sleep(seconds * 1000L);
+            measuring.set(false);
+            long handled = requests.get();
+            stop.set(true);
+            for (Thread client : clients) {
+                client.join();
+            }
+            System.out.println(connections + " connections, " + threads + " server threads, "
+                    + Runtime.getRuntime().availableProcessors() + " processors: " + handled / seconds
+                    + " requests/s");
+            if (!failures.isEmpty()) {
+                AssertionError error = new AssertionError(failures.size() + " connections failed.");
+                for (Throwable t : failures) {
+                    error.addSuppressed(t);
+                }
+                throw error;
+            }
+        } finally {
+            server.stop();
+        }
+    }
+
+    /**
+     * A kept-alive HTTP/1.1 connection to the server.
+     */
+    private static class Connection implements AutoCloseable {
+
+        private final Socket socket;
+
+        private final InputStream in;
+
+        private final OutputStream out;
+
+        private Connection(int port) throws IOException {
+            socket = new Socket("localhost", port);
+            socket.setTcpNoDelay(true);
+            in = new BufferedInputStream(socket.getInputStream());
+            out = socket.getOutputStream();
+        }
+
+        /**
+         * Makes a request as the specified user, and reads its response.
+         *
+         * @return the body of the response.
+         * @throws IOException if the response does not have the expected status.
+         */
+        private String request(String method, String path, String user, String form, int expected)
+                throws IOException {
+            byte[] body = form == null ? new byte[0] : form.getBytes(StandardCharsets.UTF_8);
+            String head = method + " " + path + " HTTP/1.1\r\nHost: localhost\r\nX-User: " + user
+                    + "\r\nX-Password: " + PASSWORD + "\r\n"
+                    + (form == null ? "" : "Content-Type: application/x-www-form-urlencoded\r\n")
+                    + "Content-Length: " + body.length + "\r\n\r\n";
+            out.write(head.getBytes(StandardCharsets.US_ASCII));
+            out.write(body);
+            out.flush();
+
+            String status = readLine();
+            int length = -1;
+            for (String line = readLine(); !line.isEmpty(); line = readLine()) {
+                if (line.regionMatches(true, 0, "Content-Length:", 0, 15)) {
+                    length = Integer.parseInt(line.substring(15).trim());
+                }
+            }
+            if (length < 0) {
+                throw new IOException("No length in the response to " + method + " " + path + ".");
+            }
+            byte[] response = new byte[length];
+            for (int read = 0; read < length; ) {
+                int n = in.read(response, read, length - read);
+                if (n < 0) {
+                    throw new IOException("The response to " + method + " " + path + " was cut short.");
+                }
+                read += n;
+            }
+            String text = new String(response, StandardCharsets.UTF_8);
+            if (!status.startsWith("HTTP/1.1 " + expected + " ")) {
+                throw new IOException(method + " " + path + ": " + status + " " + text);
+            }
+            return text;
+        }
+
+        private String readLine() throws IOException {
+            ByteArrayOutputStream line = new ByteArrayOutputStream();
+            for (int b = in.read(); b != '\n'; b = in.read()) {
+                if (b < 0) {
+                    throw new IOException("The server closed the connection.");
+                }
+                if (b != '\r') {
+                    line.write(b);
+                }
+            }
+            return new String(line.toByteArray(), StandardCharsets.US_ASCII);
+        }
+
+        @Override
+        public void close() throws IOException {
+            socket.close();
+        }
+    }
+}